@@ -1,11 +1,20 @@
 package weka.classifiers.functions;
 
 import weka.classifiers.AbstractClassifier;
+import weka.classifiers.functions.gmlvq.core.ChunkedTrainingData;
 import weka.classifiers.functions.gmlvq.core.GMLVQCore;
 import weka.classifiers.functions.gmlvq.core.GMLVQCore.Builder;
+import weka.classifiers.functions.gmlvq.core.InitializationCache;
+import weka.classifiers.functions.gmlvq.core.ParallelStrategy;
 import weka.classifiers.functions.gmlvq.core.cost.CostFunctionCalculator;
 import weka.classifiers.functions.gmlvq.core.cost.CostFunctionValue;
+import weka.classifiers.functions.gmlvq.inference.InferenceModel;
+import weka.classifiers.functions.gmlvq.inference.InferenceModelFormat;
+import weka.classifiers.functions.gmlvq.inference.QuantizationReport;
+import weka.classifiers.functions.gmlvq.inference.QuantizedInferenceModel;
+import weka.classifiers.functions.gmlvq.inference.QuantizedInferenceModel.Precision;
 import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.classifiers.functions.gmlvq.model.MappedDataStore;
 import weka.classifiers.functions.gmlvq.model.Observer;
 import weka.classifiers.functions.gmlvq.model.Prototype;
 import weka.classifiers.functions.gmlvq.model.WekaModelConverter;
@@ -16,6 +25,8 @@ import weka.core.Capabilities.Capability;
 import weka.core.matrix.Matrix;
 
 import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -25,7 +36,7 @@ import java.util.*;
  *
  * @author S
  */
-public class GMLVQ extends AbstractClassifier implements TechnicalInformationHandler, Observer {
+public class GMLVQ extends AbstractClassifier implements TechnicalInformationHandler, WeightedInstancesHandler, Observer {
 
     /**
      * The interface provides all default values and options essential for the
@@ -123,6 +134,83 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
         boolean DEFAULT_PARALLEL_EXECUTION = false;
         Option PARALLEL_EXECUTION_OPTION = new Option("\texecution in parallel\n", "X", 0,
                 "enable parallel excecution");
+
+        /**
+         * the default setting whether training data is stored as floats
+         */
+        boolean DEFAULT_SINGLE_PRECISION = false;
+        Option SINGLE_PRECISION_OPTION = new Option("\tstore training data in single precision\n", "F", 0,
+                "enable single precision training data");
+        /**
+         * the default setting whether identical instances are merged into
+         * weighted ones
+         */
+        boolean DEFAULT_COLLAPSE_DUPLICATES = false;
+        Option COLLAPSE_DUPLICATES_OPTION = new Option("\tmerge identical instances into weighted ones\n", "U", 0,
+                "enable collapsing of duplicate instances");
+        /**
+         * the default size of the coreset, 0 trains on all instances
+         */
+        int DEFAULT_CORESET_SIZE = 0;
+        /**
+         * the default setting whether instances are drawn by importance
+         * sampling
+         */
+        boolean DEFAULT_IMPORTANCE_SAMPLING = false;
+        Option IMPORTANCE_SAMPLING_OPTION = new Option(
+                "\tdraw the instances of each epoch in proportion to their gradient magnitude\n", "H", 0,
+                "enable importance sampling");
+        /**
+         * the default setting whether the omega matrix is initialized from all
+         * instances
+         */
+        boolean DEFAULT_ALL_DATA_POINTS_FOR_OMEGA_INITIALIZATION = false;
+        Option ALL_DATA_POINTS_FOR_OMEGA_INITIALIZATION_OPTION = new Option(
+                "\tcompute the initial omega matrix from all instances instead of a sample\n", "A", 0,
+                "enable omega initialization from all instances");
+        /**
+         * the default setting whether searches of winners are skipped while
+         * the winners are known to be unchanged
+         */
+        boolean DEFAULT_WINNER_PRUNING = false;
+        Option WINNER_PRUNING_OPTION = new Option(
+                "\tskip searches of winning prototypes while distance bounds prove them unchanged\n", "N", 0,
+                "enable winner pruning");
+        /**
+         * the default approximation factor of the search of the closest
+         * prototypes when classifying, which is exact
+         */
+        double DEFAULT_SEARCH_APPROXIMATION = 0;
+        Option SEARCH_APPROXIMATION_OPTION = new Option(
+                "\tfactor by which the distance to the prototype an instance is assigned to may exceed the one to the closest prototype (0 for exact search)\n",
+                "Q", 1, "-Q <search approximation>");
+        /**
+         * the splits of the work of each epoch among threads
+         */
+        Tag[] AVAILABLE_PARALLEL_STRATEGIES = new Tag[]{
+                new Tag(ParallelStrategy.AUTOMATIC.ordinal(), "depending on the number of instances per epoch"),
+                new Tag(ParallelStrategy.DATA_POINTS.ordinal(), "split instances"),
+                new Tag(ParallelStrategy.FEATURES.ordinal(), "split omega rows and features")};
+        ParallelStrategy DEFAULT_PARALLEL_STRATEGY = ParallelStrategy.AUTOMATIC;
+        Option PARALLEL_STRATEGY_OPTION = new Option(
+                "\thow the work of each epoch is split among threads (0 automatic, 1 instances, 2 features)\n", "G", 1,
+                "-G <parallel strategy>");
+        /**
+         * the default setting whether the execution plan is measured before
+         * training
+         */
+        boolean DEFAULT_AUTOTUNING = false;
+        Option AUTOTUNING_OPTION = new Option(
+                "\tmeasure threads, split and winner search settings by calibration passes before training\n", "T", 0,
+                "enable autotuning");
+        Option AUTOTUNING_FILE_OPTION = new Option(
+                "\tproperties file keeping the execution plans chosen by autotuning (empty to disable)\n", "Z", 1,
+                "-Z <autotuning file>");
+        Option INITIALIZATION_CACHE_OPTION = new Option(
+                "\tdirectory caching the initialization of runs with a fixed seed (empty to disable)\n", "J", 1,
+                "-J <initialization cache directory>");
+        Option CORESET_SIZE_OPTION = new Option("\tnumber of weighted instances to train on (0 to use all)\n", "K",
+                1, "-K <coreset size>");
     }
 
     /**
@@ -183,6 +271,10 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
 
     private GMLVQCore gmlvqInstance;
 
+    private String[] classNames;
+
+    private String[] attributeNames;
+
     public GMLVQ() {
         this.builder = new Builder();
     }
@@ -192,9 +284,12 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
 
         getCapabilities().testWithFail(trainingData);
 
-        final List<DataPoint> convertedTrainingData = WekaModelConverter.createDataPoints(trainingData);
+        final List<DataPoint> convertedTrainingData = WekaModelConverter.createDataPoints(trainingData,
+                this.builder.isSinglePrecision());
         final Map<Double, String> classNamesForDouble = WekaModelConverter.extractClassLables(trainingData);
         final String[] attributeNames = WekaModelConverter.extractAttributeNames(trainingData);
+        this.classNames = WekaModelConverter.extractClassNames(trainingData);
+        this.attributeNames = attributeNames;
         // has to happen before determining the number of prototypes
         if (this.builder.isVisualization()) {
             this.builder = this.builder.observe(this);
@@ -225,6 +320,46 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
 
     }
 
+    /**
+     * trains the classifier on data which resides in a memory-mapped file
+     * rather than on the heap - live visualization is not available in this
+     * case, as it requires WEKA instances
+     *
+     * @param trainingData the training data
+     * @throws Exception
+     */
+    public void buildClassifier(MappedDataStore trainingData) throws Exception {
+        this.classNames = trainingData.getClassNames();
+        this.attributeNames = trainingData.getAttributeNames();
+        if (this.builder.isVisualization()) {
+            GMLVQCore.LOGGER.warning("visualization is not supported when training on " + trainingData);
+        }
+        this.builder = this.builder.observe(null);
+        this.gmlvqInstance = this.builder.build(trainingData.getDataPoints());
+        this.gmlvqInstance.buildClassifier();
+    }
+
+    /**
+     * trains out of core on a {@link MappedDataStore} of arbitrary size: each
+     * epoch consumes a mini-batch of the store, while costs are evaluated on a
+     * fixed sample - see {@link ChunkedTrainingData} for details
+     *
+     * @param trainingData the training data
+     * @param memoryBudget the number of heap bytes to use for training data
+     * @throws Exception
+     */
+    public void buildClassifier(MappedDataStore trainingData, long memoryBudget) throws Exception {
+        this.classNames = trainingData.getClassNames();
+        this.attributeNames = trainingData.getAttributeNames();
+        if (this.builder.isVisualization()) {
+            GMLVQCore.LOGGER.warning("visualization is not supported when training on " + trainingData);
+        }
+        this.builder = this.builder.observe(null);
+        this.gmlvqInstance = this.builder.build(
+                ChunkedTrainingData.withMemoryBudget(trainingData, memoryBudget, this.builder.getSeed()));
+        this.gmlvqInstance.buildClassifier();
+    }
+
     @Override
     public double classifyInstance(Instance instance) {
         return this.gmlvqInstance.classifyInstance(WekaModelConverter.createDataPoint(instance));
@@ -235,6 +370,69 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
         return this.gmlvqInstance.distributionForInstance(WekaModelConverter.createDataPoint(instance));
     }
 
+    /**
+     * freezes the trained classifier into an {@link InferenceModel}
+     *
+     * @return the inference model
+     */
+    public InferenceModel createInferenceModel() {
+        if (this.gmlvqInstance == null) {
+            throw new IllegalStateException("classifier has not been built yet");
+        }
+        return this.gmlvqInstance.createInferenceModel(this.classNames, this.attributeNames);
+    }
+
+    /**
+     * writes the trained classifier in the compact binary format of
+     * {@link InferenceModelFormat} - in contrast to serializing this object, no
+     * training data or learning state is written
+     *
+     * @param file the target file
+     * @throws IOException
+     */
+    public void exportModel(File file) throws IOException {
+        InferenceModelFormat.write(createInferenceModel(), file);
+    }
+
+    /**
+     * loads a model previously written by {@link #exportModel(File)}
+     *
+     * @param file the model file
+     * @return the inference model
+     * @throws IOException
+     */
+    public static InferenceModel importModel(File file) throws IOException {
+        return InferenceModelFormat.read(file);
+    }
+
+    /**
+     * quantizes the trained classifier and compares the quantized model to the
+     * double precision classifier on the given data
+     *
+     * @param heldOutData data which was not used for training
+     * @param precision   the precision of the quantized model
+     * @return accuracies of both models, their agreement and parameter sizes
+     */
+    public QuantizationReport evaluateQuantization(Instances heldOutData, Precision precision) {
+        InferenceModel inferenceModel = createInferenceModel();
+        QuantizedInferenceModel quantizedModel = QuantizedInferenceModel.quantize(inferenceModel, precision);
+
+        double[] classLabels = new double[heldOutData.size()];
+        double[] referencePredictions = new double[heldOutData.size()];
+        double[] quantizedPredictions = new double[heldOutData.size()];
+        for (int index = 0; index < heldOutData.size(); index++) {
+            DataPoint dataPoint = WekaModelConverter.createDataPoint(heldOutData.get(index));
+            classLabels[index] = dataPoint.getClassLabel();
+            referencePredictions[index] = this.gmlvqInstance.classifyInstance(dataPoint);
+            quantizedPredictions[index] = quantizedModel.classify(dataPoint.getValues());
+        }
+
+        QuantizationReport report = new QuantizationReport(precision, classLabels, referencePredictions,
+                quantizedPredictions, inferenceModel.getParameterBytes(), quantizedModel.getParameterBytes());
+        GMLVQCore.LOGGER.info(report.toString());
+        return report;
+    }
+
     @Override
     public Capabilities getCapabilities() {
         Capabilities result = super.getCapabilities();
@@ -288,6 +486,10 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
         return this.builder.getOmegaDimension();
     }
 
+    public int get_2_coresetSize() {
+        return this.builder.getCoresetSize();
+    }
+
     public double get_2_omegaLearningRate() {
         return this.builder.getOmegaLearningRate();
     }
@@ -320,6 +522,38 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
         if (this.builder.isMatrixLearning()) {
             commandLine.add("-" + MethodSettings.MATRIX_LEARNING_OPTION.name());
         }
+        if (this.builder.isSinglePrecision()) {
+            commandLine.add("-" + MethodSettings.SINGLE_PRECISION_OPTION.name());
+        }
+        if (this.builder.isCollapseDuplicates()) {
+            commandLine.add("-" + MethodSettings.COLLAPSE_DUPLICATES_OPTION.name());
+        }
+        commandLine.add("-" + MethodSettings.CORESET_SIZE_OPTION.name());
+        commandLine.add("" + this.builder.getCoresetSize());
+        if (this.builder.isImportanceSampling()) {
+            commandLine.add("-" + MethodSettings.IMPORTANCE_SAMPLING_OPTION.name());
+        }
+        if (this.builder.isAllDataPointsForOmegaInitialization()) {
+            commandLine.add("-" + MethodSettings.ALL_DATA_POINTS_FOR_OMEGA_INITIALIZATION_OPTION.name());
+        }
+        if (this.builder.isWinnerPruning()) {
+            commandLine.add("-" + MethodSettings.WINNER_PRUNING_OPTION.name());
+        }
+        commandLine.add("-" + MethodSettings.SEARCH_APPROXIMATION_OPTION.name());
+        commandLine.add("" + this.builder.getSearchApproximation());
+        commandLine.add("-" + MethodSettings.PARALLEL_STRATEGY_OPTION.name());
+        commandLine.add("" + this.builder.getParallelStrategy().ordinal());
+        if (this.builder.isAutotuning()) {
+            commandLine.add("-" + MethodSettings.AUTOTUNING_OPTION.name());
+        }
+        if (this.builder.getAutotuningFile() != null) {
+            commandLine.add("-" + MethodSettings.AUTOTUNING_FILE_OPTION.name());
+            commandLine.add(get_2_autotuningFile());
+        }
+        if (this.builder.getInitializationCache() != null) {
+            commandLine.add("-" + MethodSettings.INITIALIZATION_CACHE_OPTION.name());
+            commandLine.add(get_2_initializationCache());
+        }
 
         // cost function settings
         commandLine.add("-" + CostFunctionsSettings.COST_FUNCTION_TO_OPTIMIZE_OPTION.name());
@@ -390,6 +624,49 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
         return this.builder.isParallelExecution();
     }
 
+    public boolean is_2_singlePrecision() {
+        return this.builder.isSinglePrecision();
+    }
+
+    public boolean is_2_collapseDuplicates() {
+        return this.builder.isCollapseDuplicates();
+    }
+
+    public boolean is_2_importanceSampling() {
+        return this.builder.isImportanceSampling();
+    }
+
+    public boolean is_2_allDataPointsForOmegaInitialization() {
+        return this.builder.isAllDataPointsForOmegaInitialization();
+    }
+
+    public boolean is_2_winnerPruning() {
+        return this.builder.isWinnerPruning();
+    }
+
+    public double get_2_searchApproximation() {
+        return this.builder.getSearchApproximation();
+    }
+
+    public SelectedTag get_2_parallelStrategy() {
+        return new SelectedTag(this.builder.getParallelStrategy().ordinal(),
+                MethodSettings.AVAILABLE_PARALLEL_STRATEGIES);
+    }
+
+    public boolean is_2_autotuning() {
+        return this.builder.isAutotuning();
+    }
+
+    public String get_2_autotuningFile() {
+        File autotuningFile = this.builder.getAutotuningFile();
+        return autotuningFile == null ? "" : autotuningFile.getPath();
+    }
+
+    public String get_2_initializationCache() {
+        InitializationCache initializationCache = this.builder.getInitializationCache();
+        return initializationCache == null ? "" : initializationCache.getDirectory().getPath();
+    }
+
     public boolean is_1_visualization() {
         return this.builder.isVisualization();
     }
@@ -437,6 +714,17 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
         options.addElement(MethodSettings.OMEGA_LEARNING_RATE_OPTION);
         options.addElement(MethodSettings.LEARN_RATE_CHANGE_OPTION);
         options.addElement(MethodSettings.PARALLEL_EXECUTION_OPTION);
+        options.addElement(MethodSettings.SINGLE_PRECISION_OPTION);
+        options.addElement(MethodSettings.COLLAPSE_DUPLICATES_OPTION);
+        options.addElement(MethodSettings.CORESET_SIZE_OPTION);
+        options.addElement(MethodSettings.IMPORTANCE_SAMPLING_OPTION);
+        options.addElement(MethodSettings.ALL_DATA_POINTS_FOR_OMEGA_INITIALIZATION_OPTION);
+        options.addElement(MethodSettings.WINNER_PRUNING_OPTION);
+        options.addElement(MethodSettings.SEARCH_APPROXIMATION_OPTION);
+        options.addElement(MethodSettings.PARALLEL_STRATEGY_OPTION);
+        options.addElement(MethodSettings.AUTOTUNING_OPTION);
+        options.addElement(MethodSettings.AUTOTUNING_FILE_OPTION);
+        options.addElement(MethodSettings.INITIALIZATION_CACHE_OPTION);
 
         // cost function settings
         options.addElement(CostFunctionsSettings.COST_FUNCTION_TO_OPTIMIZE_OPTION);
@@ -479,6 +767,50 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
         return "determines whether the the classifier is build in parallel or not";
     }
 
+    public String _2_coresetSizeTipText() {
+        return "trains on a weighted subset of this many instances drawn by sensitivity sampling, 0 trains on all instances";
+    }
+
+    public String _2_importanceSamplingTipText() {
+        return "draws the instances of each epoch in proportion to their gradient magnitude, which allows for a smaller ratio of instances per epoch";
+    }
+
+    public String _2_allDataPointsForOmegaInitializationTipText() {
+        return "computes the principal components the omega matrix is initialized with from all instances instead of a sample of 100";
+    }
+
+    public String _2_winnerPruningTipText() {
+        return "skips the search of the winning prototypes of an instance while bounds of the distances prove that they are unchanged, which leaves the results unchanged - maintaining the bounds costs time in every epoch, so this only pays off with many prototypes and a large omega dimension";
+    }
+
+    public String _2_searchApproximationTipText() {
+        return "lets the classification of models with thousands of prototypes trade exactness for speed: the distance to the prototype an instance is assigned to may exceed the one to the closest prototype by this factor - 0 searches exactly";
+    }
+
+    public String _2_parallelStrategyTipText() {
+        return "how the work of each epoch is split among threads - splitting the rows of the omega matrix and the features keeps all threads busy when there are only few instances per epoch, which is chosen automatically";
+    }
+
+    public String _2_autotuningTipText() {
+        return "measures the number of threads, the split of the work among them and the settings of the winner search by short calibration passes on the data before training - the results are the same but for rounding";
+    }
+
+    public String _2_autotuningFileTipText() {
+        return "properties file keeping the execution plans chosen by autotuning, so later runs on data of the same shape skip the calibration - empty to disable";
+    }
+
+    public String _2_initializationCacheTipText() {
+        return "directory keeping the initial omega matrix and prototypes of runs with a fixed seed, so repeated runs on the same data skip the initialization - empty to disable";
+    }
+
+    public String _2_collapseDuplicatesTipText() {
+        return "merges identical instances into one weighted instance each, so each epoch only processes distinct instances";
+    }
+
+    public String _2_singlePrecisionTipText() {
+        return "stores training data as floats, which halves its memory footprint - sums are still computed in double precision";
+    }
+
     public String _2_prototypeLearningRateTipText() {
         return "learning rate used for prototype learning";
     }
@@ -553,6 +885,10 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
         this.builder.omegaDimension(omegaDimension);
     }
 
+    public void set_2_coresetSize(int coresetSize) {
+        this.builder.coresetSize(coresetSize);
+    }
+
     public void set_2_omegaLearningRate(double omegaLearningRate) {
         this.builder.omegaLearningRate(omegaLearningRate);
     }
@@ -668,6 +1004,51 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
         this.builder
                 .parallelExecution(Utils.getFlag(MethodSettings.PARALLEL_EXECUTION_OPTION.name().charAt(0), options));
 
+        this.builder
+                .singlePrecision(Utils.getFlag(MethodSettings.SINGLE_PRECISION_OPTION.name().charAt(0), options));
+
+        this.builder.collapseDuplicates(
+                Utils.getFlag(MethodSettings.COLLAPSE_DUPLICATES_OPTION.name().charAt(0), options));
+
+        this.builder.importanceSampling(
+                Utils.getFlag(MethodSettings.IMPORTANCE_SAMPLING_OPTION.name().charAt(0), options));
+
+        this.builder.allDataPointsForOmegaInitialization(Utils.getFlag(
+                MethodSettings.ALL_DATA_POINTS_FOR_OMEGA_INITIALIZATION_OPTION.name().charAt(0), options));
+
+        this.builder.winnerPruning(
+                Utils.getFlag(MethodSettings.WINNER_PRUNING_OPTION.name().charAt(0), options));
+
+        String searchApproximationString = Utils
+                .getOption(MethodSettings.SEARCH_APPROXIMATION_OPTION.name().charAt(0), options);
+        if (searchApproximationString.length() != 0) {
+            this.builder.searchApproximation(Double.parseDouble(searchApproximationString));
+        } else {
+            this.builder.searchApproximation(MethodSettings.DEFAULT_SEARCH_APPROXIMATION);
+        }
+
+        String parallelStrategyString = Utils
+                .getOption(MethodSettings.PARALLEL_STRATEGY_OPTION.name().charAt(0), options);
+        if (parallelStrategyString.length() != 0) {
+            set_2_parallelStrategy(new SelectedTag(Integer.parseInt(parallelStrategyString),
+                    MethodSettings.AVAILABLE_PARALLEL_STRATEGIES));
+        } else {
+            this.builder.parallelStrategy(MethodSettings.DEFAULT_PARALLEL_STRATEGY);
+        }
+
+        this.builder.autotuning(Utils.getFlag(MethodSettings.AUTOTUNING_OPTION.name().charAt(0), options));
+        set_2_autotuningFile(Utils.getOption(MethodSettings.AUTOTUNING_FILE_OPTION.name().charAt(0), options));
+
+        set_2_initializationCache(
+                Utils.getOption(MethodSettings.INITIALIZATION_CACHE_OPTION.name().charAt(0), options));
+
+        String coresetSizeString = Utils.getOption(MethodSettings.CORESET_SIZE_OPTION.name().charAt(0), options);
+        if (coresetSizeString.length() != 0) {
+            this.builder.coresetSize(Integer.parseInt(coresetSizeString));
+        } else {
+            this.builder.coresetSize(MethodSettings.DEFAULT_CORESET_SIZE);
+        }
+
         // cost function settings
         String costFunctionToOptimizeString = Utils
                 .getOption(CostFunctionsSettings.COST_FUNCTION_TO_OPTIMIZE_OPTION.name().charAt(0), options);
@@ -714,6 +1095,54 @@ public class GMLVQ extends AbstractClassifier implements TechnicalInformationHan
 
     }
 
+    public void set_2_singlePrecision(boolean singlePrecision) {
+        this.builder.singlePrecision(singlePrecision);
+    }
+
+    public void set_2_collapseDuplicates(boolean collapseDuplicates) {
+        this.builder.collapseDuplicates(collapseDuplicates);
+    }
+
+    public void set_2_importanceSampling(boolean importanceSampling) {
+        this.builder.importanceSampling(importanceSampling);
+    }
+
+    public void set_2_allDataPointsForOmegaInitialization(boolean allDataPointsForOmegaInitialization) {
+        this.builder.allDataPointsForOmegaInitialization(allDataPointsForOmegaInitialization);
+    }
+
+    public void set_2_winnerPruning(boolean winnerPruning) {
+        this.builder.winnerPruning(winnerPruning);
+    }
+
+    public void set_2_searchApproximation(double searchApproximation) {
+        this.builder.searchApproximation(searchApproximation);
+    }
+
+    public void set_2_parallelStrategy(SelectedTag parallelStrategyTag) {
+        if (parallelStrategyTag.getTags() == MethodSettings.AVAILABLE_PARALLEL_STRATEGIES) {
+            this.builder.parallelStrategy(
+                    ParallelStrategy.values()[parallelStrategyTag.getSelectedTag().getID()]);
+        }
+    }
+
+    public void set_2_autotuning(boolean autotuning) {
+        this.builder.autotuning(autotuning);
+    }
+
+    public void set_2_autotuningFile(String autotuningFile) {
+        this.builder.autotuningFile(autotuningFile.length() == 0 ? null : new File(autotuningFile));
+    }
+
+    public void set_2_initializationCache(String directory) {
+        if (directory.length() == 0) {
+            this.builder.initializationCache(null);
+        } else if (!directory.equals(get_2_initializationCache())) {
+            // retain the cache and its counts unless the directory changes
+            this.builder.initializationCache(new InitializationCache(new File(directory)));
+        }
+    }
+
     public void set_2_prototypeLearningRate(double prototypeLearningRate) {
         this.builder.prototypeLearningRate(prototypeLearningRate);
 
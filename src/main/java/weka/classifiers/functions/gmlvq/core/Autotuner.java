@@ -0,0 +1,285 @@
+package weka.classifiers.functions.gmlvq.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import weka.classifiers.functions.GMLVQ;
+import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
+import weka.classifiers.functions.gmlvq.model.Prototype;
+import weka.classifiers.functions.gmlvq.model.PrototypeTree;
+
+/**
+ * Chooses the {@link ExecutionPlan} of a training run by short calibration
+ * passes on the actual data, as the fastest plan depends on the number of
+ * data points per epoch, the data and omega dimension, the number of
+ * prototypes and the number of processors. Each pass performs the gradient
+ * descent of one epoch on a fixed sample of data points, mappings and winners
+ * are recomputed in every pass. Candidates are tried one setting at a time:
+ * first number of threads and split, then block size, then whether the
+ * winner search may be indexed. The fastest of {@value #REPETITIONS} passes
+ * counts for each candidate.<br />
+ * <br />
+ * Decisions can be kept in a properties file, keyed by the shape of the
+ * problem (see {@link #createKey(int, int, int, int, ParallelStrategy)}), so
+ * later runs of the same shape skip the calibration.
+ *
+ * @author S
+ *
+ */
+public class Autotuner implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * the number of passes of each candidate plan
+     */
+    static final int REPETITIONS = 3;
+    /**
+     * the block sizes of winner searches to try
+     */
+    static final int[] BLOCK_SIZES = new int[]{16, 32, 64, 128, 256};
+
+    /**
+     * keeps the decisions, <code>null</code> if they are not kept
+     */
+    private final File file;
+
+    private long calibrationTime;
+    private long defaultPassTime;
+    private long tunedPassTime;
+
+    /**
+     * @param file
+     *            the properties file keeping the decisions, <code>null</code>
+     *            to calibrate every run
+     */
+    public Autotuner(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the key of the decisions for the given shape
+     */
+    public static String createKey(int dataPointsPerEpoch, int dataDimension, int omegaDimension,
+            int numberOfPrototypes, ParallelStrategy parallelStrategy) {
+        return dataPointsPerEpoch + "x" + dataDimension + "x" + omegaDimension + "x" + numberOfPrototypes + "-"
+                + Runtime.getRuntime().availableProcessors() + "-" + parallelStrategy.name();
+    }
+
+    /**
+     * @param key
+     *            as created by
+     *            {@link #createKey(int, int, int, int, ParallelStrategy)}
+     * @return the kept decision, <code>null</code> if there is none
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public ExecutionPlan load(String key) throws IOException {
+        if (this.file == null || !this.file.exists()) {
+            return null;
+        }
+        String encoded = readProperties().getProperty(key);
+        return encoded == null ? null : ExecutionPlan.decode(encoded);
+    }
+
+    /**
+     * keeps a decision - the file is replaced as a whole, so concurrent runs
+     * never read it partially written
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void store(String key, ExecutionPlan executionPlan) throws IOException {
+        if (this.file == null) {
+            return;
+        }
+        Properties properties = this.file.exists() ? readProperties() : new Properties();
+        properties.setProperty(key, executionPlan.encode());
+        File directory = this.file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create directory " + directory);
+        }
+        File temporaryFile = File.createTempFile("autotuning", ".tmp", directory);
+        try {
+            OutputStream outputStream = new FileOutputStream(temporaryFile);
+            try {
+                properties.store(outputStream, "execution plans chosen by GMLVQ's autotuner");
+            } finally {
+                outputStream.close();
+            }
+            Files.move(temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporaryFile.delete();
+        }
+    }
+
+    private Properties readProperties() throws IOException {
+        Properties properties = new Properties();
+        InputStream inputStream = new FileInputStream(this.file);
+        try {
+            properties.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return properties;
+    }
+
+    /**
+     * measures candidate plans on the given data - the gradient descent must
+     * neither skip winner searches nor draw by importance sampling, and its
+     * plan is left at the chosen one
+     *
+     * @param gradientDescent
+     *            performs the calibration passes
+     * @param sample
+     *            the data points of one epoch
+     * @param prototypes
+     *            the current prototypes
+     * @param omegaMatrix
+     *            the current mapping rule
+     * @param parallelStrategy
+     *            the desired split, tuned if {@link ParallelStrategy#AUTOMATIC}
+     * @return the fastest plan
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public ExecutionPlan tune(GradientDescent gradientDescent, List<DataPoint> sample, List<Prototype> prototypes,
+            OmegaMatrix omegaMatrix, ParallelStrategy parallelStrategy)
+            throws InterruptedException, ExecutionException {
+        long startTime = System.nanoTime();
+        ExecutionPlan defaultPlan = ExecutionPlan.createDefault(parallelStrategy);
+        // warm up
+        measure(gradientDescent, sample, prototypes, omegaMatrix, defaultPlan);
+        this.defaultPassTime = measure(gradientDescent, sample, prototypes, omegaMatrix, defaultPlan);
+
+        // number of threads and split
+        List<ParallelStrategy> parallelStrategies = new ArrayList<ParallelStrategy>();
+        if (parallelStrategy != ParallelStrategy.AUTOMATIC) {
+            parallelStrategies.add(parallelStrategy);
+        } else {
+            parallelStrategies.add(ParallelStrategy.DATA_POINTS);
+            if (GMLVQ.isRelevanceLearning(omegaMatrix)) {
+                parallelStrategies.add(ParallelStrategy.FEATURES);
+            }
+        }
+        List<ExecutionPlan> candidates = new ArrayList<ExecutionPlan>();
+        for (int numberOfThreads : createThreadCounts(defaultPlan.getNumberOfThreads())) {
+            for (ParallelStrategy candidateStrategy : parallelStrategies) {
+                candidates.add(defaultPlan.withNumberOfThreads(numberOfThreads).withParallelStrategy(candidateStrategy));
+            }
+        }
+        ExecutionPlan bestPlan = selectFastest(gradientDescent, sample, prototypes, omegaMatrix, candidates);
+
+        // block size
+        candidates.clear();
+        for (int blockSize : BLOCK_SIZES) {
+            candidates.add(bestPlan.withBlockSize(blockSize));
+        }
+        bestPlan = selectFastest(gradientDescent, sample, prototypes, omegaMatrix, candidates);
+
+        // kernel of the winner search
+        int omegaDimension = prototypes.get(0).getEmbeddedSpaceVector(omegaMatrix).getDimension();
+        if (PrototypeTree.isWorthwhile(prototypes.size(), omegaDimension)) {
+            candidates.clear();
+            candidates.add(bestPlan.withIndexedWinnerSearch(true));
+            candidates.add(bestPlan.withIndexedWinnerSearch(false));
+            bestPlan = selectFastest(gradientDescent, sample, prototypes, omegaMatrix, candidates);
+        }
+
+        gradientDescent.setExecutionPlan(bestPlan);
+        this.calibrationTime = (System.nanoTime() - startTime) / 1000000;
+        return bestPlan;
+    }
+
+    /**
+     * @return 1, 2, 4, ... up to the number of available processors
+     */
+    static List<Integer> createThreadCounts(int processors) {
+        List<Integer> threadCounts = new ArrayList<Integer>();
+        for (int numberOfThreads = 1; numberOfThreads < processors; numberOfThreads *= 2) {
+            threadCounts.add(numberOfThreads);
+        }
+        threadCounts.add(processors);
+        return threadCounts;
+    }
+
+    private ExecutionPlan selectFastest(GradientDescent gradientDescent, List<DataPoint> sample,
+            List<Prototype> prototypes, OmegaMatrix omegaMatrix, List<ExecutionPlan> candidates)
+            throws InterruptedException, ExecutionException {
+        ExecutionPlan fastestPlan = null;
+        long fastestTime = Long.MAX_VALUE;
+        for (ExecutionPlan candidate : candidates) {
+            long time = measure(gradientDescent, sample, prototypes, omegaMatrix, candidate);
+            if (time < fastestTime) {
+                fastestTime = time;
+                fastestPlan = candidate;
+            }
+        }
+        this.tunedPassTime = fastestTime;
+        return fastestPlan;
+    }
+
+    /**
+     * @return the fastest of all passes in nanoseconds
+     */
+    private long measure(GradientDescent gradientDescent, List<DataPoint> sample, List<Prototype> prototypes,
+            OmegaMatrix omegaMatrix, ExecutionPlan executionPlan) throws InterruptedException, ExecutionException {
+        gradientDescent.setExecutionPlan(executionPlan);
+        long fastestTime = Long.MAX_VALUE;
+        for (int repetition = 0; repetition < REPETITIONS; repetition++) {
+            // mappings and winners have to be computed again
+            for (DataPoint dataPoint : sample) {
+                dataPoint.deregisterAllMappings();
+            }
+            long startTime = System.nanoTime();
+            gradientDescent.performGradientDescent(sample, prototypes, omegaMatrix, 0, 0);
+            fastestTime = Math.min(fastestTime, System.nanoTime() - startTime);
+        }
+        return fastestTime;
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * @return the duration of the last calibration in milliseconds
+     */
+    public long getCalibrationTime() {
+        return this.calibrationTime;
+    }
+
+    /**
+     * @return the duration of a pass of the last calibration with the default
+     *         plan in nanoseconds
+     */
+    public long getDefaultPassTime() {
+        return this.defaultPassTime;
+    }
+
+    /**
+     * @return the duration of a pass of the last calibration with the chosen
+     *         plan in nanoseconds
+     */
+    public long getTunedPassTime() {
+        return this.tunedPassTime;
+    }
+
+    @Override
+    public String toString() {
+        return "Autotuner" + (this.file == null ? "" : " keeping decisions in " + this.file);
+    }
+}
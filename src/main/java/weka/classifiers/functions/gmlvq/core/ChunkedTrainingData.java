@@ -0,0 +1,251 @@
+package weka.classifiers.functions.gmlvq.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.classifiers.functions.gmlvq.model.FloatDataPoint;
+import weka.classifiers.functions.gmlvq.model.MappedDataPoint;
+import weka.classifiers.functions.gmlvq.model.MappedDataStore;
+
+/**
+ * Provides the training data of a {@link MappedDataStore} in portions of fixed
+ * size, so training requires the same amount of memory regardless of the size
+ * of the store - not even one object per row is created.<br />
+ * <br />
+ * Two kinds of data are kept on the heap:
+ * <ul>
+ * <li>a fixed, uniformly drawn sample which is used for initialization and by
+ * the {@link UpdateManager} to evaluate the costs of proposed updates</li>
+ * <li>the mini-batch consumed by the current epoch of the
+ * {@link GradientDescent}, while the next one is read in the background</li>
+ * </ul>
+ * Mini-batches consist of blocks of {@value #BLOCK_SIZE} consecutive rows, so
+ * the file is read sequentially within each block. Blocks are visited in a
+ * random order which changes with each pass over the store - the order is
+ * given by an affine permutation and, thus, needs no memory either.
+ *
+ * @author S
+ *
+ */
+public class ChunkedTrainingData implements Disposable {
+
+    /**
+     * the number of consecutive rows read at once
+     */
+    static final int BLOCK_SIZE = 64;
+    /**
+     * the estimated heap footprint of a data point in addition to its values
+     * and its mapping to the embedded space
+     */
+    private static final int DATA_POINT_OVERHEAD = 128;
+
+    private final MappedDataStore store;
+    private final int chunkSize;
+    private final List<DataPoint> sample;
+    private final Random random;
+    private final long numberOfBlocks;
+    private final int blocksPerChunk;
+    private final ExecutorService readAheadService;
+    /**
+     * the permutation <code>(multiplier * index + offset) mod numberOfBlocks</code>
+     * of the current pass
+     */
+    private long multiplier;
+    private long offset;
+    private long blockIndex;
+    private Future<List<DataPoint>> nextChunk;
+
+    /**
+     * @param store
+     *            the training data
+     * @param chunkSize
+     *            the number of data points per mini-batch
+     * @param sampleSize
+     *            the number of data points used to evaluate costs
+     * @param seed
+     *            the seed of all random choices, <code>0</code> for a random
+     *            seed
+     */
+    public ChunkedTrainingData(MappedDataStore store, int chunkSize, int sampleSize, long seed) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size has to be positive, but was " + chunkSize);
+        }
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("sample size has to be positive, but was " + sampleSize);
+        }
+        this.store = store;
+        this.random = seed == 0 ? new Random() : new Random(seed);
+        this.numberOfBlocks = (store.getNumberOfRows() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (this.numberOfBlocks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(store + " contains too many rows to be permuted");
+        }
+        this.chunkSize = (int) Math.min(chunkSize, store.getNumberOfRows());
+        this.blocksPerChunk = (this.chunkSize + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.sample = drawSample((int) Math.min(sampleSize, store.getNumberOfRows()));
+
+        this.readAheadService = Executors.newSingleThreadExecutor();
+        startPass();
+        this.nextChunk = this.readAheadService.submit(new ChunkReader(nextBlocks()));
+    }
+
+    /**
+     * chooses chunk and sample size so that the sample and two mini-batches -
+     * the current one and the one read ahead - fit into the given number of
+     * bytes
+     *
+     * @param store
+     *            the training data
+     * @param memoryBudget
+     *            the number of heap bytes to use for training data
+     * @param seed
+     *            the seed of all random choices, <code>0</code> for a random
+     *            seed
+     * @return the chunked training data
+     */
+    public static ChunkedTrainingData withMemoryBudget(MappedDataStore store, long memoryBudget, long seed) {
+        // values and - at most - equally sized mappings to the embedded space
+        long bytesPerDataPoint = 16L * store.getDataDimension() + DATA_POINT_OVERHEAD;
+        long dataPointsPerPart = memoryBudget / bytesPerDataPoint / 3;
+        if (dataPointsPerPart < BLOCK_SIZE) {
+            throw new IllegalArgumentException("memory budget of " + memoryBudget + " bytes is too small for data of "
+                    + "dimension " + store.getDataDimension() + ", at least " + 3 * BLOCK_SIZE * bytesPerDataPoint
+                    + " bytes are required");
+        }
+        int size = (int) Math.min(Integer.MAX_VALUE, dataPointsPerPart);
+        return new ChunkedTrainingData(store, size, size, seed);
+    }
+
+    /**
+     * provides the mini-batch read in the background and starts reading the
+     * following one
+     *
+     * @return the data points of the next mini-batch
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public List<DataPoint> nextChunk() throws InterruptedException, ExecutionException {
+        List<DataPoint> chunk = this.nextChunk.get();
+        this.nextChunk = this.readAheadService.submit(new ChunkReader(nextBlocks()));
+        return chunk;
+    }
+
+    /**
+     * @return the in-memory sample used for initialization and cost evaluation
+     */
+    public List<DataPoint> getSample() {
+        return this.sample;
+    }
+
+    public MappedDataStore getStore() {
+        return this.store;
+    }
+
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * draws distinct rows by Floyd's algorithm and reads them in ascending
+     * order
+     */
+    private List<DataPoint> drawSample(int sampleSize) {
+        long numberOfRows = this.store.getNumberOfRows();
+        Set<Long> chosenRows = new HashSet<Long>();
+        for (long candidate = numberOfRows - sampleSize; candidate < numberOfRows; candidate++) {
+            long row = (long) (this.random.nextDouble() * (candidate + 1));
+            if (!chosenRows.add(row)) {
+                chosenRows.add(candidate);
+            }
+        }
+        long[] rows = new long[chosenRows.size()];
+        int index = 0;
+        for (long row : chosenRows) {
+            rows[index++] = row;
+        }
+        Arrays.sort(rows);
+        List<DataPoint> sample = new ArrayList<DataPoint>(rows.length);
+        for (long row : rows) {
+            sample.add(copy(this.store.getDataPoint(row)));
+        }
+        return sample;
+    }
+
+    private DataPoint copy(MappedDataPoint dataPoint) {
+        if (this.store.isSinglePrecision()) {
+            return new FloatDataPoint(dataPoint.getValues(), dataPoint.getClassLabel(), dataPoint.getWeight());
+        }
+        return new DataPoint(dataPoint.getValues(), dataPoint.getClassLabel(), dataPoint.getWeight());
+    }
+
+    private void startPass() {
+        this.blockIndex = 0;
+        this.offset = (long) (this.random.nextDouble() * this.numberOfBlocks);
+        this.multiplier = 1;
+        if (this.numberOfBlocks > 2) {
+            do {
+                this.multiplier = 1 + (long) (this.random.nextDouble() * (this.numberOfBlocks - 1));
+            } while (greatestCommonDivisor(this.multiplier, this.numberOfBlocks) != 1);
+        }
+    }
+
+    private static long greatestCommonDivisor(long first, long second) {
+        while (second != 0) {
+            long remainder = first % second;
+            first = second;
+            second = remainder;
+        }
+        return first;
+    }
+
+    private long[] nextBlocks() {
+        long[] blocks = new long[this.blocksPerChunk];
+        for (int index = 0; index < blocks.length; index++) {
+            if (this.blockIndex == this.numberOfBlocks) {
+                startPass();
+            }
+            blocks[index] = (this.multiplier * this.blockIndex + this.offset) % this.numberOfBlocks;
+            this.blockIndex++;
+        }
+        return blocks;
+    }
+
+    private class ChunkReader implements Callable<List<DataPoint>> {
+
+        private long[] blocks;
+
+        public ChunkReader(long[] blocks) {
+            this.blocks = blocks;
+        }
+
+        @Override
+        public List<DataPoint> call() {
+            List<DataPoint> chunk = new ArrayList<DataPoint>(ChunkedTrainingData.this.chunkSize);
+            long numberOfRows = ChunkedTrainingData.this.store.getNumberOfRows();
+            for (long block : this.blocks) {
+                long lastRow = Math.min(numberOfRows, (block + 1) * BLOCK_SIZE);
+                for (long row = block * BLOCK_SIZE; row < lastRow
+                        && chunk.size() < ChunkedTrainingData.this.chunkSize; row++) {
+                    chunk.add(copy(ChunkedTrainingData.this.store.getDataPoint(row)));
+                }
+            }
+            return chunk;
+        }
+    }
+
+    @Override
+    public void dispose() throws InterruptedException {
+        this.readAheadService.shutdownNow();
+        this.readAheadService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+}
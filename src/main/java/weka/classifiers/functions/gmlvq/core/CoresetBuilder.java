@@ -0,0 +1,276 @@
+package weka.classifiers.functions.gmlvq.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import weka.classifiers.functions.GMLVQ;
+import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
+import weka.classifiers.functions.gmlvq.model.WeightedDataPoint;
+import weka.classifiers.functions.gmlvq.utilities.LinearAlgebraicCalculations;
+
+/**
+ * Reduces training data to a weighted subset of given size, whose weighted
+ * costs approximate the costs of the whole data set. The subset is drawn by
+ * sensitivity sampling:
+ * <ol>
+ * <li>the data points of each class are clustered by k-means in the space of
+ * the initial omega matrix, i.e. the principal components computed by
+ * {@link GMLVQCore} when the omega dimension is smaller than the data
+ * dimension</li>
+ * <li>each data point is drawn with a probability proportional to its
+ * sensitivity - its share of the clustering cost of its class plus its share
+ * of its cluster - so outliers and small clusters are retained</li>
+ * <li>drawn data points are weighted by their inverse probability, so weighted
+ * sums over the subset are unbiased estimates of those over all data</li>
+ * </ol>
+ * Classes are sampled separately, each according to its share of the total
+ * weight. Classes which do not exceed their share are retained as they are.
+ *
+ * @author S
+ *
+ */
+public class CoresetBuilder {
+
+    /**
+     * the default number of clusters per class
+     */
+    public static final int DEFAULT_CLUSTERS_PER_CLASS = 8;
+    /**
+     * the number of Lloyd iterations following the k-means++ seeding
+     */
+    private static final int LLOYD_ITERATIONS = 5;
+
+    private final int coresetSize;
+    private final int clustersPerClass;
+    private final Random random;
+
+    public CoresetBuilder(int coresetSize, long seed) {
+        this(coresetSize, DEFAULT_CLUSTERS_PER_CLASS, seed);
+    }
+
+    /**
+     * @param coresetSize
+     *            the number of data points to draw
+     * @param clustersPerClass
+     *            the number of k-means clusters of each class
+     * @param seed
+     *            the seed of all random choices, <code>0</code> for a random
+     *            seed
+     */
+    public CoresetBuilder(int coresetSize, int clustersPerClass, long seed) {
+        if (coresetSize < 1) {
+            throw new IllegalArgumentException("coreset size has to be positive, but was " + coresetSize);
+        }
+        if (clustersPerClass < 1) {
+            throw new IllegalArgumentException("clusters per class have to be positive, but were " + clustersPerClass);
+        }
+        this.coresetSize = coresetSize;
+        this.clustersPerClass = clustersPerClass;
+        this.random = seed == 0 ? new Random() : new Random(seed);
+    }
+
+    /**
+     * @param dataPoints
+     *            the training data
+     * @param omegaMatrix
+     *            the initial omega matrix, whose space the data points are
+     *            clustered in
+     * @return the weighted subset - all data points if they do not exceed the
+     *         coreset size
+     */
+    public List<DataPoint> build(List<DataPoint> dataPoints, OmegaMatrix omegaMatrix) {
+        if (dataPoints.size() <= this.coresetSize) {
+            return dataPoints;
+        }
+
+        Map<Double, List<DataPoint>> classes = LinearAlgebraicCalculations.groupDatapointsByClassLabel(dataPoints);
+        double totalWeight = 0;
+        for (DataPoint dataPoint : dataPoints) {
+            totalWeight += dataPoint.getWeight();
+        }
+
+        // project into the space of omega, unless it merely copies the data
+        double[][] projection = GMLVQ.isRelevanceLearning(omegaMatrix)
+                && omegaMatrix.getRowDimension() < dataPoints.get(0).getDimension() ? omegaMatrix.getArray() : null;
+
+        List<DataPoint> coreset = new ArrayList<DataPoint>(this.coresetSize + classes.size());
+        for (List<DataPoint> dataPointsOfClass : classes.values()) {
+            double classWeight = 0;
+            for (DataPoint dataPoint : dataPointsOfClass) {
+                classWeight += dataPoint.getWeight();
+            }
+            int sampleSize = (int) Math.max(1, Math.round(this.coresetSize * classWeight / totalWeight));
+            if (dataPointsOfClass.size() <= sampleSize) {
+                coreset.addAll(dataPointsOfClass);
+            } else {
+                sampleClass(dataPointsOfClass, project(dataPointsOfClass, projection), sampleSize, coreset);
+            }
+        }
+        return coreset;
+    }
+
+    private static double[][] project(List<DataPoint> dataPoints, double[][] projection) {
+        double[][] values = new double[dataPoints.size()][];
+        for (int index = 0; index < values.length; index++) {
+            DataPoint dataPoint = dataPoints.get(index);
+            if (projection == null) {
+                values[index] = dataPoint.getValues();
+            } else {
+                values[index] = new double[projection.length];
+                for (int row = 0; row < projection.length; row++) {
+                    values[index][row] = dataPoint.dotProduct(projection[row]);
+                }
+            }
+        }
+        return values;
+    }
+
+    private void sampleClass(List<DataPoint> dataPoints, double[][] values, int sampleSize,
+            List<DataPoint> coreset) {
+        int numberOfDataPoints = values.length;
+        double[] weights = new double[numberOfDataPoints];
+        for (int index = 0; index < numberOfDataPoints; index++) {
+            weights[index] = dataPoints.get(index).getWeight();
+        }
+
+        double[][] centers = seedCenters(values, weights, Math.min(this.clustersPerClass, numberOfDataPoints));
+        int[] assignments = new int[numberOfDataPoints];
+        double[] squaredDistances = new double[numberOfDataPoints];
+        for (int iteration = 0; iteration < LLOYD_ITERATIONS; iteration++) {
+            assign(values, centers, assignments, squaredDistances);
+            updateCenters(values, weights, assignments, centers);
+        }
+        assign(values, centers, assignments, squaredDistances);
+
+        // clustering cost and weight of each cluster
+        double cost = 0;
+        double[] clusterWeights = new double[centers.length];
+        for (int index = 0; index < numberOfDataPoints; index++) {
+            cost += weights[index] * squaredDistances[index];
+            clusterWeights[assignments[index]] += weights[index];
+        }
+
+        // cumulative sensitivities
+        double[] cumulativeSensitivities = new double[numberOfDataPoints];
+        double totalSensitivity = 0;
+        for (int index = 0; index < numberOfDataPoints; index++) {
+            double sensitivity = 1 / clusterWeights[assignments[index]];
+            if (cost > 0) {
+                sensitivity += squaredDistances[index] / cost;
+            }
+            totalSensitivity += weights[index] * sensitivity;
+            cumulativeSensitivities[index] = totalSensitivity;
+        }
+
+        // draw with replacement and sum up the weights of repeatedly drawn
+        // data points
+        double[] sampledWeights = new double[numberOfDataPoints];
+        for (int draw = 0; draw < sampleSize; draw++) {
+            int index = Arrays.binarySearch(cumulativeSensitivities, this.random.nextDouble() * totalSensitivity);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            index = Math.min(index, numberOfDataPoints - 1);
+            double probability = (cumulativeSensitivities[index]
+                    - (index > 0 ? cumulativeSensitivities[index - 1] : 0)) / totalSensitivity;
+            sampledWeights[index] += weights[index] / (sampleSize * probability);
+        }
+        for (int index = 0; index < numberOfDataPoints; index++) {
+            if (sampledWeights[index] > 0) {
+                DataPoint dataPoint = dataPoints.get(index);
+                if (dataPoint instanceof WeightedDataPoint) {
+                    dataPoint = ((WeightedDataPoint) dataPoint).getRepresentative();
+                }
+                coreset.add(new WeightedDataPoint(dataPoint, sampledWeights[index]));
+            }
+        }
+    }
+
+    /**
+     * chooses initial centers by weighted k-means++
+     */
+    private double[][] seedCenters(double[][] values, double[] weights, int numberOfCenters) {
+        double[][] centers = new double[numberOfCenters][];
+        double[] squaredDistances = new double[values.length];
+        Arrays.fill(squaredDistances, Double.POSITIVE_INFINITY);
+        int chosen = this.random.nextInt(values.length);
+        for (int center = 0; center < numberOfCenters; center++) {
+            centers[center] = values[chosen].clone();
+            double total = 0;
+            for (int index = 0; index < values.length; index++) {
+                squaredDistances[index] = Math.min(squaredDistances[index],
+                        squaredDistance(values[index], centers[center]));
+                total += weights[index] * squaredDistances[index];
+            }
+            if (total == 0) {
+                // all data points coincide with a center
+                return Arrays.copyOf(centers, center + 1);
+            }
+            double threshold = this.random.nextDouble() * total;
+            chosen = values.length - 1;
+            for (int index = 0; index < values.length; index++) {
+                threshold -= weights[index] * squaredDistances[index];
+                if (threshold <= 0 && squaredDistances[index] > 0) {
+                    chosen = index;
+                    break;
+                }
+            }
+        }
+        return centers;
+    }
+
+    private static void assign(double[][] values, double[][] centers, int[] assignments, double[] squaredDistances) {
+        for (int index = 0; index < values.length; index++) {
+            double minimalDistance = Double.POSITIVE_INFINITY;
+            for (int center = 0; center < centers.length; center++) {
+                double distance = squaredDistance(values[index], centers[center]);
+                if (distance < minimalDistance) {
+                    minimalDistance = distance;
+                    assignments[index] = center;
+                }
+            }
+            squaredDistances[index] = minimalDistance;
+        }
+    }
+
+    private static void updateCenters(double[][] values, double[] weights, int[] assignments, double[][] centers) {
+        double[][] sums = new double[centers.length][values[0].length];
+        double[] clusterWeights = new double[centers.length];
+        for (int index = 0; index < values.length; index++) {
+            double[] sum = sums[assignments[index]];
+            for (int dimension = 0; dimension < sum.length; dimension++) {
+                sum[dimension] += weights[index] * values[index][dimension];
+            }
+            clusterWeights[assignments[index]] += weights[index];
+        }
+        for (int center = 0; center < centers.length; center++) {
+            // empty clusters keep their center
+            if (clusterWeights[center] > 0) {
+                for (int dimension = 0; dimension < sums[center].length; dimension++) {
+                    centers[center][dimension] = sums[center][dimension] / clusterWeights[center];
+                }
+            }
+        }
+    }
+
+    private static double squaredDistance(double[] first, double[] second) {
+        double sum = 0;
+        for (int index = 0; index < first.length; index++) {
+            double difference = first[index] - second[index];
+            sum += difference * difference;
+        }
+        return sum;
+    }
+
+    public int getCoresetSize() {
+        return this.coresetSize;
+    }
+
+    public int getClustersPerClass() {
+        return this.clustersPerClass;
+    }
+}
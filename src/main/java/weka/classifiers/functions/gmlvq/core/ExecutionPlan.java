@@ -0,0 +1,146 @@
+package weka.classifiers.functions.gmlvq.core;
+
+import java.io.Serializable;
+
+import weka.classifiers.functions.gmlvq.model.PrototypeTree;
+import weka.classifiers.functions.gmlvq.model.WinnerSearch;
+
+/**
+ * How the {@link GradientDescent} and the cost functions execute an epoch:
+ * the number of threads the work is split among, whether data points or
+ * features are split, the number of data points whose distances a
+ * {@link WinnerSearch} computes together and whether it may index the
+ * prototypes by a {@link PrototypeTree}. Either chosen by default or measured
+ * by the {@link Autotuner} - results do not depend on the plan but for the
+ * order of summation.
+ *
+ * @author S
+ *
+ */
+public class ExecutionPlan implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int numberOfThreads;
+    private final ParallelStrategy parallelStrategy;
+    private final int blockSize;
+    private final boolean indexedWinnerSearch;
+
+    /**
+     * @param numberOfThreads
+     *            the number of threads the work is split among, at most the
+     *            number of available processors are used
+     * @param parallelStrategy
+     *            whether data points or features are split
+     * @param blockSize
+     *            the number of data points whose distances are computed
+     *            together, see {@link WinnerSearch}
+     * @param indexedWinnerSearch
+     *            whether prototypes may be indexed by a {@link PrototypeTree}
+     *            when worthwhile
+     */
+    public ExecutionPlan(int numberOfThreads, ParallelStrategy parallelStrategy, int blockSize,
+            boolean indexedWinnerSearch) {
+        if (numberOfThreads < 1) {
+            throw new IllegalArgumentException("number of threads has to be positive, but was " + numberOfThreads);
+        }
+        if (parallelStrategy == null) {
+            throw new IllegalArgumentException("parallel strategy cannot be null");
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("block size has to be positive, but was " + blockSize);
+        }
+        this.numberOfThreads = numberOfThreads;
+        this.parallelStrategy = parallelStrategy;
+        this.blockSize = blockSize;
+        this.indexedWinnerSearch = indexedWinnerSearch;
+    }
+
+    /**
+     * @param parallelStrategy
+     *            whether data points or features are split
+     * @return the plan using all available processors and the default block
+     *         size
+     */
+    public static ExecutionPlan createDefault(ParallelStrategy parallelStrategy) {
+        return new ExecutionPlan(Runtime.getRuntime().availableProcessors(), parallelStrategy,
+                WinnerSearch.BLOCK_SIZE, true);
+    }
+
+    /**
+     * @param encoded
+     *            as created by {@link #encode()}
+     * @return the decoded plan
+     */
+    public static ExecutionPlan decode(String encoded) {
+        String[] fields = encoded.trim().split(",");
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("cannot decode execution plan " + encoded);
+        }
+        return new ExecutionPlan(Integer.parseInt(fields[0]), ParallelStrategy.valueOf(fields[1]),
+                Integer.parseInt(fields[2]), Boolean.parseBoolean(fields[3]));
+    }
+
+    /**
+     * @return the comma-separated fields of this plan
+     */
+    public String encode() {
+        return this.numberOfThreads + "," + this.parallelStrategy.name() + "," + this.blockSize + ","
+                + this.indexedWinnerSearch;
+    }
+
+    public ExecutionPlan withNumberOfThreads(int numberOfThreads) {
+        return new ExecutionPlan(numberOfThreads, this.parallelStrategy, this.blockSize, this.indexedWinnerSearch);
+    }
+
+    public ExecutionPlan withParallelStrategy(ParallelStrategy parallelStrategy) {
+        return new ExecutionPlan(this.numberOfThreads, parallelStrategy, this.blockSize, this.indexedWinnerSearch);
+    }
+
+    public ExecutionPlan withBlockSize(int blockSize) {
+        return new ExecutionPlan(this.numberOfThreads, this.parallelStrategy, blockSize, this.indexedWinnerSearch);
+    }
+
+    public ExecutionPlan withIndexedWinnerSearch(boolean indexedWinnerSearch) {
+        return new ExecutionPlan(this.numberOfThreads, this.parallelStrategy, this.blockSize, indexedWinnerSearch);
+    }
+
+    public int getNumberOfThreads() {
+        return this.numberOfThreads;
+    }
+
+    public ParallelStrategy getParallelStrategy() {
+        return this.parallelStrategy;
+    }
+
+    public int getBlockSize() {
+        return this.blockSize;
+    }
+
+    public boolean isIndexedWinnerSearch() {
+        return this.indexedWinnerSearch;
+    }
+
+    @Override
+    public int hashCode() {
+        return encode().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return encode().equals(((ExecutionPlan) obj).encode());
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionPlan: " + this.numberOfThreads + (this.numberOfThreads == 1 ? " thread" : " threads")
+                + ", split " + this.parallelStrategy + ", blocks of " + this.blockSize
+                + (this.indexedWinnerSearch ? "" : ", linear winner search");
+    }
+}
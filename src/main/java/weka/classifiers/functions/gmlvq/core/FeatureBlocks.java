@@ -0,0 +1,116 @@
+package weka.classifiers.functions.gmlvq.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import weka.classifiers.functions.gmlvq.model.DataSpaceVector;
+import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
+
+/**
+ * Splits the work on few data points among threads by blocks of rows of the
+ * omega matrix respectively of features, see {@link ParallelStrategy#FEATURES}.
+ * There are more blocks than threads, so threads which finish early take over
+ * the remaining blocks.
+ *
+ * @author S
+ *
+ */
+public class FeatureBlocks {
+
+    /**
+     * the number of blocks per thread
+     */
+    static final int BLOCKS_PER_THREAD = 2;
+
+    private FeatureBlocks() {
+    }
+
+    /**
+     * @param numberOfThreads
+     *            the number of threads available
+     * @return the number of blocks to split rows or features into
+     */
+    static int getNumberOfBlocks(int numberOfThreads) {
+        return BLOCKS_PER_THREAD * Math.max(1, numberOfThreads);
+    }
+
+    /**
+     * @param length
+     *            the number of rows or features
+     * @param numberOfBlocks
+     *            the desired number of blocks
+     * @return the bounds of all non-empty blocks - block <code>i</code> covers
+     *         <code>bounds[i]</code> inclusive to <code>bounds[i + 1]</code>
+     *         exclusive
+     */
+    static int[] split(int length, int numberOfBlocks) {
+        int blocks = Math.max(1, Math.min(length, numberOfBlocks));
+        int[] bounds = new int[blocks + 1];
+        for (int block = 1; block <= blocks; block++) {
+            bounds[block] = (int) ((long) length * block / blocks);
+        }
+        return bounds;
+    }
+
+    /**
+     * maps all vectors which are not mapped yet to the embedded space, each
+     * task computes a block of rows of the matrix for all of them
+     *
+     * @param vectors
+     *            the data points to map
+     * @param omegaMatrix
+     *            the mapping rule, which has to be a relevance matrix
+     * @param executorService
+     *            runs the blocks
+     * @param numberOfThreads
+     *            the number of threads of the executor service
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public static void map(List<? extends DataSpaceVector> vectors, final OmegaMatrix omegaMatrix,
+            ExecutorService executorService, int numberOfThreads) throws InterruptedException, ExecutionException {
+        final List<DataSpaceVector> unmapped = new ArrayList<DataSpaceVector>();
+        for (DataSpaceVector vector : vectors) {
+            if (!vector.isMapped(omegaMatrix)) {
+                unmapped.add(vector);
+            }
+        }
+        if (unmapped.isEmpty()) {
+            return;
+        }
+
+        final double[][] rows = omegaMatrix.getArray();
+        final double[][] products = new double[unmapped.size()][rows.length];
+        int[] bounds = split(rows.length, getNumberOfBlocks(numberOfThreads));
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        for (int block = 0; block + 1 < bounds.length; block++) {
+            final int from = bounds[block];
+            final int to = bounds[block + 1];
+            results.add(executorService.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int index = 0; index < products.length; index++) {
+                        DataSpaceVector vector = unmapped.get(index);
+                        for (int rowIndex = from; rowIndex < to; rowIndex++) {
+                            // the vector decides how its values are traversed
+                            products[index][rowIndex] = vector.dotProduct(rows[rowIndex]);
+                        }
+                    }
+                }
+            }));
+        }
+
+        // we have to wait for the results
+        for (Future<?> result : results) {
+            result.get();
+        }
+
+        for (int index = 0; index < products.length; index++) {
+            unmapped.get(index).registerMapping(omegaMatrix, products[index]);
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package weka.classifiers.functions.gmlvq.core;
 
+import weka.classifiers.functions.GMLVQ;
 import weka.classifiers.functions.gmlvq.core.cost.*;
+import weka.classifiers.functions.gmlvq.inference.InferenceModel;
 import weka.classifiers.functions.gmlvq.model.*;
 import weka.classifiers.functions.gmlvq.model.Observer;
 import weka.classifiers.functions.gmlvq.utilities.DataRandomizer;
 import weka.classifiers.functions.gmlvq.utilities.LinearAlgebraicCalculations;
+import weka.classifiers.functions.gmlvq.utilities.PrincipalComponents;
 import weka.core.Instances;
-import weka.core.matrix.EigenvalueDecomposition;
 import weka.core.matrix.Matrix;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.Serializable;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -171,6 +175,21 @@ public class GMLVQCore implements Serializable {
     private boolean matrixLearning;
     private boolean parallelExecution;
     private boolean visualization;
+    private boolean singlePrecision;
+    private boolean collapseDuplicates;
+    private int coresetSize;
+    private boolean importanceSampling;
+    private boolean allDataPointsForOmegaInitialization;
+    private InitializationCache initializationCache;
+    private boolean winnerPruning;
+    private double searchApproximation;
+    private ParallelStrategy parallelStrategy;
+    /**
+     * chooses the execution plan at the start of training, <code>null</code>
+     * if the default plan is used
+     */
+    private Autotuner autotuner;
+    private ExecutionPlan executionPlan;
     private long seed;
     private int numberOfClasses;
     private int dataDimension;
@@ -188,6 +207,33 @@ public class GMLVQCore implements Serializable {
     private UpdateManager updateManager;
     private GradientDescent gradientDescent;
     private final List<CostFunctionValue> additionalCostFunctions;
+    /**
+     * the source of mini-batches when training out of core - the data points
+     * are only a sample in this case
+     */
+    private transient ChunkedTrainingData chunkedTrainingData;
+    /**
+     * all data points when training on a coreset - only retained until the
+     * final costs are reported
+     */
+    private transient List<DataPoint> allDataPoints;
+    /**
+     * the bounds which allow to skip searches of winners, <code>null</code>
+     * if disabled
+     */
+    private transient WinnerBounds winnerBounds;
+    /**
+     * the index of the trained prototypes used for classification,
+     * <code>null</code> if a linear scan is cheaper
+     */
+    private PrototypeTree prototypeTree;
+    private int numberOfAllDataPoints;
+    private double allDataPointsCostValue = Double.NaN;
+    /**
+     * the source of all random choices of the initialization, which is
+     * independent of the training so cached initializations train alike
+     */
+    private transient Random initializationRandom;
 
 
     private GMLVQCore(Builder builder) throws InterruptedException, ExecutionException {
@@ -208,11 +254,24 @@ public class GMLVQCore implements Serializable {
         this.matrixLearning = builder.matrixLearning;
         this.parallelExecution = builder.parallelExecution;
         this.visualization = builder.visualization;
+        this.singlePrecision = builder.singlePrecision;
+        this.collapseDuplicates = builder.collapseDuplicates;
+        this.coresetSize = builder.coresetSize;
+        this.importanceSampling = builder.importanceSampling;
+        this.allDataPointsForOmegaInitialization = builder.allDataPointsForOmegaInitialization;
+        this.initializationCache = builder.initializationCache;
+        this.winnerPruning = builder.winnerPruning;
+        this.searchApproximation = builder.searchApproximation;
+        this.parallelStrategy = builder.parallelStrategy;
+        if (builder.autotuning) {
+            this.autotuner = new Autotuner(builder.autotuningFile);
+        }
 
         this.seed = builder.seed;
 
         this.numberOfClasses = builder.numberOfClasses;
         this.dataDimension = builder.dataDimension;
+        this.numberOfAllDataPoints = this.dataPoints.size();
 
         this.dataRandomizer = new DataRandomizer(this.dataPoints.size(), this.dataPointRatioPerRound, this.seed);
         this.sigmoidFunction = new SigmoidFunction(this.sigmoidSigmaIntervalStart, this.sigmoidSigmaIntervalEnd,
@@ -226,9 +285,57 @@ public class GMLVQCore implements Serializable {
                 builder.additionalCostFunctions
                         .toArray(new CostFunctionValue[0]));
 
+        this.initializationRandom = this.seed == 0 ? new Random() : new Random(this.seed);
+        String initializationKey = null;
+        InitializationCache.Initialization initialization = null;
+        if (this.initializationCache != null) {
+            if (this.seed == 0) {
+                LOGGER.info("initialization cache is only used with a fixed seed");
+            } else {
+                initializationKey = createInitializationKey();
+                initialization = this.initializationCache.load(initializationKey);
+            }
+        }
+
+        if (initialization != null) {
+            this.omegaMatrix = initialization.getOmegaMatrix();
+            if (this.matrixLearning) {
+                computeLambdaMatrix();
+            }
+        } else {
+            initializeMatrices();
+        }
+        if (this.coresetSize != DefaultSettings.DEFAULT_CORESET_SIZE && this.coresetSize < this.dataPoints.size()) {
+            initializeCoreset();
+        }
         this.gradientDescent = new GradientDescent(this.dataRandomizer, this.sigmoidFunction, costFunctionCalculator);
-        initializeMatrices();
-        initializePrototypes();
+        if (this.importanceSampling) {
+            this.gradientDescent.enableImportanceSampling(this.dataPoints);
+        }
+        if (initialization != null) {
+            this.prototypes = initialization.getPrototypes();
+        } else {
+            initializePrototypes();
+            if (initializationKey != null) {
+                try {
+                    this.initializationCache.store(initializationKey, this.omegaMatrix, this.prototypes);
+                } catch (IOException e) {
+                    LOGGER.warning("cannot cache initialization: " + e.getMessage());
+                }
+            }
+        }
+        if (initializationKey != null) {
+            LOGGER.info("initialization " + (initialization != null ? "read from " : "computed and stored in ")
+                    + this.initializationCache);
+        }
+        this.executionPlan = ExecutionPlan.createDefault(this.parallelStrategy);
+        this.gradientDescent.setExecutionPlan(this.executionPlan);
+        this.costFunctionCalculator.setExecutionPlan(this.executionPlan);
+        if (this.winnerPruning) {
+            this.winnerBounds = new WinnerBounds(this.prototypes, this.omegaMatrix);
+            this.gradientDescent.setWinnerBounds(this.winnerBounds);
+            this.costFunctionCalculator.setWinnerBounds(this.winnerBounds);
+        }
 
         // create the update manager with additional cost functions
         this.updateManager = new UpdateManager(this, costFunctionCalculator, builder.observer);
@@ -296,6 +403,92 @@ public class GMLVQCore implements Serializable {
         return this.visualization;
     }
 
+    public boolean isSinglePrecision() {
+        return this.singlePrecision;
+    }
+
+    public boolean isCollapseDuplicates() {
+        return this.collapseDuplicates;
+    }
+
+    public int getCoresetSize() {
+        return this.coresetSize;
+    }
+
+    public boolean isImportanceSampling() {
+        return this.importanceSampling;
+    }
+
+    public boolean isAllDataPointsForOmegaInitialization() {
+        return this.allDataPointsForOmegaInitialization;
+    }
+
+    public InitializationCache getInitializationCache() {
+        return this.initializationCache;
+    }
+
+    public boolean isWinnerPruning() {
+        return this.winnerPruning;
+    }
+
+    public double getSearchApproximation() {
+        return this.searchApproximation;
+    }
+
+    public ParallelStrategy getParallelStrategy() {
+        return this.parallelStrategy;
+    }
+
+    /**
+     * @return the autotuner choosing the execution plan, <code>null</code> if
+     *         autotuning is disabled
+     */
+    public Autotuner getAutotuner() {
+        return this.autotuner;
+    }
+
+    /**
+     * @return how the work of each epoch is split among threads - chosen by
+     *         the {@link #getAutotuner() autotuner} once training started
+     */
+    public ExecutionPlan getExecutionPlan() {
+        return this.executionPlan;
+    }
+
+    /**
+     * @return the bounds which allow to skip searches of winners,
+     *         <code>null</code> if {@link #isWinnerPruning()} is disabled
+     */
+    public WinnerBounds getWinnerBounds() {
+        return this.winnerBounds;
+    }
+
+    /**
+     * @return the index of the prototypes used by
+     *         {@link #classifyInstance(DataPoint)}, <code>null</code> before
+     *         training or if a linear scan is cheaper
+     */
+    public PrototypeTree getPrototypeTree() {
+        return this.prototypeTree;
+    }
+
+    /**
+     * @return the number of data points the classifier was built for - when
+     *         training on a coreset, this exceeds the size of
+     *         {@link #getDataPoints()}
+     */
+    public int getNumberOfAllDataPoints() {
+        return this.numberOfAllDataPoints;
+    }
+
+    /**
+     * @return the costs to optimize evaluated on all data points after
+     *         training on a coreset, <code>NaN</code> if no coreset was used
+     */
+    public double getAllDataPointsCostValue() {
+        return this.allDataPointsCostValue;
+    }
+
     public long getSeed() {
         return this.seed;
     }
@@ -360,27 +553,136 @@ public class GMLVQCore implements Serializable {
      */
     public void buildClassifier() throws InterruptedException, ExecutionException {
 
+        if (this.autotuner != null) {
+            autotune();
+        }
+
         boolean run = true;
         while (run) {
-            ProposedUpdate proposedUpdate = this.gradientDescent.performStochasticGradientDescent(this.dataPoints,
-                    this.prototypes,
-                    this.omegaMatrix,
-                    this.updateManager
-                            .getPrototypeLearningRate(),
-                    this.updateManager
-                            .getOmegaLearningRate());
+            ProposedUpdate proposedUpdate;
+            if (this.chunkedTrainingData != null) {
+                proposedUpdate = this.gradientDescent.performGradientDescent(this.chunkedTrainingData.nextChunk(),
+                        this.prototypes,
+                        this.omegaMatrix,
+                        this.updateManager
+                                .getPrototypeLearningRate(),
+                        this.updateManager
+                                .getOmegaLearningRate());
+            } else {
+                proposedUpdate = this.gradientDescent.performStochasticGradientDescent(this.dataPoints,
+                        this.prototypes,
+                        this.omegaMatrix,
+                        this.updateManager
+                                .getPrototypeLearningRate(),
+                        this.updateManager
+                                .getOmegaLearningRate());
+            }
             run = this.updateManager.update(proposedUpdate);
 
         }
 
         // dispose thread pools
         this.gradientDescent.dispose();
+        if (this.chunkedTrainingData != null) {
+            this.chunkedTrainingData.dispose();
+        }
+
+        if (this.allDataPoints != null) {
+            reportCoresetCosts();
+        }
+
+        this.prototypeTree = PrototypeTree.create(this.prototypes, this.omegaMatrix, this.searchApproximation);
+    }
+
+    /**
+     * chooses the execution plan by calibration passes on the data points of
+     * one epoch, unless a plan of the same shape was kept
+     */
+    private void autotune() throws InterruptedException, ExecutionException {
+        int dataPointsPerEpoch = this.chunkedTrainingData != null ? this.chunkedTrainingData.getChunkSize()
+                : this.dataRandomizer.getFractionOfTrainingData();
+        int omegaDimension = this.prototypes.get(0).getEmbeddedSpaceVector(this.omegaMatrix).getDimension();
+        String key = Autotuner.createKey(dataPointsPerEpoch, this.dataDimension, omegaDimension,
+                this.prototypes.size(), this.parallelStrategy);
+        ExecutionPlan executionPlan = null;
+        try {
+            executionPlan = this.autotuner.load(key);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warning("cannot read kept execution plan: " + e.getMessage());
+        }
+
+        if (executionPlan != null) {
+            LOGGER.info("execution plan read from " + this.autotuner.getFile() + ": " + executionPlan);
+        } else {
+            // evenly spread, so the order of the training data is retained
+            // and the random choices of training are not affected
+            List<DataPoint> sample = new ArrayList<DataPoint>();
+            int numberOfSamples = Math.min(dataPointsPerEpoch, this.dataPoints.size());
+            for (int index = 0; index < numberOfSamples; index++) {
+                sample.add(this.dataPoints.get((int) ((long) index * this.dataPoints.size() / numberOfSamples)));
+            }
+            // calibration passes must not record bounds nor skip searches
+            this.gradientDescent.setWinnerBounds(null);
+            executionPlan = this.autotuner.tune(this.gradientDescent, sample, this.prototypes, this.omegaMatrix,
+                    this.parallelStrategy);
+            this.gradientDescent.setWinnerBounds(this.winnerBounds);
+            LOGGER.info("execution plan calibrated in " + this.autotuner.getCalibrationTime() + " ms, an epoch takes "
+                    + this.autotuner.getTunedPassTime() / 1000 + " us instead of "
+                    + this.autotuner.getDefaultPassTime() / 1000 + " us: " + executionPlan);
+            try {
+                this.autotuner.store(key, executionPlan);
+            } catch (IOException e) {
+                LOGGER.warning("cannot keep execution plan: " + e.getMessage());
+            }
+        }
+        this.executionPlan = executionPlan;
+        this.gradientDescent.setExecutionPlan(executionPlan);
+        this.costFunctionCalculator.setExecutionPlan(executionPlan);
+    }
+
+    /**
+     * replaces the training data by a weighted coreset, which is drawn in the
+     * space of the initial omega matrix - the time to build it and the
+     * reduction ratio (coreset size / number of all data points) are logged
+     */
+    private void initializeCoreset() {
+        long startTime = System.nanoTime();
+        this.allDataPoints = this.dataPoints;
+        this.dataPoints = new CoresetBuilder(this.coresetSize, this.seed).build(this.allDataPoints,
+                this.omegaMatrix);
+        this.dataRandomizer = new DataRandomizer(this.dataPoints.size(), this.dataPointRatioPerRound, this.seed);
+        LOGGER.info("training on coreset of " + this.dataPoints.size() + " of " + this.allDataPoints.size()
+                + " data points, reduction ratio " + (double) this.dataPoints.size() / this.allDataPoints.size()
+                + ", built in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+    }
+
+    /**
+     * evaluates the trained classifier on all data points, so the costs reached
+     * on the coreset can be compared to those of the whole data
+     */
+    private void reportCoresetCosts() throws InterruptedException, ExecutionException {
+        double coresetCostValue = this.costFunctionCalculator.evaluate(this.dataPoints, this.prototypes,
+                this.omegaMatrix).get(CostFunctionValue.COST_FUNCTION_VALUE_TO_OPTIMIZE);
+        this.allDataPointsCostValue = this.costFunctionCalculator.evaluate(this.allDataPoints, this.prototypes,
+                this.omegaMatrix).get(CostFunctionValue.COST_FUNCTION_VALUE_TO_OPTIMIZE);
+        LOGGER.info("final costs on coreset of " + this.dataPoints.size() + " data points: " + coresetCostValue
+                + ", on all " + this.allDataPoints.size() + " data points: " + this.allDataPointsCostValue
+                + ", difference " + (this.allDataPointsCostValue - coresetCostValue));
+        // release the data
+        this.allDataPoints = null;
     }
 
     public double classifyInstance(DataPoint dataPoint) {
 
         EmbeddedSpaceVector mappedDataPoint = dataPoint.getEmbeddedSpaceVector(this.omegaMatrix);
 
+        if (this.prototypeTree != null) {
+            double[] values = new double[this.prototypeTree.getDimension()];
+            mappedDataPoint.addTo(values, 1);
+            return this.prototypes.get(this.prototypeTree.nearest(values, this.searchApproximation))
+                    .getClassLabel();
+        }
+
         // determine best matching unit
         double bmuDistance = Double.MAX_VALUE;
         int bmuIndex = -1;
@@ -403,6 +705,11 @@ public class GMLVQCore implements Serializable {
         double[] distribution = new double[this.numberOfClasses];
 
         EmbeddedSpaceVector mappedDataPoint = dataPoint.getEmbeddedSpaceVector(this.omegaMatrix);
+        if (this.prototypeTree != null) {
+            computeDistributionFromPrototypeTree(mappedDataPoint, distribution);
+            normalize(distribution);
+            return distribution;
+        }
         final double originalClassLabel = mappedDataPoint.getClassLabel();
         // compute sigmoid sigma assuming data point is of each known class
         for (int classIndex = 0; classIndex < this.numberOfClasses; classIndex++) {
@@ -414,34 +721,86 @@ public class GMLVQCore implements Serializable {
             mappedDataPoint.deregisterAllWinnersBut(null);
             // compute winning information for the current class label
             WinningInformation winningInformation = mappedDataPoint.getWinningInformation(this.prototypes);
-            // TODO duplicated code from DefaultCostFunction - however, this
-            // dodges the whole parallel processing approach and the respective
-            // overhead
-            double dplus = winningInformation.getDistanceSameClass();
-            double dminus = winningInformation.getDistanceOtherClass();
-            double scalingFactor = Math.max(dplus + dminus, LinearAlgebraicCalculations.NUMERIC_CUTOFF);
-            double sigmoidSigma = this.sigmoidFunction.evaluate((dminus - dplus) / scalingFactor);
-            // TODO is the sigmoidFunction still valid here or did the
-            // sigmoidSigma change?
-            distribution[classIndex] = sigmoidSigma;
-        }
-
-        // normalize
-        double sum = 0;
-        for (int classIndex = 0; classIndex < this.numberOfClasses; classIndex++) {
-            sum += distribution[classIndex];
-        }
-        for (int classIndex = 0; classIndex < this.numberOfClasses; classIndex++) {
-            distribution[classIndex] /= sum;
+            distribution[classIndex] = computeSigmoidSigma(winningInformation.getDistanceSameClass(),
+                    winningInformation.getDistanceOtherClass());
         }
 
+        normalize(distribution);
+
         // set class label again to initial value
         mappedDataPoint.setClassLabel(originalClassLabel);
 
         return distribution;
     }
 
-    private void initializeMatrices() {
+    /**
+     * computes the sigmoid sigma of each class from the closest prototype of
+     * each class, which are searched once for all classes
+     */
+    private void computeDistributionFromPrototypeTree(EmbeddedSpaceVector mappedDataPoint, double[] distribution) {
+        double[] values = new double[this.prototypeTree.getDimension()];
+        mappedDataPoint.addTo(values, 1);
+        double[] treeClassLabels = this.prototypeTree.getClassLabels();
+        int[] winners = new int[treeClassLabels.length];
+        double[] distances = new double[treeClassLabels.length];
+        this.prototypeTree.nearestPerClass(values, this.searchApproximation, winners, distances);
+        for (int classIndex = 0; classIndex < this.numberOfClasses; classIndex++) {
+            double dplus = Double.MAX_VALUE;
+            double dminus = Double.MAX_VALUE;
+            for (int treeClassIndex = 0; treeClassIndex < treeClassLabels.length; treeClassIndex++) {
+                if (treeClassLabels[treeClassIndex] == classIndex) {
+                    dplus = distances[treeClassIndex];
+                } else {
+                    dminus = Math.min(dminus, distances[treeClassIndex]);
+                }
+            }
+            distribution[classIndex] = computeSigmoidSigma(dplus, dminus);
+        }
+    }
+
+    private double computeSigmoidSigma(double dplus, double dminus) {
+        // TODO duplicated code from DefaultCostFunction - however, this
+        // dodges the whole parallel processing approach and the respective
+        // overhead
+        double scalingFactor = Math.max(dplus + dminus, LinearAlgebraicCalculations.NUMERIC_CUTOFF);
+        // TODO is the sigmoidFunction still valid here or did the
+        // sigmoidSigma change?
+        return this.sigmoidFunction.evaluate((dminus - dplus) / scalingFactor);
+    }
+
+    private static void normalize(double[] distribution) {
+        double sum = 0;
+        for (int classIndex = 0; classIndex < distribution.length; classIndex++) {
+            sum += distribution[classIndex];
+        }
+        for (int classIndex = 0; classIndex < distribution.length; classIndex++) {
+            distribution[classIndex] /= sum;
+        }
+    }
+
+    /**
+     * freezes the current state of this classifier into an
+     * {@link InferenceModel} which contains nothing but what is needed to
+     * classify new data
+     *
+     * @param classNames     the names of all classes, indexed by class label
+     * @param attributeNames the names of all attributes (without class)
+     * @return the inference model
+     */
+    public InferenceModel createInferenceModel(String[] classNames, String[] attributeNames) {
+        double[][] omega = GMLVQ.isRelevanceLearning(this.omegaMatrix) ? this.omegaMatrix.getArrayCopy() : null;
+        double[][] prototypeValues = new double[this.prototypes.size()][];
+        double[] prototypeClassLabels = new double[this.prototypes.size()];
+        for (int prototypeIndex = 0; prototypeIndex < this.prototypes.size(); prototypeIndex++) {
+            Prototype prototype = this.prototypes.get(prototypeIndex);
+            prototypeValues[prototypeIndex] = Arrays.copyOf(prototype.getValues(), prototype.getDimension());
+            prototypeClassLabels[prototypeIndex] = prototype.getClassLabel();
+        }
+        return new InferenceModel(omega, prototypeValues, prototypeClassLabels, this.numberOfClasses, classNames,
+                attributeNames, this.sigmoidFunction.getCurrentSigmoidSigma());
+    }
+
+    private void initializeMatrices() throws InterruptedException, ExecutionException {
 
         // if matrix learning is enabled
         if (this.matrixLearning) {
@@ -451,33 +810,33 @@ public class GMLVQCore implements Serializable {
                 LOGGER.finest("initializing omega matrix as identity matrix");
                 this.omegaMatrix = new OmegaMatrix(Matrix.identity(this.omegaDimension, this.omegaDimension));
             } else {
-                LOGGER.finest("initializing omega matrix with semi-random values");
-
-                // chooses data points
-                List<DataPoint> chosenTrainingData = this.dataRandomizer.generateRandomizedSubListOf(this.dataPoints,
-                        DefaultSettings
-                                .OMEGA_MATRIX_INITIALIZATION_AND_REGULARIZATION_NUMBER_OF_DATA_POINTS);
-
-                double[][] dataMatrix = new double[chosenTrainingData.size()][];
-                for (int index = 0; index < dataMatrix.length; index++) {
-                    dataMatrix[index] = chosenTrainingData.get(index).getValues();
+                LOGGER.finest("initializing omega matrix with the leading principal components");
+
+                // chooses data points - from a copy, so the order of the
+                // training data does not depend on the initialization
+                List<DataPoint> chosenTrainingData = this.dataPoints;
+                if (!this.allDataPointsForOmegaInitialization && this.dataPoints
+                        .size() > DefaultSettings.OMEGA_MATRIX_INITIALIZATION_AND_REGULARIZATION_NUMBER_OF_DATA_POINTS) {
+                    chosenTrainingData = new ArrayList<DataPoint>(this.dataPoints);
+                    Collections.shuffle(chosenTrainingData, this.initializationRandom);
+                    chosenTrainingData = chosenTrainingData.subList(0,
+                            DefaultSettings.OMEGA_MATRIX_INITIALIZATION_AND_REGULARIZATION_NUMBER_OF_DATA_POINTS);
                 }
 
-                // compute covariance matrix and eigenvalue decomposition
-                Matrix covarianceMatrix = LinearAlgebraicCalculations
-                        .calculateCovarianceFromMeanVector(chosenTrainingData);
-                EigenvalueDecomposition eigenvalueDecomposition = covarianceMatrix.eig();
-
-                Matrix scaledEigenvalues = eigenvalueDecomposition.getD();
-                for (int index = 0; index < scaledEigenvalues.getColumnDimension(); index++) {
-                    // for (int index = scaledEigenvalues.getColumnDimension() -
-                    // 1; index >= 0; index--) {
-                    scaledEigenvalues.set(index, index, 1 / Math.max(scaledEigenvalues.get(index, index),
-                            DefaultSettings
-                                    .OMEGA_MATRIX_INITIALIZATION_MINIMAL_EXPECTED_VALUE));
+                // compute the leading eigenvectors of the covariance matrix
+                // without forming it
+                PrincipalComponents principalComponents = new PrincipalComponents(chosenTrainingData,
+                        this.omegaDimension, this.initializationRandom);
+                double[] eigenvalues = principalComponents.getEigenvalues();
+                double[][] omega = principalComponents.getEigenvectors();
+                for (int row = 0; row < omega.length; row++) {
+                    double scaling = 1 / Math.max(eigenvalues[row],
+                            DefaultSettings.OMEGA_MATRIX_INITIALIZATION_MINIMAL_EXPECTED_VALUE);
+                    for (int column = 0; column < omega[row].length; column++) {
+                        omega[row][column] *= scaling;
+                    }
                 }
-                this.omegaMatrix = new OmegaMatrix(eigenvalueDecomposition.getV().times(scaledEigenvalues).getMatrix(0,
-                        this.omegaDimension - 1, 0, this.dataDimension - 1));
+                this.omegaMatrix = new OmegaMatrix(omega);
 
                 computeLambdaMatrix();
                 normalizeOmegaMatrix();
@@ -518,44 +877,84 @@ public class GMLVQCore implements Serializable {
      * prototype ought to be placed the mean of the trainingData distribution is
      * chosen, else a dedicated method places the prototypes
      *
-     * @throws Exception
+     * @throws InterruptedException
+     * @throws ExecutionException
      */
-    private void initializePrototypes() {
+    private void initializePrototypes() throws InterruptedException, ExecutionException {
         LOGGER.finest("initializing number of prototypes for each class");
         this.prototypes = new ArrayList<Prototype>();
-        for (double classLabel : this.prototypesPerClass.keySet()) {
-            List<DataPoint> dataPointsWithLabel = LinearAlgebraicCalculations
-                    .collectDatapointsWithClassLabel(this.dataPoints, classLabel);
-            int numberOfPrototypesToCreate = this.prototypesPerClass.get(classLabel);
-            if (numberOfPrototypesToCreate == 1) {
-                Prototype prototype = new Prototype(
-                        LinearAlgebraicCalculations.createMeanVectorFromListOfVectors(dataPointsWithLabel), classLabel);
-                LOGGER.finest("initializing one prototype for " + classLabel
-                        + " (with centroid of the class values) as \n" + prototype);
-                this.prototypes.add(prototype);
-            } else {
-                LOGGER.finest("initializing " + numberOfPrototypesToCreate + " prototypes for " + classLabel
-                        + " (at the position of a datapoint of the same class)");
-                initializeMultiplePrototypesForClass(dataPointsWithLabel, classLabel);
+        // group all data points by class in a single pass
+        Map<Double, List<DataPoint>> dataPointsPerClass = LinearAlgebraicCalculations
+                .groupDatapointsByClassLabel(this.dataPoints);
+        KMeansPlusPlusInitializer initializer = null;
+        try {
+            for (double classLabel : this.prototypesPerClass.keySet()) {
+                List<DataPoint> dataPointsWithLabel = dataPointsPerClass.get(classLabel);
+                int numberOfPrototypesToCreate = this.prototypesPerClass.get(classLabel);
+                if (numberOfPrototypesToCreate == 1) {
+                    Prototype prototype = new Prototype(
+                            LinearAlgebraicCalculations.createMeanVectorFromListOfVectors(dataPointsWithLabel),
+                            classLabel);
+                    LOGGER.finest("initializing one prototype for " + classLabel
+                            + " (with centroid of the class values) as \n" + prototype);
+                    this.prototypes.add(prototype);
+                } else {
+                    LOGGER.finest("initializing " + numberOfPrototypesToCreate + " prototypes for " + classLabel
+                            + " (at the position of a datapoint of the same class chosen by k-means++)");
+                    if (initializer == null) {
+                        initializer = new KMeansPlusPlusInitializer(this.initializationRandom);
+                    }
+                    initializeMultiplePrototypesForClass(initializer, dataPointsWithLabel, classLabel);
+                }
+            }
+        } finally {
+            // the thread pool of the seeding must not outlive a failed initialization
+            if (initializer != null) {
+                initializer.dispose();
             }
         }
     }
 
     /**
      * initializes multiple prototypes by choosing the corresponding number of
-     * prototypes, whereby no element ought to be chosen more than once
+     * data points by k-means++ seeding in the embedded space, so prototypes
+     * are spread over the class
      *
+     * @param initializer             the k-means++ seeding
      * @param dataPointsWithSameLabel the {@link Instances} of the according class label
      * @param classLabel              the label to be assigned to the prototypes
      */
-    private void initializeMultiplePrototypesForClass(List<DataPoint> dataPointsWithSameLabel, double classLabel) {
-        for (DataPoint randomDataPoint : this.dataRandomizer.generateRandomizedSubListOf(dataPointsWithSameLabel,
-                this.prototypesPerClass.get(
-                        classLabel))) {
-            this.prototypes.add(new Prototype(randomDataPoint));
+    private void initializeMultiplePrototypesForClass(KMeansPlusPlusInitializer initializer,
+            List<DataPoint> dataPointsWithSameLabel, double classLabel)
+            throws InterruptedException, ExecutionException {
+        for (DataPoint seed : initializer.chooseSeeds(dataPointsWithSameLabel,
+                this.prototypesPerClass.get(classLabel), this.omegaMatrix)) {
+            this.prototypes.add(new Prototype(seed));
         }
     }
 
+    /**
+     * @return the key of the {@link InitializationCache} entry - the training
+     *         data and all settings the initialization depends on
+     */
+    private String createInitializationKey() {
+        // prototypes are created in the order of the classes
+        List<Double> classLabels = new ArrayList<Double>(this.prototypesPerClass.keySet());
+        long[] settings = new long[7 + 2 * classLabels.size()];
+        settings[0] = this.seed;
+        settings[1] = this.omegaDimension;
+        settings[2] = this.matrixLearning ? 1 : 0;
+        settings[3] = this.allDataPointsForOmegaInitialization ? 1 : 0;
+        settings[4] = this.coresetSize;
+        settings[5] = this.dataDimension;
+        settings[6] = classLabels.size();
+        for (int index = 0; index < classLabels.size(); index++) {
+            settings[7 + 2 * index] = Double.doubleToLongBits(classLabels.get(index));
+            settings[8 + 2 * index] = this.prototypesPerClass.get(classLabels.get(index));
+        }
+        return InitializationCache.createKey(this.dataPoints, settings);
+    }
+
     public interface DefaultSettings {
 
         /**
@@ -611,6 +1010,53 @@ public class GMLVQCore implements Serializable {
          * the default setting of matrix omega should be visualized
          */
         boolean DEFAULT_VISUALIZATION = true;
+        /**
+         * the default setting whether training data is stored in single
+         * precision
+         */
+        boolean DEFAULT_SINGLE_PRECISION = false;
+        /**
+         * the default setting whether identical data points are merged into
+         * weighted ones
+         */
+        boolean DEFAULT_COLLAPSE_DUPLICATES = false;
+        /**
+         * the default size of the coreset to train on, <code>0</code> trains
+         * on all data points
+         */
+        int DEFAULT_CORESET_SIZE = 0;
+        /**
+         * the default setting whether the data points of each epoch are drawn
+         * by importance sampling
+         */
+        boolean DEFAULT_IMPORTANCE_SAMPLING = false;
+        /**
+         * the default setting whether the omega matrix is initialized from
+         * all data points instead of
+         * {@link #OMEGA_MATRIX_INITIALIZATION_AND_REGULARIZATION_NUMBER_OF_DATA_POINTS}
+         */
+        boolean DEFAULT_ALL_DATA_POINTS_FOR_OMEGA_INITIALIZATION = false;
+        /**
+         * the default setting whether searches of winners are skipped while
+         * the winners are known to be unchanged
+         */
+        boolean DEFAULT_WINNER_PRUNING = false;
+        /**
+         * the default approximation factor of the search of the closest
+         * prototypes by {@link GMLVQCore#classifyInstance(DataPoint)}, which
+         * is exact
+         */
+        double DEFAULT_SEARCH_APPROXIMATION = 0;
+        /**
+         * the default split of the work of each epoch among threads, which
+         * depends on the number of data points per epoch
+         */
+        ParallelStrategy DEFAULT_PARALLEL_STRATEGY = ParallelStrategy.AUTOMATIC;
+        /**
+         * the default setting whether the execution plan is measured before
+         * training instead of using the default one
+         */
+        boolean DEFAULT_AUTOTUNING = false;
         CostFunctionValue DEFAULT_COST_FUNCTION = CostFunctionValue.DEFAULT_COST;
 
     }
@@ -638,6 +1084,17 @@ public class GMLVQCore implements Serializable {
         private boolean matrixLearning = GMLVQCore.DefaultSettings.DEFAULT_MATRIX_LEARNING;
         private boolean parallelExecution = GMLVQCore.DefaultSettings.DEFAULT_PARALLEL_EXECUTION;
         public boolean visualization = GMLVQCore.DefaultSettings.DEFAULT_VISUALIZATION;
+        private boolean singlePrecision = GMLVQCore.DefaultSettings.DEFAULT_SINGLE_PRECISION;
+        private boolean collapseDuplicates = GMLVQCore.DefaultSettings.DEFAULT_COLLAPSE_DUPLICATES;
+        private int coresetSize = GMLVQCore.DefaultSettings.DEFAULT_CORESET_SIZE;
+        private boolean importanceSampling = GMLVQCore.DefaultSettings.DEFAULT_IMPORTANCE_SAMPLING;
+        private boolean allDataPointsForOmegaInitialization = GMLVQCore.DefaultSettings.DEFAULT_ALL_DATA_POINTS_FOR_OMEGA_INITIALIZATION;
+        private InitializationCache initializationCache;
+        private boolean winnerPruning = GMLVQCore.DefaultSettings.DEFAULT_WINNER_PRUNING;
+        private double searchApproximation = GMLVQCore.DefaultSettings.DEFAULT_SEARCH_APPROXIMATION;
+        private ParallelStrategy parallelStrategy = GMLVQCore.DefaultSettings.DEFAULT_PARALLEL_STRATEGY;
+        private boolean autotuning = GMLVQCore.DefaultSettings.DEFAULT_AUTOTUNING;
+        private File autotuningFile;
 
         // costs
         private CostFunctionValue costFunctionToOptimize = GMLVQCore.DefaultSettings.DEFAULT_COST_FUNCTION;
@@ -708,6 +1165,50 @@ public class GMLVQCore implements Serializable {
             return this.visualization;
         }
 
+        public boolean isSinglePrecision() {
+            return this.singlePrecision;
+        }
+
+        public boolean isCollapseDuplicates() {
+            return this.collapseDuplicates;
+        }
+
+        public int getCoresetSize() {
+            return this.coresetSize;
+        }
+
+        public boolean isImportanceSampling() {
+            return this.importanceSampling;
+        }
+
+        public boolean isAllDataPointsForOmegaInitialization() {
+            return this.allDataPointsForOmegaInitialization;
+        }
+
+        public InitializationCache getInitializationCache() {
+            return this.initializationCache;
+        }
+
+        public boolean isWinnerPruning() {
+            return this.winnerPruning;
+        }
+
+        public double getSearchApproximation() {
+            return this.searchApproximation;
+        }
+
+        public ParallelStrategy getParallelStrategy() {
+            return this.parallelStrategy;
+        }
+
+        public boolean isAutotuning() {
+            return this.autotuning;
+        }
+
+        public File getAutotuningFile() {
+            return this.autotuningFile;
+        }
+
         public boolean isVisualizingClassificationAccuracy() {
             return isVisualizing(CostFunctionValue.CLASSIFICATION_ACCURACY);
         }
@@ -836,6 +1337,158 @@ public class GMLVQCore implements Serializable {
             return this;
         }
 
+        /**
+         * determines whether training data and its mappings to the embedded
+         * space are stored as floats - the data points passed to
+         * {@link #build(List)} have to be created accordingly, see
+         * {@link WekaModelConverter#createDataPoints(Instances, boolean)}
+         *
+         * @param singlePrecision
+         * @return this builder
+         */
+        public Builder singlePrecision(boolean singlePrecision) {
+            this.singlePrecision = singlePrecision;
+            return this;
+        }
+
+        /**
+         * determines whether identical data points are merged into one
+         * {@link WeightedDataPoint} each before training, so the costs of an
+         * epoch depend on the number of distinct data points only
+         *
+         * @param collapseDuplicates
+         * @return this builder
+         */
+        public Builder collapseDuplicates(boolean collapseDuplicates) {
+            this.collapseDuplicates = collapseDuplicates;
+            return this;
+        }
+
+        /**
+         * determines the number of data points of the weighted subset
+         * training is performed on, see {@link CoresetBuilder} -
+         * {@link DefaultSettings#DEFAULT_CORESET_SIZE} trains on all data
+         * points
+         *
+         * @param coresetSize
+         * @return this builder
+         */
+        public Builder coresetSize(int coresetSize) {
+            this.coresetSize = coresetSize;
+            return this;
+        }
+
+        /**
+         * determines whether the data points of each epoch are drawn in
+         * proportion to their estimated gradient magnitude, which usually
+         * allows for a smaller {@link #dataPointRatioPerRound(double)} - see
+         * {@link weka.classifiers.functions.gmlvq.utilities.ImportanceSampler}
+         *
+         * @param importanceSampling
+         * @return this builder
+         */
+        public Builder importanceSampling(boolean importanceSampling) {
+            this.importanceSampling = importanceSampling;
+            return this;
+        }
+
+        /**
+         * determines whether the principal components the omega matrix is
+         * initialized with are computed from all data points instead of a
+         * random sample - only relevant if the omega dimension is smaller than
+         * the data dimension
+         *
+         * @param allDataPointsForOmegaInitialization
+         * @return this builder
+         */
+        public Builder allDataPointsForOmegaInitialization(boolean allDataPointsForOmegaInitialization) {
+            this.allDataPointsForOmegaInitialization = allDataPointsForOmegaInitialization;
+            return this;
+        }
+
+        /**
+         * determines whether the winners of data points are only searched if
+         * prototypes or omega matrix moved far enough to change them, see
+         * {@link WinnerBounds} - the winners are the same either way
+         *
+         * @param winnerPruning
+         * @return this builder
+         */
+        public Builder winnerPruning(boolean winnerPruning) {
+            this.winnerPruning = winnerPruning;
+            return this;
+        }
+
+        /**
+         * lets classification trade exactness for latency with thousands of
+         * prototypes: the distance to the prototype a data point is assigned
+         * to may exceed the one to the closest prototype by this factor, see
+         * {@link PrototypeTree} - 0 searches exactly, training always does
+         *
+         * @param searchApproximation
+         * @return this builder
+         */
+        public Builder searchApproximation(double searchApproximation) {
+            this.searchApproximation = searchApproximation;
+            return this;
+        }
+
+        /**
+         * determines how the work of each epoch is split among threads - by
+         * default, the rows of the omega matrix and the features are split
+         * when there are too few data points per epoch to keep all threads
+         * busy, see {@link ParallelStrategy}
+         *
+         * @param parallelStrategy
+         * @return this builder
+         */
+        public Builder parallelStrategy(ParallelStrategy parallelStrategy) {
+            this.parallelStrategy = parallelStrategy;
+            return this;
+        }
+
+        /**
+         * determines whether the number of threads, the split of the work
+         * among them and the settings of the winner search are measured by
+         * calibration passes when training starts, see {@link Autotuner} -
+         * the results are the same but for the order of summation
+         *
+         * @param autotuning
+         * @return this builder
+         */
+        public Builder autotuning(boolean autotuning) {
+            this.autotuning = autotuning;
+            return this;
+        }
+
+        /**
+         * keeps the execution plans chosen by {@link #autotuning(boolean)} in
+         * the given properties file, so later runs on data of the same shape
+         * skip the calibration
+         *
+         * @param autotuningFile
+         *            the file, <code>null</code> to calibrate every run
+         * @return this builder
+         */
+        public Builder autotuningFile(File autotuningFile) {
+            this.autotuningFile = autotuningFile;
+            return this;
+        }
+
+        /**
+         * keeps the initial omega matrix and prototypes of runs with a fixed
+         * {@link #seed(long)} in the given cache, so runs on the same data
+         * with the same initialization settings skip the initialization
+         *
+         * @param initializationCache
+         *            the cache, <code>null</code> to always initialize
+         * @return this builder
+         */
+        public Builder initializationCache(InitializationCache initializationCache) {
+            this.initializationCache = initializationCache;
+            return this;
+        }
+
         public Builder visualizeClassificationAccuracy(boolean visualize) {
             visualizeFunction(visualize, CostFunctionValue.CLASSIFICATION_ACCURACY);
             return this;
@@ -920,10 +1573,18 @@ public class GMLVQCore implements Serializable {
             if (dataPoints == null) {
                 throw new IllegalArgumentException("dataPoints cannot be null");
             }
+            if (this.collapseDuplicates) {
+                dataPoints = WeightedDataPoint.collapseDuplicates(dataPoints);
+            }
             if (dataPoints.size() < 2) {
                 throw new IllegalArgumentException("number of data points cannot be smaller than 2");
             }
-            int ppr = (int)(dataPoints.size() * dataPointRatioPerRound);
+            if (this.coresetSize < 0) {
+                throw new IllegalArgumentException("coreset size cannot be negative, but was " + this.coresetSize);
+            }
+            int numberOfTrainingDataPoints = this.coresetSize == DefaultSettings.DEFAULT_CORESET_SIZE
+                    ? dataPoints.size() : Math.min(this.coresetSize, dataPoints.size());
+            int ppr = (int)(numberOfTrainingDataPoints * dataPointRatioPerRound);
             if (ppr < 10.0) {
                 throw new IllegalStateException("number of data points evaluated per epoch would be "+ppr+", the minimal number of data points per round allowed is 10.");
             }
@@ -931,13 +1592,20 @@ public class GMLVQCore implements Serializable {
 
             // extract and check the number of unique classes
             this.prototypesPerClass = new HashMap<Double, Integer>();
+            double totalWeight = 0;
             for (DataPoint dataPoint : this.dataPoints) {
                 this.prototypesPerClass.put(dataPoint.getClassLabel(), this.numberOfPrototypesPerClass);
+                totalWeight += dataPoint.getWeight();
             }
             this.numberOfClasses = this.prototypesPerClass.size();
             if (this.numberOfClasses < 2) {
                 throw new IllegalArgumentException("number of classes cannot be smaller than 2");
             }
+            // costs are averaged over the weights
+            if (!(totalWeight > 0)) {
+                throw new IllegalArgumentException("total weight of the data points has to be positive, but was "
+                        + totalWeight);
+            }
             // extract and check data dimension
             this.dataDimension = this.dataPoints.get(0).getDimension();
             if (this.dataDimension < this.omegaDimension) {
@@ -954,6 +1622,13 @@ public class GMLVQCore implements Serializable {
             if (this.costFunctionToOptimize == null) {
                 throw new IllegalArgumentException("cost function to optimize cannot be null");
             }
+            if (this.searchApproximation < 0) {
+                throw new IllegalArgumentException(
+                        "search approximation cannot be negative, but was " + this.searchApproximation);
+            }
+            if (this.parallelStrategy == null) {
+                throw new IllegalArgumentException("parallel strategy cannot be null");
+            }
             if (this.numberOfClasses > 2 && anyCostFunctionRequiresConfusionMatrix()) {
                 throw new IllegalArgumentException(
                         "cannot compute confusion-matrix-based cost functions for problems with " + this.numberOfClasses
@@ -970,6 +1645,25 @@ public class GMLVQCore implements Serializable {
             return new GMLVQCore(this);
         }
 
+        /**
+         * builds the classifier for out-of-core training: initialization and
+         * cost evaluation are based on the sample of the training data, each
+         * epoch performs the gradient descent on the next mini-batch
+         *
+         * @param trainingData the chunked training data
+         * @return a new GMLVQ instance
+         * @throws InterruptedException
+         * @throws ExecutionException
+         */
+        public GMLVQCore build(ChunkedTrainingData trainingData) throws InterruptedException, ExecutionException {
+            if (trainingData == null) {
+                throw new IllegalArgumentException("trainingData cannot be null");
+            }
+            GMLVQCore gmlvqCore = build(trainingData.getSample());
+            gmlvqCore.chunkedTrainingData = trainingData;
+            return gmlvqCore;
+        }
+
         /**
          * builds the classifier and shows the live visualization
          *
@@ -987,6 +1681,9 @@ public class GMLVQCore implements Serializable {
             if (dataPoints == null) {
                 throw new IllegalArgumentException("dataPoints cannot be null");
             }
+            if (this.collapseDuplicates) {
+                dataPoints = WeightedDataPoint.collapseDuplicates(dataPoints);
+            }
             this.dataPoints = dataPoints;
 
             if (instances == null) {
@@ -995,13 +1692,20 @@ public class GMLVQCore implements Serializable {
 
             // extract and check the number of unique classes
             this.prototypesPerClass = new HashMap<Double, Integer>();
+            double totalWeight = 0;
             for (DataPoint dataPoint : this.dataPoints) {
                 this.prototypesPerClass.put(dataPoint.getClassLabel(), this.numberOfPrototypesPerClass);
+                totalWeight += dataPoint.getWeight();
             }
             this.numberOfClasses = this.prototypesPerClass.size();
             if (this.numberOfClasses < 2) {
                 throw new IllegalArgumentException("number of classes cannot be smaller than 2");
             }
+            // costs are averaged over the weights
+            if (!(totalWeight > 0)) {
+                throw new IllegalArgumentException("total weight of the data points has to be positive, but was "
+                        + totalWeight);
+            }
             // extract and check data dimension
             this.dataDimension = this.dataPoints.get(0).getDimension();
             if (this.dataDimension < this.omegaDimension) {
@@ -1018,6 +1722,13 @@ public class GMLVQCore implements Serializable {
             if (this.costFunctionToOptimize == null) {
                 throw new IllegalArgumentException("cost function to optimize cannot be null");
             }
+            if (this.searchApproximation < 0) {
+                throw new IllegalArgumentException(
+                        "search approximation cannot be negative, but was " + this.searchApproximation);
+            }
+            if (this.parallelStrategy == null) {
+                throw new IllegalArgumentException("parallel strategy cannot be null");
+            }
             if (this.numberOfClasses > 2 && this.anyCostFunctionRequiresConfusionMatrix()) {
                 throw new IllegalArgumentException(
                         "cannot compute confusion-matrix-based cost functions for problems with " +
@@ -1095,6 +1806,27 @@ public class GMLVQCore implements Serializable {
         appendParameter(sb, "cost function weights", Arrays.toString(costFunctionCalculator.getCostFunctionWeights()));
 
         appendParameter(sb, "parallel execution", parallelExecution);
+        appendParameter(sb, "single precision", singlePrecision);
+        appendParameter(sb, "collapse duplicates", collapseDuplicates);
+        appendParameter(sb, "coreset size", coresetSize);
+        appendParameter(sb, "importance sampling", importanceSampling);
+        appendParameter(sb, "all data points for omega initialization", allDataPointsForOmegaInitialization);
+        appendParameter(sb, "winner pruning", winnerPruning);
+        appendParameter(sb, "search approximation", searchApproximation);
+        appendParameter(sb, "parallel strategy", parallelStrategy.name());
+        appendParameter(sb, "autotuning", autotuner != null);
+        if (executionPlan != null) {
+            sb.append(executionPlan).append(System.lineSeparator());
+        }
+        if (prototypeTree != null) {
+            sb.append(prototypeTree).append(System.lineSeparator());
+        }
+        if (winnerBounds != null) {
+            sb.append(winnerBounds).append(System.lineSeparator());
+        }
+        if (initializationCache != null) {
+            sb.append(initializationCache).append(System.lineSeparator());
+        }
 
         return sb.toString();
     }
@@ -15,7 +15,11 @@ import weka.classifiers.functions.gmlvq.core.cost.CostFunctionCalculator;
 import weka.classifiers.functions.gmlvq.model.DataPoint;
 import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
 import weka.classifiers.functions.gmlvq.model.Prototype;
+import weka.classifiers.functions.gmlvq.model.PrototypeTable;
+import weka.classifiers.functions.gmlvq.model.WinnerBounds;
+import weka.classifiers.functions.gmlvq.model.WinnerSearch;
 import weka.classifiers.functions.gmlvq.utilities.DataRandomizer;
+import weka.classifiers.functions.gmlvq.utilities.ImportanceSampler;
 
 /**
  * This class wraps the stochastic gradient descent of GMLVQ. Actually, it is
@@ -43,6 +47,18 @@ public class GradientDescent implements Serializable, Disposable {
     private transient ExecutorService executorService;
 
     private CostFunctionCalculator costFunctionCalculator;
+    /**
+     * draws the data points of each epoch, if importance sampling is enabled
+     */
+    private ImportanceSampler importanceSampler;
+    /**
+     * allows to skip searches of winners, <code>null</code> if disabled
+     */
+    private transient WinnerBounds winnerBounds;
+    /**
+     * how the work of each epoch is split among threads
+     */
+    private ExecutionPlan executionPlan = ExecutionPlan.createDefault(ParallelStrategy.AUTOMATIC);
 
     public GradientDescent(DataRandomizer dataRandomizer, SigmoidFunction sigmoidFunction,
             CostFunctionCalculator costFunctionCalculator) {
@@ -77,22 +93,104 @@ public class GradientDescent implements Serializable, Disposable {
     public ProposedUpdate performStochasticGradientDescent(List<DataPoint> trainingData, List<Prototype> prototypes,
             OmegaMatrix omegaMatrix, double alphaW, double alphaO) throws InterruptedException, ExecutionException {
 
+        if (this.importanceSampler != null) {
+            ImportanceSampler.Sample sample = this.importanceSampler.sample();
+            return performGradientDescent(sample.getDataPoints(), sample.getImportanceWeights(), prototypes,
+                    omegaMatrix, alphaW, alphaO);
+        }
         List<DataPoint> chosenDataPoints = this.dataRandomizer.generateRandomizedSubListOf(trainingData);
+        return performGradientDescent(chosenDataPoints, prototypes, omegaMatrix, alphaW, alphaO);
+    }
+
+    /**
+     * draws the data points of each stochastic gradient descent by an
+     * {@link ImportanceSampler} instead of uniformly - the number of data
+     * points per epoch is retained
+     *
+     * @param trainingData
+     *            all training data
+     */
+    public void enableImportanceSampling(List<DataPoint> trainingData) {
+        // data points which have not been drawn yet are assumed to lie on
+        // the decision boundary, where the derivative is maximal
+        this.importanceSampler = new ImportanceSampler(trainingData, this.dataRandomizer.getRatio(),
+                this.sigmoidFunction.evaluatePrime(0), this.dataRandomizer.getRandom());
+    }
+
+    public ImportanceSampler getImportanceSampler() {
+        return this.importanceSampler;
+    }
+
+    /**
+     * @param winnerBounds
+     *            the bounds which allow to skip searches of winners,
+     *            <code>null</code> searches all winners
+     */
+    public void setWinnerBounds(WinnerBounds winnerBounds) {
+        this.winnerBounds = winnerBounds;
+    }
+
+    /**
+     * @param executionPlan
+     *            how the work of each epoch is split among threads
+     */
+    public void setExecutionPlan(ExecutionPlan executionPlan) {
+        this.executionPlan = executionPlan;
+    }
+
+    public ExecutionPlan getExecutionPlan() {
+        return this.executionPlan;
+    }
+
+    /**
+     * performs the gradient descent on all given data points, e.g. a
+     * mini-batch provided by {@link ChunkedTrainingData}
+     *
+     * @see #performStochasticGradientDescent(List, List, OmegaMatrix, double,
+     *      double)
+     */
+    public ProposedUpdate performGradientDescent(List<DataPoint> chosenDataPoints, List<Prototype> prototypes,
+            OmegaMatrix omegaMatrix, double alphaW, double alphaO) throws InterruptedException, ExecutionException {
+        return performGradientDescent(chosenDataPoints, null, prototypes, omegaMatrix, alphaW, alphaO);
+    }
+
+    private ProposedUpdate performGradientDescent(List<DataPoint> chosenDataPoints, double[] importanceWeights,
+            List<Prototype> prototypes, OmegaMatrix omegaMatrix, double alphaW, double alphaO)
+            throws InterruptedException, ExecutionException {
+
+        WinnerBounds.Transition transition = this.winnerBounds == null ? null
+                : this.winnerBounds.transitionTo(prototypes, omegaMatrix);
+        ExecutionPlan executionPlan = this.executionPlan;
+        int numberOfThreads = executionPlan.getNumberOfThreads();
+        // prototypes and omega matrix are updated in place once the epoch is
+        // accepted, so they are mapped once per pass - all threads read the
+        // same table without locks
+        PrototypeTable prototypeTable = new PrototypeTable(prototypes, omegaMatrix,
+                executionPlan.isIndexedWinnerSearch());
+        if (executionPlan.getParallelStrategy().resolve(chosenDataPoints.size(), numberOfThreads,
+                omegaMatrix) == ParallelStrategy.FEATURES) {
+            return performFeatureParallelGradientDescent(chosenDataPoints, importanceWeights, prototypes,
+                    omegaMatrix, alphaW, alphaO, transition, executionPlan, prototypeTable);
+        }
 
         // parallel job creation
         Set<Future<?>> results = new HashSet<Future<?>>();
         List<ProposedUpdate> proposedUpdates = new ArrayList<ProposedUpdate>();
-        // split data into partitions so no thread is bored
-        for (List<DataPoint> partion : DataRandomizer.partition(chosenDataPoints, processsors)) {
+        // split data into consecutive partitions so no thread is bored
+        int partitionSize = Math.max(1, (chosenDataPoints.size() + numberOfThreads - 1) / numberOfThreads);
+        for (int offset = 0; offset < chosenDataPoints.size(); offset += partitionSize) {
+            List<DataPoint> partion = chosenDataPoints.subList(offset,
+                    Math.min(chosenDataPoints.size(), offset + partitionSize));
 
             // init object to accumulate potential changes over the course of
             // the batch
             ProposedUpdate proposedUpdate = new ProposedUpdate(prototypes, this.sigmoidFunction, omegaMatrix, alphaW,
-                    alphaO, this.costFunctionCalculator);
+                    alphaO, this.costFunctionCalculator, prototypeTable);
 
             proposedUpdates.add(proposedUpdate);
 
-            results.add(this.executorService.submit(new UpdateCalculator(partion, proposedUpdate)));
+            results.add(this.executorService.submit(new UpdateCalculator(partion, importanceWeights, offset,
+                    proposedUpdate, new WinnerSearch(prototypeTable, transition, executionPlan.getBlockSize()))));
         }
 
         // we have to wait for the results
@@ -105,21 +203,118 @@ public class GradientDescent implements Serializable, Disposable {
                 this.costFunctionCalculator);
     }
 
+    /**
+     * composes the update of few data points by splitting the features instead
+     * of the data points, see {@link ParallelStrategy#FEATURES} - the data
+     * points are mapped in blocks of rows of the omega matrix, the prototype
+     * deltas are accumulated in blocks of features and the omega delta in
+     * blocks of rows
+     */
+    private ProposedUpdate performFeatureParallelGradientDescent(List<DataPoint> chosenDataPoints,
+            double[] importanceWeights, List<Prototype> prototypes, OmegaMatrix omegaMatrix, double alphaW,
+            double alphaO, WinnerBounds.Transition transition, ExecutionPlan executionPlan,
+            PrototypeTable prototypeTable) throws InterruptedException, ExecutionException {
+
+        int numberOfThreads = executionPlan.getNumberOfThreads();
+        FeatureBlocks.map(chosenDataPoints, omegaMatrix, this.executorService, numberOfThreads);
+        new WinnerSearch(prototypeTable, transition, executionPlan.getBlockSize())
+                .determineWinningInformation(chosenDataPoints);
+
+        final ProposedUpdate proposedUpdate = new ProposedUpdate(prototypes, this.sigmoidFunction, omegaMatrix,
+                alphaW, alphaO, this.costFunctionCalculator, prototypeTable);
+        final List<ProposedUpdate.Contribution> contributions = new ArrayList<ProposedUpdate.Contribution>();
+        for (int index = 0; index < chosenDataPoints.size(); index++) {
+            DataPoint dataPoint = chosenDataPoints.get(index);
+            ProposedUpdate.Contribution contribution = proposedUpdate.prepare(dataPoint,
+                    importanceWeights == null ? 1.0 : importanceWeights[index]);
+            contributions.add(contribution);
+            if (importanceWeights != null) {
+                this.importanceSampler.update(dataPoint,
+                        dataPoint.getWeight() * this.sigmoidFunction.evaluatePrime(contribution.getMargin()));
+            }
+        }
+
+        // blocks write disjoint columns of the prototype deltas respectively
+        // disjoint rows of the omega delta
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        int numberOfBlocks = FeatureBlocks.getNumberOfBlocks(numberOfThreads);
+        int[] columns = FeatureBlocks.split(proposedUpdate.getDataDimension(), numberOfBlocks);
+        for (int block = 0; block + 1 < columns.length; block++) {
+            final int from = columns[block];
+            final int to = columns[block + 1];
+            results.add(this.executorService.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    proposedUpdate.incorporateColumns(contributions, from, to);
+                }
+            }));
+        }
+        int[] rows = FeatureBlocks.split(proposedUpdate.getOmegaDeltaRows(), numberOfBlocks);
+        for (int block = 0; block + 1 < rows.length; block++) {
+            final int from = rows[block];
+            final int to = rows[block + 1];
+            results.add(this.executorService.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    proposedUpdate.incorporateRows(contributions, from, to);
+                }
+            }));
+        }
+
+        // we have to wait for the results
+        for (Future<?> result : results) {
+            result.get();
+        }
+        return proposedUpdate;
+    }
+
     private class UpdateCalculator implements Runnable {
 
         private List<DataPoint> dataPoints;
+        private double[] importanceWeights;
+        private int offset;
         private ProposedUpdate proposedUpdate;
+        private WinnerSearch winnerSearch;
 
-        public UpdateCalculator(List<DataPoint> dataPoints, ProposedUpdate proposedUpdate) {
+        /**
+         * @param importanceWeights
+         *            the importance weights of all chosen data points,
+         *            <code>null</code> when drawn uniformly
+         * @param offset
+         *            the index of the first data point among all chosen ones
+         * @param winnerSearch
+         *            determines the winners of all data points before they
+         *            are incorporated
+         */
+        public UpdateCalculator(List<DataPoint> dataPoints, double[] importanceWeights, int offset,
+                ProposedUpdate proposedUpdate, WinnerSearch winnerSearch) {
             this.dataPoints = dataPoints;
+            this.importanceWeights = importanceWeights;
+            this.offset = offset;
             this.proposedUpdate = proposedUpdate;
+            this.winnerSearch = winnerSearch;
         }
 
         @Override
         public void run() {
-            for (DataPoint dataPoint : this.dataPoints) {
-                // accumulate updates of prototypes and matrix
-                this.proposedUpdate.incorporate(dataPoint);
+            this.winnerSearch.determineWinningInformation(this.dataPoints);
+            if (this.importanceWeights == null) {
+                for (DataPoint dataPoint : this.dataPoints) {
+                    // accumulate updates of prototypes and matrix
+                    this.proposedUpdate.incorporate(dataPoint);
+                }
+                return;
+            }
+            for (int index = 0; index < this.dataPoints.size(); index++) {
+                DataPoint dataPoint = this.dataPoints.get(index);
+                double margin = this.proposedUpdate.incorporate(dataPoint,
+                        this.importanceWeights[this.offset + index]);
+                // the derivative of the sigmoid determines how much the data
+                // point contributes to the gradient
+                GradientDescent.this.importanceSampler.update(dataPoint,
+                        dataPoint.getWeight() * GradientDescent.this.sigmoidFunction.evaluatePrime(margin));
             }
         }
     }
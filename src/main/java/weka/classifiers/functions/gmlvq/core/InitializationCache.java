@@ -0,0 +1,265 @@
+package weka.classifiers.functions.gmlvq.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
+import weka.classifiers.functions.gmlvq.model.Prototype;
+
+/**
+ * A directory of initial omega matrices and prototypes computed by
+ * {@link GMLVQCore}. Entries are keyed by the SHA-256 hash of the training
+ * data (values, class labels and weights) and of all settings the
+ * initialization depends on - seed, omega dimension, prototypes per class,
+ * coreset size and so on, see {@link #createKey(List, long...)}. Runs sweeping
+ * other parameters, e.g. learning rates or the number of epochs, therefore
+ * skip the principal components and the placement of prototypes after the
+ * first run.<br />
+ * <br />
+ * Entries are written to a temporary file which is moved into place once
+ * complete, so concurrent runs never observe partially written entries.
+ * Entries which cannot be read, e.g. written by an older format version, are
+ * treated as misses and rebuilt. Serialized copies share the directory, but
+ * count their hits and misses separately.
+ *
+ * @author S
+ *
+ */
+public class InitializationCache implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * identifies the format of entries, increased whenever the format or the
+     * initialization itself changes
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private final File directory;
+    private int hits;
+    private int misses;
+
+    /**
+     * @param directory
+     *            the directory holding the cached entries, created if it does
+     *            not exist
+     */
+    public InitializationCache(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("cannot create cache directory " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * @param dataPoints
+     *            the training data
+     * @param settings
+     *            all settings the initialization depends on
+     * @return the hex encoded SHA-256 hash of the training data and settings
+     */
+    public static String createKey(List<DataPoint> dataPoints, long... settings) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putInt(settings.length);
+        for (long setting : settings) {
+            buffer.putLong(setting);
+        }
+        buffer.putInt(dataPoints.size());
+        for (DataPoint dataPoint : dataPoints) {
+            flushIfFull(digest, buffer, 20);
+            buffer.putDouble(dataPoint.getClassLabel()).putDouble(dataPoint.getWeight())
+                    .putInt(dataPoint.getDimension());
+            for (int index = 0; index < dataPoint.getDimension(); index++) {
+                flushIfFull(digest, buffer, 8);
+                buffer.putDouble(dataPoint.getValue(index));
+            }
+        }
+        buffer.flip();
+        digest.update(buffer);
+        StringBuilder hash = new StringBuilder();
+        for (byte value : digest.digest()) {
+            hash.append(String.format("%02x", value));
+        }
+        return hash.toString();
+    }
+
+    private static void flushIfFull(MessageDigest digest, ByteBuffer buffer, int requiredBytes) {
+        if (buffer.remaining() < requiredBytes) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * reads the entry of the given key
+     *
+     * @param key
+     *            the key created by {@link #createKey(List, long...)}
+     * @return the cached initialization or <code>null</code> if there is none
+     */
+    public synchronized Initialization load(String key) {
+        File entry = getEntry(key);
+        if (entry.isFile()) {
+            try {
+                Initialization initialization = read(entry);
+                this.hits++;
+                return initialization;
+            } catch (IOException e) {
+                // outdated or damaged entry - rebuild it
+            }
+        }
+        this.misses++;
+        return null;
+    }
+
+    /**
+     * writes the entry of the given key, replacing an existing one
+     *
+     * @param key
+     *            the key created by {@link #createKey(List, long...)}
+     * @param omegaMatrix
+     *            the initial omega matrix
+     * @param prototypes
+     *            the initial prototypes
+     * @throws IOException
+     *             if the entry cannot be written
+     */
+    public synchronized void store(String key, OmegaMatrix omegaMatrix, List<Prototype> prototypes)
+            throws IOException {
+        File entry = getEntry(key);
+        File temporaryFile = File.createTempFile(entry.getName(), ".tmp", this.directory);
+        try {
+            DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+            try {
+                outputStream.writeInt(FORMAT_VERSION);
+                double[][] omega = omegaMatrix.getArray();
+                outputStream.writeInt(omega.length);
+                outputStream.writeInt(omega[0].length);
+                for (double[] row : omega) {
+                    for (double value : row) {
+                        outputStream.writeDouble(value);
+                    }
+                }
+                outputStream.writeInt(prototypes.size());
+                for (Prototype prototype : prototypes) {
+                    outputStream.writeDouble(prototype.getClassLabel());
+                    outputStream.writeInt(prototype.getDimension());
+                    for (int index = 0; index < prototype.getDimension(); index++) {
+                        outputStream.writeDouble(prototype.getValue(index));
+                    }
+                }
+            } finally {
+                outputStream.close();
+            }
+            Files.move(temporaryFile.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporaryFile.delete();
+        }
+    }
+
+    private static Initialization read(File entry) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+        try {
+            if (inputStream.readInt() != FORMAT_VERSION) {
+                throw new IOException("unsupported format version in " + entry);
+            }
+            double[][] omega = new double[inputStream.readInt()][inputStream.readInt()];
+            for (double[] row : omega) {
+                for (int index = 0; index < row.length; index++) {
+                    row[index] = inputStream.readDouble();
+                }
+            }
+            int numberOfPrototypes = inputStream.readInt();
+            List<Prototype> prototypes = new ArrayList<Prototype>(numberOfPrototypes);
+            for (int prototype = 0; prototype < numberOfPrototypes; prototype++) {
+                double classLabel = inputStream.readDouble();
+                double[] values = new double[inputStream.readInt()];
+                for (int index = 0; index < values.length; index++) {
+                    values[index] = inputStream.readDouble();
+                }
+                prototypes.add(new Prototype(values, classLabel));
+            }
+            return new Initialization(new OmegaMatrix(omega), prototypes);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * @return the file of the entry for the given key - it does not
+     *         necessarily exist
+     */
+    public File getEntry(String key) {
+        return new File(this.directory, key + ".init");
+    }
+
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * @return the number of initializations served by an existing entry
+     */
+    public synchronized int getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return the number of initializations which had to be computed
+     */
+    public synchronized int getMisses() {
+        return this.misses;
+    }
+
+    @Override
+    public String toString() {
+        return "InitializationCache " + this.directory + ": " + this.hits + " hits, " + this.misses + " misses";
+    }
+
+    /**
+     * the initial omega matrix and prototypes read from an entry
+     */
+    public static class Initialization {
+
+        private final OmegaMatrix omegaMatrix;
+        private final List<Prototype> prototypes;
+
+        public Initialization(OmegaMatrix omegaMatrix, List<Prototype> prototypes) {
+            this.omegaMatrix = omegaMatrix;
+            this.prototypes = prototypes;
+        }
+
+        public OmegaMatrix getOmegaMatrix() {
+            return this.omegaMatrix;
+        }
+
+        public List<Prototype> getPrototypes() {
+            return this.prototypes;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package weka.classifiers.functions.gmlvq.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.classifiers.functions.gmlvq.model.EmbeddedSpaceVector;
+import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
+
+/**
+ * Chooses the initial positions of multiple prototypes of a class by k-means++
+ * seeding: the first data point is chosen uniformly, each further one with a
+ * probability proportional to its (weighted) squared distance to the closest
+ * data point chosen so far. Distances are measured in the embedded space of
+ * the initial omega matrix, i.e. in the space the prototypes compete in.<br />
+ * <br />
+ * Updating the distances after each choice is the expensive part - it is
+ * split among all processors.
+ *
+ * @author S
+ *
+ */
+public class KMeansPlusPlusInitializer implements Disposable {
+
+    /**
+     * the number of processors that can be used for parallel calculation
+     */
+    private static final int processors = Runtime.getRuntime().availableProcessors();
+
+    private final Random random;
+    private final ExecutorService executorService;
+
+    /**
+     * @param random
+     *            the source of all random choices
+     */
+    public KMeansPlusPlusInitializer(Random random) {
+        this.random = random;
+        this.executorService = Executors.newFixedThreadPool(processors);
+    }
+
+    /**
+     * @param dataPoints
+     *            the data points of one class
+     * @param numberOfSeeds
+     *            the number of data points to choose
+     * @param omegaMatrix
+     *            the mapping to the embedded space
+     * @return the chosen data points - a data point is only chosen repeatedly
+     *         if there are less distinct data points than requested seeds
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public List<DataPoint> chooseSeeds(List<DataPoint> dataPoints, int numberOfSeeds, OmegaMatrix omegaMatrix)
+            throws InterruptedException, ExecutionException {
+        if (dataPoints.isEmpty()) {
+            throw new IllegalArgumentException("cannot choose seeds among no data points");
+        }
+        double[] squaredDistances = new double[dataPoints.size()];
+        Arrays.fill(squaredDistances, Double.POSITIVE_INFINITY);
+        int partitionSize = (dataPoints.size() + processors - 1) / processors;
+        double[] partitionSums = new double[(dataPoints.size() + partitionSize - 1) / partitionSize];
+
+        List<DataPoint> seeds = new ArrayList<DataPoint>(numberOfSeeds);
+        int chosen = this.random.nextInt(dataPoints.size());
+        while (true) {
+            DataPoint seed = dataPoints.get(chosen);
+            seeds.add(seed);
+            if (seeds.size() == numberOfSeeds) {
+                return seeds;
+            }
+
+            // update the distances to the closest seed in parallel
+            EmbeddedSpaceVector embeddedSeed = seed.getEmbeddedSpaceVector(omegaMatrix);
+            List<Future<Double>> results = new ArrayList<Future<Double>>(partitionSums.length);
+            for (int offset = 0; offset < dataPoints.size(); offset += partitionSize) {
+                results.add(this.executorService.submit(new DistanceUpdater(dataPoints, offset,
+                        Math.min(dataPoints.size(), offset + partitionSize), embeddedSeed, omegaMatrix,
+                        squaredDistances)));
+            }
+            double total = 0;
+            for (int partition = 0; partition < partitionSums.length; partition++) {
+                partitionSums[partition] = results.get(partition).get();
+                total += partitionSums[partition];
+            }
+
+            if (total == 0) {
+                // all data points coincide with a seed
+                chosen = this.random.nextInt(dataPoints.size());
+                continue;
+            }
+            // find the partition first, then the data point within it
+            double threshold = this.random.nextDouble() * total;
+            int partition = 0;
+            while (partition < partitionSums.length - 1 && threshold >= partitionSums[partition]) {
+                threshold -= partitionSums[partition];
+                partition++;
+            }
+            int last = Math.min(dataPoints.size(), (partition + 1) * partitionSize) - 1;
+            chosen = last;
+            for (int index = partition * partitionSize; index < last; index++) {
+                threshold -= dataPoints.get(index).getWeight() * squaredDistances[index];
+                if (threshold < 0) {
+                    chosen = index;
+                    break;
+                }
+            }
+            // rounding errors must not pick a data point chosen before
+            while (squaredDistances[chosen] == 0) {
+                chosen = (chosen + 1) % dataPoints.size();
+            }
+        }
+    }
+
+    private static class DistanceUpdater implements Callable<Double> {
+
+        private final List<DataPoint> dataPoints;
+        private final int from;
+        private final int to;
+        private final EmbeddedSpaceVector embeddedSeed;
+        private final OmegaMatrix omegaMatrix;
+        private final double[] squaredDistances;
+
+        public DistanceUpdater(List<DataPoint> dataPoints, int from, int to, EmbeddedSpaceVector embeddedSeed,
+                OmegaMatrix omegaMatrix, double[] squaredDistances) {
+            this.dataPoints = dataPoints;
+            this.from = from;
+            this.to = to;
+            this.embeddedSeed = embeddedSeed;
+            this.omegaMatrix = omegaMatrix;
+            this.squaredDistances = squaredDistances;
+        }
+
+        /**
+         * @return the weighted sum of squared distances of the partition
+         */
+        @Override
+        public Double call() {
+            double sum = 0;
+            for (int index = this.from; index < this.to; index++) {
+                DataPoint dataPoint = this.dataPoints.get(index);
+                double squaredDistance = dataPoint.getEmbeddedSpaceVector(this.omegaMatrix)
+                        .squaredEuclideanDistance(this.embeddedSeed);
+                if (squaredDistance < this.squaredDistances[index]) {
+                    this.squaredDistances[index] = squaredDistance;
+                }
+                sum += dataPoint.getWeight() * this.squaredDistances[index];
+            }
+            return sum;
+        }
+    }
+
+    @Override
+    public void dispose() throws InterruptedException {
+        this.executorService.shutdown();
+        this.executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,60 @@
+package weka.classifiers.functions.gmlvq.core;
+
+import weka.classifiers.functions.GMLVQ;
+import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
+
+/**
+ * How the work of an epoch is split among threads. Splitting the data points
+ * leaves threads idle when there are only few of them per epoch (e.g. a small
+ * <code>dataPointRatioPerRound</code>) - then the rows of the omega matrix and
+ * the features can be split instead, see {@link FeatureBlocks}.
+ *
+ * @author S
+ *
+ */
+public enum ParallelStrategy {
+
+    /**
+     * splits the features when each thread would get fewer than
+     * {@link #MINIMAL_DATA_POINTS_PER_THREAD} data points, the data points
+     * otherwise
+     */
+    AUTOMATIC,
+    /**
+     * each thread processes consecutive data points
+     */
+    DATA_POINTS,
+    /**
+     * each thread processes a block of rows of the omega matrix respectively
+     * of the features for all data points
+     */
+    FEATURES;
+
+    /**
+     * with fewer data points per thread, {@link #AUTOMATIC} splits the
+     * features
+     */
+    public static final int MINIMAL_DATA_POINTS_PER_THREAD = 4;
+
+    /**
+     * @param numberOfDataPoints
+     *            the number of data points to process
+     * @param numberOfThreads
+     *            the number of threads available
+     * @param omegaMatrix
+     *            the current mapping rule
+     * @return the strategy to employ, never {@link #AUTOMATIC} - without
+     *         relevance learning there are no rows to split, so the data
+     *         points are split
+     */
+    public ParallelStrategy resolve(int numberOfDataPoints, int numberOfThreads, OmegaMatrix omegaMatrix) {
+        if (!GMLVQ.isRelevanceLearning(omegaMatrix)) {
+            return DATA_POINTS;
+        }
+        if (this != AUTOMATIC) {
+            return this;
+        }
+        return numberOfThreads > 1 && numberOfDataPoints < MINIMAL_DATA_POINTS_PER_THREAD * numberOfThreads ? FEATURES
+                : DATA_POINTS;
+    }
+}
@@ -2,10 +2,12 @@ package weka.classifiers.functions.gmlvq.core;
 
 import weka.classifiers.functions.gmlvq.core.cost.CostFunctionCalculator;
 import weka.classifiers.functions.gmlvq.model.*;
+import weka.classifiers.functions.gmlvq.utilities.ImportanceSampler;
 import weka.classifiers.functions.gmlvq.utilities.LinearAlgebraicCalculations;
 import weka.core.matrix.Matrix;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static weka.classifiers.functions.GMLVQ.isRelevanceLearning;
@@ -41,6 +43,15 @@ public class ProposedUpdate {
      * definition
      */
     private Matrix omegaDelta;
+    /**
+     * the omega delta of a data point <code>x</code> and its winner
+     * <code>w</code> is the rank-1 matrix
+     * <code>(omega*x - omega*w) * (x - w)'</code> - the part belonging to the
+     * data point is added to the omega delta right away, whereas the factors of
+     * <code>w'</code> are summed up for each prototype and subtracted once the
+     * update is finished
+     */
+    private double[][] prototypeOmegaDeltaFactors;
 
     /**
      * combination of prototype delta and the prototypes at the start of this
@@ -87,10 +98,26 @@ public class ProposedUpdate {
      * the employed cost function
      */
     private CostFunctionCalculator costFunctionCalculator;
+    /**
+     * the mapped prototypes, only needed with relevance learning - created on
+     * demand unless shared by the caller
+     */
+    private PrototypeTable prototypeTable;
 
     public ProposedUpdate(List<Prototype> prototypes, SigmoidFunction sigmoidFunction, OmegaMatrix omegaMatrix, double alphaW,
             double alphaO, CostFunctionCalculator costFunctionCalculator) {
+        this(prototypes, sigmoidFunction, omegaMatrix, alphaW, alphaO, costFunctionCalculator, null);
+    }
+
+    /**
+     * @param prototypeTable
+     *            the mapped prototypes of this state, shared by the updates of
+     *            all threads - <code>null</code> maps them when needed
+     */
+    public ProposedUpdate(List<Prototype> prototypes, SigmoidFunction sigmoidFunction, OmegaMatrix omegaMatrix, double alphaW,
+            double alphaO, CostFunctionCalculator costFunctionCalculator, PrototypeTable prototypeTable) {
 
+        this.prototypeTable = prototypeTable;
         this.prototypes = prototypes;
         this.sigmoidFunction = sigmoidFunction;
         this.omegaMatrix = omegaMatrix;
@@ -114,6 +141,7 @@ public class ProposedUpdate {
     private void initializeOmegaDelta() {
         if (this.relevanceLearning) {
             this.omegaDelta = new Matrix(this.omegaMatrix.getRowDimension(), this.omegaMatrix.getColumnDimension());
+            this.prototypeOmegaDeltaFactors = new double[this.prototypes.size()][this.omegaMatrix.getRowDimension()];
         } else {
             this.omegaDelta = new Matrix(1, 1);
         }
@@ -137,6 +165,14 @@ public class ProposedUpdate {
         for (ProposedUpdate proposedUpdate : proposedUpdates) {
 
             this.omegaDelta = this.omegaDelta.plusEquals(proposedUpdate.omegaDelta);
+            if (this.relevanceLearning) {
+                double[][] factors = proposedUpdate.prototypeOmegaDeltaFactors;
+                for (int prototypeIndex = 0; prototypeIndex < factors.length; prototypeIndex++) {
+                    for (int rowIndex = 0; rowIndex < factors[prototypeIndex].length; rowIndex++) {
+                        this.prototypeOmegaDeltaFactors[prototypeIndex][rowIndex] += factors[prototypeIndex][rowIndex];
+                    }
+                }
+            }
         }
 
         for (int i = 0; i < this.prototypeDeltas.size(); i++) {
@@ -157,6 +193,43 @@ public class ProposedUpdate {
      * @param dataPoint
      */
     public void incorporate(DataPoint dataPoint) {
+        incorporate(dataPoint, 1.0);
+    }
+
+    /**
+     * incorporates a data point drawn by importance sampling
+     *
+     * @param dataPoint
+     * @param importanceWeight
+     *            the factor correcting for the probability the data point was
+     *            drawn with, see {@link ImportanceSampler}
+     * @return the margin <code>(d- - d+) / (d+ + d-)</code> of the data point
+     */
+    public double incorporate(DataPoint dataPoint, double importanceWeight) {
+        Contribution contribution = prepare(dataPoint, importanceWeight);
+        List<Contribution> contributions = Collections.singletonList(contribution);
+        incorporateColumns(contributions, 0, getDataDimension());
+        // when relevance learning, then compute omega changes
+        if (this.relevanceLearning) {
+            incorporateRows(contributions, 0, this.omegaDelta.getRowDimension());
+        }
+        return contribution.margin;
+    }
+
+    /**
+     * analyzes the given data point and its {@link WinningInformation}, but
+     * does not add anything to the deltas yet - this is done by
+     * {@link #incorporateColumns(List, int, int)} and
+     * {@link #incorporateRows(List, int, int)}, which can be invoked for
+     * disjoint blocks by different threads
+     *
+     * @param dataPoint
+     * @param importanceWeight
+     *            the factor correcting for the probability the data point was
+     *            drawn with, see {@link ImportanceSampler}
+     * @return the contribution of the data point to the deltas
+     */
+    Contribution prepare(DataPoint dataPoint, double importanceWeight) {
         EmbeddedSpaceVector embeddedSpaceVector = dataPoint.getEmbeddedSpaceVector(this.omegaMatrix);
         WinningInformation winningInformation = embeddedSpaceVector.getWinningInformation(this.prototypes);
         // calculate potential updates for a single data point
@@ -168,49 +241,127 @@ public class ProposedUpdate {
         double xsi = this.sigmoidFunction.evaluatePrime(glvqMuHat)
                 / Math.max(dSum * dSum, LinearAlgebraicCalculations.NUMERIC_CUTOFF);
 
-        double updateScalingFactor = this.costFunctionCalculator.update(dataPoint);
+        // weighted data points contribute proportionally to their weight
+        double updateScalingFactor = importanceWeight * dataPoint.getWeight()
+                * this.costFunctionCalculator.update(dataPoint);
         double psiPlus = -updateScalingFactor * xsi * winningInformation.getDistanceOtherClass();
         double psiMinus = updateScalingFactor * xsi * winningInformation.getDistanceSameClass();
 
         Vector differenceSameClass = substract(embeddedSpaceVector, winningInformation.getWinnerSameClass());
         Vector differenceOtherClass = substract(embeddedSpaceVector, winningInformation.getWinnerOtherClass());
 
-        // projection back to data space
-        Vector deltaWPlus;
-        Vector deltaWMinus;
+        double[] embeddedWinnerSameClass = null;
+        double[] embeddedWinnerOtherClass = null;
         if (this.relevanceLearning) {
-            deltaWPlus = multiply(multiply(differenceSameClass, this.scaledTransposedOmegaMatrix), -2.0 * psiPlus);
-            deltaWMinus = multiply(multiply(differenceOtherClass, this.scaledTransposedOmegaMatrix), -2.0 * psiMinus);
-        } else {
-            deltaWPlus = multiply(differenceSameClass, -2.0 * psiPlus);
-            deltaWMinus = multiply(differenceOtherClass, -2.0 * psiMinus);
+            if (this.prototypeTable == null) {
+                this.prototypeTable = new PrototypeTable(this.prototypes, this.omegaMatrix, false);
+            }
+            embeddedWinnerSameClass = this.prototypeTable
+                    .getMappedPrototype(winningInformation.getIndexWinnerSameClass());
+            embeddedWinnerOtherClass = this.prototypeTable
+                    .getMappedPrototype(winningInformation.getIndexWinnerOtherClass());
+        }
+        return new Contribution(dataPoint, embeddedSpaceVector, winningInformation.getIndexWinnerSameClass(),
+                winningInformation.getIndexWinnerOtherClass(), -2.0 * psiPlus, -2.0 * psiMinus, psiPlus, psiMinus,
+                differenceSameClass, differenceOtherClass, embeddedWinnerSameClass, embeddedWinnerOtherClass,
+                glvqMuHat);
+    }
+
+    /**
+     * adds the prototype deltas of the given contributions, restricted to the
+     * given features
+     *
+     * @param contributions
+     *            prepared by {@link #prepare(DataPoint, double)}
+     * @param from
+     *            the first feature, inclusive
+     * @param to
+     *            the last feature, exclusive
+     */
+    void incorporateColumns(List<Contribution> contributions, int from, int to) {
+        // projection back to data space
+        double[][] scaledTransposedOmegaRows = this.relevanceLearning ? this.scaledTransposedOmegaMatrix.getArray()
+                : null;
+        for (Contribution contribution : contributions) {
+            addPrototypeDelta(contribution.indexWinnerSameClass, contribution.differenceSameClass,
+                    contribution.prototypeFactorSameClass, scaledTransposedOmegaRows, from, to);
+            addPrototypeDelta(contribution.indexWinnerOtherClass, contribution.differenceOtherClass,
+                    contribution.prototypeFactorOtherClass, scaledTransposedOmegaRows, from, to);
         }
+    }
 
-        // add the current update
-        addPrototypeDelta(winningInformation.getIndexWinnerSameClass(), deltaWPlus);
-        addPrototypeDelta(winningInformation.getIndexWinnerOtherClass(), deltaWMinus);
+    /**
+     * adds the omega deltas of the given contributions, restricted to the
+     * given rows of the omega matrix
+     *
+     * @param contributions
+     *            prepared by {@link #prepare(DataPoint, double)}
+     * @param from
+     *            the first row, inclusive
+     * @param to
+     *            the last row, exclusive
+     */
+    void incorporateRows(List<Contribution> contributions, int from, int to) {
+        // compute omega changes and add them to previously monitored
+        // changes - omega * (x - w)(x - w)' equals the rank-1 matrix
+        // (omega*x - omega*w)(x - w)', so the mappings already at hand
+        // can be used
+        for (int rowIndex = from; rowIndex < to; rowIndex++) {
+            for (Contribution contribution : contributions) {
+                addOmegaDelta(contribution.dataPoint, contribution.embeddedSpaceVector,
+                        contribution.indexWinnerSameClass, contribution.embeddedWinnerSameClass,
+                        contribution.psiPlus, rowIndex);
+                addOmegaDelta(contribution.dataPoint, contribution.embeddedSpaceVector,
+                        contribution.indexWinnerOtherClass, contribution.embeddedWinnerOtherClass,
+                        contribution.psiMinus, rowIndex);
+            }
+        }
+    }
 
-        // when relevance learning, then compute omega changes
-        if (this.relevanceLearning) {
-            // compute omega changes
-            Matrix deltaDPlusDeltaOmega = this.omegaMatrix
-                    .times(dyadicProduct(substract(dataPoint, winningInformation.getWinnerSameClass())));
-            Matrix deltaDMinusDeltaOmega = this.omegaMatrix
-                    .times(dyadicProduct(substract(dataPoint, winningInformation.getWinnerOtherClass())));
-
-            // add to previously monitored changes
-            addOmegaDelta(psiPlus, psiMinus, deltaDPlusDeltaOmega, deltaDMinusDeltaOmega);
+    private void addOmegaDelta(DataPoint dataPoint, EmbeddedSpaceVector embeddedSpaceVector, int prototypeIndex,
+            double[] embeddedPrototype, double psi, int rowIndex) {
+        double factor = psi * (embeddedSpaceVector.getValue(rowIndex) - embeddedPrototype[rowIndex]);
+        // sparse data points only touch their non-zero columns
+        dataPoint.addTo(this.omegaDelta.getArray()[rowIndex], factor);
+        this.prototypeOmegaDeltaFactors[prototypeIndex][rowIndex] += factor;
+    }
+
+    /**
+     * subtracts the prototype part of all rank-1 omega deltas
+     */
+    private void finishOmegaDelta() {
+        double[][] omegaDeltaRows = this.omegaDelta.getArray();
+        for (int prototypeIndex = 0; prototypeIndex < this.prototypes.size(); prototypeIndex++) {
+            Prototype prototype = this.prototypes.get(prototypeIndex);
+            for (int rowIndex = 0; rowIndex < omegaDeltaRows.length; rowIndex++) {
+                prototype.addTo(omegaDeltaRows[rowIndex], -this.prototypeOmegaDeltaFactors[prototypeIndex][rowIndex]);
+            }
         }
+    }
 
+    private void addPrototypeDelta(int index, Vector difference, double factor, double[][] scaledTransposedOmegaRows,
+            int from, int to) {
+        double[] prototypeDelta = this.prototypeDeltas.get(index).getValues();
+        for (int column = from; column < to; column++) {
+            double change = scaledTransposedOmegaRows == null ? difference.getValue(column)
+                    : difference.dotProduct(scaledTransposedOmegaRows[column]);
+            prototypeDelta[column] += factor * change;
+        }
     }
 
-    private void addOmegaDelta(double psiPlus, double psiMinus, Matrix deltaDPlusDeltaOmega,
-            Matrix deltaDMinusDeltaOmega) {
-        this.omegaDelta.plusEquals(deltaDPlusDeltaOmega.times(psiPlus).plus(deltaDMinusDeltaOmega.times(psiMinus)));
+    /**
+     * @return the dimension of the prototypes
+     */
+    int getDataDimension() {
+        return this.prototypeDeltas.isEmpty() ? 0 : this.prototypeDeltas.get(0).getDimension();
     }
 
-    private void addPrototypeDelta(int index, Vector change) {
-        this.prototypeDeltas.get(index).setValues(add(this.prototypeDeltas.get(index), change));
+    /**
+     * @return the number of rows of the omega delta, 1 without relevance
+     *         learning
+     */
+    int getOmegaDeltaRows() {
+        return this.omegaDelta.getRowDimension();
     }
 
     public OmegaMatrix getUpdatedOmegaMatrix() {
@@ -228,6 +379,10 @@ public class ProposedUpdate {
      */
     private void finishUpdate() {
 
+        if (this.relevanceLearning) {
+            finishOmegaDelta();
+        }
+
         // normalizes deltas
         normalizeDeltas();
 
@@ -286,4 +441,59 @@ public class ProposedUpdate {
         }
         return this.updatedPrototypes;
     }
+
+    /**
+     * everything a single data point adds to the deltas, see
+     * {@link ProposedUpdate#prepare(DataPoint, double)}
+     */
+    static class Contribution {
+
+        final DataPoint dataPoint;
+        final EmbeddedSpaceVector embeddedSpaceVector;
+        final int indexWinnerSameClass;
+        final int indexWinnerOtherClass;
+        /**
+         * the factors of the prototype deltas, <code>-2 * psi</code>
+         */
+        final double prototypeFactorSameClass;
+        final double prototypeFactorOtherClass;
+        final double psiPlus;
+        final double psiMinus;
+        final Vector differenceSameClass;
+        final Vector differenceOtherClass;
+        /**
+         * the mapped winners, rows of the {@link PrototypeTable} which must
+         * not be modified - <code>null</code> without relevance learning
+         */
+        final double[] embeddedWinnerSameClass;
+        final double[] embeddedWinnerOtherClass;
+        final double margin;
+
+        Contribution(DataPoint dataPoint, EmbeddedSpaceVector embeddedSpaceVector, int indexWinnerSameClass,
+                int indexWinnerOtherClass, double prototypeFactorSameClass, double prototypeFactorOtherClass,
+                double psiPlus, double psiMinus, Vector differenceSameClass, Vector differenceOtherClass,
+                double[] embeddedWinnerSameClass, double[] embeddedWinnerOtherClass, double margin) {
+            this.dataPoint = dataPoint;
+            this.embeddedSpaceVector = embeddedSpaceVector;
+            this.indexWinnerSameClass = indexWinnerSameClass;
+            this.indexWinnerOtherClass = indexWinnerOtherClass;
+            this.prototypeFactorSameClass = prototypeFactorSameClass;
+            this.prototypeFactorOtherClass = prototypeFactorOtherClass;
+            this.psiPlus = psiPlus;
+            this.psiMinus = psiMinus;
+            this.differenceSameClass = differenceSameClass;
+            this.differenceOtherClass = differenceOtherClass;
+            this.embeddedWinnerSameClass = embeddedWinnerSameClass;
+            this.embeddedWinnerOtherClass = embeddedWinnerOtherClass;
+            this.margin = margin;
+        }
+
+        /**
+         * @return the margin <code>(d- - d+) / (d+ + d-)</code> of the data
+         *         point
+         */
+        double getMargin() {
+            return this.margin;
+        }
+    }
 }
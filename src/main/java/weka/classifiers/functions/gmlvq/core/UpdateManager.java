@@ -7,6 +7,7 @@ import weka.classifiers.functions.gmlvq.model.DataPoint;
 import weka.classifiers.functions.gmlvq.model.Observer;
 import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
 import weka.classifiers.functions.gmlvq.model.Prototype;
+import weka.classifiers.functions.gmlvq.model.WinnerBounds;
 import weka.classifiers.functions.gmlvq.utilities.DataRandomizer;
 import weka.classifiers.functions.gmlvq.utilities.LinearAlgebraicCalculations;
 import weka.classifiers.functions.gmlvq.visualization.Visualizer;
@@ -64,6 +65,11 @@ public class UpdateManager implements Serializable {
 
     private Map<CostFunctionValue, Double> currentCostValues;
 
+    /**
+     * follows the accepted updates, <code>null</code> if disabled
+     */
+    private transient WinnerBounds winnerBounds;
+
     public UpdateManager(GMLVQCore gmlvqCore, CostFunctionCalculator costFunctionCalculator, Observer observer)
             throws InterruptedException, ExecutionException {
         this.dataPoints = gmlvqCore.getDataPoints();
@@ -79,6 +85,7 @@ public class UpdateManager implements Serializable {
         this.relevanceLearning = GMLVQ.isRelevanceLearning(this.omegaMatrix);
         this.costFunctionCalculator = costFunctionCalculator;
         this.observer = observer;
+        this.winnerBounds = gmlvqCore.getWinnerBounds();
 
         this.currentCostValues = this.costFunctionCalculator.evaluate(this.dataPoints, this.prototypes,
                 this.omegaMatrix);
@@ -186,6 +193,9 @@ public class UpdateManager implements Serializable {
         if (this.observer != null) {
             this.observer.updateCostFunctions(this.currentCostValues);
         }
+        if (this.winnerBounds != null) {
+            this.winnerBounds.advance(this.prototypes, this.omegaMatrix);
+        }
 
         // deregister all mappings which are not relevant any|more
         for (DataPoint dataPoint : this.dataPoints) {
@@ -10,11 +10,17 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import weka.classifiers.functions.gmlvq.core.ExecutionPlan;
+import weka.classifiers.functions.gmlvq.core.FeatureBlocks;
 import weka.classifiers.functions.gmlvq.core.GradientDescent;
+import weka.classifiers.functions.gmlvq.core.ParallelStrategy;
 import weka.classifiers.functions.gmlvq.core.SigmoidFunction;
 import weka.classifiers.functions.gmlvq.model.DataPoint;
 import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
 import weka.classifiers.functions.gmlvq.model.Prototype;
+import weka.classifiers.functions.gmlvq.model.PrototypeTable;
+import weka.classifiers.functions.gmlvq.model.WinnerBounds;
+import weka.classifiers.functions.gmlvq.model.WinnerSearch;
 import weka.classifiers.functions.gmlvq.model.WinningInformation;
 import weka.classifiers.functions.gmlvq.utilities.DataRandomizer;
 
@@ -40,6 +46,14 @@ public abstract class AbstractCostFunction implements CostFunction {
 
     private transient ExecutorService executorService;
     protected SigmoidFunction sigmoidFunction;
+    /**
+     * allows to skip searches of winners, <code>null</code> if disabled
+     */
+    private transient WinnerBounds winnerBounds;
+    /**
+     * how the evaluation is split among threads
+     */
+    private ExecutionPlan executionPlan = ExecutionPlan.createDefault(ParallelStrategy.AUTOMATIC);
 
     public AbstractCostFunction(SigmoidFunction sigmoidFunction) {
 
@@ -52,19 +66,45 @@ public abstract class AbstractCostFunction implements CostFunction {
      * @param dataPoints
      * @param prototypes
      * @param omegaMatrix
-     * @return
+     * @return the costs averaged over the weights of the data points
      * @throws ExecutionException
      * @throws InterruptedException
+     * @throws IllegalArgumentException
+     *             if the data points do not have a positive total weight
      */
     @Override
     public double evaluate(List<DataPoint> dataPoints, List<Prototype> prototypes, OmegaMatrix omegaMatrix)
             throws InterruptedException, ExecutionException {
 
+        double totalWeight = 0;
+        for (DataPoint dataPoint : dataPoints) {
+            totalWeight += dataPoint.getWeight();
+        }
+        if (!(totalWeight > 0)) {
+            throw new IllegalArgumentException("total weight of the data points has to be positive, but was "
+                    + totalWeight);
+        }
+
+        ExecutionPlan executionPlan = this.executionPlan;
+        int numberOfThreads = executionPlan.getNumberOfThreads();
+        if (executionPlan.getParallelStrategy().resolve(dataPoints.size(), numberOfThreads,
+                omegaMatrix) == ParallelStrategy.FEATURES) {
+            // few data points - map them in blocks of rows, the remaining
+            // searches of winners are cheap
+            FeatureBlocks.map(dataPoints, omegaMatrix, this.executorService, numberOfThreads);
+        }
+
         // parallel job creation
         Set<Future<Double>> results = new HashSet<Future<Double>>();
-        for (List<DataPoint> partion : DataRandomizer.partition(dataPoints, processsors)) {
-
-            results.add(this.executorService.submit(new CostCalculator(partion, prototypes, omegaMatrix)));
+        WinnerBounds.Transition transition = this.winnerBounds == null ? null
+                : this.winnerBounds.transitionTo(prototypes, omegaMatrix);
+        // the prototypes are mapped once for all partitions
+        PrototypeTable prototypeTable = new PrototypeTable(prototypes, omegaMatrix,
+                executionPlan.isIndexedWinnerSearch());
+        for (List<DataPoint> partion : DataRandomizer.partition(dataPoints, numberOfThreads)) {
+
+            results.add(this.executorService
+                    .submit(new CostCalculator(partion, prototypeTable, transition, executionPlan)));
         }
 
         double error = 0;
@@ -73,7 +113,7 @@ public abstract class AbstractCostFunction implements CostFunction {
             error += result.get();
         }
 
-        return error / dataPoints.size();
+        return error / totalWeight;
     }
 
     /**
@@ -84,27 +124,54 @@ public abstract class AbstractCostFunction implements CostFunction {
      */
     protected abstract double evaluateWinningInformation(WinningInformation winningInformation);
 
+    /**
+     * @param winnerBounds
+     *            the bounds which allow to skip searches of winners,
+     *            <code>null</code> searches all winners
+     */
+    public void setWinnerBounds(WinnerBounds winnerBounds) {
+        this.winnerBounds = winnerBounds;
+    }
+
+    /**
+     * @param executionPlan
+     *            how the evaluation is split among threads
+     */
+    public void setExecutionPlan(ExecutionPlan executionPlan) {
+        this.executionPlan = executionPlan;
+    }
+
     private class CostCalculator implements Callable<Double> {
 
         private List<DataPoint> dataPoints;
+        private PrototypeTable prototypeTable;
         private List<Prototype> prototypes;
         private OmegaMatrix omegaMatrix;
+        private WinnerBounds.Transition transition;
+        private ExecutionPlan executionPlan;
 
-        public CostCalculator(List<DataPoint> dataPoints, List<Prototype> prototypes, OmegaMatrix omegaMatrix) {
+        public CostCalculator(List<DataPoint> dataPoints, PrototypeTable prototypeTable,
+                WinnerBounds.Transition transition, ExecutionPlan executionPlan) {
 
             this.dataPoints = dataPoints;
-            this.prototypes = prototypes;
-            this.omegaMatrix = omegaMatrix;
+            this.prototypeTable = prototypeTable;
+            this.prototypes = prototypeTable.getPrototypes();
+            this.omegaMatrix = prototypeTable.getOmegaMatrix();
+            this.transition = transition;
+            this.executionPlan = executionPlan;
         }
 
         @Override
         public Double call() {
 
+            // all winners of the partition in blocks
+            new WinnerSearch(this.prototypeTable, this.transition, this.executionPlan.getBlockSize())
+                    .determineWinningInformation(this.dataPoints);
             double error = 0;
             for (DataPoint dataPoint : this.dataPoints) {
                 WinningInformation winningInformation = dataPoint.getEmbeddedSpaceVector(this.omegaMatrix)
                         .getWinningInformation(this.prototypes);
-                error += evaluateWinningInformation(winningInformation);
+                error += dataPoint.getWeight() * evaluateWinningInformation(winningInformation);
             }
             return error;
         }
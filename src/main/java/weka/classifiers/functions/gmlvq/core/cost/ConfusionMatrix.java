@@ -123,13 +123,16 @@ public class ConfusionMatrix implements Serializable {
     private void computeConfusionMatrix(List<DataPoint> chosenDataPoints, List<Prototype> prototypes,
             OmegaMatrix omegaMatrix) {
 
-        int numberOfPositiveInstances = 0;
+        // weighted number of instances
+        double numberOfPositiveInstances = 0;
+        double numberOfNegativeInstance = 0;
         for (DataPoint dataPoint : chosenDataPoints) {
             if (dataPoint.getClassLabel() == POSITIVE_CLASS_LABEL) {
-                numberOfPositiveInstances++;
+                numberOfPositiveInstances += dataPoint.getWeight();
+            } else {
+                numberOfNegativeInstance += dataPoint.getWeight();
             }
         }
-        int numberOfNegativeInstance = chosenDataPoints.size() - numberOfPositiveInstances;
 
         for (DataPoint dataPoint : chosenDataPoints) {
             evaluateDataPoint(dataPoint, prototypes, omegaMatrix);
@@ -138,7 +141,7 @@ public class ConfusionMatrix implements Serializable {
         normalizeValues(numberOfPositiveInstances, numberOfNegativeInstance);
     }
 
-    private void normalizeValues(int numberOfPositiveInstances, int numberOfNegativeInstance) {
+    private void normalizeValues(double numberOfPositiveInstances, double numberOfNegativeInstance) {
         if (numberOfPositiveInstances > 0) {
             this.truePositiveApprox /= numberOfPositiveInstances;
             this.falseNegativeApprox /= numberOfPositiveInstances;
@@ -172,17 +175,18 @@ public class ConfusionMatrix implements Serializable {
                 .evaluate((winningInformation.getDistanceOtherClass() - winningInformation.getDistanceSameClass())
                         / (winningInformation.getDistanceSameClass() + winningInformation.getDistanceOtherClass()));
 
+        double weight = dataPoint.getWeight();
         if (dataPoint.getClassLabel() == POSITIVE_CLASS_LABEL) {
             if (correctlyClassified) {
-                this.truePositiveApprox += fmu;
+                this.truePositiveApprox += weight * fmu;
             } else {
-                this.falseNegativeApprox += 1 - fmu;
+                this.falseNegativeApprox += weight * (1 - fmu);
             }
         } else {
             if (correctlyClassified) {
-                this.trueNegativeApprox += fmu;
+                this.trueNegativeApprox += weight * fmu;
             } else {
-                this.falsePositiveApprox += 1 - fmu;
+                this.falsePositiveApprox += weight * (1 - fmu);
             }
         }
     }
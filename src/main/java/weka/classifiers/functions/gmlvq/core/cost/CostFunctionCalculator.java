@@ -1,9 +1,11 @@
 package weka.classifiers.functions.gmlvq.core.cost;
 
+import weka.classifiers.functions.gmlvq.core.ExecutionPlan;
 import weka.classifiers.functions.gmlvq.core.SigmoidFunction;
 import weka.classifiers.functions.gmlvq.model.DataPoint;
 import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
 import weka.classifiers.functions.gmlvq.model.Prototype;
+import weka.classifiers.functions.gmlvq.model.WinnerBounds;
 
 import java.io.Serializable;
 import java.util.*;
@@ -90,6 +92,31 @@ public class CostFunctionCalculator implements Serializable {
         }
     }
 
+    /**
+     * @param winnerBounds
+     *            the bounds which allow to skip searches of winners,
+     *            <code>null</code> searches all winners
+     */
+    public void setWinnerBounds(WinnerBounds winnerBounds) {
+        for (CostFunction costFunction : this.persistentCostFunctions.values()) {
+            if (costFunction instanceof AbstractCostFunction) {
+                ((AbstractCostFunction) costFunction).setWinnerBounds(winnerBounds);
+            }
+        }
+    }
+
+    /**
+     * @param executionPlan
+     *            how the evaluations are split among threads
+     */
+    public void setExecutionPlan(ExecutionPlan executionPlan) {
+        for (CostFunction costFunction : this.persistentCostFunctions.values()) {
+            if (costFunction instanceof AbstractCostFunction) {
+                ((AbstractCostFunction) costFunction).setExecutionPlan(executionPlan);
+            }
+        }
+    }
+
     public double update(DataPoint dataPoint) {
         double result = updateInternal(dataPoint);
         // System.out.println("update: " + result);
@@ -0,0 +1,127 @@
+package weka.classifiers.functions.gmlvq.inference;
+
+/**
+ * Stores omega rows and embedded prototypes as IEEE 754 half precision floats.
+ * Values are widened on the fly and all sums are accumulated in double
+ * precision.
+ *
+ * @author S
+ *
+ */
+class Float16InferenceModel extends QuantizedInferenceModel {
+
+    private final short[][] omegaMatrix;
+    private final short[][] embeddedPrototypes;
+
+    Float16InferenceModel(InferenceModel model) {
+        super(model);
+        this.omegaMatrix = this.relevanceLearning ? toHalf(model.getOmegaMatrix()) : null;
+        this.embeddedPrototypes = toHalf(model.getEmbeddedPrototypes());
+    }
+
+    @Override
+    protected void computeDistances(double[] values, double[] distances) {
+        double[] embeddedValues;
+        if (this.relevanceLearning) {
+            embeddedValues = new double[this.omegaDimension];
+            for (int rowIndex = 0; rowIndex < this.omegaDimension; rowIndex++) {
+                short[] row = this.omegaMatrix[rowIndex];
+                double sum = 0;
+                for (int columnIndex = 0; columnIndex < this.dataDimension; columnIndex++) {
+                    sum += values[columnIndex] * toFloat(row[columnIndex]);
+                }
+                embeddedValues[rowIndex] = sum;
+            }
+        } else {
+            embeddedValues = values;
+        }
+
+        for (int prototypeIndex = 0; prototypeIndex < distances.length; prototypeIndex++) {
+            short[] prototype = this.embeddedPrototypes[prototypeIndex];
+            double sum = 0;
+            for (int index = 0; index < this.omegaDimension; index++) {
+                double rawValue = embeddedValues[index] - toFloat(prototype[index]);
+                sum += rawValue * rawValue;
+            }
+            distances[prototypeIndex] = sum;
+        }
+    }
+
+    private static short[][] toHalf(double[][] values) {
+        short[][] halfValues = new short[values.length][];
+        for (int rowIndex = 0; rowIndex < values.length; rowIndex++) {
+            halfValues[rowIndex] = new short[values[rowIndex].length];
+            for (int columnIndex = 0; columnIndex < values[rowIndex].length; columnIndex++) {
+                halfValues[rowIndex][columnIndex] = toHalf((float) values[rowIndex][columnIndex]);
+            }
+        }
+        return halfValues;
+    }
+
+    /**
+     * converts a float to the bits of the closest half precision value (round
+     * half to even)
+     */
+    static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int magnitude = bits & 0x7fffffff;
+        // NaN, infinity or too large to be represented
+        if (magnitude >= 0x47800000) {
+            if (magnitude > 0x7f800000) {
+                return (short) (sign | 0x7e00);
+            }
+            return (short) (sign | 0x7c00);
+        }
+        // normal half precision value
+        if (magnitude >= 0x38800000) {
+            int rounded = magnitude + 0x0fff + ((magnitude >>> 13) & 1);
+            return (short) (sign | ((rounded - 0x38000000) >>> 13));
+        }
+        // too small, even for a subnormal value
+        if (magnitude < 0x33000000) {
+            return (short) sign;
+        }
+        // subnormal half precision value
+        int exponent = magnitude >>> 23;
+        int mantissa = (magnitude & 0x7fffff) | 0x800000;
+        int shift = 126 - exponent;
+        int halfMantissa = mantissa >>> shift;
+        int remainder = mantissa & ((1 << shift) - 1);
+        int halfway = 1 << (shift - 1);
+        if (remainder > halfway || (remainder == halfway && (halfMantissa & 1) != 0)) {
+            halfMantissa++;
+        }
+        return (short) (sign | halfMantissa);
+    }
+
+    /**
+     * converts the bits of a half precision value to a float
+     */
+    static float toFloat(short half) {
+        int bits = half & 0xffff;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+        if (exponent == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            // zero or subnormal
+            float magnitude = mantissa * 0x1p-24f;
+            return sign == 0 ? magnitude : -magnitude;
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+
+    @Override
+    public long getParameterBytes() {
+        long bytes = this.relevanceLearning ? 2L * this.omegaDimension * this.dataDimension : 0;
+        return bytes + 2L * this.embeddedPrototypes.length * this.omegaDimension;
+    }
+
+    @Override
+    public Precision getPrecision() {
+        return Precision.FLOAT16;
+    }
+}
@@ -0,0 +1,260 @@
+package weka.classifiers.functions.gmlvq.inference;
+
+import java.util.Arrays;
+
+/**
+ * The frozen, inference-only representation of a trained GMLVQ classifier. In
+ * contrast to the serialized classifier, it contains nothing but what is needed
+ * to classify new data: the omega matrix, the prototypes with their class
+ * labels, the class and attribute names as well as the final sigmoid sigma
+ * value.<br />
+ * <br />
+ * All values are kept as primitive arrays and the prototypes are mapped to the
+ * embedded space once upon creation, so scoring a data point costs exactly one
+ * projection and one scan over the embedded prototypes. This class is
+ * immutable and can be shared between threads.<br />
+ * <br />
+ * Instances are either created by the classifier after training or loaded from
+ * a file written by {@link InferenceModelFormat}.
+ *
+ * @author S
+ *
+ */
+public class InferenceModel {
+
+    /**
+     * the numeric cutoff used to limit calculations - identical to the one used
+     * during training
+     */
+    static final double NUMERIC_CUTOFF = 1E-9;
+
+    private final int dataDimension;
+    private final int omegaDimension;
+    /**
+     * the mapping rule of dimension <code>omegaDimension x dataDimension</code>
+     * - <code>null</code> when no relevance learning was performed
+     */
+    private final double[][] omegaMatrix;
+    private final double[][] prototypes;
+    private final double[] prototypeClassLabels;
+    /**
+     * the prototypes mapped to the embedded space
+     */
+    private final double[][] embeddedPrototypes;
+    private final int numberOfClasses;
+    private final String[] classNames;
+    private final String[] attributeNames;
+    private final double sigmoidSigma;
+
+    public InferenceModel(double[][] omegaMatrix, double[][] prototypes, double[] prototypeClassLabels,
+            int numberOfClasses, String[] classNames, String[] attributeNames, double sigmoidSigma) {
+        if (prototypes.length == 0) {
+            throw new IllegalArgumentException("an inference model requires at least one prototype");
+        }
+        if (prototypes.length != prototypeClassLabels.length) {
+            throw new IllegalArgumentException("number of prototypes " + prototypes.length
+                    + " does not match number of class labels " + prototypeClassLabels.length);
+        }
+        this.dataDimension = prototypes[0].length;
+        if (omegaMatrix != null && omegaMatrix.length > 0 && omegaMatrix[0].length != this.dataDimension) {
+            throw new IllegalArgumentException("omega matrix has " + omegaMatrix[0].length
+                    + " columns, but prototypes are of dimension " + this.dataDimension);
+        }
+        this.omegaMatrix = omegaMatrix;
+        this.omegaDimension = omegaMatrix != null ? omegaMatrix.length : this.dataDimension;
+        this.prototypes = prototypes;
+        this.prototypeClassLabels = prototypeClassLabels;
+        this.numberOfClasses = numberOfClasses;
+        this.classNames = classNames;
+        this.attributeNames = attributeNames;
+        this.sigmoidSigma = sigmoidSigma;
+
+        this.embeddedPrototypes = new double[prototypes.length][];
+        for (int prototypeIndex = 0; prototypeIndex < prototypes.length; prototypeIndex++) {
+            this.embeddedPrototypes[prototypeIndex] = project(prototypes[prototypeIndex]);
+        }
+    }
+
+    /**
+     * maps a data point to the embedded space
+     *
+     * @param values
+     *            the feature values of the data point (without class)
+     * @return the embedded representation - the input itself when no relevance
+     *         learning was performed
+     */
+    public double[] project(double[] values) {
+        if (values.length != this.dataDimension) {
+            throw new IllegalArgumentException(
+                    "expected " + this.dataDimension + " feature values, but got " + values.length);
+        }
+        if (this.omegaMatrix == null) {
+            return values;
+        }
+        double[] product = new double[this.omegaDimension];
+        for (int rowIndex = 0; rowIndex < this.omegaDimension; rowIndex++) {
+            double[] row = this.omegaMatrix[rowIndex];
+            double sum = 0;
+            for (int columnIndex = 0; columnIndex < this.dataDimension; columnIndex++) {
+                sum += values[columnIndex] * row[columnIndex];
+            }
+            product[rowIndex] = sum;
+        }
+        return product;
+    }
+
+    /**
+     * determines the class label of the closest prototype
+     *
+     * @param values
+     *            the feature values of the data point (without class)
+     * @return the class label of the best matching unit
+     */
+    public double classify(double[] values) {
+        double[] embeddedValues = project(values);
+        double bmuDistance = Double.MAX_VALUE;
+        int bmuIndex = -1;
+        for (int prototypeIndex = 0; prototypeIndex < this.embeddedPrototypes.length; prototypeIndex++) {
+            double distance = squaredEuclideanDistance(embeddedValues, this.embeddedPrototypes[prototypeIndex]);
+            if (distance < bmuDistance) {
+                bmuDistance = distance;
+                bmuIndex = prototypeIndex;
+            }
+        }
+        return this.prototypeClassLabels[bmuIndex];
+    }
+
+    /**
+     * computes the class distribution the same way the classifier does: for
+     * each class the sigmoid of the relative distance difference between the
+     * closest prototype of this class and the closest prototype of any other
+     * class is evaluated, finally all values are normalized
+     *
+     * @param values
+     *            the feature values of the data point (without class)
+     * @return the normalized class distribution
+     */
+    public double[] distribution(double[] values) {
+        double[] embeddedValues = project(values);
+        double[] distances = new double[this.embeddedPrototypes.length];
+        for (int prototypeIndex = 0; prototypeIndex < this.embeddedPrototypes.length; prototypeIndex++) {
+            distances[prototypeIndex] = squaredEuclideanDistance(embeddedValues,
+                    this.embeddedPrototypes[prototypeIndex]);
+        }
+        return distributionFromDistances(distances, this.prototypeClassLabels, this.numberOfClasses,
+                this.sigmoidSigma);
+    }
+
+    /**
+     * evaluates the class distribution based on the distances of a data point
+     * to all prototypes
+     */
+    static double[] distributionFromDistances(double[] distances, double[] prototypeClassLabels,
+            int numberOfClasses, double sigmoidSigma) {
+        double[] distribution = new double[numberOfClasses];
+        double sum = 0;
+        for (int classIndex = 0; classIndex < numberOfClasses; classIndex++) {
+            double dplus = Double.MAX_VALUE;
+            double dminus = Double.MAX_VALUE;
+            for (int prototypeIndex = 0; prototypeIndex < distances.length; prototypeIndex++) {
+                if (prototypeClassLabels[prototypeIndex] == classIndex) {
+                    dplus = Math.min(dplus, distances[prototypeIndex]);
+                } else {
+                    dminus = Math.min(dminus, distances[prototypeIndex]);
+                }
+            }
+            double scalingFactor = Math.max(dplus + dminus, NUMERIC_CUTOFF);
+            distribution[classIndex] = 1 / (1 + Math.exp(-sigmoidSigma * (dminus - dplus) / scalingFactor));
+            sum += distribution[classIndex];
+        }
+
+        for (int classIndex = 0; classIndex < numberOfClasses; classIndex++) {
+            distribution[classIndex] /= sum;
+        }
+        return distribution;
+    }
+
+    static double squaredEuclideanDistance(double[] first, double[] second) {
+        double sum = 0;
+        for (int attributeIndex = 0; attributeIndex < first.length; attributeIndex++) {
+            double rawValue = first[attributeIndex] - second[attributeIndex];
+            sum += rawValue * rawValue;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of bytes occupied by omega matrix and prototypes
+     */
+    public long getParameterBytes() {
+        long bytes = isRelevanceLearning() ? 8L * this.omegaDimension * this.dataDimension : 0;
+        return bytes + 8L * this.prototypes.length * (this.dataDimension + this.omegaDimension + 1);
+    }
+
+    public int getDataDimension() {
+        return this.dataDimension;
+    }
+
+    public int getOmegaDimension() {
+        return this.omegaDimension;
+    }
+
+    public boolean isRelevanceLearning() {
+        return this.omegaMatrix != null;
+    }
+
+    public double[][] getOmegaMatrix() {
+        return this.omegaMatrix;
+    }
+
+    public double[][] getPrototypes() {
+        return this.prototypes;
+    }
+
+    /**
+     * @return the prototypes mapped to the embedded space
+     */
+    public double[][] getEmbeddedPrototypes() {
+        return this.embeddedPrototypes;
+    }
+
+    public double[] getPrototypeClassLabels() {
+        return this.prototypeClassLabels;
+    }
+
+    public int getNumberOfPrototypes() {
+        return this.prototypes.length;
+    }
+
+    public int getNumberOfClasses() {
+        return this.numberOfClasses;
+    }
+
+    public String[] getClassNames() {
+        return this.classNames;
+    }
+
+    /**
+     * @param classLabel
+     *            a class label as returned by {@link #classify(double[])}
+     * @return the name of this class
+     */
+    public String getClassName(double classLabel) {
+        return this.classNames[(int) classLabel];
+    }
+
+    public String[] getAttributeNames() {
+        return this.attributeNames;
+    }
+
+    public double getSigmoidSigma() {
+        return this.sigmoidSigma;
+    }
+
+    @Override
+    public String toString() {
+        return "InferenceModel " + this.dataDimension + "D -> " + this.omegaDimension + "D, "
+                + this.prototypes.length + " prototypes, classes " + Arrays.toString(this.classNames);
+    }
+
+}
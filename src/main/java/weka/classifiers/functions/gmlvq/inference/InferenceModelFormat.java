@@ -0,0 +1,183 @@
+package weka.classifiers.functions.gmlvq.inference;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes {@link InferenceModel}s in a compact, versioned binary
+ * format. Only what is needed for inference is stored - neither training data
+ * nor any state of the learning process end up in the file.<br />
+ * <br />
+ * Layout (big-endian):
+ * <ul>
+ * <li><code>int</code> magic number {@link #MAGIC_NUMBER}</li>
+ * <li><code>int</code> format version {@link #VERSION}</li>
+ * <li><code>int</code> data dimension, <code>int</code> omega dimension,
+ * <code>int</code> number of prototypes, <code>int</code> number of classes,
+ * <code>byte</code> relevance learning flag</li>
+ * <li><code>double</code> sigmoid sigma</li>
+ * <li>the omega matrix row by row (only if relevance learning was
+ * performed)</li>
+ * <li>all prototype class labels, followed by all prototypes row by row</li>
+ * <li><code>int</code> number of class names and each name, followed by one
+ * name per attribute</li>
+ * </ul>
+ * Strings are stored as <code>int</code> byte length followed by their UTF-8
+ * bytes. Files are read by memory mapping them, so loading a model boils down
+ * to bulk copies out of the page cache.
+ *
+ * @author S
+ *
+ */
+public final class InferenceModelFormat {
+
+    /**
+     * "GMLV" in ASCII
+     */
+    public static final int MAGIC_NUMBER = 0x474D4C56;
+    /**
+     * the current version of the format, increased upon each incompatible
+     * change
+     */
+    public static final int VERSION = 1;
+
+    private InferenceModelFormat() {
+
+    }
+
+    /**
+     * writes the given model to a file, an existing file will be overwritten
+     *
+     * @param model
+     *            the model to write
+     * @param file
+     *            the target file
+     * @throws IOException
+     */
+    public static void write(InferenceModel model, File file) throws IOException {
+        DataOutputStream outputStream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            outputStream.writeInt(MAGIC_NUMBER);
+            outputStream.writeInt(VERSION);
+            outputStream.writeInt(model.getDataDimension());
+            outputStream.writeInt(model.getOmegaDimension());
+            outputStream.writeInt(model.getNumberOfPrototypes());
+            outputStream.writeInt(model.getNumberOfClasses());
+            outputStream.writeByte(model.isRelevanceLearning() ? 1 : 0);
+            outputStream.writeDouble(model.getSigmoidSigma());
+
+            if (model.isRelevanceLearning()) {
+                for (double[] row : model.getOmegaMatrix()) {
+                    writeDoubles(outputStream, row);
+                }
+            }
+            writeDoubles(outputStream, model.getPrototypeClassLabels());
+            for (double[] prototype : model.getPrototypes()) {
+                writeDoubles(outputStream, prototype);
+            }
+
+            writeStrings(outputStream, model.getClassNames());
+            writeStrings(outputStream, model.getAttributeNames());
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * reads a model previously written by
+     * {@link #write(InferenceModel, File)}
+     *
+     * @param file
+     *            the file to read
+     * @return the model
+     * @throws IOException
+     *             if the file cannot be read or is no model file of a supported
+     *             version
+     */
+    public static InferenceModel read(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, file.getName());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static InferenceModel read(ByteBuffer buffer, String source) throws IOException {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC_NUMBER) {
+            throw new IOException(source + " is no GMLVQ model file");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException(
+                    source + " is of format version " + version + ", only version " + VERSION + " is supported");
+        }
+        int dataDimension = buffer.getInt();
+        int omegaDimension = buffer.getInt();
+        int numberOfPrototypes = buffer.getInt();
+        int numberOfClasses = buffer.getInt();
+        boolean relevanceLearning = buffer.get() != 0;
+        double sigmoidSigma = buffer.getDouble();
+
+        double[][] omegaMatrix = null;
+        if (relevanceLearning) {
+            omegaMatrix = new double[omegaDimension][];
+            for (int rowIndex = 0; rowIndex < omegaDimension; rowIndex++) {
+                omegaMatrix[rowIndex] = readDoubles(buffer, dataDimension);
+            }
+        }
+        double[] prototypeClassLabels = readDoubles(buffer, numberOfPrototypes);
+        double[][] prototypes = new double[numberOfPrototypes][];
+        for (int prototypeIndex = 0; prototypeIndex < numberOfPrototypes; prototypeIndex++) {
+            prototypes[prototypeIndex] = readDoubles(buffer, dataDimension);
+        }
+
+        String[] classNames = readStrings(buffer);
+        String[] attributeNames = readStrings(buffer);
+
+        return new InferenceModel(omegaMatrix, prototypes, prototypeClassLabels, numberOfClasses, classNames,
+                attributeNames, sigmoidSigma);
+    }
+
+    private static void writeDoubles(DataOutputStream outputStream, double[] values) throws IOException {
+        for (double value : values) {
+            outputStream.writeDouble(value);
+        }
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int length) {
+        double[] values = new double[length];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + length * 8);
+        return values;
+    }
+
+    private static void writeStrings(DataOutputStream outputStream, String[] values) throws IOException {
+        outputStream.writeInt(values.length);
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            outputStream.writeInt(bytes.length);
+            outputStream.write(bytes);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        String[] values = new String[buffer.getInt()];
+        for (int index = 0; index < values.length; index++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            values[index] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,168 @@
+package weka.classifiers.functions.gmlvq.inference;
+
+/**
+ * Stores omega rows and embedded prototypes as signed bytes with one scale per
+ * row. Data points are quantized the same way upon scoring, so projection and
+ * distance computation reduce to integer dot products. The squared distance is
+ * evaluated as <code>|p|^2 + |w|^2 - 2 p'w</code> with precomputed prototype
+ * norms.<br />
+ * <br />
+ * A data point is quantized with a single scale, so features with small
+ * ranges next to ones with large ranges (e.g. unnormalized data) would be
+ * collapsed to few levels. Therefore, each feature is first multiplied by the
+ * largest absolute value of its column of the omega matrix, and the column is
+ * divided by it: the projection stays the same, but the quantization error of
+ * each feature is bounded by its contribution to the projection rather than
+ * by its range. Without relevance learning, data points are quantized in the
+ * data space, where features with small ranges contribute little to the
+ * distances anyway.
+ *
+ * @author S
+ *
+ */
+class Int8InferenceModel extends QuantizedInferenceModel {
+
+    private static final int MAXIMAL_QUANTIZED_VALUE = 127;
+    /**
+     * number of products which can safely be summed up in an
+     * <code>int</code>: <code>2^16 * 127^2 &lt; 2^31</code>
+     */
+    private static final int ACCUMULATION_BLOCK_SIZE = 1 << 16;
+
+    private final byte[][] omegaMatrix;
+    private final float[] omegaScales;
+    /**
+     * the largest absolute value of each column of the omega matrix, which
+     * the features are multiplied with before quantization
+     */
+    private final float[] featureScales;
+    private final byte[][] embeddedPrototypes;
+    private final float[] prototypeScales;
+    private final double[] prototypeSquaredNorms;
+
+    Int8InferenceModel(InferenceModel model) {
+        super(model);
+        if (this.relevanceLearning) {
+            double[][] omega = model.getOmegaMatrix();
+            this.featureScales = new float[this.dataDimension];
+            for (int column = 0; column < this.dataDimension; column++) {
+                double maximalAbsoluteValue = 0;
+                for (double[] row : omega) {
+                    maximalAbsoluteValue = Math.max(maximalAbsoluteValue, Math.abs(row[column]));
+                }
+                this.featureScales[column] = maximalAbsoluteValue == 0 ? 1 : (float) maximalAbsoluteValue;
+            }
+            this.omegaMatrix = new byte[omega.length][];
+            this.omegaScales = new float[omega.length];
+            double[] scaledRow = new double[this.dataDimension];
+            for (int rowIndex = 0; rowIndex < omega.length; rowIndex++) {
+                for (int column = 0; column < this.dataDimension; column++) {
+                    scaledRow[column] = omega[rowIndex][column] / this.featureScales[column];
+                }
+                this.omegaMatrix[rowIndex] = new byte[this.dataDimension];
+                this.omegaScales[rowIndex] = quantize(scaledRow, this.omegaMatrix[rowIndex]);
+            }
+        } else {
+            this.omegaMatrix = null;
+            this.omegaScales = null;
+            this.featureScales = null;
+        }
+
+        double[][] prototypes = model.getEmbeddedPrototypes();
+        this.embeddedPrototypes = new byte[prototypes.length][];
+        this.prototypeScales = new float[prototypes.length];
+        this.prototypeSquaredNorms = new double[prototypes.length];
+        for (int prototypeIndex = 0; prototypeIndex < prototypes.length; prototypeIndex++) {
+            byte[] quantizedPrototype = new byte[this.omegaDimension];
+            float scale = quantize(prototypes[prototypeIndex], quantizedPrototype);
+            this.embeddedPrototypes[prototypeIndex] = quantizedPrototype;
+            this.prototypeScales[prototypeIndex] = scale;
+            this.prototypeSquaredNorms[prototypeIndex] = (double) scale * scale
+                    * dot(quantizedPrototype, quantizedPrototype);
+        }
+    }
+
+    @Override
+    protected void computeDistances(double[] values, double[] distances) {
+        double[] embeddedValues;
+        if (this.relevanceLearning) {
+            double[] scaledValues = new double[this.dataDimension];
+            for (int column = 0; column < this.dataDimension; column++) {
+                scaledValues[column] = values[column] * this.featureScales[column];
+            }
+            byte[] quantizedValues = new byte[this.dataDimension];
+            float valueScale = quantize(scaledValues, quantizedValues);
+            embeddedValues = new double[this.omegaDimension];
+            for (int rowIndex = 0; rowIndex < this.omegaDimension; rowIndex++) {
+                embeddedValues[rowIndex] = (double) this.omegaScales[rowIndex] * valueScale
+                        * dot(this.omegaMatrix[rowIndex], quantizedValues);
+            }
+        } else {
+            embeddedValues = values;
+        }
+
+        byte[] quantizedEmbeddedValues = new byte[this.omegaDimension];
+        float embeddedScale = quantize(embeddedValues, quantizedEmbeddedValues);
+        double squaredNorm = (double) embeddedScale * embeddedScale
+                * dot(quantizedEmbeddedValues, quantizedEmbeddedValues);
+        for (int prototypeIndex = 0; prototypeIndex < distances.length; prototypeIndex++) {
+            double product = (double) embeddedScale * this.prototypeScales[prototypeIndex]
+                    * dot(quantizedEmbeddedValues, this.embeddedPrototypes[prototypeIndex]);
+            // rounding may render the expansion slightly negative
+            distances[prototypeIndex] = Math.max(
+                    squaredNorm + this.prototypeSquaredNorms[prototypeIndex] - 2 * product, 0);
+        }
+    }
+
+    /**
+     * quantizes the values symmetrically to <code>[-127, 127]</code>
+     *
+     * @param values
+     *            the values to quantize
+     * @param target
+     *            receives the quantized values
+     * @return the scale which maps quantized values back
+     */
+    static float quantize(double[] values, byte[] target) {
+        double maximalAbsoluteValue = 0;
+        for (double value : values) {
+            maximalAbsoluteValue = Math.max(maximalAbsoluteValue, Math.abs(value));
+        }
+        if (maximalAbsoluteValue == 0) {
+            return 1;
+        }
+        double inverseScale = MAXIMAL_QUANTIZED_VALUE / maximalAbsoluteValue;
+        for (int index = 0; index < values.length; index++) {
+            target[index] = (byte) Math.round(values[index] * inverseScale);
+        }
+        return (float) (maximalAbsoluteValue / MAXIMAL_QUANTIZED_VALUE);
+    }
+
+    static long dot(byte[] first, byte[] second) {
+        long sum = 0;
+        for (int blockStart = 0; blockStart < first.length; blockStart += ACCUMULATION_BLOCK_SIZE) {
+            int blockEnd = Math.min(first.length, blockStart + ACCUMULATION_BLOCK_SIZE);
+            int blockSum = 0;
+            for (int index = blockStart; index < blockEnd; index++) {
+                blockSum += first[index] * second[index];
+            }
+            sum += blockSum;
+        }
+        return sum;
+    }
+
+    @Override
+    public long getParameterBytes() {
+        long bytes = 0;
+        if (this.relevanceLearning) {
+            bytes += (long) this.omegaDimension * this.dataDimension + 4L * this.omegaDimension
+                    + 4L * this.dataDimension;
+        }
+        return bytes + (long) this.embeddedPrototypes.length * (this.omegaDimension + 4 + 8);
+    }
+
+    @Override
+    public Precision getPrecision() {
+        return Precision.INT8;
+    }
+}
@@ -0,0 +1,108 @@
+package weka.classifiers.functions.gmlvq.inference;
+
+import weka.classifiers.functions.gmlvq.inference.QuantizedInferenceModel.Precision;
+
+/**
+ * Summarizes how a {@link QuantizedInferenceModel} performs on held-out data
+ * compared to the double precision classifier it was derived from.
+ *
+ * @author S
+ *
+ */
+public class QuantizationReport {
+
+    private final Precision precision;
+    private final int numberOfDataPoints;
+    private final double referenceAccuracy;
+    private final double quantizedAccuracy;
+    private final double agreement;
+    private final long referenceBytes;
+    private final long quantizedBytes;
+
+    /**
+     * @param precision
+     *            the precision of the quantized model
+     * @param classLabels
+     *            the true class label of each held-out data point
+     * @param referencePredictions
+     *            the predictions of the double precision classifier
+     * @param quantizedPredictions
+     *            the predictions of the quantized model
+     * @param referenceBytes
+     *            the parameter size of the double precision model
+     * @param quantizedBytes
+     *            the parameter size of the quantized model
+     */
+    public QuantizationReport(Precision precision, double[] classLabels, double[] referencePredictions,
+            double[] quantizedPredictions, long referenceBytes, long quantizedBytes) {
+        this.precision = precision;
+        this.numberOfDataPoints = classLabels.length;
+        int referenceHits = 0;
+        int quantizedHits = 0;
+        int agreements = 0;
+        for (int index = 0; index < classLabels.length; index++) {
+            if (referencePredictions[index] == classLabels[index]) {
+                referenceHits++;
+            }
+            if (quantizedPredictions[index] == classLabels[index]) {
+                quantizedHits++;
+            }
+            if (referencePredictions[index] == quantizedPredictions[index]) {
+                agreements++;
+            }
+        }
+        this.referenceAccuracy = (double) referenceHits / Math.max(this.numberOfDataPoints, 1);
+        this.quantizedAccuracy = (double) quantizedHits / Math.max(this.numberOfDataPoints, 1);
+        this.agreement = (double) agreements / Math.max(this.numberOfDataPoints, 1);
+        this.referenceBytes = referenceBytes;
+        this.quantizedBytes = quantizedBytes;
+    }
+
+    public Precision getPrecision() {
+        return this.precision;
+    }
+
+    public int getNumberOfDataPoints() {
+        return this.numberOfDataPoints;
+    }
+
+    public double getReferenceAccuracy() {
+        return this.referenceAccuracy;
+    }
+
+    public double getQuantizedAccuracy() {
+        return this.quantizedAccuracy;
+    }
+
+    /**
+     * @return quantized accuracy minus reference accuracy - negative values
+     *         indicate a loss
+     */
+    public double getAccuracyDelta() {
+        return this.quantizedAccuracy - this.referenceAccuracy;
+    }
+
+    /**
+     * @return the fraction of data points for which both models predict the
+     *         same class
+     */
+    public double getAgreement() {
+        return this.agreement;
+    }
+
+    public long getReferenceBytes() {
+        return this.referenceBytes;
+    }
+
+    public long getQuantizedBytes() {
+        return this.quantizedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantizationReport " + this.precision + " on " + this.numberOfDataPoints + " data points: accuracy "
+                + this.referenceAccuracy + " -> " + this.quantizedAccuracy + " (delta " + getAccuracyDelta()
+                + "), agreement " + this.agreement + ", parameters " + this.referenceBytes + " -> "
+                + this.quantizedBytes + " bytes";
+    }
+}
@@ -0,0 +1,134 @@
+package weka.classifiers.functions.gmlvq.inference;
+
+/**
+ * A post-training quantized version of an {@link InferenceModel}. The omega
+ * matrix and the embedded prototypes - which dominate memory bandwidth and
+ * model size for large prototype sets - are stored with reduced precision,
+ * either as 8 bit integers with scales per row and feature or as 16 bit floats.<br />
+ * <br />
+ * The class distribution is computed exactly like
+ * {@link InferenceModel#distribution(double[])}, only the distances to all
+ * prototypes are provided by the precision-specific implementations. Use
+ * {@link #quantize(InferenceModel, Precision)} to create instances.
+ *
+ * @author S
+ *
+ */
+public abstract class QuantizedInferenceModel {
+
+    /**
+     * the supported storage precisions
+     */
+    public enum Precision {
+        /**
+         * signed 8 bit integers with one float scale per row and one per
+         * feature, distances are accumulated in integer arithmetic
+         */
+        INT8,
+        /**
+         * IEEE 754 half precision floats
+         */
+        FLOAT16
+    }
+
+    protected final int dataDimension;
+    protected final int omegaDimension;
+    protected final boolean relevanceLearning;
+    protected final double[] prototypeClassLabels;
+    private final int numberOfClasses;
+    private final String[] classNames;
+    private final double sigmoidSigma;
+
+    protected QuantizedInferenceModel(InferenceModel model) {
+        this.dataDimension = model.getDataDimension();
+        this.omegaDimension = model.getOmegaDimension();
+        this.relevanceLearning = model.isRelevanceLearning();
+        this.prototypeClassLabels = model.getPrototypeClassLabels();
+        this.numberOfClasses = model.getNumberOfClasses();
+        this.classNames = model.getClassNames();
+        this.sigmoidSigma = model.getSigmoidSigma();
+    }
+
+    /**
+     * quantizes the omega matrix and the embedded prototypes of the given model
+     *
+     * @param model
+     *            the double precision model
+     * @param precision
+     *            the precision to use
+     * @return the quantized model
+     */
+    public static QuantizedInferenceModel quantize(InferenceModel model, Precision precision) {
+        switch (precision) {
+        case INT8:
+            return new Int8InferenceModel(model);
+        case FLOAT16:
+            return new Float16InferenceModel(model);
+        default:
+            throw new UnsupportedOperationException("no quantization known for " + precision);
+        }
+    }
+
+    /**
+     * computes the squared distances of the data point to all prototypes in
+     * the embedded space
+     *
+     * @param values
+     *            the feature values of the data point (without class)
+     * @param distances
+     *            receives one distance per prototype
+     */
+    protected abstract void computeDistances(double[] values, double[] distances);
+
+    /**
+     * @return the number of bytes occupied by omega matrix, prototypes and
+     *         scales
+     */
+    public abstract long getParameterBytes();
+
+    public abstract Precision getPrecision();
+
+    /**
+     * @see InferenceModel#classify(double[])
+     */
+    public double classify(double[] values) {
+        double[] distances = distances(values);
+        int bmuIndex = 0;
+        for (int prototypeIndex = 1; prototypeIndex < distances.length; prototypeIndex++) {
+            if (distances[prototypeIndex] < distances[bmuIndex]) {
+                bmuIndex = prototypeIndex;
+            }
+        }
+        return this.prototypeClassLabels[bmuIndex];
+    }
+
+    /**
+     * @see InferenceModel#distribution(double[])
+     */
+    public double[] distribution(double[] values) {
+        return InferenceModel.distributionFromDistances(distances(values), this.prototypeClassLabels,
+                this.numberOfClasses, this.sigmoidSigma);
+    }
+
+    private double[] distances(double[] values) {
+        if (values.length != this.dataDimension) {
+            throw new IllegalArgumentException(
+                    "expected " + this.dataDimension + " feature values, but got " + values.length);
+        }
+        double[] distances = new double[this.prototypeClassLabels.length];
+        computeDistances(values, distances);
+        return distances;
+    }
+
+    public String getClassName(double classLabel) {
+        return this.classNames[(int) classLabel];
+    }
+
+    public int getDataDimension() {
+        return this.dataDimension;
+    }
+
+    public int getNumberOfClasses() {
+        return this.numberOfClasses;
+    }
+}
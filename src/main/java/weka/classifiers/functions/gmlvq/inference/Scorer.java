@@ -0,0 +1,157 @@
+package weka.classifiers.functions.gmlvq.inference;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Standalone command line scorer for exported GMLVQ models. This class and the
+ * rest of its package depend on nothing but the JDK, so they can be shipped as
+ * the small <code>scorer</code> jar without WEKA, Swing or any chart library on
+ * the class path.<br />
+ * <br />
+ * Usage: <code>java -jar gmlvq-scorer.jar [-p] &lt;model file&gt; [csv
+ * file]</code><br />
+ * Each line of the input (standard input if no file is given) has to contain
+ * the comma-separated feature values of one data point. For each line the name
+ * of the predicted class is written, with <code>-p</code> it is followed by the
+ * class distribution.
+ *
+ * @author S
+ *
+ */
+public final class Scorer {
+
+    private final InferenceModel model;
+
+    public Scorer(InferenceModel model) {
+        this.model = model;
+    }
+
+    public Scorer(File modelFile) throws IOException {
+        this(InferenceModelFormat.read(modelFile));
+    }
+
+    public InferenceModel getModel() {
+        return this.model;
+    }
+
+    /**
+     * classifies a batch of data points
+     *
+     * @param rows
+     *            the feature values of each data point (without class)
+     * @return the predicted class label of each data point
+     */
+    public double[] classify(double[][] rows) {
+        double[] classLabels = new double[rows.length];
+        for (int rowIndex = 0; rowIndex < rows.length; rowIndex++) {
+            classLabels[rowIndex] = this.model.classify(rows[rowIndex]);
+        }
+        return classLabels;
+    }
+
+    /**
+     * computes the class distribution of a batch of data points
+     *
+     * @param rows
+     *            the feature values of each data point (without class)
+     * @return the class distribution of each data point
+     */
+    public double[][] distribution(double[][] rows) {
+        double[][] distributions = new double[rows.length][];
+        for (int rowIndex = 0; rowIndex < rows.length; rowIndex++) {
+            distributions[rowIndex] = this.model.distribution(rows[rowIndex]);
+        }
+        return distributions;
+    }
+
+    /**
+     * scores all comma-separated lines of the given input
+     *
+     * @param inputStream
+     *            where to read data points from
+     * @param writer
+     *            where to write predictions to
+     * @param printDistribution
+     *            whether to append the class distribution to each prediction
+     * @throws IOException
+     */
+    public void score(InputStream inputStream, PrintWriter writer, boolean printDistribution) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        double[] values = new double[this.model.getDataDimension()];
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            parseLine(line, lineNumber, values);
+            writer.print(this.model.getClassName(this.model.classify(values)));
+            if (printDistribution) {
+                for (double probability : this.model.distribution(values)) {
+                    writer.print(',');
+                    writer.print(probability);
+                }
+            }
+            writer.println();
+        }
+        writer.flush();
+    }
+
+    private void parseLine(String line, int lineNumber, double[] values) throws IOException {
+        int valueIndex = 0;
+        int start = 0;
+        while (start <= line.length()) {
+            int end = line.indexOf(',', start);
+            if (end < 0) {
+                end = line.length();
+            }
+            if (valueIndex == values.length) {
+                throw new IOException("line " + lineNumber + " contains more than " + values.length + " values");
+            }
+            try {
+                values[valueIndex++] = Double.parseDouble(line.substring(start, end).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("line " + lineNumber + " contains a non-numeric value", e);
+            }
+            start = end + 1;
+        }
+        if (valueIndex != values.length) {
+            throw new IOException("line " + lineNumber + " contains " + valueIndex + " values, but the model expects "
+                    + values.length);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean printDistribution = false;
+        int argumentIndex = 0;
+        if (args.length > 0 && args[0].equals("-p")) {
+            printDistribution = true;
+            argumentIndex++;
+        }
+        if (args.length - argumentIndex < 1 || args.length - argumentIndex > 2) {
+            System.err.println("usage: java -jar gmlvq-scorer.jar [-p] <model file> [csv file]");
+            System.exit(1);
+        }
+
+        Scorer scorer = new Scorer(new File(args[argumentIndex]));
+        InputStream inputStream = argumentIndex + 1 < args.length ? new FileInputStream(args[argumentIndex + 1])
+                : System.in;
+        PrintWriter writer = new PrintWriter(
+                new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        try {
+            scorer.score(inputStream, writer, printDistribution);
+        } finally {
+            inputStream.close();
+        }
+    }
+}
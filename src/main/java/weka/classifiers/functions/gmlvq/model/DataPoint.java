@@ -16,10 +16,39 @@ public class DataPoint extends DataSpaceVector {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * how much this data point contributes to updates and costs, e.g. the
+     * number of identical data points it represents
+     */
+    private double weight = 1.0;
+
     public DataPoint(double[] values, double classLabel) {
         super(values, classLabel);
     }
 
+    public DataPoint(double[] values, double classLabel, double weight) {
+        super(values, classLabel);
+        setWeight(weight);
+    }
+
+    /**
+     * @see Vector#Vector(int, double)
+     */
+    protected DataPoint(int dimension, double classLabel) {
+        super(dimension, classLabel);
+    }
+
+    public double getWeight() {
+        return this.weight;
+    }
+
+    void setWeight(double weight) {
+        if (weight < 0 || Double.isNaN(weight)) {
+            throw new IllegalArgumentException("weight cannot be negative, but was " + weight);
+        }
+        this.weight = weight;
+    }
+
     @Override
     public void setValues(double[] values) {
         throw new UnsupportedOperationException("this is not allowed for data points, values can never change");
@@ -16,12 +16,26 @@ public abstract class DataSpaceVector extends Vector {
 
     private static final long serialVersionUID = 1L;
     protected Map<OmegaMatrix, EmbeddedSpaceVector> embeddedSpaceVectors;
+    /**
+     * the bounds of the distances to the winners, see {@link WinnerBounds}
+     */
+    private transient volatile WinnerBounds.Bounds winnerBounds;
 
     public DataSpaceVector(double[] values, double classLabel) {
         super(values, classLabel);
         this.embeddedSpaceVectors = new HashMap<OmegaMatrix, EmbeddedSpaceVector>();
     }
 
+    /**
+     * used by subclasses which provide their own storage of values
+     *
+     * @see Vector#Vector(int, double)
+     */
+    protected DataSpaceVector(int dimension, double classLabel) {
+        super(dimension, classLabel);
+        this.embeddedSpaceVectors = new HashMap<OmegaMatrix, EmbeddedSpaceVector>();
+    }
+
     public EmbeddedSpaceVector getEmbeddedSpaceVector(OmegaMatrix matrix) {
         if (!this.embeddedSpaceVectors.containsKey(matrix)) {
             this.embeddedSpaceVectors.put(matrix, determineMapping(matrix));
@@ -29,14 +43,60 @@ public abstract class DataSpaceVector extends Vector {
         return this.embeddedSpaceVectors.get(matrix);
     }
 
-    private EmbeddedSpaceVector determineMapping(OmegaMatrix matrix) {
+    protected EmbeddedSpaceVector determineMapping(OmegaMatrix matrix) {
         return new EmbeddedSpaceVector(LinearAlgebraicCalculations.multiply(this, matrix), matrix);
     }
 
+    /**
+     * @return whether the mapping to the embedded space of the matrix is
+     *         already known
+     */
+    public boolean isMapped(OmegaMatrix matrix) {
+        return this.embeddedSpaceVectors.containsKey(matrix);
+    }
+
+    /**
+     * registers a mapping computed elsewhere, e.g. by several threads which
+     * each compute a range of the rows of the matrix
+     *
+     * @param matrix
+     *            the mapping rule, which has to be a relevance matrix
+     * @param product
+     *            the dot products of this vector with each row of the matrix
+     */
+    public void registerMapping(OmegaMatrix matrix, double[] product) {
+        this.embeddedSpaceVectors.put(matrix, createMapping(product, matrix));
+    }
+
+    /**
+     * @return the mapping of the given dot products with the rows of the
+     *         matrix, in the same representation as by
+     *         {@link #determineMapping(OmegaMatrix)}
+     */
+    protected EmbeddedSpaceVector createMapping(double[] product, OmegaMatrix matrix) {
+        return new EmbeddedSpaceVector(product, getClassLabel(), matrix);
+    }
+
+    WinnerBounds.Bounds getWinnerBounds() {
+        return this.winnerBounds;
+    }
+
+    void setWinnerBounds(WinnerBounds.Bounds winnerBounds) {
+        this.winnerBounds = winnerBounds;
+    }
+
     public int getNumberOfMappings() {
         return this.embeddedSpaceVectors.size();
     }
 
+    /**
+     * forgets all mappings and, thus, all winners - e.g. to measure the costs
+     * of computing them
+     */
+    public void deregisterAllMappings() {
+        this.embeddedSpaceVectors.clear();
+    }
+
     public void deregisterAllMappingBut(OmegaMatrix matrix) {
         if (this.embeddedSpaceVectors.containsKey(matrix)) {
             EmbeddedSpaceVector value = this.embeddedSpaceVectors.get(matrix);
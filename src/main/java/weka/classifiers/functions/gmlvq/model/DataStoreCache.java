@@ -0,0 +1,147 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * A directory of {@link MappedDataStore}s built from ARFF or CSV files by the
+ * {@link DataStoreLoader}. Entries are keyed by the SHA-256 hash of the source
+ * file's content, so repeated training runs on the same data only hash the
+ * file and map the existing store instead of parsing the text again - renamed
+ * or copied files hit the same entry, modified files miss it.<br />
+ * <br />
+ * New entries are written to a temporary file which is moved into place once
+ * complete, so concurrent runs never observe partially written stores. Entries
+ * which cannot be opened, e.g. written by an older format version, are
+ * rebuilt.
+ *
+ * @author S
+ *
+ */
+public class DataStoreCache {
+
+    private final File directory;
+    private int hits;
+    private int misses;
+
+    /**
+     * @param directory
+     *            the directory holding the cached stores, created if it does
+     *            not exist
+     */
+    public DataStoreCache(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("cannot create cache directory " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * maps the cached store of the given file, the store is created upon the
+     * first request
+     *
+     * @param source
+     *            the ARFF or CSV file
+     * @param singlePrecision
+     *            whether values are stored as floats
+     * @return the opened store
+     * @throws IOException
+     *             if a file cannot be read or written or the source file is
+     *             malformed
+     */
+    public synchronized MappedDataStore open(File source, boolean singlePrecision) throws IOException {
+        File entry = getEntry(source, singlePrecision);
+        if (entry.isFile()) {
+            try {
+                MappedDataStore store = MappedDataStore.open(entry);
+                this.hits++;
+                return store;
+            } catch (IOException e) {
+                // outdated or damaged entry - rebuild it
+            }
+        }
+        this.misses++;
+        File temporaryFile = File.createTempFile(entry.getName(), ".tmp", this.directory);
+        try {
+            DataStoreLoader.load(source, temporaryFile, singlePrecision).close();
+            Files.move(temporaryFile.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporaryFile.delete();
+        }
+        return MappedDataStore.open(entry);
+    }
+
+    /**
+     * @return the file of the store for the given source file - it does not
+     *         necessarily exist
+     * @throws IOException
+     *             if the source file cannot be read
+     */
+    public File getEntry(File source, boolean singlePrecision) throws IOException {
+        return new File(this.directory, hash(source) + (singlePrecision ? "-single" : "-double") + ".store");
+    }
+
+    /**
+     * @return the hex encoded SHA-256 hash of the file's content and its
+     *         extension, which determines how the content is parsed
+     */
+    static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        digest.update(name.substring(name.lastIndexOf('.') + 1).getBytes(StandardCharsets.UTF_8));
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte value : digest.digest()) {
+            hash.append(String.format("%02x", value));
+        }
+        return hash.toString();
+    }
+
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * @return the number of requests served by an existing store
+     */
+    public synchronized int getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return the number of requests which required parsing the source file
+     */
+    public synchronized int getMisses() {
+        return this.misses;
+    }
+
+    @Override
+    public String toString() {
+        return "DataStoreCache " + this.directory + ": " + this.hits + " hits, " + this.misses + " misses";
+    }
+}
@@ -0,0 +1,595 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses ARFF or CSV files straight into a {@link MappedDataStore} - neither
+ * WEKA instances nor data points are created on the way. The data section of
+ * the file is split into chunks at line boundaries, which are processed in
+ * parallel in two passes: the first one counts the rows of each chunk (and
+ * collects the class names of CSV files), so each chunk knows where its rows
+ * belong, the second one parses the rows and writes them to their final
+ * position in the store. Feature statistics are collected per chunk and merged
+ * at the end.<br />
+ * <br />
+ * All attributes but the last one have to be numeric, the last one is the
+ * nominal class. Sparse ARFF rows are supported, missing values are not. The
+ * first line of a CSV file has to contain the attribute names, class names are
+ * ordered by their first occurrence.
+ *
+ * @author S
+ *
+ */
+public final class DataStoreLoader {
+
+    /**
+     * the number of processors that can be used for parallel parsing
+     */
+    private static final int processors = Runtime.getRuntime().availableProcessors();
+    /**
+     * the maximal number of bytes read at once by one thread
+     */
+    private static final int MAXIMAL_CHUNK_SIZE = 1 << 26;
+    /**
+     * the number of bytes collected by one thread before writing them to the
+     * store
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    /**
+     * exactly representable powers of ten
+     */
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15 };
+
+    private final File source;
+    private final boolean csv;
+    private final String[] attributeNames;
+    private final String[] classNames;
+    private final Map<String, Integer> classIndices;
+    private final long dataOffset;
+
+    private DataStoreLoader(File source) throws IOException {
+        this.source = source;
+        this.csv = source.getName().toLowerCase(Locale.ROOT).endsWith(".csv");
+        List<String> attributeNames = new ArrayList<String>();
+        List<String> classNames = new ArrayList<String>();
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(source), 1 << 16);
+        try {
+            if (this.csv) {
+                this.dataOffset = readCsvHeader(inputStream, attributeNames);
+            } else {
+                this.dataOffset = readArffHeader(inputStream, attributeNames, classNames);
+            }
+        } finally {
+            inputStream.close();
+        }
+        this.attributeNames = attributeNames.toArray(new String[0]);
+        this.classNames = this.csv ? null : classNames.toArray(new String[0]);
+        this.classIndices = new HashMap<String, Integer>();
+        if (!this.csv) {
+            for (int classIndex = 0; classIndex < this.classNames.length; classIndex++) {
+                this.classIndices.put(this.classNames[classIndex], classIndex);
+            }
+        }
+    }
+
+    /**
+     * parses the source file and writes its content to a new store - files
+     * ending with <code>.csv</code> are parsed as CSV, all others as ARFF
+     *
+     * @param source
+     *            the ARFF or CSV file
+     * @param target
+     *            the file of the store, an existing file will be overwritten
+     * @param singlePrecision
+     *            whether values are stored as floats
+     * @return the opened store
+     * @throws IOException
+     *             if a file cannot be read or written or the source file is
+     *             malformed
+     */
+    public static MappedDataStore load(File source, File target, boolean singlePrecision) throws IOException {
+        return new DataStoreLoader(source).load(target, singlePrecision);
+    }
+
+    private MappedDataStore load(File target, boolean singlePrecision) throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(processors);
+        FileChannel sourceChannel = FileChannel.open(this.source.toPath(), StandardOpenOption.READ);
+        try {
+            List<long[]> chunks = determineChunks(sourceChannel);
+
+            // first pass: count rows and collect class names
+            List<Future<ChunkSummary>> summaryResults = new ArrayList<Future<ChunkSummary>>();
+            for (long[] chunk : chunks) {
+                summaryResults.add(executorService.submit(new ChunkCounter(sourceChannel, chunk)));
+            }
+            long[] firstRows = new long[chunks.size()];
+            long numberOfRows = 0;
+            Set<String> csvClassNames = new LinkedHashSet<String>();
+            for (int chunkIndex = 0; chunkIndex < chunks.size(); chunkIndex++) {
+                ChunkSummary summary = get(summaryResults.get(chunkIndex));
+                firstRows[chunkIndex] = numberOfRows;
+                numberOfRows += summary.numberOfRows;
+                csvClassNames.addAll(summary.classNames);
+            }
+            String[] classNames = this.classNames;
+            if (this.csv) {
+                classNames = csvClassNames.toArray(new String[0]);
+                for (int classIndex = 0; classIndex < classNames.length; classIndex++) {
+                    this.classIndices.put(classNames[classIndex], classIndex);
+                }
+            }
+
+            // the header is written upfront, rows are written to their final
+            // position afterwards
+            DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(target), 1 << 16));
+            int rowsOffset;
+            try {
+                rowsOffset = MappedDataStore.writeHeader(outputStream, numberOfRows, this.attributeNames, classNames,
+                        singlePrecision);
+            } finally {
+                outputStream.close();
+            }
+
+            // second pass: parse and write rows
+            FileChannel targetChannel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE);
+            try {
+                List<Future<FeatureStatistics>> parseResults = new ArrayList<Future<FeatureStatistics>>();
+                for (int chunkIndex = 0; chunkIndex < chunks.size(); chunkIndex++) {
+                    long position = rowsOffset
+                            + firstRows[chunkIndex] * MappedDataStore.rowLength(this.attributeNames.length,
+                                    singlePrecision);
+                    parseResults.add(executorService.submit(new ChunkParser(sourceChannel, chunks.get(chunkIndex),
+                            targetChannel, position, singlePrecision)));
+                }
+                FeatureStatistics statistics = new FeatureStatistics(this.attributeNames.length);
+                for (Future<FeatureStatistics> parseResult : parseResults) {
+                    statistics.merge(get(parseResult));
+                }
+                ByteArrayOutputStream statisticsBytes = new ByteArrayOutputStream();
+                DataOutputStream statisticsStream = new DataOutputStream(statisticsBytes);
+                statistics.write(statisticsStream);
+                statisticsStream.close();
+                ByteBuffer buffer = ByteBuffer.wrap(statisticsBytes.toByteArray());
+                long position = rowsOffset
+                        + numberOfRows * MappedDataStore.rowLength(this.attributeNames.length, singlePrecision);
+                while (buffer.hasRemaining()) {
+                    position += targetChannel.write(buffer, position);
+                }
+            } finally {
+                targetChannel.close();
+            }
+        } finally {
+            sourceChannel.close();
+            executorService.shutdown();
+        }
+        return MappedDataStore.open(target);
+    }
+
+    private static <T> T get(Future<T> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            throw new IOException("loading was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * splits the data section into ranges of roughly equal size which start at
+     * the beginning of a line
+     */
+    private List<long[]> determineChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long dataLength = size - this.dataOffset;
+        long numberOfChunks = Math.max(processors, dataLength / MAXIMAL_CHUNK_SIZE + 1);
+        long chunkLength = Math.max(1, dataLength / numberOfChunks);
+        List<long[]> chunks = new ArrayList<long[]>();
+        long start = this.dataOffset;
+        while (start < size) {
+            long end = start + chunkLength >= size ? size : nextLineStart(channel, start + chunkLength);
+            chunks.add(new long[] { start, end });
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        long current = position;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, current);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int index = 0; index < read; index++) {
+                if (buffer.get(index) == '\n') {
+                    return current + index + 1;
+                }
+            }
+            current += read;
+        }
+    }
+
+    private static byte[] read(FileChannel channel, long[] chunk) throws IOException {
+        byte[] bytes = new byte[(int) (chunk[1] - chunk[0])];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, chunk[0] + buffer.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the end of the line starting at the given position (exclusive,
+     *         without line break)
+     */
+    private static int lineEnd(byte[] bytes, int start) {
+        int end = start;
+        while (end < bytes.length && bytes[end] != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return whether the line contains data, i.e. is neither blank nor an
+     *         ARFF comment
+     */
+    private boolean isDataLine(byte[] bytes, int start, int end) {
+        int first = skipWhitespace(bytes, start, end);
+        return first < end && (this.csv || bytes[first] != '%');
+    }
+
+    private static int skipWhitespace(byte[] bytes, int start, int end) {
+        while (start < end && bytes[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static String token(byte[] bytes, int start, int end) {
+        start = skipWhitespace(bytes, start, end);
+        while (end > start && bytes[end - 1] <= ' ') {
+            end--;
+        }
+        if (end - start >= 2 && (bytes[start] == '\'' || bytes[start] == '"') && bytes[end - 1] == bytes[start]) {
+            start++;
+            end--;
+        }
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * parses a decimal number - numbers of up to 15 digits without exponent
+     * are assembled directly, which is exact as both the digits and the power
+     * of ten are exactly representable
+     */
+    static double parseNumber(byte[] bytes, int start, int end) throws IOException {
+        start = skipWhitespace(bytes, start, end);
+        while (end > start && bytes[end - 1] <= ' ') {
+            end--;
+        }
+        int position = start;
+        boolean negative = false;
+        if (position < end && (bytes[position] == '-' || bytes[position] == '+')) {
+            negative = bytes[position] == '-';
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; position < end; position++) {
+            byte current = bytes[position];
+            if (current >= '0' && current <= '9') {
+                mantissa = mantissa * 10 + current - '0';
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (current == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (position == end && digits > 0 && digits <= 15) {
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+        String token = new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+        if (token.equals("?")) {
+            throw new IOException("missing values are not supported");
+        }
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw new IOException("'" + token + "' is no number", e);
+        }
+    }
+
+    /**
+     * parses one row into the given array
+     *
+     * @return the class label
+     */
+    private double parseRow(byte[] bytes, int start, int end, double[] values) throws IOException {
+        int first = skipWhitespace(bytes, start, end);
+        if (!this.csv && bytes[first] == '{') {
+            return parseSparseRow(bytes, first + 1, end, values);
+        }
+        int dataDimension = values.length;
+        int tokenStart = start;
+        for (int attributeIndex = 0; attributeIndex < dataDimension; attributeIndex++) {
+            int tokenEnd = tokenStart;
+            while (tokenEnd < end && bytes[tokenEnd] != ',') {
+                tokenEnd++;
+            }
+            if (tokenEnd == end) {
+                throw new IOException("expected " + (dataDimension + 1) + " values in row '"
+                        + new String(bytes, start, end - start, StandardCharsets.UTF_8) + "'");
+            }
+            values[attributeIndex] = parseNumber(bytes, tokenStart, tokenEnd);
+            tokenStart = tokenEnd + 1;
+        }
+        return classLabel(token(bytes, tokenStart, end));
+    }
+
+    private double parseSparseRow(byte[] bytes, int start, int end, double[] values) throws IOException {
+        Arrays.fill(values, 0);
+        // the first value of the class attribute is the default
+        double classLabel = 0;
+        int closingBrace = end;
+        while (closingBrace > start && bytes[closingBrace - 1] != '}') {
+            closingBrace--;
+        }
+        if (closingBrace == start) {
+            throw new IOException("sparse row is not terminated");
+        }
+        int entryStart = start;
+        while (entryStart < closingBrace - 1) {
+            int entryEnd = entryStart;
+            while (entryEnd < closingBrace - 1 && bytes[entryEnd] != ',') {
+                entryEnd++;
+            }
+            int indexStart = skipWhitespace(bytes, entryStart, entryEnd);
+            int indexEnd = indexStart;
+            while (indexEnd < entryEnd && bytes[indexEnd] > ' ') {
+                indexEnd++;
+            }
+            if (indexEnd > indexStart) {
+                int attributeIndex = (int) parseNumber(bytes, indexStart, indexEnd);
+                if (attributeIndex == values.length) {
+                    classLabel = classLabel(token(bytes, indexEnd, entryEnd));
+                } else if (attributeIndex >= 0 && attributeIndex < values.length) {
+                    values[attributeIndex] = parseNumber(bytes, indexEnd, entryEnd);
+                } else {
+                    throw new IOException("attribute index " + attributeIndex + " out of range");
+                }
+            }
+            entryStart = entryEnd + 1;
+        }
+        return classLabel;
+    }
+
+    private double classLabel(String className) throws IOException {
+        Integer classIndex = this.classIndices.get(className);
+        if (classIndex == null) {
+            throw new IOException("unknown class '" + className + "'");
+        }
+        return classIndex;
+    }
+
+    private static String readLine(InputStream inputStream, long[] offset) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int current;
+        while ((current = inputStream.read()) != -1) {
+            offset[0]++;
+            if (current == '\n') {
+                break;
+            }
+            line.write(current);
+        }
+        if (current == -1 && line.size() == 0) {
+            return null;
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+
+    private static long readCsvHeader(InputStream inputStream, List<String> attributeNames) throws IOException {
+        long[] offset = new long[1];
+        String line = readLine(inputStream, offset);
+        if (line == null) {
+            throw new IOException("CSV file is empty");
+        }
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        int tokenStart = 0;
+        for (int index = 0; index <= bytes.length; index++) {
+            if (index == bytes.length || bytes[index] == ',') {
+                attributeNames.add(token(bytes, tokenStart, index));
+                tokenStart = index + 1;
+            }
+        }
+        // the last column is the class
+        attributeNames.remove(attributeNames.size() - 1);
+        return offset[0];
+    }
+
+    private static long readArffHeader(InputStream inputStream, List<String> attributeNames, List<String> classNames)
+            throws IOException {
+        long[] offset = new long[1];
+        List<String> types = new ArrayList<String>();
+        String line;
+        while ((line = readLine(inputStream, offset)) != null) {
+            String lowerCaseLine = line.toLowerCase(Locale.ROOT);
+            if (lowerCaseLine.startsWith("@data")) {
+                break;
+            }
+            if (!lowerCaseLine.startsWith("@attribute")) {
+                continue;
+            }
+            String remainder = line.substring("@attribute".length()).trim();
+            int nameEnd;
+            if (remainder.startsWith("'") || remainder.startsWith("\"")) {
+                nameEnd = remainder.indexOf(remainder.charAt(0), 1) + 1;
+                if (nameEnd == 0) {
+                    throw new IOException("unterminated attribute name in '" + line + "'");
+                }
+            } else {
+                nameEnd = 0;
+                while (nameEnd < remainder.length() && !Character.isWhitespace(remainder.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+            }
+            byte[] name = remainder.substring(0, nameEnd).getBytes(StandardCharsets.UTF_8);
+            attributeNames.add(token(name, 0, name.length));
+            types.add(remainder.substring(nameEnd).trim());
+        }
+        if (line == null) {
+            throw new IOException("ARFF file contains no @data section");
+        }
+        if (types.size() < 2) {
+            throw new IOException("ARFF file has to contain at least one attribute and the class");
+        }
+        for (int attributeIndex = 0; attributeIndex < types.size() - 1; attributeIndex++) {
+            String type = types.get(attributeIndex).toLowerCase(Locale.ROOT);
+            if (!type.equals("numeric") && !type.equals("real") && !type.equals("integer")) {
+                throw new IOException("attribute '" + attributeNames.get(attributeIndex) + "' is not numeric");
+            }
+        }
+        String classType = types.get(types.size() - 1);
+        if (!classType.startsWith("{") || !classType.endsWith("}")) {
+            throw new IOException("the last attribute has to be the nominal class");
+        }
+        byte[] values = classType.substring(1, classType.length() - 1).getBytes(StandardCharsets.UTF_8);
+        int tokenStart = 0;
+        for (int index = 0; index <= values.length; index++) {
+            if (index == values.length || values[index] == ',') {
+                classNames.add(token(values, tokenStart, index));
+                tokenStart = index + 1;
+            }
+        }
+        attributeNames.remove(attributeNames.size() - 1);
+        return offset[0];
+    }
+
+    private static class ChunkSummary {
+
+        private long numberOfRows;
+        private Set<String> classNames = new LinkedHashSet<String>();
+    }
+
+    private class ChunkCounter implements Callable<ChunkSummary> {
+
+        private FileChannel channel;
+        private long[] chunk;
+
+        public ChunkCounter(FileChannel channel, long[] chunk) {
+            this.channel = channel;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public ChunkSummary call() throws IOException {
+            byte[] bytes = read(this.channel, this.chunk);
+            ChunkSummary summary = new ChunkSummary();
+            for (int start = 0; start < bytes.length;) {
+                int end = lineEnd(bytes, start);
+                if (isDataLine(bytes, start, end)) {
+                    summary.numberOfRows++;
+                    if (DataStoreLoader.this.csv) {
+                        int classStart = end;
+                        while (classStart > start && bytes[classStart - 1] != ',') {
+                            classStart--;
+                        }
+                        summary.classNames.add(token(bytes, classStart, end));
+                    }
+                }
+                start = end + 1;
+            }
+            return summary;
+        }
+    }
+
+    private class ChunkParser implements Callable<FeatureStatistics> {
+
+        private FileChannel sourceChannel;
+        private long[] chunk;
+        private FileChannel targetChannel;
+        private long position;
+        private boolean singlePrecision;
+
+        public ChunkParser(FileChannel sourceChannel, long[] chunk, FileChannel targetChannel, long position,
+                boolean singlePrecision) {
+            this.sourceChannel = sourceChannel;
+            this.chunk = chunk;
+            this.targetChannel = targetChannel;
+            this.position = position;
+            this.singlePrecision = singlePrecision;
+        }
+
+        @Override
+        public FeatureStatistics call() throws IOException {
+            byte[] bytes = read(this.sourceChannel, this.chunk);
+            double[] values = new double[DataStoreLoader.this.attributeNames.length];
+            FeatureStatistics statistics = new FeatureStatistics(values.length);
+            int rowLength = MappedDataStore.rowLength(values.length, this.singlePrecision);
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(rowLength, WRITE_BUFFER_SIZE / rowLength * rowLength));
+            for (int start = 0; start < bytes.length;) {
+                int end = lineEnd(bytes, start);
+                if (isDataLine(bytes, start, end)) {
+                    double classLabel = parseRow(bytes, start, end, values);
+                    if (buffer.remaining() < rowLength) {
+                        write(buffer);
+                    }
+                    MappedDataStore.putRow(buffer, values, classLabel, 1, this.singlePrecision);
+                    statistics.add(values);
+                }
+                start = end + 1;
+            }
+            write(buffer);
+            return statistics;
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                this.position += this.targetChannel.write(buffer, this.position);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -21,6 +21,13 @@ public class EmbeddedSpaceVector extends Vector implements Cloneable {
 
     private Map<List<Prototype>, WinningInformation> winningInformation;
     private OmegaMatrix omegaMatrix;
+    /**
+     * the cached squared norm, valid if {@link #squaredNormKnown} - e.g. the
+     * seeds of {@link weka.classifiers.functions.gmlvq.core.KMeansPlusPlusInitializer}
+     * are compared to many sparse data points
+     */
+    private transient double squaredNorm;
+    private transient volatile boolean squaredNormKnown;
 
     public EmbeddedSpaceVector(double[] values, double classLabel, OmegaMatrix omegaMatrix) {
         super(values, classLabel);
@@ -28,6 +35,15 @@ public class EmbeddedSpaceVector extends Vector implements Cloneable {
         this.winningInformation = new HashMap<List<Prototype>, WinningInformation>();
     }
 
+    /**
+     * @see Vector#Vector(int, double)
+     */
+    protected EmbeddedSpaceVector(int dimension, double classLabel, OmegaMatrix omegaMatrix) {
+        super(dimension, classLabel);
+        this.omegaMatrix = omegaMatrix;
+        this.winningInformation = new HashMap<List<Prototype>, WinningInformation>();
+    }
+
     public EmbeddedSpaceVector(Vector vector, OmegaMatrix omegaMatrix) {
         this(vector.getValues(), vector.getClassLabel(), omegaMatrix);
     }
@@ -66,10 +82,40 @@ public class EmbeddedSpaceVector extends Vector implements Cloneable {
     }
 
     public WinningInformation getWinningInformation(List<Prototype> prototypes) {
-        if (!this.winningInformation.containsKey(prototypes)) {
-            this.winningInformation.put(prototypes, determineWinningInformation(prototypes));
+        // each lookup hashes all prototypes
+        WinningInformation winningInformation = this.winningInformation.get(prototypes);
+        if (winningInformation == null) {
+            winningInformation = determineWinningInformation(prototypes);
+            this.winningInformation.put(prototypes, winningInformation);
+        }
+        return winningInformation;
+    }
+
+    boolean hasWinningInformation(List<Prototype> prototypes) {
+        return this.winningInformation.containsKey(prototypes);
+    }
+
+    /**
+     * registers winning information determined in a batch, see
+     * {@link WinnerSearch}
+     */
+    void setWinningInformation(List<Prototype> prototypes, WinningInformation winningInformation) {
+        this.winningInformation.put(prototypes, winningInformation);
+    }
+
+    @Override
+    public double getSquaredNorm() {
+        if (!this.squaredNormKnown) {
+            this.squaredNorm = super.getSquaredNorm();
+            this.squaredNormKnown = true;
         }
-        return this.winningInformation.get(prototypes);
+        return this.squaredNorm;
+    }
+
+    @Override
+    public void setValues(double[] values) {
+        super.setValues(values);
+        this.squaredNormKnown = false;
     }
 
     @Override
@@ -0,0 +1,52 @@
+package weka.classifiers.functions.gmlvq.model;
+
+/**
+ * An {@link EmbeddedSpaceVector} which is identical to the vector it was
+ * derived from - used when no relevance learning is performed and the values
+ * of the original vector should not be copied.
+ *
+ * @author S
+ *
+ */
+class EmbeddedSpaceVectorView extends EmbeddedSpaceVector {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Vector vector;
+
+    EmbeddedSpaceVectorView(Vector vector, OmegaMatrix omegaMatrix) {
+        super(vector.getDimension(), vector.getClassLabel(), omegaMatrix);
+        this.vector = vector;
+    }
+
+    @Override
+    public double getValue(int index) {
+        return this.vector.getValue(index);
+    }
+
+    @Override
+    public double[] getValues() {
+        return this.vector.getValues();
+    }
+
+    @Override
+    public double dotProduct(double[] weights) {
+        return this.vector.dotProduct(weights);
+    }
+
+    @Override
+    public void addTo(double[] target, double factor) {
+        this.vector.addTo(target, factor);
+    }
+
+    @Override
+    public double squaredEuclideanDistance(Vector other) {
+        return this.vector.squaredEuclideanDistance(other);
+    }
+
+    @Override
+    public double getSquaredNorm() {
+        return this.vector.getSquaredNorm();
+    }
+
+}
@@ -0,0 +1,156 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Minimum, maximum, mean and variance of each feature of a data set. Values
+ * are accumulated with Welford's online algorithm, so statistics can be
+ * collected in a single pass while data is written - partial statistics of
+ * disjoint parts of a data set can be merged afterwards.
+ *
+ * @author S
+ *
+ */
+public class FeatureStatistics {
+
+    private final int dataDimension;
+    private long count;
+    private final double[] minimum;
+    private final double[] maximum;
+    private final double[] mean;
+    /**
+     * the sum of squared deviations from the mean
+     */
+    private final double[] squaredDeviations;
+
+    public FeatureStatistics(int dataDimension) {
+        this.dataDimension = dataDimension;
+        this.minimum = new double[dataDimension];
+        this.maximum = new double[dataDimension];
+        this.mean = new double[dataDimension];
+        this.squaredDeviations = new double[dataDimension];
+        Arrays.fill(this.minimum, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.maximum, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * @param values
+     *            the feature values of one data point
+     */
+    public void add(double[] values) {
+        if (values.length != this.dataDimension) {
+            throw new IllegalArgumentException("expected " + this.dataDimension + " values, but got " + values.length);
+        }
+        this.count++;
+        for (int index = 0; index < this.dataDimension; index++) {
+            double value = values[index];
+            if (value < this.minimum[index]) {
+                this.minimum[index] = value;
+            }
+            if (value > this.maximum[index]) {
+                this.maximum[index] = value;
+            }
+            double delta = value - this.mean[index];
+            this.mean[index] += delta / this.count;
+            this.squaredDeviations[index] += delta * (value - this.mean[index]);
+        }
+    }
+
+    /**
+     * incorporates the statistics of another, disjoint part of the data set
+     *
+     * @param other
+     *            the statistics to add
+     */
+    public void merge(FeatureStatistics other) {
+        if (other.dataDimension != this.dataDimension) {
+            throw new IllegalArgumentException(
+                    "cannot merge statistics of dimension " + other.dataDimension + " into " + this.dataDimension);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        long count = this.count + other.count;
+        for (int index = 0; index < this.dataDimension; index++) {
+            this.minimum[index] = Math.min(this.minimum[index], other.minimum[index]);
+            this.maximum[index] = Math.max(this.maximum[index], other.maximum[index]);
+            double delta = other.mean[index] - this.mean[index];
+            this.mean[index] += delta * other.count / count;
+            this.squaredDeviations[index] += other.squaredDeviations[index]
+                    + delta * delta * this.count * other.count / count;
+        }
+        this.count = count;
+    }
+
+    /**
+     * writes the statistics in the format expected by
+     * {@link #read(ByteBuffer, int)}
+     */
+    void write(DataOutputStream outputStream) throws IOException {
+        outputStream.writeLong(this.count);
+        for (int index = 0; index < this.dataDimension; index++) {
+            outputStream.writeDouble(this.minimum[index]);
+            outputStream.writeDouble(this.maximum[index]);
+            outputStream.writeDouble(this.mean[index]);
+            outputStream.writeDouble(this.squaredDeviations[index]);
+        }
+    }
+
+    static FeatureStatistics read(ByteBuffer buffer, int dataDimension) {
+        FeatureStatistics statistics = new FeatureStatistics(dataDimension);
+        statistics.count = buffer.getLong();
+        for (int index = 0; index < dataDimension; index++) {
+            statistics.minimum[index] = buffer.getDouble();
+            statistics.maximum[index] = buffer.getDouble();
+            statistics.mean[index] = buffer.getDouble();
+            statistics.squaredDeviations[index] = buffer.getDouble();
+        }
+        return statistics;
+    }
+
+    /**
+     * @return the number of bytes occupied by written statistics
+     */
+    static long length(int dataDimension) {
+        return 8 + 32L * dataDimension;
+    }
+
+    public int getDataDimension() {
+        return this.dataDimension;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getMinimum(int index) {
+        return this.minimum[index];
+    }
+
+    public double getMaximum(int index) {
+        return this.maximum[index];
+    }
+
+    public double getMean(int index) {
+        return this.mean[index];
+    }
+
+    /**
+     * @return the sample variance, i.e. normalized by <code>count - 1</code>
+     */
+    public double getVariance(int index) {
+        return this.count > 1 ? this.squaredDeviations[index] / (this.count - 1) : 0;
+    }
+
+    public double getStandardDeviation(int index) {
+        return Math.sqrt(getVariance(index));
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureStatistics of " + this.count + " data points of dimension " + this.dataDimension;
+    }
+}
@@ -0,0 +1,116 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.util.Arrays;
+
+import weka.classifiers.functions.GMLVQ;
+
+/**
+ * A {@link DataPoint} which keeps its values in single precision, halving the
+ * memory occupied by the training data. Its mappings to the embedded space are
+ * stored in single precision as well, whereas all sums (dot products,
+ * distances, updates) are still accumulated in double precision.
+ *
+ * @author S
+ *
+ */
+public class FloatDataPoint extends DataPoint {
+
+    private static final long serialVersionUID = 1L;
+
+    private final float[] floatValues;
+
+    public FloatDataPoint(double[] values, double classLabel) {
+        super(values.length, classLabel);
+        this.floatValues = new float[values.length];
+        for (int index = 0; index < values.length; index++) {
+            this.floatValues[index] = (float) values[index];
+        }
+    }
+
+    public FloatDataPoint(double[] values, double classLabel, double weight) {
+        this(values, classLabel);
+        setWeight(weight);
+    }
+
+    @Override
+    public double getValue(int index) {
+        return this.floatValues[index];
+    }
+
+    /**
+     * @return a double precision copy of the values
+     */
+    @Override
+    public double[] getValues() {
+        double[] values = new double[this.floatValues.length];
+        for (int index = 0; index < values.length; index++) {
+            values[index] = this.floatValues[index];
+        }
+        return values;
+    }
+
+    @Override
+    public double dotProduct(double[] weights) {
+        double sum = 0;
+        for (int index = 0; index < this.floatValues.length; index++) {
+            sum += this.floatValues[index] * weights[index];
+        }
+        return sum;
+    }
+
+    @Override
+    protected EmbeddedSpaceVector determineMapping(OmegaMatrix matrix) {
+        if (!GMLVQ.isRelevanceLearning(matrix)) {
+            // values never change, so they can be shared
+            return new FloatEmbeddedSpaceVector(this.floatValues, getClassLabel(), matrix);
+        }
+        double[][] rows = matrix.getArray();
+        float[] product = new float[rows.length];
+        for (int rowIndex = 0; rowIndex < rows.length; rowIndex++) {
+            product[rowIndex] = (float) dotProduct(rows[rowIndex]);
+        }
+        return new FloatEmbeddedSpaceVector(product, getClassLabel(), matrix);
+    }
+
+    @Override
+    protected EmbeddedSpaceVector createMapping(double[] product, OmegaMatrix matrix) {
+        float[] floatProduct = new float[product.length];
+        for (int rowIndex = 0; rowIndex < product.length; rowIndex++) {
+            floatProduct[rowIndex] = (float) product[rowIndex];
+        }
+        return new FloatEmbeddedSpaceVector(floatProduct, getClassLabel(), matrix);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        long temp;
+        temp = Double.doubleToLongBits(getClassLabel());
+        result = prime * result + (int) (temp ^ temp >>> 32);
+        result = prime * result + Arrays.hashCode(this.floatValues);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        FloatDataPoint other = (FloatDataPoint) obj;
+        if (Double.doubleToLongBits(getClassLabel()) != Double.doubleToLongBits(other.getClassLabel())) {
+            return false;
+        }
+        if (!Arrays.equals(this.floatValues, other.floatValues)) {
+            return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,47 @@
+package weka.classifiers.functions.gmlvq.model;
+
+/**
+ * The single precision mapping of a {@link FloatDataPoint} to the embedded
+ * space.
+ *
+ * @author S
+ *
+ */
+class FloatEmbeddedSpaceVector extends EmbeddedSpaceVector {
+
+    private static final long serialVersionUID = 1L;
+
+    private final float[] floatValues;
+
+    FloatEmbeddedSpaceVector(float[] values, double classLabel, OmegaMatrix omegaMatrix) {
+        super(values.length, classLabel, omegaMatrix);
+        this.floatValues = values;
+    }
+
+    @Override
+    public double getValue(int index) {
+        return this.floatValues[index];
+    }
+
+    /**
+     * @return a double precision copy of the values
+     */
+    @Override
+    public double[] getValues() {
+        double[] values = new double[this.floatValues.length];
+        for (int index = 0; index < values.length; index++) {
+            values[index] = this.floatValues[index];
+        }
+        return values;
+    }
+
+    @Override
+    public double dotProduct(double[] weights) {
+        double sum = 0;
+        for (int index = 0; index < this.floatValues.length; index++) {
+            sum += this.floatValues[index] * weights[index];
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,114 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import weka.classifiers.functions.GMLVQ;
+import weka.core.Instance;
+
+/**
+ * A {@link DataPoint} which reads its values straight from a WEKA
+ * {@link Instance} - no values are copied, so converting a data set (e.g. for
+ * each fold of a cross-validation) merely creates one view per instance. The
+ * class attribute is skipped, i.e. index <code>i</code> refers to the
+ * <code>i</code>-th attribute which is not the class.<br />
+ * <br />
+ * The instance must not be changed while the view is in use.
+ *
+ * @author S
+ *
+ */
+public class InstanceDataPoint extends DataPoint {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Instance instance;
+    /**
+     * the index of the class attribute - all attributes behind it are shifted
+     * by one
+     */
+    private final int classIndex;
+
+    public InstanceDataPoint(Instance instance) {
+        super(instance.numAttributes() - 1, instance.classValue());
+        this.instance = instance;
+        this.classIndex = instance.classIndex();
+    }
+
+    @Override
+    public double getValue(int index) {
+        return this.instance.value(index < this.classIndex ? index : index + 1);
+    }
+
+    /**
+     * @return a copy of the values
+     */
+    @Override
+    public double[] getValues() {
+        double[] values = new double[getDimension()];
+        for (int index = 0; index < values.length; index++) {
+            values[index] = getValue(index);
+        }
+        return values;
+    }
+
+    @Override
+    public double dotProduct(double[] weights) {
+        double sum = 0;
+        for (int index = 0; index < this.classIndex; index++) {
+            sum += this.instance.value(index) * weights[index];
+        }
+        for (int index = this.classIndex; index < weights.length; index++) {
+            sum += this.instance.value(index + 1) * weights[index];
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(double[] target, double factor) {
+        for (int index = 0; index < this.classIndex; index++) {
+            target[index] += factor * this.instance.value(index);
+        }
+        for (int index = this.classIndex; index < target.length; index++) {
+            target[index] += factor * this.instance.value(index + 1);
+        }
+    }
+
+    @Override
+    protected EmbeddedSpaceVector determineMapping(OmegaMatrix matrix) {
+        if (!GMLVQ.isRelevanceLearning(matrix)) {
+            // the mapping is the data point itself, so do not copy it
+            return new EmbeddedSpaceVectorView(this, matrix);
+        }
+        return super.determineMapping(matrix);
+    }
+
+    @Override
+    public double getWeight() {
+        return this.instance.weight();
+    }
+
+    public Instance getInstance() {
+        return this.instance;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this.instance);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return this.instance == ((InstanceDataPoint) obj).instance;
+    }
+
+    @Override
+    public String toString() {
+        return "InstanceDataPoint " + getDimension() + "D " + this.instance + " containing " + getNumberOfMappings()
+                + " mappings to embedded space";
+    }
+
+}
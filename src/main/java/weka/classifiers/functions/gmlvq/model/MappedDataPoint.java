@@ -0,0 +1,125 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.nio.ByteBuffer;
+
+import weka.classifiers.functions.GMLVQ;
+
+/**
+ * A {@link DataPoint} whose values are read straight from a row of a
+ * {@link MappedDataStore} - no values are held on the heap. Only absolute
+ * reads are performed on the shared buffer, so views can safely be used by
+ * multiple threads.<br />
+ * <br />
+ * The buffer cannot be serialized, so a deserialized view has no values
+ * anymore.
+ *
+ * @author S
+ *
+ */
+public class MappedDataPoint extends DataPoint {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ByteBuffer buffer;
+    /**
+     * the position of the first value within the buffer, preceded by the
+     * weight
+     */
+    private final int valueOffset;
+    private final boolean singlePrecision;
+
+    MappedDataPoint(ByteBuffer buffer, int rowOffset, int dimension, boolean singlePrecision) {
+        super(dimension, buffer.getDouble(rowOffset));
+        this.buffer = buffer;
+        this.valueOffset = rowOffset + 16;
+        this.singlePrecision = singlePrecision;
+    }
+
+    @Override
+    public double getWeight() {
+        return this.buffer.getDouble(this.valueOffset - 8);
+    }
+
+    @Override
+    public double getValue(int index) {
+        if (this.singlePrecision) {
+            return this.buffer.getFloat(this.valueOffset + 4 * index);
+        }
+        return this.buffer.getDouble(this.valueOffset + 8 * index);
+    }
+
+    /**
+     * @return a copy of the values
+     */
+    @Override
+    public double[] getValues() {
+        double[] values = new double[getDimension()];
+        for (int index = 0; index < values.length; index++) {
+            values[index] = getValue(index);
+        }
+        return values;
+    }
+
+    @Override
+    public double dotProduct(double[] weights) {
+        double sum = 0;
+        int dimension = getDimension();
+        if (this.singlePrecision) {
+            for (int index = 0, position = this.valueOffset; index < dimension; index++, position += 4) {
+                sum += this.buffer.getFloat(position) * weights[index];
+            }
+        } else {
+            for (int index = 0, position = this.valueOffset; index < dimension; index++, position += 8) {
+                sum += this.buffer.getDouble(position) * weights[index];
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(double[] target, double factor) {
+        int dimension = getDimension();
+        if (this.singlePrecision) {
+            for (int index = 0, position = this.valueOffset; index < dimension; index++, position += 4) {
+                target[index] += factor * this.buffer.getFloat(position);
+            }
+        } else {
+            for (int index = 0, position = this.valueOffset; index < dimension; index++, position += 8) {
+                target[index] += factor * this.buffer.getDouble(position);
+            }
+        }
+    }
+
+    @Override
+    protected EmbeddedSpaceVector determineMapping(OmegaMatrix matrix) {
+        if (!GMLVQ.isRelevanceLearning(matrix)) {
+            // the mapping is the data point itself, so do not copy it
+            return new EmbeddedSpaceVectorView(this, matrix);
+        }
+        return super.determineMapping(matrix);
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this.buffer) * 31 + this.valueOffset;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        MappedDataPoint other = (MappedDataPoint) obj;
+        return this.buffer == other.buffer && this.valueOffset == other.valueOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedDataPoint " + getDimension() + "D at " + this.valueOffset + " class = " + getClassLabel()
+                + " containing " + getNumberOfMappings() + " mappings to embedded space";
+    }
+
+}
@@ -0,0 +1,418 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Training data kept in a memory-mapped file instead of on the heap. The file
+ * consists of a header followed by rows of fixed length, each holding the
+ * class label, the weight and all feature values of one data point. The data points
+ * provided by {@link #getDataPoints()} are {@link MappedDataPoint}s, i.e. views
+ * which read their values straight from the mapped file - so the operating
+ * system decides which parts of the data reside in memory and the heap only
+ * holds the model, the mappings to the embedded space and per-batch
+ * buffers.<br />
+ * <br />
+ * Layout (big-endian):
+ * <ul>
+ * <li><code>int</code> magic number {@link #MAGIC_NUMBER}</li>
+ * <li><code>int</code> format version {@link #VERSION}</li>
+ * <li><code>long</code> number of rows, <code>int</code> data dimension,
+ * <code>byte</code> single precision flag</li>
+ * <li><code>int</code> number of class names and each name, followed by one
+ * name per attribute</li>
+ * <li>padding up to a multiple of 8 bytes</li>
+ * <li>the rows, each consisting of a <code>double</code> class label, a
+ * <code>double</code> weight and all values as <code>float</code> or
+ * <code>double</code>, padded to a multiple of 8 bytes</li>
+ * <li>the {@link FeatureStatistics} of all rows: <code>long</code> number of
+ * rows, followed by minimum, maximum, mean and sum of squared deviations of
+ * each feature as <code>double</code></li>
+ * </ul>
+ * Files larger than 2 GB are mapped in several chunks, each containing a whole
+ * number of rows.
+ *
+ * @author S
+ *
+ */
+public class MappedDataStore implements Closeable {
+
+    /**
+     * "GMLD" in ASCII
+     */
+    public static final int MAGIC_NUMBER = 0x474D4C44;
+    /**
+     * the current version of the format, increased upon each incompatible
+     * change
+     */
+    public static final int VERSION = 3;
+    /**
+     * offset of the number of rows, which is written when a {@link Writer} is
+     * closed
+     */
+    private static final int NUMBER_OF_ROWS_OFFSET = 8;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long numberOfRows;
+    private final int dataDimension;
+    private final boolean singlePrecision;
+    private final String[] classNames;
+    private final String[] attributeNames;
+    private final int rowLength;
+    private final int rowsPerChunk;
+    private final MappedByteBuffer[] chunks;
+    private final FeatureStatistics statistics;
+
+    private MappedDataStore(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            MappedByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(this.channel.size(), Integer.MAX_VALUE));
+            if (header.remaining() < 8 || header.getInt() != MAGIC_NUMBER) {
+                throw new IOException(file.getName() + " is no GMLVQ data store");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(file.getName() + " is of format version " + version + ", only version "
+                        + VERSION + " is supported");
+            }
+            this.numberOfRows = header.getLong();
+            this.dataDimension = header.getInt();
+            this.singlePrecision = header.get() != 0;
+            this.classNames = readStrings(header);
+            this.attributeNames = readStrings(header);
+            long dataOffset = align(header.position());
+
+            this.rowLength = rowLength(this.dataDimension, this.singlePrecision);
+            long statisticsOffset = dataOffset + this.numberOfRows * this.rowLength;
+            if (statisticsOffset + FeatureStatistics.length(this.dataDimension) > this.channel.size()) {
+                throw new IOException(file.getName() + " is truncated");
+            }
+            this.statistics = FeatureStatistics.read(this.channel.map(FileChannel.MapMode.READ_ONLY,
+                    statisticsOffset, FeatureStatistics.length(this.dataDimension)), this.dataDimension);
+            this.rowsPerChunk = Integer.MAX_VALUE / this.rowLength;
+            int numberOfChunks = (int) ((this.numberOfRows + this.rowsPerChunk - 1) / this.rowsPerChunk);
+            this.chunks = new MappedByteBuffer[numberOfChunks];
+            for (int chunkIndex = 0; chunkIndex < numberOfChunks; chunkIndex++) {
+                long firstRow = (long) chunkIndex * this.rowsPerChunk;
+                long rows = Math.min(this.rowsPerChunk, this.numberOfRows - firstRow);
+                this.chunks[chunkIndex] = this.channel.map(FileChannel.MapMode.READ_ONLY,
+                        dataOffset + firstRow * this.rowLength, rows * this.rowLength);
+            }
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * opens a store previously written by a {@link Writer}
+     *
+     * @param file
+     *            the file to map
+     * @return the store
+     * @throws IOException
+     *             if the file cannot be read or is no data store of a supported
+     *             version
+     */
+    public static MappedDataStore open(File file) throws IOException {
+        return new MappedDataStore(file);
+    }
+
+    /**
+     * creates a writer for a new store, an existing file will be overwritten
+     *
+     * @param file
+     *            the target file
+     * @param attributeNames
+     *            the names of all attributes (without class)
+     * @param classNames
+     *            the names of all classes, indexed by class label
+     * @param singlePrecision
+     *            whether values are stored as floats
+     * @return the writer, rows are appended by
+     *         {@link Writer#append(double[], double, double)}
+     * @throws IOException
+     */
+    public static Writer create(File file, String[] attributeNames, String[] classNames, boolean singlePrecision)
+            throws IOException {
+        return new Writer(file, attributeNames, classNames, singlePrecision);
+    }
+
+    /**
+     * writes the given instances including their weights to a store and
+     * opens it - the class attribute is skipped, wherever it is located
+     *
+     * @param instances
+     *            the data to write
+     * @param file
+     *            the target file
+     * @param singlePrecision
+     *            whether values are stored as floats
+     * @return the opened store
+     * @throws IOException
+     */
+    public static MappedDataStore write(Instances instances, File file, boolean singlePrecision) throws IOException {
+        Writer writer = create(file, WekaModelConverter.extractAttributeNames(instances),
+                WekaModelConverter.extractClassNames(instances), singlePrecision);
+        try {
+            for (Instance instance : instances) {
+                writer.append(WekaModelConverter.extractValues(instance), instance.classValue(), instance.weight());
+            }
+        } finally {
+            writer.close();
+        }
+        return open(file);
+    }
+
+    /**
+     * creates a view of each row - no values are copied to the heap
+     *
+     * @return the data points backed by this store
+     */
+    public List<DataPoint> getDataPoints() {
+        if (this.numberOfRows > Integer.MAX_VALUE) {
+            throw new IllegalStateException(
+                    "a store of " + this.numberOfRows + " rows cannot be represented as list of data points");
+        }
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>((int) this.numberOfRows);
+        for (long rowIndex = 0; rowIndex < this.numberOfRows; rowIndex++) {
+            dataPoints.add(getDataPoint(rowIndex));
+        }
+        return dataPoints;
+    }
+
+    /**
+     * @param rowIndex
+     *            the index of the row
+     * @return a view of the requested row
+     */
+    public MappedDataPoint getDataPoint(long rowIndex) {
+        if (rowIndex < 0 || rowIndex >= this.numberOfRows) {
+            throw new IndexOutOfBoundsException("row " + rowIndex + " of " + this.numberOfRows);
+        }
+        ByteBuffer chunk = this.chunks[(int) (rowIndex / this.rowsPerChunk)];
+        int offset = (int) (rowIndex % this.rowsPerChunk) * this.rowLength;
+        return new MappedDataPoint(chunk, offset, this.dataDimension, this.singlePrecision);
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    public long getNumberOfRows() {
+        return this.numberOfRows;
+    }
+
+    public int getDataDimension() {
+        return this.dataDimension;
+    }
+
+    public boolean isSinglePrecision() {
+        return this.singlePrecision;
+    }
+
+    public String[] getClassNames() {
+        return this.classNames;
+    }
+
+    public String[] getAttributeNames() {
+        return this.attributeNames;
+    }
+
+    /**
+     * @return the statistics of all features, collected while the store was
+     *         written
+     */
+    public FeatureStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * closes the underlying file - the mapping itself is released once no data
+     * point refers to it anymore
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "MappedDataStore " + this.file.getName() + ": " + this.numberOfRows + " rows of dimension "
+                + this.dataDimension + (this.singlePrecision ? " (single precision)" : "");
+    }
+
+    /**
+     * writes the header including the padding in front of the first row
+     *
+     * @return the number of bytes written, i.e. the offset of the first row
+     */
+    static int writeHeader(DataOutputStream outputStream, long numberOfRows, String[] attributeNames,
+            String[] classNames, boolean singlePrecision) throws IOException {
+        int start = outputStream.size();
+        outputStream.writeInt(MAGIC_NUMBER);
+        outputStream.writeInt(VERSION);
+        outputStream.writeLong(numberOfRows);
+        outputStream.writeInt(attributeNames.length);
+        outputStream.writeByte(singlePrecision ? 1 : 0);
+        writeStrings(outputStream, classNames);
+        writeStrings(outputStream, attributeNames);
+        while ((outputStream.size() - start) % 8 != 0) {
+            outputStream.writeByte(0);
+        }
+        return outputStream.size() - start;
+    }
+
+    /**
+     * encodes one row at the current position of the buffer
+     */
+    static void putRow(ByteBuffer buffer, double[] values, double classLabel, double weight,
+            boolean singlePrecision) {
+        int start = buffer.position();
+        buffer.putDouble(classLabel);
+        buffer.putDouble(weight);
+        for (double value : values) {
+            if (singlePrecision) {
+                buffer.putFloat((float) value);
+            } else {
+                buffer.putDouble(value);
+            }
+        }
+        buffer.position(start + rowLength(values.length, singlePrecision));
+    }
+
+    static int rowLength(int dataDimension, boolean singlePrecision) {
+        return (int) align(16 + (long) dataDimension * (singlePrecision ? 4 : 8));
+    }
+
+    private static long align(long length) {
+        return (length + 7) / 8 * 8;
+    }
+
+    private static void writeStrings(DataOutputStream outputStream, String[] values) throws IOException {
+        outputStream.writeInt(values.length);
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            outputStream.writeInt(bytes.length);
+            outputStream.write(bytes);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        String[] values = new String[buffer.getInt()];
+        for (int index = 0; index < values.length; index++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            values[index] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    /**
+     * appends rows to a new store, the number of rows and the feature
+     * statistics are written when closing the writer
+     */
+    public static class Writer implements Closeable {
+
+        private final File file;
+        private final DataOutputStream outputStream;
+        private final int dataDimension;
+        private final boolean singlePrecision;
+        private final int padding;
+        private final FeatureStatistics statistics;
+        private long numberOfRows;
+
+        private Writer(File file, String[] attributeNames, String[] classNames, boolean singlePrecision)
+                throws IOException {
+            this.file = file;
+            this.dataDimension = attributeNames.length;
+            this.singlePrecision = singlePrecision;
+            this.padding = rowLength(this.dataDimension, singlePrecision) - 16
+                    - this.dataDimension * (singlePrecision ? 4 : 8);
+            this.statistics = new FeatureStatistics(this.dataDimension);
+            this.outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            writeHeader(this.outputStream, 0, attributeNames, classNames, singlePrecision);
+        }
+
+        /**
+         * appends a data point of weight 1
+         *
+         * @param values
+         *            the values of one data point (without class)
+         * @param classLabel
+         *            its class label
+         * @throws IOException
+         */
+        public void append(double[] values, double classLabel) throws IOException {
+            append(values, classLabel, 1);
+        }
+
+        /**
+         * @param values
+         *            the values of one data point (without class)
+         * @param classLabel
+         *            its class label
+         * @param weight
+         *            its weight, see {@link DataPoint#getWeight()}
+         * @throws IOException
+         */
+        public void append(double[] values, double classLabel, double weight) throws IOException {
+            if (values.length != this.dataDimension) {
+                throw new IllegalArgumentException(
+                        "expected " + this.dataDimension + " values, but got " + values.length);
+            }
+            if (weight < 0 || Double.isNaN(weight)) {
+                throw new IllegalArgumentException("weight cannot be negative, but was " + weight);
+            }
+            this.outputStream.writeDouble(classLabel);
+            this.outputStream.writeDouble(weight);
+            for (double value : values) {
+                if (this.singlePrecision) {
+                    this.outputStream.writeFloat((float) value);
+                } else {
+                    this.outputStream.writeDouble(value);
+                }
+            }
+            for (int index = 0; index < this.padding; index++) {
+                this.outputStream.writeByte(0);
+            }
+            this.statistics.add(values);
+            this.numberOfRows++;
+        }
+
+        public long getNumberOfRows() {
+            return this.numberOfRows;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.statistics.write(this.outputStream);
+            this.outputStream.close();
+            RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+            try {
+                randomAccessFile.seek(NUMBER_OF_ROWS_OFFSET);
+                randomAccessFile.writeLong(this.numberOfRows);
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+    }
+}
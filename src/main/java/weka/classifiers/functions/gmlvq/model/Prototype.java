@@ -13,6 +13,19 @@ public class Prototype extends DataSpaceVector {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * the cached hash code, 0 if not yet computed - lists of prototypes key
+     * the {@link WinningInformation} of every data point and would otherwise
+     * hash all values on each lookup
+     */
+    private transient int hashCode;
+    /**
+     * the cached squared norm, valid if {@link #squaredNormKnown} - sparse
+     * data points compute their distances to prototypes by it
+     */
+    private transient double squaredNorm;
+    private transient volatile boolean squaredNormKnown;
+
     public Prototype(double[] values, double classLabel) {
         super(values, classLabel);
     }
@@ -23,7 +36,34 @@ public class Prototype extends DataSpaceVector {
 
     @Override
     public void setValues(double[] values) {
-        setValues(values);
+        super.setValues(values);
+        this.hashCode = 0;
+        this.squaredNormKnown = false;
+    }
+
+    @Override
+    public void setClassLabel(double classLabel) {
+        super.setClassLabel(classLabel);
+        this.hashCode = 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = this.hashCode;
+        if (hashCode == 0) {
+            hashCode = super.hashCode();
+            this.hashCode = hashCode;
+        }
+        return hashCode;
+    }
+
+    @Override
+    public double getSquaredNorm() {
+        if (!this.squaredNormKnown) {
+            this.squaredNorm = super.getSquaredNorm();
+            this.squaredNormKnown = true;
+        }
+        return this.squaredNorm;
     }
 
     @Override
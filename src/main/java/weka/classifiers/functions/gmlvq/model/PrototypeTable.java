@@ -0,0 +1,159 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.util.List;
+
+import weka.classifiers.functions.GMLVQ;
+import weka.classifiers.functions.gmlvq.utilities.Kernels;
+
+/**
+ * The prototypes of one state of training, mapped to the embedded space once
+ * and shared by all threads of a gradient descent or cost evaluation. The
+ * table never changes after construction, so it is read without locks -
+ * whereas {@link Prototype#getEmbeddedSpaceVector(OmegaMatrix)} is
+ * synchronized and hashes the whole omega matrix on every call.<br />
+ * <br />
+ * The mapped prototypes are computed directly from the omega matrix, with the
+ * same arithmetic as {@link DataSpaceVector#getEmbeddedSpaceVector(OmegaMatrix)}
+ * , and stored as consecutively allocated rows of the omega dimension. The
+ * arrays handed out must not be modified. Prototypes and omega matrix are
+ * updated in place when training accepts an update, so a table is only valid
+ * until then.
+ *
+ * @author S
+ *
+ */
+public class PrototypeTable {
+
+    private final List<Prototype> prototypes;
+    private final OmegaMatrix omegaMatrix;
+    private final int dimension;
+    private final double[][] mappedPrototypes;
+    private final double[] norms;
+    private final double[] classLabels;
+    /**
+     * the index of the mapped prototypes, <code>null</code> if not worthwhile
+     */
+    private final PrototypeTree prototypeTree;
+
+    /**
+     * @param prototypes
+     *            the prototypes to map
+     * @param omegaMatrix
+     *            the mapping to the embedded space
+     */
+    public PrototypeTable(List<Prototype> prototypes, OmegaMatrix omegaMatrix) {
+        this(prototypes, omegaMatrix, true);
+    }
+
+    /**
+     * @param prototypes
+     *            the prototypes to map
+     * @param omegaMatrix
+     *            the mapping to the embedded space
+     * @param indexing
+     *            whether the mapped prototypes are indexed by a
+     *            {@link PrototypeTree} when worthwhile
+     */
+    public PrototypeTable(List<Prototype> prototypes, OmegaMatrix omegaMatrix, boolean indexing) {
+        this.prototypes = prototypes;
+        this.omegaMatrix = omegaMatrix;
+        boolean relevanceLearning = GMLVQ.isRelevanceLearning(omegaMatrix);
+        double[][] rows = omegaMatrix.getArray();
+        // without relevance learning, the embedded space is the data space
+        this.dimension = prototypes.isEmpty() ? 0
+                : relevanceLearning ? rows.length : prototypes.get(0).getDimension();
+        this.mappedPrototypes = new double[prototypes.size()][this.dimension];
+        this.norms = new double[prototypes.size()];
+        this.classLabels = new double[prototypes.size()];
+        Kernels kernels = Kernels.getInstance();
+        for (int index = 0; index < prototypes.size(); index++) {
+            Prototype prototype = prototypes.get(index);
+            double[] mappedPrototype = this.mappedPrototypes[index];
+            if (relevanceLearning) {
+                for (int rowIndex = 0; rowIndex < rows.length; rowIndex++) {
+                    mappedPrototype[rowIndex] = prototype.dotProduct(rows[rowIndex]);
+                }
+            } else {
+                prototype.addTo(mappedPrototype, 1);
+            }
+            this.norms[index] = kernels.dotProduct(mappedPrototype, mappedPrototype, this.dimension);
+            this.classLabels[index] = prototype.getClassLabel();
+        }
+        this.prototypeTree = indexing && PrototypeTree.isWorthwhile(prototypes.size(), this.dimension)
+                ? new PrototypeTree(this.mappedPrototypes, this.classLabels, this.dimension)
+                : null;
+    }
+
+    /**
+     * @return the prototypes, also the key of registered
+     *         {@link WinningInformation}
+     */
+    public List<Prototype> getPrototypes() {
+        return this.prototypes;
+    }
+
+    public OmegaMatrix getOmegaMatrix() {
+        return this.omegaMatrix;
+    }
+
+    /**
+     * @return the number of prototypes
+     */
+    public int size() {
+        return this.mappedPrototypes.length;
+    }
+
+    /**
+     * @return the dimension of the embedded space
+     */
+    public int getDimension() {
+        return this.dimension;
+    }
+
+    /**
+     * @return the mapped prototype, which must not be modified
+     */
+    public double[] getMappedPrototype(int index) {
+        return this.mappedPrototypes[index];
+    }
+
+    /**
+     * @return all mapped prototypes, which must not be modified
+     */
+    double[][] getMappedPrototypes() {
+        return this.mappedPrototypes;
+    }
+
+    /**
+     * @return the squared norm of the mapped prototype
+     */
+    public double getNorm(int index) {
+        return this.norms[index];
+    }
+
+    double[] getNorms() {
+        return this.norms;
+    }
+
+    public double getClassLabel(int index) {
+        return this.classLabels[index];
+    }
+
+    double[] getClassLabels() {
+        return this.classLabels;
+    }
+
+    /**
+     * @return the index of the mapped prototypes, <code>null</code> if
+     *         disabled or {@link PrototypeTree#isWorthwhile(int, int)} does
+     *         not hold - its searches are thread-safe
+     */
+    public PrototypeTree getPrototypeTree() {
+        return this.prototypeTree;
+    }
+
+    @Override
+    public String toString() {
+        return "PrototypeTable of " + size() + " prototypes in " + this.dimension + "D";
+    }
+}
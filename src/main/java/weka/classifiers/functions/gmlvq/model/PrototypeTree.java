@@ -0,0 +1,440 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import weka.classifiers.functions.gmlvq.utilities.Kernels;
+
+/**
+ * An exact index of prototypes mapped to the embedded space: one ball tree per
+ * class and one of all prototypes, whose nodes hold the mean and the radius
+ * of their prototypes. A
+ * search descends into the closer child first and skips all nodes which
+ * cannot contain a prototype closer than the ones already found, so with
+ * hundreds of prototypes in a low-dimensional embedded space only a few
+ * distances are computed. Searches may be restricted to the class of a data
+ * point or to all other classes, as needed for {@link WinningInformation}.
+ * <br />
+ * <br />
+ * The tree has to be rebuilt whenever prototypes or omega matrix change. In
+ * high-dimensional spaces or for few prototypes hardly any node is skipped,
+ * so {@link #isWorthwhile(int, int)} tells whether a linear scan is cheaper.
+ * Ties are broken by the lower index, just like a linear scan does.<br />
+ * <br />
+ * For thousands of prototypes, classification may trade exactness for
+ * latency: a search with an approximation factor <code>e</code> also skips
+ * nodes which could only contain prototypes closer by less than a factor of
+ * <code>1 + e</code> (as by Arya and Mount), so the (not squared) distance of
+ * the reported prototype exceeds the one of the nearest prototype by at most
+ * this factor. Instances are immutable and may be shared among threads.
+ *
+ * @author S
+ *
+ */
+public class PrototypeTree implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * the maximal number of prototypes of a leaf
+     */
+    static final int LEAF_SIZE = 8;
+    /**
+     * the number of prototypes from which on a search of the tree pays off
+     */
+    public static final int MINIMAL_PROTOTYPES = 256;
+    /**
+     * the maximal dimension of the embedded space in which a search of the
+     * tree pays off - balls hardly separate in higher dimensions
+     */
+    public static final int MAXIMAL_DIMENSION = 8;
+
+    private final double[][] points;
+    private final int dimension;
+    private final double[] classLabels;
+    private final Node[] roots;
+    private final Node root;
+
+    /**
+     * @param points
+     *            the mapped prototypes, which are referenced and must not
+     *            change
+     * @param pointClassLabels
+     *            the class labels of the points
+     * @param dimension
+     *            the number of values of each point
+     */
+    public PrototypeTree(double[][] points, double[] pointClassLabels, int dimension) {
+        if (points.length != pointClassLabels.length) {
+            throw new IllegalArgumentException(
+                    "got " + points.length + " points, but " + pointClassLabels.length + " class labels");
+        }
+        this.points = points;
+        this.dimension = dimension;
+
+        // group the points by class
+        Map<Double, List<Integer>> classes = new LinkedHashMap<Double, List<Integer>>();
+        for (int index = 0; index < points.length; index++) {
+            List<Integer> members = classes.get(pointClassLabels[index]);
+            if (members == null) {
+                members = new ArrayList<Integer>();
+                classes.put(pointClassLabels[index], members);
+            }
+            members.add(index);
+        }
+        this.classLabels = new double[classes.size()];
+        this.roots = new Node[classes.size()];
+        int[] classOrder = new int[points.length];
+        int classIndex = 0;
+        int from = 0;
+        for (Map.Entry<Double, List<Integer>> entry : classes.entrySet()) {
+            int to = from;
+            for (int index : entry.getValue()) {
+                classOrder[to++] = index;
+            }
+            this.classLabels[classIndex] = entry.getKey();
+            this.roots[classIndex++] = build(classOrder, from, to);
+            from = to;
+        }
+        int[] order = new int[points.length];
+        for (int index = 0; index < points.length; index++) {
+            order[index] = index;
+        }
+        this.root = points.length == 0 ? null : build(order, 0, points.length);
+    }
+
+    /**
+     * maps the prototypes and indexes them if this pays off
+     *
+     * @param prototypes
+     *            the prototypes to index
+     * @param omegaMatrix
+     *            the mapping to the embedded space
+     * @return the index or <code>null</code> if a linear scan is cheaper
+     */
+    public static PrototypeTree create(List<Prototype> prototypes, OmegaMatrix omegaMatrix) {
+        return create(prototypes, omegaMatrix, 0);
+    }
+
+    /**
+     * maps the prototypes and indexes them if this pays off for searches with
+     * the given approximation factor
+     *
+     * @return the index or <code>null</code> if a linear scan is cheaper
+     */
+    public static PrototypeTree create(List<Prototype> prototypes, OmegaMatrix omegaMatrix, double approximation) {
+        if (prototypes.isEmpty()) {
+            return null;
+        }
+        // without relevance learning, the embedded space is the data space
+        int dimension = prototypes.get(0).getEmbeddedSpaceVector(omegaMatrix).getDimension();
+        if (!isWorthwhile(prototypes.size(), dimension, approximation)) {
+            return null;
+        }
+        double[][] points = new double[prototypes.size()][dimension];
+        double[] pointClassLabels = new double[prototypes.size()];
+        for (int index = 0; index < prototypes.size(); index++) {
+            prototypes.get(index).getEmbeddedSpaceVector(omegaMatrix).addTo(points[index], 1);
+            pointClassLabels[index] = prototypes.get(index).getClassLabel();
+        }
+        return new PrototypeTree(points, pointClassLabels, dimension);
+    }
+
+    /**
+     * the cost model: a linear scan computes all distances, a search of the
+     * tree about <code>log(P)</code> distances to node centers plus the
+     * distances within the leaves close to the query. The latter grow
+     * exponentially with the dimension, so the tree only pays off for many
+     * prototypes in few dimensions.
+     *
+     * @return whether a search of the tree is expected to be cheaper than a
+     *         linear scan
+     */
+    public static boolean isWorthwhile(int numberOfPrototypes, int dimension) {
+        return isWorthwhile(numberOfPrototypes, dimension, 0);
+    }
+
+    /**
+     * approximate searches skip more nodes - the number of leaves they visit
+     * grows like <code>(1 + 1 / e)^d</code> rather than exponentially in the
+     * dimension alone - so the maximal dimension grows with the approximation
+     * factor <code>e</code>, up to twice {@link #MAXIMAL_DIMENSION} for
+     * factors of 1 and above. Beyond that, even approximate searches visit
+     * about as many prototypes as a linear scan.
+     *
+     * @return whether a search of the tree with the given approximation
+     *         factor is expected to be cheaper than a linear scan
+     */
+    public static boolean isWorthwhile(int numberOfPrototypes, int dimension, double approximation) {
+        return numberOfPrototypes >= MINIMAL_PROTOTYPES
+                && dimension <= MAXIMAL_DIMENSION * (1 + Math.min(Math.max(approximation, 0), 1));
+    }
+
+    /**
+     * builds the node of a range of the order, which is sorted so each child
+     * covers a range as well
+     */
+    private Node build(int[] order, int from, int to) {
+        Kernels kernels = Kernels.getInstance();
+        Node node = new Node(order, from, to, new double[this.dimension]);
+        for (int index = from; index < to; index++) {
+            kernels.addTo(node.center, 1.0 / (to - from), this.points[order[index]], this.dimension);
+        }
+        double radius = 0;
+        for (int index = from; index < to; index++) {
+            radius = Math.max(radius,
+                    kernels.squaredEuclideanDistance(node.center, this.points[order[index]], this.dimension));
+        }
+        node.radius = Math.sqrt(radius);
+        if (to - from <= LEAF_SIZE) {
+            return node;
+        }
+
+        // split at the median of the dimension of the largest spread
+        int splitDimension = 0;
+        double largestSpread = -1;
+        for (int dimension = 0; dimension < this.dimension; dimension++) {
+            double minimum = Double.POSITIVE_INFINITY;
+            double maximum = Double.NEGATIVE_INFINITY;
+            for (int index = from; index < to; index++) {
+                minimum = Math.min(minimum, this.points[order[index]][dimension]);
+                maximum = Math.max(maximum, this.points[order[index]][dimension]);
+            }
+            if (maximum - minimum > largestSpread) {
+                largestSpread = maximum - minimum;
+                splitDimension = dimension;
+            }
+        }
+        final int sortDimension = splitDimension;
+        Integer[] range = new Integer[to - from];
+        for (int index = from; index < to; index++) {
+            range[index - from] = order[index];
+        }
+        Arrays.sort(range, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer first, Integer second) {
+                return Double.compare(PrototypeTree.this.points[first][sortDimension],
+                        PrototypeTree.this.points[second][sortDimension]);
+            }
+        });
+        for (int index = from; index < to; index++) {
+            order[index] = range[index - from];
+        }
+        int middle = (from + to) >>> 1;
+        node.left = build(order, from, middle);
+        node.right = build(order, middle, to);
+        return node;
+    }
+
+    /**
+     * @param query
+     *            the mapped data point
+     * @return the index of the closest point of any class
+     */
+    public int nearest(double[] query) {
+        return nearest(query, 0);
+    }
+
+    /**
+     * @param query
+     *            the mapped data point
+     * @param approximation
+     *            the factor by which the distance of the reported point may
+     *            exceed the one of the closest point, 0 searches exactly
+     * @return the index of a close point of any class
+     */
+    public int nearest(double[] query, double approximation) {
+        Neighbours neighbours = new Neighbours(false, approximation);
+        if (this.root != null) {
+            search(this.root, query, neighbours);
+        }
+        return neighbours.winner;
+    }
+
+    /**
+     * searches the closest point of each class
+     *
+     * @param query
+     *            the mapped data point
+     * @param approximation
+     *            the factor by which the distances of the reported points may
+     *            exceed the ones of the closest points, 0 searches exactly
+     * @param winners
+     *            receives the index of the point of each class, in the order
+     *            of {@link #getClassLabels()}
+     * @param distances
+     *            receives the squared distances to these points
+     */
+    public void nearestPerClass(double[] query, double approximation, int[] winners, double[] distances) {
+        for (int classIndex = 0; classIndex < this.roots.length; classIndex++) {
+            Neighbours neighbours = new Neighbours(false, approximation);
+            search(this.roots[classIndex], query, neighbours);
+            winners[classIndex] = neighbours.winner;
+            distances[classIndex] = neighbours.winnerDistance;
+        }
+    }
+
+    /**
+     * searches the closest points of the given class or of all other classes,
+     * continuing a search which may already have found some points
+     *
+     * @param sameClass
+     *            whether to search the points of the class label or the ones
+     *            of all other classes
+     */
+    void search(double[] query, double classLabel, boolean sameClass, Neighbours neighbours) {
+        for (int classIndex = 0; classIndex < this.roots.length; classIndex++) {
+            if ((this.classLabels[classIndex] == classLabel) == sameClass) {
+                search(this.roots[classIndex], query, neighbours);
+            }
+        }
+    }
+
+    private void search(Node node, double[] query, Neighbours neighbours) {
+        if (isFartherThanBound(node, centerDistance(node, query, neighbours), neighbours)) {
+            return;
+        }
+        descend(node, query, neighbours);
+    }
+
+    private void descend(Node node, double[] query, Neighbours neighbours) {
+        if (node.left == null) {
+            Kernels kernels = Kernels.getInstance();
+            for (int index = node.from; index < node.to; index++) {
+                int point = node.order[index];
+                neighbours.offer(point, kernels.squaredEuclideanDistance(query, this.points[point], this.dimension));
+            }
+            neighbours.evaluations += node.to - node.from;
+            return;
+        }
+        double leftDistance = centerDistance(node.left, query, neighbours);
+        double rightDistance = centerDistance(node.right, query, neighbours);
+        Node closer = leftDistance <= rightDistance ? node.left : node.right;
+        Node farther = closer == node.left ? node.right : node.left;
+        if (!isFartherThanBound(closer, Math.min(leftDistance, rightDistance), neighbours)) {
+            descend(closer, query, neighbours);
+        }
+        if (!isFartherThanBound(farther, Math.max(leftDistance, rightDistance), neighbours)) {
+            descend(farther, query, neighbours);
+        }
+    }
+
+    private double centerDistance(Node node, double[] query, Neighbours neighbours) {
+        neighbours.evaluations++;
+        return Math.sqrt(Kernels.getInstance().squaredEuclideanDistance(query, node.center, this.dimension));
+    }
+
+    /**
+     * @return whether all points of the node are certainly farther than the
+     *         points already found - ties are searched, so the lower index
+     *         wins
+     */
+    private static boolean isFartherThanBound(Node node, double centerDistance, Neighbours neighbours) {
+        double gap = centerDistance - node.radius;
+        return gap > 0 && gap * gap * neighbours.pruningFactor > neighbours.getBound();
+    }
+
+    /**
+     * @return the class labels of the points, one per class
+     */
+    public double[] getClassLabels() {
+        return this.classLabels.clone();
+    }
+
+    public int getDimension() {
+        return this.dimension;
+    }
+
+    public int getNumberOfPoints() {
+        return this.points.length;
+    }
+
+    @Override
+    public String toString() {
+        return "PrototypeTree of " + this.points.length + " prototypes of " + this.roots.length + " classes in "
+                + this.dimension + "D";
+    }
+
+    private static class Node implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * the range of the points in the order of the tree
+         */
+        final int[] order;
+        final int from;
+        final int to;
+        final double[] center;
+        double radius;
+        Node left;
+        Node right;
+
+        Node(int[] order, int from, int to, double[] center) {
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.center = center;
+        }
+    }
+
+    /**
+     * the closest points found by a search, optionally including the
+     * runner-up
+     */
+    static class Neighbours {
+
+        final boolean withRunnerUp;
+        /**
+         * the factor of the squared distance to a node beyond which it is
+         * skipped
+         */
+        final double pruningFactor;
+        int winner = -1;
+        double winnerDistance = Double.POSITIVE_INFINITY;
+        int runnerUp = -1;
+        double runnerUpDistance = Double.POSITIVE_INFINITY;
+        /**
+         * the number of distances computed, to points and to node centers
+         */
+        int evaluations;
+
+        Neighbours(boolean withRunnerUp) {
+            this(withRunnerUp, 0);
+        }
+
+        Neighbours(boolean withRunnerUp, double approximation) {
+            if (approximation < 0) {
+                throw new IllegalArgumentException("approximation cannot be negative, but was " + approximation);
+            }
+            this.withRunnerUp = withRunnerUp;
+            this.pruningFactor = (1 + approximation) * (1 + approximation) * (1 - WinnerBounds.SAFETY_MARGIN);
+        }
+
+        void offer(int point, double distance) {
+            if (distance < this.winnerDistance || distance == this.winnerDistance && point < this.winner) {
+                this.runnerUp = this.winner;
+                this.runnerUpDistance = this.winnerDistance;
+                this.winner = point;
+                this.winnerDistance = distance;
+            } else if (distance < this.runnerUpDistance
+                    || distance == this.runnerUpDistance && point < this.runnerUp) {
+                this.runnerUp = point;
+                this.runnerUpDistance = distance;
+            }
+        }
+
+        /**
+         * @return the squared distance a point has to beat
+         */
+        double getBound() {
+            return this.withRunnerUp ? this.runnerUpDistance : this.winnerDistance;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.util.Arrays;
+
+import weka.classifiers.functions.GMLVQ;
+
+/**
+ * A {@link DataPoint} which only stores its non-zero values together with
+ * their indices (e.g. converted from WEKA's <code>SparseInstance</code>).
+ * Projections to the embedded space, additions to arrays and dot products
+ * scale with the number of non-zero values rather than with the data
+ * dimension.
+ *
+ * @author S
+ *
+ */
+public class SparseDataPoint extends DataPoint {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * the ascending indices of all non-zero values
+     */
+    private final int[] indices;
+    private final double[] sparseValues;
+
+    /**
+     * @param indices
+     *            the ascending indices of the stored values
+     * @param values
+     *            the values at these indices
+     * @param dimension
+     *            the data dimension
+     * @param classLabel
+     *            the class label
+     */
+    public SparseDataPoint(int[] indices, double[] values, int dimension, double classLabel) {
+        super(dimension, classLabel);
+        if (indices.length != values.length) {
+            throw new IllegalArgumentException(
+                    "number of indices " + indices.length + " does not match number of values " + values.length);
+        }
+        for (int index = 0; index < indices.length; index++) {
+            if (indices[index] < 0 || indices[index] >= dimension || index > 0 && indices[index] <= indices[index - 1]) {
+                throw new IllegalArgumentException("indices must be ascending and within [0, " + dimension + ")");
+            }
+        }
+        this.indices = indices;
+        this.sparseValues = values;
+    }
+
+    public int getNumberOfNonZeroValues() {
+        return this.indices.length;
+    }
+
+    @Override
+    public double getValue(int index) {
+        return getValue(this.indices, this.sparseValues, index);
+    }
+
+    /**
+     * @return a dense copy of the values
+     */
+    @Override
+    public double[] getValues() {
+        return getValues(this.indices, this.sparseValues, getDimension());
+    }
+
+    @Override
+    public double dotProduct(double[] weights) {
+        return dotProduct(this.indices, this.sparseValues, weights);
+    }
+
+    @Override
+    public void addTo(double[] target, double factor) {
+        addTo(this.indices, this.sparseValues, target, factor);
+    }
+
+    @Override
+    public double squaredEuclideanDistance(Vector other) {
+        return squaredEuclideanDistance(this.indices, this.sparseValues, other);
+    }
+
+    @Override
+    protected EmbeddedSpaceVector determineMapping(OmegaMatrix matrix) {
+        if (!GMLVQ.isRelevanceLearning(matrix)) {
+            // stay sparse - the mapping is the data point itself
+            return new SparseEmbeddedSpaceVector(this.indices, this.sparseValues, getDimension(), getClassLabel(),
+                    matrix);
+        }
+        // the projection is dense, but computed in O(omegaDimension * nnz)
+        return super.determineMapping(matrix);
+    }
+
+    static double getValue(int[] indices, double[] values, int index) {
+        int position = Arrays.binarySearch(indices, index);
+        return position < 0 ? 0 : values[position];
+    }
+
+    static double[] getValues(int[] indices, double[] values, int dimension) {
+        double[] denseValues = new double[dimension];
+        for (int position = 0; position < indices.length; position++) {
+            denseValues[indices[position]] = values[position];
+        }
+        return denseValues;
+    }
+
+    static double dotProduct(int[] indices, double[] values, double[] weights) {
+        double sum = 0;
+        for (int position = 0; position < indices.length; position++) {
+            sum += values[position] * weights[indices[position]];
+        }
+        return sum;
+    }
+
+    static void addTo(int[] indices, double[] values, double[] target, double factor) {
+        for (int position = 0; position < indices.length; position++) {
+            target[indices[position]] += factor * values[position];
+        }
+    }
+
+    /**
+     * expands <code>|x - p|&sup2; = |p|&sup2; + sum(x_i&sup2; - 2 x_i p_i)</code>
+     * over the non-zero values <code>x_i</code> only, the squared norm of the
+     * other vector is cached by prototypes and embedded space vectors - so the
+     * costs scale with the number of non-zero values rather than with the
+     * dimension. Distances which are small compared to the norms lose their
+     * digits in the expansion and are recomputed directly.
+     */
+    static double squaredEuclideanDistance(int[] indices, double[] values, Vector other) {
+        double otherSquaredNorm = other.getSquaredNorm();
+        double squaredNorm = 0;
+        double sum = otherSquaredNorm;
+        for (int position = 0; position < indices.length; position++) {
+            double value = values[position];
+            squaredNorm += value * value;
+            sum += value * (value - 2 * other.getValue(indices[position]));
+        }
+        if (sum > WinnerSearch.CANCELLATION_THRESHOLD * (squaredNorm + otherSquaredNorm)) {
+            return sum;
+        }
+        return walkSquaredEuclideanDistance(indices, values, other);
+    }
+
+    /**
+     * walks along the sparse and the dense values simultaneously, so no index
+     * has to be looked up
+     */
+    private static double walkSquaredEuclideanDistance(int[] indices, double[] values, Vector other) {
+        double sum = 0;
+        int position = 0;
+        for (int index = 0; index < other.getDimension(); index++) {
+            double rawValue;
+            if (position < indices.length && indices[position] == index) {
+                rawValue = values[position] - other.getValue(index);
+                position++;
+            } else {
+                rawValue = -other.getValue(index);
+            }
+            sum += rawValue * rawValue;
+        }
+        return sum;
+    }
+
+    @Override
+    public double getSquaredNorm() {
+        return getSquaredNorm(this.sparseValues);
+    }
+
+    static double getSquaredNorm(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value * value;
+        }
+        return sum;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        long temp;
+        temp = Double.doubleToLongBits(getClassLabel());
+        result = prime * result + (int) (temp ^ temp >>> 32);
+        result = prime * result + Arrays.hashCode(this.indices);
+        result = prime * result + Arrays.hashCode(this.sparseValues);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        SparseDataPoint other = (SparseDataPoint) obj;
+        if (Double.doubleToLongBits(getClassLabel()) != Double.doubleToLongBits(other.getClassLabel())) {
+            return false;
+        }
+        if (getDimension() != other.getDimension() || !Arrays.equals(this.indices, other.indices)
+                || !Arrays.equals(this.sparseValues, other.sparseValues)) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "SparseDataPoint " + getDimension() + "D " + this.indices.length + " non-zero values class = "
+                + getClassLabel() + " containing " + getNumberOfMappings() + " mappings to embedded space";
+    }
+
+}
@@ -0,0 +1,58 @@
+package weka.classifiers.functions.gmlvq.model;
+
+/**
+ * The mapping of a {@link SparseDataPoint} to the embedded space when no
+ * relevance learning is performed - it shares the sparse values of the data
+ * point.
+ *
+ * @author S
+ *
+ */
+class SparseEmbeddedSpaceVector extends EmbeddedSpaceVector {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] indices;
+    private final double[] sparseValues;
+
+    SparseEmbeddedSpaceVector(int[] indices, double[] values, int dimension, double classLabel,
+            OmegaMatrix omegaMatrix) {
+        super(dimension, classLabel, omegaMatrix);
+        this.indices = indices;
+        this.sparseValues = values;
+    }
+
+    @Override
+    public double getValue(int index) {
+        return SparseDataPoint.getValue(this.indices, this.sparseValues, index);
+    }
+
+    /**
+     * @return a dense copy of the values
+     */
+    @Override
+    public double[] getValues() {
+        return SparseDataPoint.getValues(this.indices, this.sparseValues, getDimension());
+    }
+
+    @Override
+    public double dotProduct(double[] weights) {
+        return SparseDataPoint.dotProduct(this.indices, this.sparseValues, weights);
+    }
+
+    @Override
+    public void addTo(double[] target, double factor) {
+        SparseDataPoint.addTo(this.indices, this.sparseValues, target, factor);
+    }
+
+    @Override
+    public double getSquaredNorm() {
+        return SparseDataPoint.getSquaredNorm(this.sparseValues);
+    }
+
+    @Override
+    public double squaredEuclideanDistance(Vector other) {
+        return SparseDataPoint.squaredEuclideanDistance(this.indices, this.sparseValues, other);
+    }
+
+}
@@ -3,9 +3,19 @@ package weka.classifiers.functions.gmlvq.model;
 import java.io.Serializable;
 import java.util.Arrays;
 
+import weka.classifiers.functions.gmlvq.utilities.Kernels;
+
 /**
  * GMLVQ's internal data structure. Each vector contains values as
- * <code>double[]</code> and its class label as primitive double.
+ * <code>double[]</code> and its class label as primitive double.<br />
+ * <br />
+ * Subclasses may keep their values in a different representation (e.g. single
+ * precision or sparse). They have to override {@link #getValue(int)},
+ * {@link #getValues()} and {@link #dotProduct(double[])} and may override
+ * {@link #addTo(double[], double)} and
+ * {@link #squaredEuclideanDistance(Vector)} to exploit their representation -
+ * calculations should therefore prefer these methods over
+ * {@link #getValues()}, which may have to create a copy.
  *
  * @author S
  *
@@ -24,6 +34,19 @@ public class Vector implements Serializable {
         this.classLabel = classLabel;
     }
 
+    /**
+     * used by subclasses which provide their own storage of values
+     *
+     * @param dimension
+     *            the number of values
+     * @param classLabel
+     *            the class label
+     */
+    protected Vector(int dimension, double classLabel) {
+        this.dimension = dimension;
+        this.classLabel = classLabel;
+    }
+
     public int getDimension() {
         return this.dimension;
     }
@@ -40,6 +63,70 @@ public class Vector implements Serializable {
         return this.values[index];
     }
 
+    /**
+     * computes the dot product of this vector and an array of the same
+     * dimension, e.g. a row of the omega matrix
+     *
+     * @param weights
+     *            the second factor
+     * @return the sum of all element-wise products
+     */
+    public double dotProduct(double[] weights) {
+        return Kernels.getInstance().dotProduct(this.values, weights, this.dimension);
+    }
+
+    /**
+     * adds this vector multiplied by a scalar to the given array
+     *
+     * @param target
+     *            the array to add to, of the same dimension as this vector
+     * @param factor
+     *            the scalar
+     */
+    public void addTo(double[] target, double factor) {
+        if (this.values != null) {
+            Kernels.getInstance().addTo(target, factor, this.values, this.dimension);
+            return;
+        }
+        for (int index = 0; index < this.dimension; index++) {
+            target[index] += factor * getValue(index);
+        }
+    }
+
+    /**
+     * @return the squared euclidean norm of this vector, subclasses whose
+     *         values never change may cache it
+     */
+    public double getSquaredNorm() {
+        if (this.values != null) {
+            return Kernels.getInstance().dotProduct(this.values, this.values, this.dimension);
+        }
+        double sum = 0;
+        for (int index = 0; index < this.dimension; index++) {
+            double value = getValue(index);
+            sum += value * value;
+        }
+        return sum;
+    }
+
+    /**
+     * @param other
+     *            a vector of the same dimension
+     * @return the <i>squared</i> euclidean distance between both vectors
+     */
+    public double squaredEuclideanDistance(Vector other) {
+        if (this.values != null && other.values != null) {
+            // both are backed by arrays
+            return Kernels.getInstance().squaredEuclideanDistance(this.values, other.values, this.dimension);
+        }
+        double sum = 0;
+        for (int index = 0; index < this.dimension; index++) {
+            double rawValue = getValue(index) - other.getValue(index);
+            sum += rawValue * rawValue;
+        }
+        return sum;
+    }
+
     public void setValues(double[] values) {
         this.values = values;
         this.dimension = values.length;
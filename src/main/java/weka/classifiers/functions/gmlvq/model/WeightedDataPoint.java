@@ -0,0 +1,171 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import weka.classifiers.functions.GMLVQ;
+
+/**
+ * Represents a group of identical data points by one of them, weighted by the
+ * sum of their weights. Values are read from the representative, so its
+ * storage (dense, sparse, single precision, mapped, ...) is retained.<br />
+ * <br />
+ * Use {@link #collapseDuplicates(List)} to merge the duplicates of a data set,
+ * so each epoch only processes distinct data points.
+ *
+ * @author S
+ *
+ */
+public class WeightedDataPoint extends DataPoint {
+
+    private static final long serialVersionUID = 1L;
+
+    private final DataPoint representative;
+
+    public WeightedDataPoint(DataPoint representative, double weight) {
+        super(representative.getDimension(), representative.getClassLabel());
+        this.representative = representative;
+        setWeight(weight);
+    }
+
+    /**
+     * merges data points with identical values and class label into one
+     * {@link WeightedDataPoint} each - data points without duplicates are
+     * retained as they are
+     *
+     * @param dataPoints
+     *            the data points to merge
+     * @return the distinct data points in order of their first occurrence
+     */
+    public static List<DataPoint> collapseDuplicates(List<DataPoint> dataPoints) {
+        Map<DataPointKey, List<DataPoint>> groups = new LinkedHashMap<DataPointKey, List<DataPoint>>();
+        for (DataPoint dataPoint : dataPoints) {
+            DataPointKey key = new DataPointKey(dataPoint);
+            List<DataPoint> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<DataPoint>(1);
+                groups.put(key, group);
+            }
+            group.add(dataPoint);
+        }
+
+        List<DataPoint> distinctDataPoints = new ArrayList<DataPoint>(groups.size());
+        for (List<DataPoint> group : groups.values()) {
+            if (group.size() == 1) {
+                distinctDataPoints.add(group.get(0));
+            } else {
+                double weight = 0;
+                for (DataPoint dataPoint : group) {
+                    weight += dataPoint.getWeight();
+                }
+                distinctDataPoints.add(new WeightedDataPoint(group.get(0), weight));
+            }
+        }
+        return distinctDataPoints;
+    }
+
+    @Override
+    public double getValue(int index) {
+        return this.representative.getValue(index);
+    }
+
+    @Override
+    public double[] getValues() {
+        return this.representative.getValues();
+    }
+
+    @Override
+    public double dotProduct(double[] weights) {
+        return this.representative.dotProduct(weights);
+    }
+
+    @Override
+    public void addTo(double[] target, double factor) {
+        this.representative.addTo(target, factor);
+    }
+
+    @Override
+    public double squaredEuclideanDistance(Vector other) {
+        return this.representative.squaredEuclideanDistance(other);
+    }
+
+    @Override
+    public double getSquaredNorm() {
+        return this.representative.getSquaredNorm();
+    }
+
+    @Override
+    protected EmbeddedSpaceVector determineMapping(OmegaMatrix matrix) {
+        if (!GMLVQ.isRelevanceLearning(matrix)) {
+            // the mapping is the data point itself, so do not copy it
+            return new EmbeddedSpaceVectorView(this, matrix);
+        }
+        return super.determineMapping(matrix);
+    }
+
+    public DataPoint getRepresentative() {
+        return this.representative;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj;
+    }
+
+    @Override
+    public String toString() {
+        return "WeightedDataPoint " + getDimension() + "D " + this.representative + " weight = " + getWeight();
+    }
+
+    /**
+     * compares data points by class label and values without copying them
+     */
+    private static class DataPointKey {
+
+        private final DataPoint dataPoint;
+        private final int hashCode;
+
+        public DataPointKey(DataPoint dataPoint) {
+            this.dataPoint = dataPoint;
+            long bits = Double.doubleToLongBits(dataPoint.getClassLabel());
+            int hashCode = (int) (bits ^ bits >>> 32);
+            for (int index = 0; index < dataPoint.getDimension(); index++) {
+                bits = Double.doubleToLongBits(dataPoint.getValue(index));
+                hashCode = 31 * hashCode + (int) (bits ^ bits >>> 32);
+            }
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof DataPointKey)) {
+                return false;
+            }
+            DataPoint other = ((DataPointKey) obj).dataPoint;
+            if (Double.doubleToLongBits(this.dataPoint.getClassLabel()) != Double
+                    .doubleToLongBits(other.getClassLabel())
+                    || this.dataPoint.getDimension() != other.getDimension()) {
+                return false;
+            }
+            for (int index = 0; index < this.dataPoint.getDimension(); index++) {
+                if (Double.doubleToLongBits(this.dataPoint.getValue(index)) != Double
+                        .doubleToLongBits(other.getValue(index))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -2,14 +2,13 @@ package weka.classifiers.functions.gmlvq.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.SparseInstance;
 
 /**
  * Converts the internal data structure to WEKA format and vice versa.
@@ -23,37 +22,122 @@ public final class WekaModelConverter {
 
     }
 
+    /**
+     * converts an instance without copying its values - dense instances are
+     * wrapped by an {@link InstanceDataPoint}, sparse ones are converted to a
+     * {@link SparseDataPoint}; the weight of the instance is retained
+     *
+     * @param instance
+     * @return the data point
+     */
     public static DataPoint createDataPoint(Instance instance) {
-        return new DataPoint(Arrays.copyOf(instance.toDoubleArray(), instance.numAttributes() - 1), instance.classValue());
+        if (instance instanceof SparseInstance) {
+            return createSparseDataPoint(instance);
+        }
+        return new InstanceDataPoint(instance);
+    }
+
+    /**
+     * converts an instance without densifying it - as for dense instances, the
+     * class attribute is skipped
+     *
+     * @param instance
+     * @return the sparse data point
+     */
+    private static DataPoint createSparseDataPoint(Instance instance) {
+        int dataDimension = instance.numAttributes() - 1;
+        int classIndex = instance.classIndex();
+        int numberOfValues = 0;
+        int[] indices = new int[instance.numValues()];
+        double[] values = new double[instance.numValues()];
+        for (int position = 0; position < instance.numValues(); position++) {
+            int index = instance.index(position);
+            double value = instance.valueSparse(position);
+            if (index != classIndex && value != 0) {
+                indices[numberOfValues] = index < classIndex ? index : index - 1;
+                values[numberOfValues] = value;
+                numberOfValues++;
+            }
+        }
+        SparseDataPoint dataPoint = new SparseDataPoint(Arrays.copyOf(indices, numberOfValues),
+                Arrays.copyOf(values, numberOfValues), dataDimension, instance.classValue());
+        dataPoint.setWeight(instance.weight());
+        return dataPoint;
     }
 
     public static List<DataPoint> createDataPoints(Instances dataset) {
-        List<DataPoint> modelDataset = new ArrayList<DataPoint>();
+        return createDataPoints(dataset, false);
+    }
+
+    /**
+     * @param dataset
+     * @param singlePrecision
+     *            whether to store values as {@link FloatDataPoint}s - sparse
+     *            instances are always converted to {@link SparseDataPoint}s
+     * @return the converted data points, in double precision these are views
+     *         of the dense instances
+     * @see #createDataPoint(Instance)
+     */
+    public static List<DataPoint> createDataPoints(Instances dataset, boolean singlePrecision) {
+        List<DataPoint> modelDataset = new ArrayList<DataPoint>(dataset.size());
         for (Instance instance : dataset) {
-            modelDataset.add(createDataPoint(instance));
+            if (singlePrecision && !(instance instanceof SparseInstance)) {
+                FloatDataPoint dataPoint = new FloatDataPoint(extractValues(instance), instance.classValue());
+                dataPoint.setWeight(instance.weight());
+                modelDataset.add(dataPoint);
+            } else {
+                modelDataset.add(createDataPoint(instance));
+            }
         }
         return modelDataset;
     }
 
     /**
-     * extracts all attribute names of WEKA instances and converts them to a
-     * string array
+     * copies the values of all attributes but the class, so the class
+     * attribute may be at any position
+     *
+     * @param instance
+     * @return the values in the order of the attributes
+     */
+    public static double[] extractValues(Instance instance) {
+        double[] values = new double[instance.numAttributes() - 1];
+        int classIndex = instance.classIndex();
+        for (int index = 0; index < values.length; index++) {
+            values[index] = instance.value(index < classIndex ? index : index + 1);
+        }
+        return values;
+    }
+
+    /**
+     * extracts the names of all attributes but the class and converts them to
+     * a string array
      *
      * @param data
      * @return attribute names as string arrays
      */
     public static String[] extractAttributeNames(Instances data) {
         String[] attributeNames = new String[data.numAttributes() - 1];
-        int i = 0;
-        Enumeration<Attribute> attributes = data.enumerateAttributes();
-        while (attributes.hasMoreElements() && i < data.numAttributes() - 1) {
-            Attribute attribute = attributes.nextElement();
-            attributeNames[i] = attribute.name();
-            i++;
+        int classIndex = data.classIndex();
+        for (int index = 0; index < attributeNames.length; index++) {
+            attributeNames[index] = data.attribute(index < classIndex ? index : index + 1).name();
         }
         return attributeNames;
     }
 
+    /**
+     * extracts the names of all values of the class attribute
+     *
+     * @param data
+     * @return class names indexed by class label
+     */
+    public static String[] extractClassNames(Instances data) {
+        String[] classNames = new String[data.numClasses()];
+        for (int classIndex = 0; classIndex < classNames.length; classIndex++) {
+            classNames[classIndex] = data.classAttribute().value(classIndex);
+        }
+        return classNames;
+    }
+
     public static Map<Double, String> extractClassLables(Instances data) {
         Map<Double, String> distinctClasses = new HashMap<Double, String>();
         for (Instance instance : data) {
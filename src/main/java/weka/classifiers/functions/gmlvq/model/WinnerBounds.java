@@ -0,0 +1,296 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.util.List;
+
+import weka.classifiers.functions.GMLVQ;
+import weka.classifiers.functions.gmlvq.utilities.Kernels;
+
+/**
+ * Tracks how far prototypes may have moved in the embedded space since the
+ * winners of each data point were last searched, so a {@link WinnerSearch} can
+ * skip most searches while prototypes and omega matrix change only slightly
+ * (as by Elkan and Hamerly for k-means).<br />
+ * <br />
+ * Each full search records, per class group, the distance to the winner as
+ * upper bound and the distance to the runner-up as lower bound for all other
+ * prototypes. The distance of a data point <code>x</code> to a prototype
+ * <code>w</code> changes by at most
+ * <code>|omega' - omega| (|x - c| + |w' - c|) + |omega (w' - w)|</code> when
+ * omega and the prototype change, where the center <code>c</code> is the mean
+ * of the initial prototypes, so these shifts are summed up for each
+ * {@link #advance(List, OmegaMatrix) accepted update}. As long as the shifted
+ * upper bounds stay below the shifted lower bounds, both winners are
+ * unchanged and only their distances are computed.<br />
+ * <br />
+ * The shifts are measured against a copy of the state of the last update, so
+ * candidate states - e.g. proposed updates - are covered as well. Bounds are
+ * only recorded for this state.
+ *
+ * @author S
+ *
+ */
+public class WinnerBounds {
+
+    /**
+     * the relative margin by which bounds have to be separated, covers
+     * rounding errors of the distances
+     */
+    static final double SAFETY_MARGIN = 1.0E-8;
+
+    private final int numberOfPrototypes;
+    /**
+     * the point the norms of data points and prototypes are measured from
+     */
+    private final double[] center;
+    private double[][] omega;
+    private double[][] prototypes;
+
+    /**
+     * the sums of the shifts of all accepted updates
+     */
+    private double omegaShift;
+    private final double[] prototypeShifts;
+    private double maximalPrototypeShift;
+
+    private long prunedSearches;
+    private long fullSearches;
+
+    /**
+     * @param prototypes
+     *            the initial prototypes
+     * @param omegaMatrix
+     *            the initial mapping rule
+     */
+    public WinnerBounds(List<Prototype> prototypes, OmegaMatrix omegaMatrix) {
+        this.numberOfPrototypes = prototypes.size();
+        this.prototypeShifts = new double[this.numberOfPrototypes];
+        copyState(prototypes, omegaMatrix);
+        this.center = new double[this.numberOfPrototypes == 0 ? 0 : this.prototypes[0].length];
+        for (double[] prototype : this.prototypes) {
+            Kernels.getInstance().addTo(this.center, 1.0 / this.numberOfPrototypes, prototype, this.center.length);
+        }
+    }
+
+    private void copyState(List<Prototype> prototypes, OmegaMatrix omegaMatrix) {
+        this.omega = omegaMatrix.getArrayCopy();
+        this.prototypes = new double[this.numberOfPrototypes][];
+        for (int index = 0; index < this.numberOfPrototypes; index++) {
+            Prototype prototype = prototypes.get(index);
+            this.prototypes[index] = new double[prototype.getDimension()];
+            prototype.addTo(this.prototypes[index], 1);
+        }
+    }
+
+    /**
+     * measures the shifts from the state of the last update to the given one
+     *
+     * @param prototypes
+     *            the prototypes of the state, in the same order as before
+     * @param omegaMatrix
+     *            the mapping rule of the state
+     * @return the summed shifts up to the given state
+     */
+    public synchronized Transition transitionTo(List<Prototype> prototypes, OmegaMatrix omegaMatrix) {
+        if (prototypes.size() != this.numberOfPrototypes) {
+            throw new IllegalArgumentException(
+                    "expected " + this.numberOfPrototypes + " prototypes, but got " + prototypes.size());
+        }
+        Kernels kernels = Kernels.getInstance();
+        boolean relevanceLearning = GMLVQ.isRelevanceLearning(omegaMatrix);
+        double omegaDifference = 0;
+        if (relevanceLearning) {
+            double[][] omega = omegaMatrix.getArray();
+            for (int row = 0; row < omega.length; row++) {
+                for (int column = 0; column < omega[row].length; column++) {
+                    double difference = omega[row][column] - this.omega[row][column];
+                    omegaDifference += difference * difference;
+                }
+            }
+            // the Frobenius norm bounds the spectral norm
+            omegaDifference = Math.sqrt(omegaDifference);
+        }
+
+        double[] prototypeShifts = new double[this.numberOfPrototypes];
+        double maximalPrototypeShift = 0;
+        for (int index = 0; index < this.numberOfPrototypes; index++) {
+            double[] difference = new double[this.prototypes[index].length];
+            prototypes.get(index).addTo(difference, 1);
+            double distanceToCenter = Math
+                    .sqrt(kernels.squaredEuclideanDistance(difference, this.center, difference.length));
+            kernels.addTo(difference, -1, this.prototypes[index], difference.length);
+            double mappedDifference = 0;
+            if (relevanceLearning) {
+                for (double[] row : this.omega) {
+                    double value = kernels.dotProduct(row, difference, difference.length);
+                    mappedDifference += value * value;
+                }
+            } else {
+                mappedDifference = kernels.dotProduct(difference, difference, difference.length);
+            }
+            prototypeShifts[index] = omegaDifference * distanceToCenter + Math.sqrt(mappedDifference);
+            maximalPrototypeShift = Math.max(maximalPrototypeShift, prototypeShifts[index]);
+        }
+
+        boolean current = omegaDifference == 0 && maximalPrototypeShift == 0;
+        for (int index = 0; index < this.numberOfPrototypes; index++) {
+            prototypeShifts[index] += this.prototypeShifts[index];
+        }
+        return new Transition(this.omegaShift + omegaDifference, prototypeShifts,
+                this.maximalPrototypeShift + maximalPrototypeShift, current);
+    }
+
+    /**
+     * moves the state to an accepted update
+     *
+     * @param prototypes
+     *            the updated prototypes
+     * @param omegaMatrix
+     *            the updated mapping rule
+     */
+    public synchronized void advance(List<Prototype> prototypes, OmegaMatrix omegaMatrix) {
+        Transition transition = transitionTo(prototypes, omegaMatrix);
+        if (transition.current) {
+            return;
+        }
+        this.omegaShift = transition.omegaShift;
+        System.arraycopy(transition.prototypeShifts, 0, this.prototypeShifts, 0, this.numberOfPrototypes);
+        this.maximalPrototypeShift = transition.maximalPrototypeShift;
+        copyState(prototypes, omegaMatrix);
+    }
+
+    double[] getCenter() {
+        return this.center;
+    }
+
+    synchronized void count(int prunedSearches, int fullSearches) {
+        this.prunedSearches += prunedSearches;
+        this.fullSearches += fullSearches;
+    }
+
+    /**
+     * @return the number of searches which were skipped
+     */
+    public synchronized long getPrunedSearches() {
+        return this.prunedSearches;
+    }
+
+    /**
+     * @return the number of searches over all prototypes
+     */
+    public synchronized long getFullSearches() {
+        return this.fullSearches;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "WinnerBounds of " + this.numberOfPrototypes + " prototypes: " + this.prunedSearches + " pruned, "
+                + this.fullSearches + " full searches";
+    }
+
+    /**
+     * the summed shifts up to some state, see
+     * {@link WinnerBounds#transitionTo(List, OmegaMatrix)}
+     */
+    public class Transition {
+
+        final double omegaShift;
+        final double[] prototypeShifts;
+        final double maximalPrototypeShift;
+        /**
+         * whether the state is the one of the last update, bounds are only
+         * recorded for it
+         */
+        final boolean current;
+
+        Transition(double omegaShift, double[] prototypeShifts, double maximalPrototypeShift, boolean current) {
+            this.omegaShift = omegaShift;
+            this.prototypeShifts = prototypeShifts;
+            this.maximalPrototypeShift = maximalPrototypeShift;
+            this.current = current;
+        }
+
+        WinnerBounds getWinnerBounds() {
+            return WinnerBounds.this;
+        }
+    }
+
+    /**
+     * the bounds of a single data point, recorded at the state of the last
+     * update - immutable, so they can be replaced while other threads read them
+     */
+    static class Bounds {
+
+        final WinnerBounds owner;
+        final double classLabel;
+        /**
+         * the distance of the data point to the center in the data space
+         */
+        final double dataNorm;
+        final int indexWinnerSameClass;
+        final int indexWinnerOtherClass;
+        final double upperSameClass;
+        final double lowerSameClass;
+        final double upperOtherClass;
+        final double lowerOtherClass;
+        final double omegaShift;
+        final double prototypeShiftSameClass;
+        final double prototypeShiftOtherClass;
+        final double maximalPrototypeShift;
+
+        /**
+         * @param upperSameClass
+         *            the (not squared) distance to the winner of the same
+         *            class
+         * @param lowerSameClass
+         *            the (not squared) distance to any other prototype of the
+         *            same class
+         */
+        Bounds(Transition transition, double classLabel, double dataNorm, int indexWinnerSameClass,
+                int indexWinnerOtherClass, double upperSameClass, double lowerSameClass, double upperOtherClass,
+                double lowerOtherClass) {
+            this.owner = transition.getWinnerBounds();
+            this.classLabel = classLabel;
+            this.dataNorm = dataNorm;
+            this.indexWinnerSameClass = indexWinnerSameClass;
+            this.indexWinnerOtherClass = indexWinnerOtherClass;
+            this.upperSameClass = upperSameClass;
+            this.lowerSameClass = lowerSameClass;
+            this.upperOtherClass = upperOtherClass;
+            this.lowerOtherClass = lowerOtherClass;
+            this.omegaShift = transition.omegaShift;
+            this.prototypeShiftSameClass = transition.prototypeShifts[indexWinnerSameClass];
+            this.prototypeShiftOtherClass = transition.prototypeShifts[indexWinnerOtherClass];
+            this.maximalPrototypeShift = transition.maximalPrototypeShift;
+        }
+
+        /**
+         * @return whether both winners are certainly unchanged in the given
+         *         state
+         */
+        boolean holdFor(Transition transition, double classLabel) {
+            if (this.owner != transition.getWinnerBounds() || this.classLabel != classLabel) {
+                return false;
+            }
+            double drift = this.dataNorm * (transition.omegaShift - this.omegaShift);
+            double lowerShift = drift + transition.maximalPrototypeShift - this.maximalPrototypeShift;
+            double upperSameClass = this.upperSameClass + drift
+                    + transition.prototypeShifts[this.indexWinnerSameClass] - this.prototypeShiftSameClass;
+            double upperOtherClass = this.upperOtherClass + drift
+                    + transition.prototypeShifts[this.indexWinnerOtherClass] - this.prototypeShiftOtherClass;
+            return upperSameClass < (this.lowerSameClass - lowerShift) * (1 - SAFETY_MARGIN)
+                    && upperOtherClass < (this.lowerOtherClass - lowerShift) * (1 - SAFETY_MARGIN);
+        }
+
+        /**
+         * @return the bounds of the given transition, with lower bounds
+         *         shifted to it and the given upper bounds
+         */
+        Bounds tighten(Transition transition, double upperSameClass, double upperOtherClass) {
+            double lowerShift = this.dataNorm * (transition.omegaShift - this.omegaShift)
+                    + transition.maximalPrototypeShift - this.maximalPrototypeShift;
+            return new Bounds(transition, this.classLabel, this.dataNorm, this.indexWinnerSameClass,
+                    this.indexWinnerOtherClass, upperSameClass, this.lowerSameClass - lowerShift, upperOtherClass,
+                    this.lowerOtherClass - lowerShift);
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package weka.classifiers.functions.gmlvq.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import weka.classifiers.functions.GMLVQ;
+import weka.classifiers.functions.gmlvq.utilities.Kernels;
+
+/**
+ * Determines the {@link WinningInformation} of many data points at once. The
+ * prototypes are mapped to the embedded space only once, by a
+ * {@link PrototypeTable} which the searches of all threads may share. The
+ * data points are processed in blocks (of {@value #BLOCK_SIZE} by default),
+ * and all distances of a block are computed as one matrix product by the
+ * expansion
+ * <code>|a - b|&sup2; = |a|&sup2; + |b|&sup2; - 2 a'b</code>, so each
+ * prototype is loaded once per block instead of once per data point.<br />
+ * <br />
+ * The expansion loses precision if the distance is small compared to the
+ * norms, e.g. for data far from the origin. Such distances are recomputed
+ * directly, as are the distances of both winners, so the reported distances
+ * are always exact. Only prototypes tied within rounding errors may be chosen
+ * differently than by {@link EmbeddedSpaceVector#getWinningInformation(List)}
+ * .<br />
+ * <br />
+ * With many prototypes in a low-dimensional embedded space, see
+ * {@link PrototypeTree#isWorthwhile(int, int)}, the prototypes are indexed by
+ * a {@link PrototypeTree} instead, which computes exact distances to a few
+ * prototypes only, unless indexing is disabled. If its searches turn out to compute more than
+ * {@value #MAXIMAL_INDEXED_FRACTION} of the distances of a linear scan, e.g.
+ * for prototypes which overlap strongly, the linear scan is used again.<br />
+ * <br />
+ * Instances hold buffers and must not be shared among threads, their
+ * {@link PrototypeTable} may.
+ *
+ * @author S
+ *
+ */
+public class WinnerSearch {
+
+    /**
+     * the default number of data points whose distances are computed together
+     */
+    public static final int BLOCK_SIZE = 64;
+    /**
+     * expanded distances below this fraction of the sum of the squared norms
+     * are recomputed directly - the expansion loses all digits of the
+     * distance at about 1e-16 of the norms
+     */
+    static final double CANCELLATION_THRESHOLD = 1.0E-6;
+    /**
+     * the number of searches of the {@link PrototypeTree} after which its
+     * costs are compared to the ones of a linear scan
+     */
+    static final int ESTIMATION_SEARCHES = 2 * BLOCK_SIZE;
+    /**
+     * the fraction of the distances of a linear scan a search of the
+     * {@link PrototypeTree} may compute on average
+     */
+    static final double MAXIMAL_INDEXED_FRACTION = 0.5;
+
+    private final List<Prototype> prototypes;
+    private final OmegaMatrix omegaMatrix;
+    private final WinnerBounds.Transition transition;
+    private final int omegaDimension;
+    private final double[][] mappedPrototypes;
+    private final double[] prototypeNorms;
+    private final double[] prototypeClassLabels;
+    private PrototypeTree prototypeTree;
+    private int indexedSearches;
+    private long indexedEvaluations;
+
+    /**
+     * the number of data points whose distances are computed together
+     */
+    private final int blockCapacity;
+    private final DataSpaceVector[] blockDataPoints;
+    private final EmbeddedSpaceVector[] block;
+    private final double[][] blockValues;
+    private final double[] blockNorms;
+    private double[][] distances;
+    private int blockSize;
+    private double[] dataValues;
+
+    /**
+     * @param prototypes
+     *            the prototypes to search, also the key of the registered
+     *            {@link WinningInformation}
+     * @param omegaMatrix
+     *            the mapping to the embedded space
+     */
+    public WinnerSearch(List<Prototype> prototypes, OmegaMatrix omegaMatrix) {
+        this(prototypes, omegaMatrix, null);
+    }
+
+    /**
+     * @param prototypes
+     *            the prototypes to search, also the key of the registered
+     *            {@link WinningInformation}
+     * @param omegaMatrix
+     *            the mapping to the embedded space
+     * @param transition
+     *            the shifts of prototypes and omega matrix to this state,
+     *            data points whose {@link WinnerBounds} still hold skip the
+     *            search - <code>null</code> searches all data points
+     */
+    public WinnerSearch(List<Prototype> prototypes, OmegaMatrix omegaMatrix, WinnerBounds.Transition transition) {
+        this(prototypes, omegaMatrix, transition, BLOCK_SIZE, true);
+    }
+
+    /**
+     * @param prototypes
+     *            the prototypes to search, also the key of the registered
+     *            {@link WinningInformation}
+     * @param omegaMatrix
+     *            the mapping to the embedded space
+     * @param transition
+     *            the shifts of prototypes and omega matrix to this state,
+     *            <code>null</code> searches all data points
+     * @param blockCapacity
+     *            the number of data points whose distances are computed
+     *            together
+     * @param indexing
+     *            whether the prototypes may be indexed by a
+     *            {@link PrototypeTree} when worthwhile
+     */
+    public WinnerSearch(List<Prototype> prototypes, OmegaMatrix omegaMatrix, WinnerBounds.Transition transition,
+            int blockCapacity, boolean indexing) {
+        this(new PrototypeTable(prototypes, omegaMatrix, indexing), transition, blockCapacity);
+    }
+
+    /**
+     * @param prototypeTable
+     *            the mapped prototypes to search, shared by the searches of
+     *            all threads
+     * @param transition
+     *            the shifts of prototypes and omega matrix to this state,
+     *            <code>null</code> searches all data points
+     * @param blockCapacity
+     *            the number of data points whose distances are computed
+     *            together
+     */
+    public WinnerSearch(PrototypeTable prototypeTable, WinnerBounds.Transition transition, int blockCapacity) {
+        if (blockCapacity < 1) {
+            throw new IllegalArgumentException("block capacity has to be positive, but was " + blockCapacity);
+        }
+        this.prototypes = prototypeTable.getPrototypes();
+        this.omegaMatrix = prototypeTable.getOmegaMatrix();
+        this.transition = transition;
+        this.omegaDimension = prototypeTable.getDimension();
+        this.mappedPrototypes = prototypeTable.getMappedPrototypes();
+        this.prototypeNorms = prototypeTable.getNorms();
+        this.prototypeClassLabels = prototypeTable.getClassLabels();
+        this.blockCapacity = blockCapacity;
+        this.blockDataPoints = new DataSpaceVector[blockCapacity];
+        this.block = new EmbeddedSpaceVector[blockCapacity];
+        this.blockValues = new double[blockCapacity][this.omegaDimension];
+        this.blockNorms = new double[blockCapacity];
+        this.prototypeTree = prototypeTable.getPrototypeTree();
+    }
+
+    /**
+     * maps the data points and registers their {@link WinningInformation}
+     * regarding the prototypes, data points which already know their winners
+     * are skipped
+     *
+     * @param dataPoints
+     *            the data points to process
+     */
+    public void determineWinningInformation(List<? extends DataSpaceVector> dataPoints) {
+        int prunedSearches = 0;
+        int fullSearches = 0;
+        for (DataSpaceVector dataPoint : dataPoints) {
+            EmbeddedSpaceVector embeddedSpaceVector = dataPoint.getEmbeddedSpaceVector(this.omegaMatrix);
+            if (embeddedSpaceVector.hasWinningInformation(this.prototypes)) {
+                continue;
+            }
+            if (this.transition != null && prune(dataPoint, embeddedSpaceVector)) {
+                prunedSearches++;
+                continue;
+            }
+            fullSearches++;
+            this.blockDataPoints[this.blockSize] = dataPoint;
+            this.block[this.blockSize++] = embeddedSpaceVector;
+            if (this.blockSize == this.blockCapacity) {
+                flush();
+            }
+        }
+        flush();
+        if (this.transition != null) {
+            this.transition.getWinnerBounds().count(prunedSearches, fullSearches);
+        }
+    }
+
+    /**
+     * registers the winning information of a data point whose winners are
+     * known to be unchanged
+     *
+     * @return false if the bounds of the data point do not hold
+     */
+    private boolean prune(DataSpaceVector dataPoint, EmbeddedSpaceVector embeddedSpaceVector) {
+        WinnerBounds.Bounds bounds = dataPoint.getWinnerBounds();
+        if (bounds == null || !bounds.holdFor(this.transition, embeddedSpaceVector.getClassLabel())) {
+            return false;
+        }
+        Kernels kernels = Kernels.getInstance();
+        // the buffer of the next block member is free
+        double[] values = this.blockValues[this.blockSize];
+        Arrays.fill(values, 0);
+        embeddedSpaceVector.addTo(values, 1);
+        double distanceSameClass = kernels.squaredEuclideanDistance(values,
+                this.mappedPrototypes[bounds.indexWinnerSameClass], this.omegaDimension);
+        double distanceOtherClass = kernels.squaredEuclideanDistance(values,
+                this.mappedPrototypes[bounds.indexWinnerOtherClass], this.omegaDimension);
+        embeddedSpaceVector.setWinningInformation(this.prototypes,
+                createWinningInformation(bounds.indexWinnerSameClass, distanceSameClass,
+                        bounds.indexWinnerOtherClass, distanceOtherClass));
+        if (this.transition.current) {
+            dataPoint.setWinnerBounds(
+                    bounds.tighten(this.transition, Math.sqrt(distanceSameClass), Math.sqrt(distanceOtherClass)));
+        }
+        return true;
+    }
+
+    private void flush() {
+        if (this.blockSize == 0) {
+            return;
+        }
+        Kernels kernels = Kernels.getInstance();
+        for (int point = 0; point < this.blockSize; point++) {
+            double[] values = this.blockValues[point];
+            Arrays.fill(values, 0);
+            this.block[point].addTo(values, 1);
+            this.blockNorms[point] = kernels.dotProduct(values, values, this.omegaDimension);
+        }
+        if (this.prototypeTree != null) {
+            for (int point = 0; point < this.blockSize; point++) {
+                this.block[point].setWinningInformation(this.prototypes, searchIndexed(point));
+                this.blockDataPoints[point] = null;
+                this.block[point] = null;
+            }
+            this.blockSize = 0;
+            estimateIndexedCosts();
+            return;
+        }
+        if (this.distances == null) {
+            this.distances = new double[this.blockCapacity][this.prototypes.size()];
+        }
+
+        // each prototype is loaded once for the whole block
+        for (int prototype = 0; prototype < this.mappedPrototypes.length; prototype++) {
+            double[] prototypeValues = this.mappedPrototypes[prototype];
+            double prototypeNorm = this.prototypeNorms[prototype];
+            for (int point = 0; point < this.blockSize; point++) {
+                double norms = this.blockNorms[point] + prototypeNorm;
+                double distance = norms
+                        - 2 * kernels.dotProduct(this.blockValues[point], prototypeValues, this.omegaDimension);
+                if (distance <= CANCELLATION_THRESHOLD * norms) {
+                    // catastrophic cancellation
+                    distance = kernels.squaredEuclideanDistance(this.blockValues[point], prototypeValues,
+                            this.omegaDimension);
+                }
+                this.distances[point][prototype] = distance;
+            }
+        }
+
+        for (int point = 0; point < this.blockSize; point++) {
+            this.block[point].setWinningInformation(this.prototypes, selectWinners(point));
+            this.blockDataPoints[point] = null;
+            this.block[point] = null;
+        }
+        this.blockSize = 0;
+    }
+
+    private WinningInformation selectWinners(int point) {
+        double classLabel = this.block[point].getClassLabel();
+        double[] pointDistances = this.distances[point];
+        // the winners and runners-up of both class groups
+        int indexWinnerSameClass = -1;
+        int indexRunnerUpSameClass = -1;
+        int indexWinnerOtherClass = -1;
+        int indexRunnerUpOtherClass = -1;
+        for (int prototype = 0; prototype < pointDistances.length; prototype++) {
+            double distance = pointDistances[prototype];
+            if (this.prototypeClassLabels[prototype] == classLabel) {
+                if (indexWinnerSameClass < 0 || distance < pointDistances[indexWinnerSameClass]) {
+                    indexRunnerUpSameClass = indexWinnerSameClass;
+                    indexWinnerSameClass = prototype;
+                } else if (indexRunnerUpSameClass < 0 || distance < pointDistances[indexRunnerUpSameClass]) {
+                    indexRunnerUpSameClass = prototype;
+                }
+            } else {
+                if (indexWinnerOtherClass < 0 || distance < pointDistances[indexWinnerOtherClass]) {
+                    indexRunnerUpOtherClass = indexWinnerOtherClass;
+                    indexWinnerOtherClass = prototype;
+                } else if (indexRunnerUpOtherClass < 0 || distance < pointDistances[indexRunnerUpOtherClass]) {
+                    indexRunnerUpOtherClass = prototype;
+                }
+            }
+        }
+
+        return registerWinners(point, indexWinnerSameClass, indexRunnerUpSameClass, indexWinnerOtherClass,
+                indexRunnerUpOtherClass);
+    }
+
+    private WinningInformation searchIndexed(int point) {
+        double classLabel = this.block[point].getClassLabel();
+        // the runners-up are only needed to record bounds
+        boolean withRunnerUp = this.transition != null && this.transition.current;
+        PrototypeTree.Neighbours sameClass = new PrototypeTree.Neighbours(withRunnerUp);
+        this.prototypeTree.search(this.blockValues[point], classLabel, true, sameClass);
+        PrototypeTree.Neighbours otherClass = new PrototypeTree.Neighbours(withRunnerUp);
+        this.prototypeTree.search(this.blockValues[point], classLabel, false, otherClass);
+        this.indexedSearches++;
+        this.indexedEvaluations += sameClass.evaluations + otherClass.evaluations;
+        return registerWinners(point, sameClass.winner, sameClass.runnerUp, otherClass.winner, otherClass.runnerUp);
+    }
+
+    /**
+     * falls back to the linear scan if the searches of the tree are too
+     * expensive
+     */
+    private void estimateIndexedCosts() {
+        if (this.indexedSearches >= ESTIMATION_SEARCHES && this.indexedEvaluations > MAXIMAL_INDEXED_FRACTION
+                * this.prototypes.size() * this.indexedSearches) {
+            this.prototypeTree = null;
+        }
+    }
+
+    /**
+     * @return the winning information of a data point of the block, also
+     *         records its bounds if needed
+     */
+    private WinningInformation registerWinners(int point, int indexWinnerSameClass, int indexRunnerUpSameClass,
+            int indexWinnerOtherClass, int indexRunnerUpOtherClass) {
+        double classLabel = this.block[point].getClassLabel();
+        // report the exact distances of the winners
+        double distanceSameClass = exactDistance(point, indexWinnerSameClass);
+        double distanceOtherClass = exactDistance(point, indexWinnerOtherClass);
+        if (this.transition != null && this.transition.current) {
+            this.blockDataPoints[point].setWinnerBounds(new WinnerBounds.Bounds(this.transition, classLabel,
+                    dataNorm(this.blockDataPoints[point]), indexWinnerSameClass, indexWinnerOtherClass,
+                    Math.sqrt(distanceSameClass), Math.sqrt(exactDistance(point, indexRunnerUpSameClass)),
+                    Math.sqrt(distanceOtherClass), Math.sqrt(exactDistance(point, indexRunnerUpOtherClass))));
+        }
+        return createWinningInformation(indexWinnerSameClass, distanceSameClass, indexWinnerOtherClass,
+                distanceOtherClass);
+    }
+
+    /**
+     * @return the squared distance of a data point of the block to a
+     *         prototype, infinite if there is no such prototype
+     */
+    private double exactDistance(int point, int prototype) {
+        if (prototype < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Kernels.getInstance().squaredEuclideanDistance(this.blockValues[point],
+                this.mappedPrototypes[prototype], this.omegaDimension);
+    }
+
+    /**
+     * @return the distance of the data point to the center of the
+     *         {@link WinnerBounds} in the data space, only needed when the
+     *         omega matrix changes
+     */
+    private double dataNorm(DataSpaceVector dataPoint) {
+        if (!GMLVQ.isRelevanceLearning(this.omegaMatrix)) {
+            return 0;
+        }
+        if (this.dataValues == null) {
+            this.dataValues = new double[dataPoint.getDimension()];
+        } else {
+            Arrays.fill(this.dataValues, 0);
+        }
+        dataPoint.addTo(this.dataValues, 1);
+        return Math.sqrt(Kernels.getInstance().squaredEuclideanDistance(this.dataValues,
+                this.transition.getWinnerBounds().getCenter(), this.dataValues.length));
+    }
+
+    private WinningInformation createWinningInformation(int indexWinnerSameClass, double distanceSameClass,
+            int indexWinnerOtherClass, double distanceOtherClass) {
+        WinningInformation winningInformation = new WinningInformation();
+        winningInformation.setIndexWinnerSameClass(indexWinnerSameClass);
+        winningInformation.setWinnerSameClass(this.prototypes.get(indexWinnerSameClass));
+        winningInformation.setDistanceSameClass(distanceSameClass);
+        winningInformation.setIndexWinnerOtherClass(indexWinnerOtherClass);
+        winningInformation.setWinnerOtherClass(this.prototypes.get(indexWinnerOtherClass));
+        winningInformation.setDistanceOtherClass(distanceOtherClass);
+        return winningInformation;
+    }
+
+    /**
+     * @return whether the prototypes are searched by a {@link PrototypeTree}
+     */
+    public boolean isIndexed() {
+        return this.prototypeTree != null;
+    }
+
+    @Override
+    public String toString() {
+        return "WinnerSearch of " + this.prototypes.size() + " prototypes in " + this.omegaDimension + "D"
+                + (isIndexed() ? ", indexed" : "");
+    }
+}
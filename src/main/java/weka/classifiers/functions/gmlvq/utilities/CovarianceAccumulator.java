@@ -0,0 +1,278 @@
+package weka.classifiers.functions.gmlvq.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.core.matrix.Matrix;
+
+/**
+ * Weighted mean and covariance of data points, accumulated in a single pass.
+ * Data points are collected in blocks of {@value #BLOCK_SIZE}; each block is
+ * centered at its own mean and added by a symmetric rank-k update of the upper
+ * triangle, which keeps each row of the co-moment matrix in cache for the
+ * whole block. Blocks are combined with the running statistics as in
+ * Welford's online algorithm, so accumulators of disjoint parts of a data set
+ * can be merged afterwards (as for {@link weka.classifiers.functions.gmlvq.model.FeatureStatistics}).<br />
+ * <br />
+ * Use {@link #compute(List)} to accumulate a data set in parallel.
+ *
+ * @author S
+ *
+ */
+public class CovarianceAccumulator {
+
+    /**
+     * the number of data points added by one rank-k update
+     */
+    static final int BLOCK_SIZE = 32;
+    /**
+     * the number of processors that can be used for parallel calculation
+     */
+    private static final int processors = Runtime.getRuntime().availableProcessors();
+
+    private final int dataDimension;
+    private double totalWeight;
+    private final double[] mean;
+    /**
+     * the weighted sums of products of deviations from the mean, upper
+     * triangle only
+     */
+    private final double[][] coMoments;
+
+    private final double[][] block;
+    private final double[] blockWeights;
+    private int blockSize;
+
+    public CovarianceAccumulator(int dataDimension) {
+        this.dataDimension = dataDimension;
+        this.mean = new double[dataDimension];
+        this.coMoments = new double[dataDimension][dataDimension];
+        this.block = new double[BLOCK_SIZE][];
+        this.blockWeights = new double[BLOCK_SIZE];
+    }
+
+    /**
+     * accumulates the data points in parallel partitions
+     *
+     * @param dataPoints
+     *            the data points - at least one
+     * @return the merged accumulator of all data points
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public static CovarianceAccumulator compute(final List<DataPoint> dataPoints)
+            throws InterruptedException, ExecutionException {
+        if (dataPoints.isEmpty()) {
+            throw new IllegalArgumentException("cannot accumulate no data points");
+        }
+        final int dataDimension = dataPoints.get(0).getDimension();
+        // a partition should at least fill some blocks
+        int partitionSize = Math.max(4 * BLOCK_SIZE, (dataPoints.size() + processors - 1) / processors);
+        if (partitionSize >= dataPoints.size()) {
+            CovarianceAccumulator accumulator = new CovarianceAccumulator(dataDimension);
+            accumulator.addAll(dataPoints);
+            return accumulator;
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(processors);
+        try {
+            List<Future<CovarianceAccumulator>> results = new ArrayList<Future<CovarianceAccumulator>>();
+            for (int offset = 0; offset < dataPoints.size(); offset += partitionSize) {
+                final List<DataPoint> partition = dataPoints.subList(offset,
+                        Math.min(dataPoints.size(), offset + partitionSize));
+                results.add(executorService.submit(new Callable<CovarianceAccumulator>() {
+                    @Override
+                    public CovarianceAccumulator call() {
+                        CovarianceAccumulator accumulator = new CovarianceAccumulator(dataDimension);
+                        accumulator.addAll(partition);
+                        return accumulator;
+                    }
+                }));
+            }
+            CovarianceAccumulator accumulator = results.get(0).get();
+            for (int partition = 1; partition < results.size(); partition++) {
+                accumulator.merge(results.get(partition).get());
+            }
+            return accumulator;
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * @param dataPoint
+     *            the data point to add with its {@link DataPoint#getWeight()}
+     */
+    public void add(DataPoint dataPoint) {
+        if (dataPoint.getDimension() != this.dataDimension) {
+            throw new IllegalArgumentException(
+                    "expected dimension " + this.dataDimension + ", but got " + dataPoint.getDimension());
+        }
+        if (dataPoint.getWeight() <= 0) {
+            return;
+        }
+        // copy the values, sparse data points only touch their non-zero ones
+        double[] values = this.block[this.blockSize];
+        if (values == null) {
+            values = new double[this.dataDimension];
+            this.block[this.blockSize] = values;
+        } else {
+            Arrays.fill(values, 0);
+        }
+        dataPoint.addTo(values, 1);
+        this.blockWeights[this.blockSize] = dataPoint.getWeight();
+        if (++this.blockSize == BLOCK_SIZE) {
+            flush();
+        }
+    }
+
+    public void addAll(List<DataPoint> dataPoints) {
+        for (DataPoint dataPoint : dataPoints) {
+            add(dataPoint);
+        }
+        flush();
+    }
+
+    /**
+     * incorporates the accumulator of another, disjoint part of the data set
+     *
+     * @param other
+     *            the accumulator to add
+     */
+    public void merge(CovarianceAccumulator other) {
+        if (other.dataDimension != this.dataDimension) {
+            throw new IllegalArgumentException(
+                    "cannot merge covariance of dimension " + other.dataDimension + " into " + this.dataDimension);
+        }
+        flush();
+        other.flush();
+        merge(other.totalWeight, other.mean, other.coMoments);
+    }
+
+    /**
+     * adds the collected block by a rank-k update
+     */
+    private void flush() {
+        if (this.blockSize == 0) {
+            return;
+        }
+        double blockWeight = 0;
+        double[] blockMean = new double[this.dataDimension];
+        for (int point = 0; point < this.blockSize; point++) {
+            blockWeight += this.blockWeights[point];
+            double[] values = this.block[point];
+            for (int index = 0; index < this.dataDimension; index++) {
+                blockMean[index] += this.blockWeights[point] * values[index];
+            }
+        }
+        for (int index = 0; index < this.dataDimension; index++) {
+            blockMean[index] /= blockWeight;
+        }
+        // center in place, the values are copies
+        for (int point = 0; point < this.blockSize; point++) {
+            double[] values = this.block[point];
+            for (int index = 0; index < this.dataDimension; index++) {
+                values[index] -= blockMean[index];
+            }
+        }
+
+        // co-moments are additive, the shift of the mean is added by merge
+        for (int row = 0; row < this.dataDimension; row++) {
+            double[] coMomentRow = this.coMoments[row];
+            for (int point = 0; point < this.blockSize; point++) {
+                double[] values = this.block[point];
+                double factor = this.blockWeights[point] * values[row];
+                if (factor == 0) {
+                    continue;
+                }
+                for (int column = row; column < this.dataDimension; column++) {
+                    coMomentRow[column] += factor * values[column];
+                }
+            }
+        }
+
+        this.blockSize = 0;
+        merge(blockWeight, blockMean, null);
+    }
+
+    /**
+     * combines the running statistics with those of another part, whose
+     * co-moments are added unless <code>null</code>
+     */
+    private void merge(double otherWeight, double[] otherMean, double[][] otherCoMoments) {
+        if (otherWeight == 0) {
+            return;
+        }
+        double totalWeight = this.totalWeight + otherWeight;
+        double scaling = this.totalWeight * otherWeight / totalWeight;
+        double[] delta = new double[this.dataDimension];
+        for (int index = 0; index < this.dataDimension; index++) {
+            delta[index] = otherMean[index] - this.mean[index];
+        }
+        for (int row = 0; row < this.dataDimension; row++) {
+            double[] coMomentRow = this.coMoments[row];
+            double factor = scaling * delta[row];
+            for (int column = row; column < this.dataDimension; column++) {
+                coMomentRow[column] += factor * delta[column];
+            }
+            if (otherCoMoments != null) {
+                double[] otherCoMomentRow = otherCoMoments[row];
+                for (int column = row; column < this.dataDimension; column++) {
+                    coMomentRow[column] += otherCoMomentRow[column];
+                }
+            }
+        }
+        for (int index = 0; index < this.dataDimension; index++) {
+            this.mean[index] += delta[index] * otherWeight / totalWeight;
+        }
+        this.totalWeight = totalWeight;
+    }
+
+    public int getDataDimension() {
+        return this.dataDimension;
+    }
+
+    /**
+     * @return the sum of the weights of all data points added
+     */
+    public double getTotalWeight() {
+        flush();
+        return this.totalWeight;
+    }
+
+    public double[] getMean() {
+        flush();
+        return this.mean.clone();
+    }
+
+    /**
+     * @return the sample covariance matrix, i.e. normalized by
+     *         <code>total weight - 1</code>
+     */
+    public Matrix getCovariance() {
+        flush();
+        double normalization = 1 / (this.totalWeight - 1);
+        Matrix covariance = new Matrix(this.dataDimension, this.dataDimension);
+        double[][] values = covariance.getArray();
+        for (int row = 0; row < this.dataDimension; row++) {
+            for (int column = row; column < this.dataDimension; column++) {
+                double value = this.coMoments[row][column] * normalization;
+                values[row][column] = value;
+                values[column][row] = value;
+            }
+        }
+        return covariance;
+    }
+
+    @Override
+    public String toString() {
+        return "CovarianceAccumulator of dimension " + this.dataDimension + " with total weight " + this.totalWeight;
+    }
+}
@@ -36,6 +36,14 @@ public class DataRandomizer implements Serializable {
         return this.ratio;
     }
 
+    /**
+     * @return the number of data points chosen by
+     *         {@link #generateRandomizedSubListOf(List)}
+     */
+    public int getFractionOfTrainingData() {
+        return this.fractionOfTrainingData;
+    }
+
     public DataRandomizer(int numberOfTrainingData, double ratio) {
         this(numberOfTrainingData, ratio, 0);
     }
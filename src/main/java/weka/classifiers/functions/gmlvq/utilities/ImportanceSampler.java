@@ -0,0 +1,216 @@
+package weka.classifiers.functions.gmlvq.utilities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import weka.classifiers.functions.gmlvq.model.DataPoint;
+
+/**
+ * Draws the data points of an epoch in proportion to their estimated gradient
+ * magnitude instead of uniformly (as the {@link DataRandomizer} does). Data
+ * points with large, confident margins contribute almost nothing to the
+ * gradient, so the points near the decision boundary are preferred.<br />
+ * <br />
+ * The estimate of each data point is its score at the time it was last
+ * incorporated into a gradient, see {@link #update(DataPoint, double)} - data
+ * points never drawn keep the optimistic initial score. A share of
+ * {@value #UNIFORM_SHARE} of all draws is uniform, so every data point can be
+ * drawn and stale estimates are corrected eventually. Drawn data points are
+ * accompanied by importance weights, i.e. their inverse probability relative
+ * to uniform sampling, so the weighted gradient remains unbiased.<br />
+ * <br />
+ * Scores are kept in a Fenwick tree, so drawing and updating a data point
+ * costs <code>O(log n)</code>.
+ *
+ * @author S
+ *
+ */
+public class ImportanceSampler implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * the share of uniform draws
+     */
+    public static final double UNIFORM_SHARE = 0.1;
+
+    private final DataPoint[] dataPoints;
+    private final Map<DataPoint, Integer> indices;
+    private final int sampleSize;
+    private final Random random;
+    private final double[] scores;
+    /**
+     * the Fenwick tree of the scores, 1-based
+     */
+    private final double[] tree;
+    private double totalScore;
+    /**
+     * the number of updates since the tree was rebuilt - rebuilding prevents
+     * rounding errors from accumulating
+     */
+    private int updatesSinceRebuild;
+
+    /**
+     * @param dataPoints
+     *            the training data
+     * @param ratio
+     *            the share of data points to draw per epoch
+     * @param initialScore
+     *            the score of data points which have not been drawn yet
+     * @param random
+     *            the source of random draws
+     */
+    public ImportanceSampler(List<DataPoint> dataPoints, double ratio, double initialScore, Random random) {
+        if (initialScore <= 0) {
+            throw new IllegalArgumentException("initial score has to be positive, but was " + initialScore);
+        }
+        this.dataPoints = dataPoints.toArray(new DataPoint[dataPoints.size()]);
+        this.indices = new IdentityHashMap<DataPoint, Integer>(this.dataPoints.length);
+        for (int index = 0; index < this.dataPoints.length; index++) {
+            this.indices.put(this.dataPoints[index], index);
+        }
+        this.sampleSize = Math.max(1, (int) (this.dataPoints.length * ratio));
+        this.random = random;
+        this.scores = new double[this.dataPoints.length];
+        Arrays.fill(this.scores, initialScore);
+        this.tree = new double[this.dataPoints.length + 1];
+        rebuild();
+    }
+
+    /**
+     * draws the data points of an epoch with replacement - data points drawn
+     * repeatedly are returned once with the sum of their importance weights
+     *
+     * @return the drawn data points and their importance weights
+     */
+    public synchronized Sample sample() {
+        int numberOfDataPoints = this.dataPoints.length;
+        int[] drawnIndices = new int[this.sampleSize];
+        for (int draw = 0; draw < this.sampleSize; draw++) {
+            if (this.random.nextDouble() < UNIFORM_SHARE) {
+                drawnIndices[draw] = this.random.nextInt(numberOfDataPoints);
+            } else {
+                drawnIndices[draw] = find(this.random.nextDouble() * this.totalScore);
+            }
+        }
+        Arrays.sort(drawnIndices);
+
+        List<DataPoint> chosenDataPoints = new ArrayList<DataPoint>(this.sampleSize);
+        double[] importanceWeights = new double[this.sampleSize];
+        for (int draw = 0; draw < this.sampleSize; draw++) {
+            int index = drawnIndices[draw];
+            double probability = UNIFORM_SHARE / numberOfDataPoints
+                    + (1 - UNIFORM_SHARE) * this.scores[index] / this.totalScore;
+            // averages to 1 per draw, as for uniform sampling
+            double importanceWeight = 1 / (numberOfDataPoints * probability);
+            if (draw > 0 && index == drawnIndices[draw - 1]) {
+                importanceWeights[chosenDataPoints.size() - 1] += importanceWeight;
+            } else {
+                importanceWeights[chosenDataPoints.size()] = importanceWeight;
+                chosenDataPoints.add(this.dataPoints[index]);
+            }
+        }
+        return new Sample(chosenDataPoints, Arrays.copyOf(importanceWeights, chosenDataPoints.size()));
+    }
+
+    /**
+     * replaces the score of a data point, e.g. after its margin has been
+     * computed during the gradient descent
+     *
+     * @param dataPoint
+     *            the data point
+     * @param score
+     *            its new score, proportional to its gradient magnitude
+     */
+    public synchronized void update(DataPoint dataPoint, double score) {
+        Integer index = this.indices.get(dataPoint);
+        if (index == null) {
+            throw new IllegalArgumentException(dataPoint + " is not sampled by " + this);
+        }
+        double delta = score - this.scores[index];
+        this.scores[index] = score;
+        this.totalScore += delta;
+        for (int node = index + 1; node < this.tree.length; node += node & -node) {
+            this.tree[node] += delta;
+        }
+        if (++this.updatesSinceRebuild >= this.dataPoints.length) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        Arrays.fill(this.tree, 0);
+        this.totalScore = 0;
+        for (int index = 0; index < this.scores.length; index++) {
+            this.totalScore += this.scores[index];
+            int node = index + 1;
+            this.tree[node] += this.scores[index];
+            int parent = node + (node & -node);
+            if (parent < this.tree.length) {
+                this.tree[parent] += this.tree[node];
+            }
+        }
+        this.updatesSinceRebuild = 0;
+    }
+
+    /**
+     * @return the index of the data point whose cumulative score range
+     *         contains the given value
+     */
+    private int find(double value) {
+        int node = 0;
+        for (int step = Integer.highestOneBit(this.tree.length - 1); step > 0; step >>= 1) {
+            int next = node + step;
+            if (next < this.tree.length && this.tree[next] <= value) {
+                value -= this.tree[next];
+                node = next;
+            }
+        }
+        return Math.min(node, this.dataPoints.length - 1);
+    }
+
+    public double getScore(DataPoint dataPoint) {
+        return this.scores[this.indices.get(dataPoint)];
+    }
+
+    public int getSampleSize() {
+        return this.sampleSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportanceSampler of " + this.dataPoints.length + " data points drawing " + this.sampleSize
+                + " per epoch";
+    }
+
+    /**
+     * the data points drawn for one epoch
+     */
+    public static class Sample {
+
+        private final List<DataPoint> dataPoints;
+        private final double[] importanceWeights;
+
+        public Sample(List<DataPoint> dataPoints, double[] importanceWeights) {
+            this.dataPoints = dataPoints;
+            this.importanceWeights = importanceWeights;
+        }
+
+        public List<DataPoint> getDataPoints() {
+            return this.dataPoints;
+        }
+
+        /**
+         * @return the importance weight of each data point, in the order of
+         *         {@link #getDataPoints()}
+         */
+        public double[] getImportanceWeights() {
+            return this.importanceWeights;
+        }
+    }
+}
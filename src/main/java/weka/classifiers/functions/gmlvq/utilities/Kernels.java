@@ -0,0 +1,114 @@
+package weka.classifiers.functions.gmlvq.utilities;
+
+import weka.classifiers.functions.gmlvq.core.GMLVQCore;
+
+/**
+ * The innermost loops over dense arrays - dot products, squared distances and
+ * scaled additions - which dominate the mapping to the embedded space, the
+ * search for winning prototypes and the accumulation of gradients.<br />
+ * <br />
+ * The implementation is chosen once at runtime: the kernels of
+ * {@value #VECTOR_API_KERNELS} are explicitly vectorized by the JDK Vector
+ * API. They are only compiled by the <code>vector-api</code> profile (JDK 17
+ * or newer) and only load if the JVM is started with
+ * <code>--add-modules jdk.incubator.vector</code>. Otherwise, or if the system
+ * property <code>{@value #KERNELS_PROPERTY}=scalar</code> is set, the scalar
+ * kernels of {@link #scalar()} are used.
+ *
+ * @author S
+ *
+ */
+public abstract class Kernels {
+
+    /**
+     * the system property which forces the scalar kernels if set to
+     * <code>scalar</code>
+     */
+    public static final String KERNELS_PROPERTY = "gmlvq.kernels";
+    static final String VECTOR_API_KERNELS = "weka.classifiers.functions.gmlvq.utilities.simd.VectorApiKernels";
+
+    private static final Kernels SCALAR = new ScalarKernels();
+    private static final Kernels INSTANCE = select();
+
+    private static Kernels select() {
+        if ("scalar".equals(System.getProperty(KERNELS_PROPERTY))) {
+            return SCALAR;
+        }
+        try {
+            Kernels kernels = (Kernels) Class.forName(VECTOR_API_KERNELS).newInstance();
+            GMLVQCore.LOGGER.fine("using " + kernels);
+            return kernels;
+        } catch (Exception e) {
+            // not compiled
+        } catch (LinkageError e) {
+            // compiled for a newer JVM or the incubator module is missing
+        }
+        return SCALAR;
+    }
+
+    /**
+     * @return the kernels chosen at runtime
+     */
+    public static Kernels getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the scalar kernels, which are always available
+     */
+    public static Kernels scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * @return the sum of the element-wise products of the first
+     *         <code>length</code> values
+     */
+    public abstract double dotProduct(double[] first, double[] second, int length);
+
+    /**
+     * @return the squared euclidean distance of the first <code>length</code>
+     *         values
+     */
+    public abstract double squaredEuclideanDistance(double[] first, double[] second, int length);
+
+    /**
+     * adds the first <code>length</code> values of the source multiplied by a
+     * scalar to the target
+     */
+    public abstract void addTo(double[] target, double factor, double[] source, int length);
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    private static class ScalarKernels extends Kernels {
+
+        @Override
+        public double dotProduct(double[] first, double[] second, int length) {
+            double sum = 0;
+            for (int index = 0; index < length; index++) {
+                sum += first[index] * second[index];
+            }
+            return sum;
+        }
+
+        @Override
+        public double squaredEuclideanDistance(double[] first, double[] second, int length) {
+            double sum = 0;
+            for (int index = 0; index < length; index++) {
+                double difference = first[index] - second[index];
+                sum += difference * difference;
+            }
+            return sum;
+        }
+
+        @Override
+        public void addTo(double[] target, double factor, double[] source, int length) {
+            for (int index = 0; index < length; index++) {
+                target[index] += factor * source[index];
+            }
+        }
+    }
+}
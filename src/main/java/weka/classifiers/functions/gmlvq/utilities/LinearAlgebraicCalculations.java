@@ -1,7 +1,10 @@
 package weka.classifiers.functions.gmlvq.utilities;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import weka.classifiers.functions.GMLVQ;
 import weka.classifiers.functions.gmlvq.model.DataPoint;
@@ -40,8 +43,9 @@ public class LinearAlgebraicCalculations {
 
     public static Vector substract(Vector subtrahend, Vector minuend) {
         double[] difference = new double[subtrahend.getDimension()];
+        subtrahend.addTo(difference, 1.0);
         for (int attributeIndex = 0; attributeIndex < subtrahend.getDimension(); attributeIndex++) {
-            difference[attributeIndex] = subtrahend.getValues()[attributeIndex] - minuend.getValues()[attributeIndex];
+            difference[attributeIndex] -= minuend.getValue(attributeIndex);
         }
         return new Vector(difference, subtrahend.getClassLabel());
     }
@@ -49,7 +53,7 @@ public class LinearAlgebraicCalculations {
     public static Vector add(Vector summand1, Vector summand2) {
         double[] difference = new double[summand1.getDimension()];
         for (int attributeIndex = 0; attributeIndex < summand1.getDimension(); attributeIndex++) {
-            difference[attributeIndex] = summand1.getValues()[attributeIndex] + summand2.getValues()[attributeIndex];
+            difference[attributeIndex] = summand1.getValue(attributeIndex) + summand2.getValue(attributeIndex);
         }
         return new Vector(difference, summand1.getClassLabel());
     }
@@ -63,9 +67,7 @@ public class LinearAlgebraicCalculations {
      */
     public static Vector multiply(Vector vector, double scalar) {
         double[] product = new double[vector.getDimension()];
-        for (int attributeIndex = 0; attributeIndex < vector.getDimension(); attributeIndex++) {
-            product[attributeIndex] = vector.getValues()[attributeIndex] * scalar;
-        }
+        vector.addTo(product, scalar);
         return new Vector(product, vector.getClassLabel());
     }
 
@@ -85,15 +87,11 @@ public class LinearAlgebraicCalculations {
             return vector;
         }
         // acutally, do something when relevance learning occurs
+        double[][] rows = matrix.getArray();
         double[] product = new double[matrix.getRowDimension()];
         for (int rowIndex = 0; rowIndex < matrix.getRowDimension(); rowIndex++) {
-            double sum = 0;
-            // iterate over the columns of the matrix
-            for (int columnIndex = 0; columnIndex < matrix.getColumnDimension(); columnIndex++) {
-                // iterate over the vector
-                sum += vector.getValues()[columnIndex] * matrix.get(rowIndex, columnIndex);
-            }
-            product[rowIndex] = sum;
+            // the vector decides how its values are traversed
+            product[rowIndex] = vector.dotProduct(rows[rowIndex]);
         }
         return new Vector(product, vector.getClassLabel());
     }
@@ -125,31 +123,28 @@ public class LinearAlgebraicCalculations {
      * calculates the covariance matrix based on the definition of
      *
      * @see http://www.itl.nist.gov/div898/handbook/pmc/section5/pmc541.htm
+     * @see CovarianceAccumulator
      * @param dataPoints
      * @return the covariance matrix
+     * @throws IllegalStateException
+     *             if the parallel accumulation is interrupted - the interrupt
+     *             flag of the calling thread is restored
      */
     public static Matrix calculateCovarianceFromMeanVector(List<DataPoint> dataPoints) {
-
-        double[][] data = new double[dataPoints.size()][];
-        for (int index = 0; index < data.length; index++) {
-            data[index] = dataPoints.get(index).getValues();
-        }
-
-        double[] meanVector = createMeanVectorFromListOfVectors(dataPoints);
-
-        Matrix covarianceMatrix = new Matrix(meanVector.length, meanVector.length);
-
-        for (int i = 0; i < data.length; i++) {
-
-            double[] dataRowVector = data[i];
-
-            Matrix x = new Matrix(substract(new Vector(dataRowVector, 0.0), new Vector(meanVector, 0.0)).getValues(),
-                    1);
-
-            covarianceMatrix.plusEquals(x.transpose().times(x));
+        try {
+            return CovarianceAccumulator.compute(dataPoints).getCovariance();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("computing the covariance was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
         }
-
-        return covarianceMatrix.times(1.0 / (dataPoints.size() - 1));
     }
 
     /**
@@ -182,12 +177,7 @@ public class LinearAlgebraicCalculations {
      *         value
      */
     public static double calculateSquaredEuclideanDistance(Vector frist, Vector second) {
-        double sum = 0;
-        for (int attributeIndex = 0; attributeIndex < frist.getValues().length; attributeIndex++) {
-            double rawValue = frist.getValues()[attributeIndex] - second.getValues()[attributeIndex];
-            sum += rawValue * rawValue;
-        }
-        return sum;
+        return frist.squaredEuclideanDistance(second);
     }
 
     /**
@@ -228,7 +218,8 @@ public class LinearAlgebraicCalculations {
 
     /**
      * computes the average vector of a set of vectors - each feature is set to
-     * the average of these feature for all input data points
+     * the average of these feature for all input data points, weighted by
+     * their {@link DataPoint#getWeight()}
      *
      * @param datapoints
      * @return
@@ -236,13 +227,13 @@ public class LinearAlgebraicCalculations {
     public static double[] createMeanVectorFromListOfVectors(List<DataPoint> datapoints) {
         int dimension = datapoints.get(0).getDimension();
         double[] meanVector = new double[dimension];
+        double totalWeight = 0;
         for (DataPoint datapoint : datapoints) {
-            for (int attributeIndex = 0; attributeIndex < dimension; attributeIndex++) {
-                meanVector[attributeIndex] += datapoint.getValue(attributeIndex);
-            }
+            datapoint.addTo(meanVector, datapoint.getWeight());
+            totalWeight += datapoint.getWeight();
         }
         for (int i = 0; i < meanVector.length; i++) {
-            meanVector[i] /= datapoints.size();
+            meanVector[i] /= totalWeight;
         }
         return meanVector;
     }
@@ -266,6 +257,27 @@ public class LinearAlgebraicCalculations {
         return collectedDataPoints;
     }
 
+    /**
+     * groups data points by their class label in a single pass
+     * 
+     * @param datapoints
+     *            what data points to process?
+     * @return the data points of each class label in order of their first
+     *         occurrence
+     */
+    public static Map<Double, List<DataPoint>> groupDatapointsByClassLabel(List<DataPoint> datapoints) {
+        Map<Double, List<DataPoint>> groupedDataPoints = new LinkedHashMap<Double, List<DataPoint>>();
+        for (DataPoint dataPoint : datapoints) {
+            List<DataPoint> dataPointsWithLabel = groupedDataPoints.get(dataPoint.getClassLabel());
+            if (dataPointsWithLabel == null) {
+                dataPointsWithLabel = new ArrayList<DataPoint>();
+                groupedDataPoints.put(dataPoint.getClassLabel(), dataPointsWithLabel);
+            }
+            dataPointsWithLabel.add(dataPoint);
+        }
+        return groupedDataPoints;
+    }
+
     /**
      * Retrieves the minimal and maximal values in the given matrix at the same
      * time, traversing every value only once. <br/>
@@ -0,0 +1,277 @@
+package weka.classifiers.functions.gmlvq.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.core.matrix.EigenvalueDecomposition;
+import weka.core.matrix.Matrix;
+
+/**
+ * Computes the leading eigenvalues and eigenvectors of the (weighted)
+ * covariance matrix of data points by randomized subspace iteration. The
+ * covariance matrix is never formed: it is only applied to a block of
+ * <code>k + {@value #OVERSAMPLING}</code> vectors at a time, directly on the
+ * data points, which costs <code>O(n D k)</code> per pass instead of the
+ * <code>O(n D&sup2; + D&sup3;)</code> of a full eigenvalue decomposition - sparse
+ * data points only touch their non-zero values. The data points are split
+ * among all processors.<br />
+ * <br />
+ * When the block covers the whole data dimension, the covariance matrix is
+ * formed by the {@link CovarianceAccumulator} and decomposed exactly.
+ *
+ * @author S
+ *
+ */
+public class PrincipalComponents {
+
+    /**
+     * the number of vectors computed in addition to the requested ones, which
+     * improves the accuracy of the leading ones
+     */
+    static final int OVERSAMPLING = 10;
+    /**
+     * the number of power iterations, each sharpens the separation of leading
+     * and trailing eigenvalues
+     */
+    static final int POWER_ITERATIONS = 4;
+    /**
+     * the number of processors that can be used for parallel calculation
+     */
+    private static final int processors = Runtime.getRuntime().availableProcessors();
+
+    private final List<DataPoint> dataPoints;
+    private final int dataDimension;
+    private final double[] mean;
+    private final double totalWeight;
+    private final double[] eigenvalues;
+    private final double[][] eigenvectors;
+
+    /**
+     * @param dataPoints
+     *            the data points - at least two
+     * @param numberOfComponents
+     *            the number of leading eigenvectors to compute
+     * @param random
+     *            the source of the random start vectors
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public PrincipalComponents(List<DataPoint> dataPoints, int numberOfComponents, Random random)
+            throws InterruptedException, ExecutionException {
+        if (dataPoints.size() < 2) {
+            throw new IllegalArgumentException("at least 2 data points are required, but got " + dataPoints.size());
+        }
+        this.dataPoints = dataPoints;
+        this.dataDimension = dataPoints.get(0).getDimension();
+        if (numberOfComponents < 1 || numberOfComponents > this.dataDimension) {
+            throw new IllegalArgumentException("number of components has to be between 1 and " + this.dataDimension
+                    + ", but was " + numberOfComponents);
+        }
+        int blockSize = Math.min(numberOfComponents + OVERSAMPLING, this.dataDimension);
+        ExecutorService executorService = Executors.newFixedThreadPool(processors);
+        try {
+            double[][] basis = new double[blockSize][this.dataDimension];
+            Matrix projectedCovariance;
+            if (blockSize == this.dataDimension) {
+                // the whole space, the covariance matrix is small enough to
+                // be formed
+                CovarianceAccumulator accumulator = CovarianceAccumulator.compute(dataPoints);
+                this.mean = accumulator.getMean();
+                this.totalWeight = accumulator.getTotalWeight();
+                for (int index = 0; index < blockSize; index++) {
+                    basis[index][index] = 1;
+                }
+                projectedCovariance = accumulator.getCovariance();
+            } else {
+                this.mean = LinearAlgebraicCalculations.createMeanVectorFromListOfVectors(dataPoints);
+                double totalWeight = 0;
+                for (DataPoint dataPoint : dataPoints) {
+                    totalWeight += dataPoint.getWeight();
+                }
+                this.totalWeight = totalWeight;
+
+                for (double[] vector : basis) {
+                    for (int index = 0; index < vector.length; index++) {
+                        vector[index] = random.nextGaussian();
+                    }
+                }
+                basis = orthonormalize(applyCovariance(basis, executorService), random);
+                for (int iteration = 0; iteration < POWER_ITERATIONS; iteration++) {
+                    basis = orthonormalize(applyCovariance(basis, executorService), random);
+                }
+
+                // Rayleigh-Ritz: the eigenvalues of the covariance restricted
+                // to the basis
+                double[][] image = applyCovariance(basis, executorService);
+                projectedCovariance = new Matrix(blockSize, blockSize);
+                for (int row = 0; row < blockSize; row++) {
+                    for (int column = row; column < blockSize; column++) {
+                        double value = (dotProduct(basis[row], image[column]) + dotProduct(basis[column], image[row]))
+                                / 2;
+                        projectedCovariance.set(row, column, value);
+                        projectedCovariance.set(column, row, value);
+                    }
+                }
+            }
+            EigenvalueDecomposition eigenvalueDecomposition = projectedCovariance.eig();
+            double[] projectedEigenvalues = eigenvalueDecomposition.getRealEigenvalues();
+            double[][] projectedEigenvectors = eigenvalueDecomposition.getV().getArray();
+
+            // eigenvalues are sorted ascending
+            this.eigenvalues = new double[numberOfComponents];
+            this.eigenvectors = new double[numberOfComponents][this.dataDimension];
+            for (int component = 0; component < numberOfComponents; component++) {
+                int column = blockSize - 1 - component;
+                this.eigenvalues[component] = projectedEigenvalues[column];
+                for (int row = 0; row < blockSize; row++) {
+                    double factor = projectedEigenvectors[row][column];
+                    double[] basisVector = basis[row];
+                    for (int index = 0; index < this.dataDimension; index++) {
+                        this.eigenvectors[component][index] += factor * basisVector[index];
+                    }
+                }
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * @return the covariance matrix times each of the given vectors
+     */
+    private double[][] applyCovariance(double[][] vectors, ExecutorService executorService)
+            throws InterruptedException, ExecutionException {
+        double[] meanProducts = new double[vectors.length];
+        for (int vector = 0; vector < vectors.length; vector++) {
+            meanProducts[vector] = dotProduct(this.mean, vectors[vector]);
+        }
+
+        List<Future<double[][]>> results = new ArrayList<Future<double[][]>>();
+        int partitionSize = (this.dataPoints.size() + processors - 1) / processors;
+        for (int offset = 0; offset < this.dataPoints.size(); offset += partitionSize) {
+            results.add(executorService.submit(new CovarianceApplier(
+                    this.dataPoints.subList(offset, Math.min(this.dataPoints.size(), offset + partitionSize)),
+                    vectors, meanProducts)));
+        }
+
+        // the last row of each partial result holds the sums of the
+        // projections
+        double[][] sums = new double[vectors.length + 1][];
+        for (Future<double[][]> result : results) {
+            double[][] partialSums = result.get();
+            if (sums[0] == null) {
+                sums = partialSums;
+                continue;
+            }
+            for (int row = 0; row < sums.length; row++) {
+                for (int index = 0; index < sums[row].length; index++) {
+                    sums[row][index] += partialSums[row][index];
+                }
+            }
+        }
+
+        // sum of w (x - mean) (x - mean)'v = sum of w x s - mean * sum of w s
+        double[][] images = new double[vectors.length][];
+        for (int vector = 0; vector < vectors.length; vector++) {
+            double[] image = sums[vector];
+            double projectionSum = sums[vectors.length][vector];
+            for (int index = 0; index < this.dataDimension; index++) {
+                image[index] = (image[index] - this.mean[index] * projectionSum) / (this.totalWeight - 1);
+            }
+            images[vector] = image;
+        }
+        return images;
+    }
+
+    private class CovarianceApplier implements Callable<double[][]> {
+
+        private final List<DataPoint> dataPoints;
+        private final double[][] vectors;
+        private final double[] meanProducts;
+
+        public CovarianceApplier(List<DataPoint> dataPoints, double[][] vectors, double[] meanProducts) {
+            this.dataPoints = dataPoints;
+            this.vectors = vectors;
+            this.meanProducts = meanProducts;
+        }
+
+        @Override
+        public double[][] call() {
+            double[][] sums = new double[this.vectors.length + 1][];
+            for (int vector = 0; vector < this.vectors.length; vector++) {
+                sums[vector] = new double[PrincipalComponents.this.dataDimension];
+            }
+            sums[this.vectors.length] = new double[this.vectors.length];
+            for (DataPoint dataPoint : this.dataPoints) {
+                for (int vector = 0; vector < this.vectors.length; vector++) {
+                    // the weighted projection of the centered data point
+                    double projection = dataPoint.getWeight()
+                            * (dataPoint.dotProduct(this.vectors[vector]) - this.meanProducts[vector]);
+                    dataPoint.addTo(sums[vector], projection);
+                    sums[this.vectors.length][vector] += projection;
+                }
+            }
+            return sums;
+        }
+    }
+
+    /**
+     * orthonormalizes the vectors by modified Gram-Schmidt, vectors dependent
+     * on the previous ones are replaced by random ones
+     */
+    private static double[][] orthonormalize(double[][] vectors, Random random) {
+        for (int vector = 0; vector < vectors.length; vector++) {
+            double originalNorm = Math.sqrt(dotProduct(vectors[vector], vectors[vector]));
+            // orthogonalize twice for numerical stability
+            for (int pass = 0; pass < 2; pass++) {
+                for (int previous = 0; previous < vector; previous++) {
+                    double product = dotProduct(vectors[previous], vectors[vector]);
+                    Kernels.getInstance().addTo(vectors[vector], -product, vectors[previous],
+                            vectors[vector].length);
+                }
+            }
+            double norm = Math.sqrt(dotProduct(vectors[vector], vectors[vector]));
+            if (norm == 0 || norm <= LinearAlgebraicCalculations.NUMERIC_CUTOFF * originalNorm) {
+                // the covariance has a lower rank than the block
+                for (int index = 0; index < vectors[vector].length; index++) {
+                    vectors[vector][index] = random.nextGaussian();
+                }
+                vector--;
+                continue;
+            }
+            for (int index = 0; index < vectors[vector].length; index++) {
+                vectors[vector][index] /= norm;
+            }
+        }
+        return vectors;
+    }
+
+    private static double dotProduct(double[] first, double[] second) {
+        return Kernels.getInstance().dotProduct(first, second, first.length);
+    }
+
+    /**
+     * @return the leading eigenvalues in descending order
+     */
+    public double[] getEigenvalues() {
+        return this.eigenvalues;
+    }
+
+    /**
+     * @return the eigenvectors of {@link #getEigenvalues()}, one per row
+     */
+    public double[][] getEigenvectors() {
+        return this.eigenvectors;
+    }
+
+    public double[] getMean() {
+        return this.mean;
+    }
+}
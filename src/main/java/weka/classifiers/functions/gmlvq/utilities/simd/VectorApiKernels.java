@@ -0,0 +1,88 @@
+package weka.classifiers.functions.gmlvq.utilities.simd;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import weka.classifiers.functions.gmlvq.utilities.Kernels;
+
+/**
+ * {@link Kernels} vectorized by the JDK Vector API, using the widest vectors
+ * of the processor. Arrays shorter than two vectors are processed by scalar
+ * loops, e.g. in low-dimensional embedded spaces, where the reduction of the
+ * lanes would not pay off.<br />
+ * <br />
+ * This class requires JDK 17 or newer and is only compiled by the
+ * <code>vector-api</code> profile - it must not be referenced directly, see
+ * {@link Kernels#getInstance()}.
+ *
+ * @author S
+ *
+ */
+public class VectorApiKernels extends Kernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int MINIMAL_LENGTH = 2 * SPECIES.length();
+
+    @Override
+    public double dotProduct(double[] first, double[] second, int length) {
+        if (length < MINIMAL_LENGTH) {
+            return scalar().dotProduct(first, second, length);
+        }
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(length);
+        int index = 0;
+        for (; index < bound; index += SPECIES.length()) {
+            DoubleVector product = DoubleVector.fromArray(SPECIES, first, index)
+                    .mul(DoubleVector.fromArray(SPECIES, second, index));
+            sum = sum.add(product);
+        }
+        double result = sum.reduceLanes(VectorOperators.ADD);
+        for (; index < length; index++) {
+            result += first[index] * second[index];
+        }
+        return result;
+    }
+
+    @Override
+    public double squaredEuclideanDistance(double[] first, double[] second, int length) {
+        if (length < MINIMAL_LENGTH) {
+            return scalar().squaredEuclideanDistance(first, second, length);
+        }
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(length);
+        int index = 0;
+        for (; index < bound; index += SPECIES.length()) {
+            DoubleVector difference = DoubleVector.fromArray(SPECIES, first, index)
+                    .sub(DoubleVector.fromArray(SPECIES, second, index));
+            sum = sum.add(difference.mul(difference));
+        }
+        double result = sum.reduceLanes(VectorOperators.ADD);
+        for (; index < length; index++) {
+            double difference = first[index] - second[index];
+            result += difference * difference;
+        }
+        return result;
+    }
+
+    @Override
+    public void addTo(double[] target, double factor, double[] source, int length) {
+        if (length < MINIMAL_LENGTH) {
+            scalar().addTo(target, factor, source, length);
+            return;
+        }
+        int bound = SPECIES.loopBound(length);
+        int index = 0;
+        for (; index < bound; index += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, source, index).mul(factor)
+                    .add(DoubleVector.fromArray(SPECIES, target, index)).intoArray(target, index);
+        }
+        for (; index < length; index++) {
+            target[index] += factor * source[index];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "VectorApiKernels with " + SPECIES.length() + " lanes";
+    }
+}
@@ -0,0 +1,640 @@
+package weka.classifiers.functions.gmlvq;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import weka.classifiers.functions.GMLVQ;
+import weka.classifiers.functions.gmlvq.core.GMLVQCore;
+import weka.classifiers.functions.gmlvq.core.InitializationCache;
+import weka.classifiers.functions.gmlvq.core.ParallelStrategy;
+import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.classifiers.functions.gmlvq.model.DataStoreCache;
+import weka.classifiers.functions.gmlvq.model.DataStoreLoader;
+import weka.classifiers.functions.gmlvq.model.EmbeddedSpaceVector;
+import weka.classifiers.functions.gmlvq.model.MappedDataStore;
+import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
+import weka.classifiers.functions.gmlvq.model.Prototype;
+import weka.classifiers.functions.gmlvq.model.PrototypeTree;
+import weka.classifiers.functions.gmlvq.model.WeightedDataPoint;
+import weka.classifiers.functions.gmlvq.model.WekaModelConverter;
+import weka.classifiers.functions.gmlvq.model.WinnerBounds;
+import weka.classifiers.functions.gmlvq.model.WinnerSearch;
+import weka.classifiers.functions.gmlvq.utilities.Kernels;
+import weka.classifiers.functions.gmlvq.utilities.LinearAlgebraicCalculations;
+import weka.classifiers.functions.gmlvq.utilities.PrincipalComponents;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+
+/**
+ * Measures the run time of alternative implementations. Not a test, so it is
+ * not run by surefire - run {@link #main(String[])} on the test class path,
+ * optionally with the names of the benchmarks to run.
+ *
+ * @author S
+ *
+ */
+public final class GMLVQBenchmark {
+
+    private GMLVQBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> selected = Arrays.asList(args);
+        for (Method method : GMLVQBenchmark.class.getDeclaredMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) && method.getName().startsWith("benchmark")
+                    && (selected.isEmpty() || selected.contains(method.getName()))) {
+                method.invoke(null);
+            }
+        }
+        // the thread pools of trained classifiers are never shut down
+        System.exit(0);
+    }
+
+    /**
+     * loading an exported model compared to deserializing the classifier
+     */
+    static void benchmarkModelLoading() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.IRIS);
+        GMLVQ gmlvq = new GMLVQ();
+        gmlvq.set_1_visualization(false);
+        gmlvq.set_2_matrixLearning(true);
+        gmlvq.buildClassifier(instances);
+
+        File modelFile = File.createTempFile("gmlvq", ".model");
+        modelFile.deleteOnExit();
+        File serializedFile = File.createTempFile("gmlvq", ".ser");
+        serializedFile.deleteOnExit();
+        gmlvq.exportModel(modelFile);
+        SerializationHelper.write(serializedFile.getAbsolutePath(), gmlvq);
+
+        int repetitions = 100;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < repetitions; i++) {
+            GMLVQ.importModel(modelFile);
+        }
+        long modelTime = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+        for (int i = 0; i < repetitions; i++) {
+            SerializationHelper.read(serializedFile.getAbsolutePath());
+        }
+        long serializedTime = System.nanoTime() - startTime;
+
+        System.out.println("binary model: " + modelFile.length() + " bytes, loading took "
+                + modelTime / repetitions / 1000.0 + " us");
+        System.out.println("serialized classifier: " + serializedFile.length() + " bytes, loading took "
+                + serializedTime / repetitions / 1000.0 + " us");
+    }
+
+    /**
+     * training in single compared to double precision
+     */
+    static void benchmarkSinglePrecision() throws Exception {
+        for (String dataset : new String[] { TestUtils.Datasets.IRIS, TestUtils.Datasets.TECATOR_D,
+                TestUtils.Datasets.HDS }) {
+            Instances instances = TestUtils.loadDataset(dataset, true);
+
+            GMLVQ doublePrecision = TrainingModeTest.createClassifier();
+            long doubleTime = train(doublePrecision, instances);
+            double doubleAccuracy = TrainingModeTest.accuracy(doublePrecision, instances);
+
+            GMLVQ singlePrecision = TrainingModeTest.createClassifier();
+            singlePrecision.set_2_singlePrecision(true);
+            long singleTime = train(singlePrecision, instances);
+            double singleAccuracy = TrainingModeTest.accuracy(singlePrecision, instances);
+
+            System.out.println(dataset + ": double " + doubleTime + " ms, accuracy " + doubleAccuracy + " - single "
+                    + singleTime + " ms, accuracy " + singleAccuracy);
+        }
+    }
+
+    /**
+     * training on sparse compared to densified data
+     */
+    static void benchmarkSparseTraining() throws Exception {
+        Instances sparseInstances = TrainingModeTest.createSparseDataset(300, 200, 10);
+        Instances denseInstances = new Instances(sparseInstances, sparseInstances.size());
+        for (Instance instance : sparseInstances) {
+            denseInstances.add(new DenseInstance(1.0, instance.toDoubleArray()));
+        }
+
+        for (boolean matrixLearning : new boolean[] { false, true }) {
+            GMLVQ dense = TrainingModeTest.createClassifier();
+            dense.set_2_matrixLearning(matrixLearning);
+            dense.set_1_numberOfEpochs(20);
+            long denseTime = train(dense, denseInstances);
+
+            GMLVQ sparse = TrainingModeTest.createClassifier();
+            sparse.set_2_matrixLearning(matrixLearning);
+            sparse.set_1_numberOfEpochs(20);
+            long sparseTime = train(sparse, sparseInstances);
+
+            System.out.println("sparse data, matrix learning " + matrixLearning + ": dense " + denseTime
+                    + " ms, accuracy " + TrainingModeTest.accuracy(dense, denseInstances) + " - sparse " + sparseTime
+                    + " ms, accuracy " + TrainingModeTest.accuracy(sparse, sparseInstances));
+        }
+    }
+
+    /**
+     * training on views of a memory-mapped store
+     */
+    static void benchmarkMappedStore() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.TECATOR_D, true);
+        for (boolean singlePrecision : new boolean[] { false, true }) {
+            File storeFile = File.createTempFile("gmlvq", ".store");
+            storeFile.deleteOnExit();
+            MappedDataStore store = MappedDataStore.write(instances, storeFile, singlePrecision);
+            try {
+                GMLVQ gmlvq = TrainingModeTest.createClassifier();
+                long startTime = System.nanoTime();
+                gmlvq.buildClassifier(store);
+                long time = (System.nanoTime() - startTime) / 1000000;
+                System.out.println(store + ": " + time + " ms, accuracy " + TrainingModeTest.accuracy(gmlvq, instances)
+                        + ", file size " + storeFile.length() + " bytes");
+            } finally {
+                store.close();
+            }
+        }
+    }
+
+    /**
+     * creating a store by the loader compared to converting WEKA instances
+     */
+    static void benchmarkStoreLoading() throws Exception {
+        for (String dataset : new String[] { TestUtils.Datasets.IRIS, TestUtils.Datasets.TECATOR_D,
+                TestUtils.Datasets.HDS, TestUtils.Datasets.MEMBRANE_TOPOLOGY_GUTTERIDGE_4 }) {
+            File arffFile = new File(Thread.currentThread().getContextClassLoader().getResource(dataset).toURI());
+            long startTime = System.nanoTime();
+            Instances instances = TestUtils.loadDataset(dataset);
+            WekaModelConverter.createDataPoints(instances);
+            long wekaTime = (System.nanoTime() - startTime) / 1000000;
+
+            File storeFile = File.createTempFile("gmlvq", ".store");
+            storeFile.deleteOnExit();
+            startTime = System.nanoTime();
+            MappedDataStore store = DataStoreLoader.load(arffFile, storeFile, false);
+            long loaderTime = (System.nanoTime() - startTime) / 1000000;
+            store.close();
+            System.out.println(dataset + ": WEKA " + wekaTime + " ms, loader " + loaderTime + " ms");
+        }
+    }
+
+    /**
+     * opening a store from a cold and a warm cache compared to converting WEKA
+     * instances
+     */
+    static void benchmarkStoreCache() throws Exception {
+        File cacheDirectory = Files.createTempDirectory("gmlvq").toFile();
+        DataStoreCache cache = new DataStoreCache(cacheDirectory);
+        for (String dataset : new String[] { TestUtils.Datasets.TECATOR_D, TestUtils.Datasets.HDS }) {
+            File arffFile = new File(Thread.currentThread().getContextClassLoader().getResource(dataset).toURI());
+            long startTime = System.nanoTime();
+            Instances instances = TestUtils.loadDataset(dataset);
+            WekaModelConverter.createDataPoints(instances);
+            long wekaTime = (System.nanoTime() - startTime) / 1000000;
+
+            long[] times = new long[2];
+            for (int run = 0; run < times.length; run++) {
+                startTime = System.nanoTime();
+                MappedDataStore store = cache.open(arffFile, false);
+                times[run] = (System.nanoTime() - startTime) / 1000000;
+                store.close();
+            }
+            System.out.println(dataset + ": WEKA " + wekaTime + " ms, cold cache " + times[0] + " ms, warm cache "
+                    + times[1] + " ms");
+        }
+        for (File entry : cacheDirectory.listFiles()) {
+            entry.delete();
+        }
+        cacheDirectory.delete();
+    }
+
+    /**
+     * training out of core within a memory budget
+     */
+    static void benchmarkOutOfCore() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.TECATOR_D, true);
+        File storeFile = File.createTempFile("gmlvq", ".store");
+        storeFile.deleteOnExit();
+        MappedDataStore store = MappedDataStore.write(instances, storeFile, false);
+        try {
+            // sample and mini-batches of 64 data points each
+            long memoryBudget = 3 * 64 * (16 * store.getDataDimension() + 128);
+            GMLVQ gmlvq = TrainingModeTest.createClassifier();
+            long startTime = System.nanoTime();
+            gmlvq.buildClassifier(store, memoryBudget);
+            long time = (System.nanoTime() - startTime) / 1000000;
+            System.out.println("out of core, " + memoryBudget + " bytes budget: " + time + " ms, accuracy "
+                    + TrainingModeTest.accuracy(gmlvq, instances));
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * training on collapsed duplicates compared to all instances
+     */
+    static void benchmarkCollapsedDuplicates() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.MEMBRANE_TOPOLOGY_GUTTERIDGE_4, true);
+        int numberOfDistinctDataPoints = WeightedDataPoint
+                .collapseDuplicates(WekaModelConverter.createDataPoints(instances)).size();
+
+        GMLVQ allInstances = TrainingModeTest.createClassifier();
+        allInstances.set_1_numberOfEpochs(20);
+        long allTime = train(allInstances, instances);
+
+        GMLVQ collapsed = TrainingModeTest.createClassifier();
+        collapsed.set_1_numberOfEpochs(20);
+        collapsed.set_2_collapseDuplicates(true);
+        long collapsedTime = train(collapsed, instances);
+
+        System.out.println(instances.size() + " instances, " + numberOfDistinctDataPoints + " distinct: all " + allTime
+                + " ms, accuracy " + TrainingModeTest.accuracy(allInstances, instances) + " - collapsed "
+                + collapsedTime + " ms, accuracy " + TrainingModeTest.accuracy(collapsed, instances));
+    }
+
+    /**
+     * training on a coreset compared to all data points
+     */
+    static void benchmarkCoreset() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.HDS, true);
+        List<DataPoint> dataPoints = WekaModelConverter.createDataPoints(instances);
+
+        long startTime = System.nanoTime();
+        GMLVQCore allDataPoints = TrainingModeTest.createCoreBuilder().build(new ArrayList<DataPoint>(dataPoints));
+        allDataPoints.buildClassifier();
+        long allTime = (System.nanoTime() - startTime) / 1000000;
+        double allCostValue = TrainingModeTest.costValue(allDataPoints, dataPoints);
+
+        startTime = System.nanoTime();
+        GMLVQCore coreset = TrainingModeTest.createCoreBuilder().coresetSize(1000)
+                .build(new ArrayList<DataPoint>(dataPoints));
+        coreset.buildClassifier();
+        long coresetTime = (System.nanoTime() - startTime) / 1000000;
+
+        System.out.println("coreset of " + coreset.getDataPoints().size() + " of " + dataPoints.size()
+                + " data points: all " + allTime + " ms, costs " + allCostValue + " - coreset " + coresetTime
+                + " ms, costs on all data points " + coreset.getAllDataPointsCostValue() + " - speedup "
+                + (double) allTime / coresetTime + ", cost difference "
+                + (coreset.getAllDataPointsCostValue() - allCostValue));
+    }
+
+    /**
+     * importance sampling compared to uniform sampling of the data points of
+     * an epoch
+     */
+    static void benchmarkImportanceSampling() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.HDS, true);
+        List<DataPoint> dataPoints = WekaModelConverter.createDataPoints(instances);
+
+        long startTime = System.nanoTime();
+        GMLVQCore uniform = TrainingModeTest.createCoreBuilder().build(new ArrayList<DataPoint>(dataPoints));
+        uniform.buildClassifier();
+        long uniformTime = (System.nanoTime() - startTime) / 1000000;
+        double uniformCostValue = TrainingModeTest.costValue(uniform, dataPoints);
+
+        startTime = System.nanoTime();
+        GMLVQCore importance = TrainingModeTest.createCoreBuilder().importanceSampling(true)
+                .dataPointRatioPerRound(0.1).build(new ArrayList<DataPoint>(dataPoints));
+        importance.buildClassifier();
+        long importanceTime = (System.nanoTime() - startTime) / 1000000;
+        double importanceCostValue = TrainingModeTest.costValue(importance, dataPoints);
+
+        // uniform sampling of as many data points per epoch
+        startTime = System.nanoTime();
+        GMLVQCore fewUniform = TrainingModeTest.createCoreBuilder().dataPointRatioPerRound(0.1)
+                .build(new ArrayList<DataPoint>(dataPoints));
+        fewUniform.buildClassifier();
+        long fewUniformTime = (System.nanoTime() - startTime) / 1000000;
+        double fewUniformCostValue = TrainingModeTest.costValue(fewUniform, dataPoints);
+
+        int sampleSize = importance.getGradientDescent().getImportanceSampler().getSampleSize();
+        System.out.println("uniform sampling of " + (int) (0.75 * dataPoints.size()) + " data points per epoch: "
+                + uniformTime + " ms, costs " + uniformCostValue + " - importance sampling of " + sampleSize + ": "
+                + importanceTime + " ms, costs " + importanceCostValue + " - uniform sampling of " + sampleSize
+                + ": " + fewUniformTime + " ms, costs " + fewUniformCostValue);
+    }
+
+    /**
+     * training with several prototypes per class, initialized by k-means++
+     */
+    static void benchmarkMultiplePrototypes() throws Exception {
+        List<DataPoint> dataPoints = WekaModelConverter
+                .createDataPoints(TestUtils.loadDataset(TestUtils.Datasets.HDS, true));
+        long startTime = System.nanoTime();
+        GMLVQCore gmlvqCore = TrainingModeTest.createCoreBuilder().numberOfPrototypesPerClass(3).numberOfEpochs(20)
+                .build(new ArrayList<DataPoint>(dataPoints));
+        gmlvqCore.buildClassifier();
+        long time = (System.nanoTime() - startTime) / 1000000;
+        int correct = 0;
+        for (DataPoint dataPoint : dataPoints) {
+            if (gmlvqCore.classifyInstance(dataPoint) == dataPoint.getClassLabel()) {
+                correct++;
+            }
+        }
+        System.out.println("3 prototypes per class initialized by k-means++: " + time + " ms, accuracy "
+                + (double) correct / dataPoints.size());
+    }
+
+    /**
+     * the leading eigenvectors by partial compared to full decomposition
+     */
+    static void benchmarkPartialEigendecomposition() throws Exception {
+        int dataDimension = 400;
+        Random random = new Random(42);
+        List<DataPoint> dataPoints = LinearAlgebraicCalculationsTest.createDecayingDataPoints(dataDimension, random);
+
+        long startTime = System.nanoTime();
+        LinearAlgebraicCalculations.calculateCovarianceFromMeanVector(dataPoints).eig();
+        long fullTime = (System.nanoTime() - startTime) / 1000000;
+        startTime = System.nanoTime();
+        new PrincipalComponents(dataPoints, 5, random);
+        long partialTime = (System.nanoTime() - startTime) / 1000000;
+        System.out.println("leading 5 of " + dataDimension + " eigenvectors: full decomposition " + fullTime
+                + " ms, partial " + partialTime + " ms");
+    }
+
+    /**
+     * computing the initialization compared to loading it from the cache
+     */
+    static void benchmarkInitializationCache() throws Exception {
+        List<DataPoint> dataPoints = WekaModelConverter
+                .createDataPoints(TestUtils.loadDataset(TestUtils.Datasets.HDS, true));
+        File cacheDirectory = Files.createTempDirectory("gmlvq").toFile();
+        InitializationCache cache = new InitializationCache(cacheDirectory);
+
+        long[] times = new long[2];
+        for (int run = 0; run < times.length; run++) {
+            long startTime = System.nanoTime();
+            TrainingModeTest.createCoreBuilder().numberOfEpochs(10).numberOfPrototypesPerClass(3)
+                    .allDataPointsForOmegaInitialization(true).initializationCache(cache)
+                    .build(new ArrayList<DataPoint>(dataPoints));
+            times[run] = (System.nanoTime() - startTime) / 1000000;
+        }
+        System.out.println("initialization: computed " + times[0] + " ms, cached " + times[1] + " ms - " + cache);
+        for (File entry : cacheDirectory.listFiles()) {
+            entry.delete();
+        }
+        cacheDirectory.delete();
+    }
+
+    /**
+     * the selected kernels compared to the scalar ones - run with
+     * <code>--add-modules jdk.incubator.vector</code> to measure the
+     * vectorized kernels
+     */
+    static void benchmarkKernels() {
+        Kernels kernels = Kernels.getInstance();
+        Kernels scalar = Kernels.scalar();
+        Random random = new Random(42);
+        for (int dataDimension : new int[] { 100, 1000 }) {
+            double[] first = new double[dataDimension];
+            double[] second = new double[dataDimension];
+            for (int index = 0; index < dataDimension; index++) {
+                first[index] = random.nextGaussian();
+                second[index] = random.nextGaussian();
+            }
+            // the second round is measured, the first warms up
+            long[] times = new long[2];
+            double checksum = 0;
+            for (int round = 0; round < 2; round++) {
+                int repetitions = 100000000 / dataDimension;
+                for (int implementation = 0; implementation < times.length; implementation++) {
+                    Kernels measured = implementation == 0 ? scalar : kernels;
+                    long startTime = System.nanoTime();
+                    for (int repetition = 0; repetition < repetitions; repetition++) {
+                        checksum += measured.squaredEuclideanDistance(first, second, dataDimension);
+                        checksum += measured.dotProduct(first, second, dataDimension);
+                    }
+                    times[implementation] = (System.nanoTime() - startTime) / 1000000;
+                }
+            }
+            System.out.println(dataDimension + "D distances and dot products: scalar " + times[0] + " ms, "
+                    + kernels + " " + times[1] + " ms (" + (checksum > 0) + ")");
+        }
+    }
+
+    /**
+     * the batched winner search compared to searching the winners of each data
+     * point separately
+     */
+    static void benchmarkBatchedWinnerSearch() {
+        Random random = new Random(42);
+        int dataDimension = 100;
+        double[][] omega = new double[10][dataDimension];
+        for (double[] row : omega) {
+            for (int index = 0; index < row.length; index++) {
+                row[index] = random.nextGaussian();
+            }
+        }
+        OmegaMatrix omegaMatrix = new OmegaMatrix(omega);
+        List<Prototype> prototypes = new ArrayList<Prototype>();
+        for (int prototype = 0; prototype < 100; prototype++) {
+            prototypes.add(new Prototype(LinearAlgebraicCalculationsTest.createValues(random, dataDimension, 0),
+                    prototype % 3));
+        }
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+        for (int dataPoint = 0; dataPoint < 2000; dataPoint++) {
+            dataPoints.add(new DataPoint(LinearAlgebraicCalculationsTest.createValues(random, dataDimension, 0),
+                    dataPoint % 3));
+        }
+        for (DataPoint dataPoint : dataPoints) {
+            dataPoint.getEmbeddedSpaceVector(omegaMatrix);
+        }
+
+        long startTime = System.nanoTime();
+        for (DataPoint dataPoint : dataPoints) {
+            EmbeddedSpaceVector embeddedSpaceVector = dataPoint.getEmbeddedSpaceVector(omegaMatrix);
+            embeddedSpaceVector.getWinningInformation(prototypes);
+            embeddedSpaceVector.deregisterAllWinnersBut(null);
+        }
+        long pairwiseTime = (System.nanoTime() - startTime) / 1000000;
+        startTime = System.nanoTime();
+        new WinnerSearch(prototypes, omegaMatrix).determineWinningInformation(dataPoints);
+        long batchedTime = (System.nanoTime() - startTime) / 1000000;
+        System.out.println("winners of " + dataPoints.size() + " data points among " + prototypes.size()
+                + " prototypes: pairwise " + pairwiseTime + " ms, batched " + batchedTime + " ms");
+    }
+
+    /**
+     * training with winner searches pruned by bounds compared to full searches
+     */
+    static void benchmarkWinnerPruning() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.HDS, true);
+
+        // warm up
+        TrainingModeTest.createCoreBuilder().numberOfEpochs(30).build(WekaModelConverter.createDataPoints(instances))
+                .buildClassifier();
+
+        long[] times = new long[2];
+        WinnerBounds winnerBounds = null;
+        for (int run = 0; run < times.length; run++) {
+            GMLVQCore gmlvqCore = TrainingModeTest.createCoreBuilder().numberOfEpochs(30).numberOfPrototypesPerClass(5)
+                    .winnerPruning(run == 0).build(WekaModelConverter.createDataPoints(instances));
+            long startTime = System.nanoTime();
+            gmlvqCore.buildClassifier();
+            times[run] = (System.nanoTime() - startTime) / 1000000;
+            if (run == 0) {
+                winnerBounds = gmlvqCore.getWinnerBounds();
+            }
+        }
+        System.out.println("training: pruned " + times[0] + " ms, unpruned " + times[1] + " ms - " + winnerBounds);
+    }
+
+    /**
+     * the winner search indexed by a ball tree compared to searching the
+     * winners of each data point separately
+     */
+    static void benchmarkIndexedWinnerSearch() {
+        Random random = new Random(42);
+        int dataDimension = 20;
+        double[][] omega = new double[3][dataDimension];
+        for (double[] row : omega) {
+            for (int index = 0; index < row.length; index++) {
+                row[index] = random.nextGaussian();
+            }
+        }
+        OmegaMatrix omegaMatrix = new OmegaMatrix(omega);
+        List<Prototype> prototypes = new ArrayList<Prototype>();
+        for (int prototype = 0; prototype < 600; prototype++) {
+            prototypes.add(new Prototype(LinearAlgebraicCalculationsTest.createValues(random, dataDimension, 0),
+                    prototype % 3));
+        }
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+        for (int dataPoint = 0; dataPoint < 2000; dataPoint++) {
+            dataPoints.add(new DataPoint(LinearAlgebraicCalculationsTest.createValues(random, dataDimension, 0),
+                    dataPoint % 3));
+        }
+        for (DataPoint dataPoint : dataPoints) {
+            dataPoint.getEmbeddedSpaceVector(omegaMatrix);
+        }
+
+        long startTime = System.nanoTime();
+        for (DataPoint dataPoint : dataPoints) {
+            EmbeddedSpaceVector embeddedSpaceVector = dataPoint.getEmbeddedSpaceVector(omegaMatrix);
+            embeddedSpaceVector.getWinningInformation(prototypes);
+            embeddedSpaceVector.deregisterAllWinnersBut(null);
+        }
+        long pairwiseTime = (System.nanoTime() - startTime) / 1000000;
+        startTime = System.nanoTime();
+        WinnerSearch winnerSearch = new WinnerSearch(prototypes, omegaMatrix);
+        winnerSearch.determineWinningInformation(dataPoints);
+        long indexedTime = (System.nanoTime() - startTime) / 1000000;
+        System.out.println("winners of " + dataPoints.size() + " data points among " + prototypes.size()
+                + " prototypes: pairwise " + pairwiseTime + " ms, " + winnerSearch + " " + indexedTime + " ms");
+    }
+
+    /**
+     * approximate searches of the ball tree compared to a linear scan
+     */
+    static void benchmarkApproximateSearch() {
+        Random random = new Random(42);
+        int dimension = 10;
+        int numberOfClasses = 40;
+        double[][] classCenters = LinearAlgebraicCalculationsTest.createClassCenters(random, dimension,
+                numberOfClasses);
+        double[][] points = LinearAlgebraicCalculationsTest.createClusteredValues(random, classCenters, 4000);
+        double[] classLabels = new double[points.length];
+        for (int point = 0; point < points.length; point++) {
+            classLabels[point] = point % numberOfClasses;
+        }
+        double[][] queries = LinearAlgebraicCalculationsTest.createClusteredValues(random, classCenters, 2000);
+        PrototypeTree prototypeTree = new PrototypeTree(points, classLabels, dimension);
+        Kernels kernels = Kernels.getInstance();
+
+        // the second round is measured, the first warms up
+        int[] exact = new int[queries.length];
+        long linearTime = 0;
+        for (int round = 0; round < 2; round++) {
+            long startTime = System.nanoTime();
+            for (int query = 0; query < queries.length; query++) {
+                double nearestDistance = Double.MAX_VALUE;
+                for (int point = 0; point < points.length; point++) {
+                    double distance = kernels.squaredEuclideanDistance(queries[query], points[point], dimension);
+                    if (distance < nearestDistance) {
+                        nearestDistance = distance;
+                        exact[query] = point;
+                    }
+                }
+            }
+            linearTime = (System.nanoTime() - startTime) / 1000;
+        }
+        for (double approximation : new double[] { 0, 0.1, 0.5, 1 }) {
+            int[] nearest = new int[queries.length];
+            long time = 0;
+            for (int round = 0; round < 2; round++) {
+                long startTime = System.nanoTime();
+                for (int query = 0; query < queries.length; query++) {
+                    nearest[query] = prototypeTree.nearest(queries[query], approximation);
+                }
+                time = (System.nanoTime() - startTime) / 1000;
+            }
+            int hits = 0;
+            for (int query = 0; query < queries.length; query++) {
+                if (nearest[query] == exact[query]) {
+                    hits++;
+                }
+            }
+            System.out.println("nearest of " + points.length + " prototypes in " + dimension + "D with approximation "
+                    + approximation + ": recall " + (double) hits / queries.length + ", " + time / queries.length
+                    + " us per query, linear scan " + linearTime / queries.length + " us");
+        }
+    }
+
+    /**
+     * splitting few data points per epoch by features compared to by data
+     * points
+     */
+    static void benchmarkParallelStrategies() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.TECATOR_D, true);
+        long[] times = new long[2];
+        ParallelStrategy[] parallelStrategies = new ParallelStrategy[] { ParallelStrategy.FEATURES,
+                ParallelStrategy.DATA_POINTS };
+        for (int run = 0; run < times.length; run++) {
+            GMLVQCore gmlvqCore = TrainingModeTest.createCoreBuilder().numberOfEpochs(30).omegaDimension(20)
+                    .dataPointRatioPerRound(0.05).parallelStrategy(parallelStrategies[run])
+                    .build(WekaModelConverter.createDataPoints(instances));
+            long startTime = System.nanoTime();
+            gmlvqCore.buildClassifier();
+            times[run] = (System.nanoTime() - startTime) / 1000000;
+        }
+        System.out.println("training on 5% per epoch: features " + times[0] + " ms, data points " + times[1] + " ms");
+    }
+
+    /**
+     * autotuned training with and without calibration, the latter reading the
+     * execution plan kept by the former
+     */
+    static void benchmarkAutotuning() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.TECATOR_D, true);
+        File autotuningFile = File.createTempFile("gmlvq", ".properties");
+        autotuningFile.delete();
+        for (int run = 0; run < 2; run++) {
+            GMLVQCore gmlvqCore = TrainingModeTest.createCoreBuilder().numberOfEpochs(30).omegaDimension(20)
+                    .autotuning(true).autotuningFile(autotuningFile)
+                    .build(WekaModelConverter.createDataPoints(instances));
+            long startTime = System.nanoTime();
+            gmlvqCore.buildClassifier();
+            System.out.println("autotuned training " + (run == 0 ? "with" : "without") + " calibration: "
+                    + (System.nanoTime() - startTime) / 1000000 + " ms - " + gmlvqCore.getExecutionPlan());
+        }
+        autotuningFile.delete();
+    }
+
+    /**
+     * @return the training time in milliseconds
+     */
+    static long train(GMLVQ gmlvq, Instances instances) throws Exception {
+        long startTime = System.nanoTime();
+        gmlvq.buildClassifier(instances);
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+}
@@ -0,0 +1,135 @@
+package weka.classifiers.functions.gmlvq;
+
+import org.junit.Before;
+import org.junit.Test;
+import weka.classifiers.functions.GMLVQ;
+import weka.classifiers.functions.gmlvq.inference.InferenceModel;
+import weka.classifiers.functions.gmlvq.inference.QuantizationReport;
+import weka.classifiers.functions.gmlvq.inference.QuantizedInferenceModel;
+import weka.classifiers.functions.gmlvq.inference.QuantizedInferenceModel.Precision;
+import weka.classifiers.functions.gmlvq.inference.Scorer;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InferenceModelTest {
+
+    private static final String dataset = TestUtils.Datasets.IRIS;
+    private Instances instances;
+    private GMLVQ gmlvq;
+
+    @Before
+    public void setup() throws Exception {
+        this.instances = TestUtils.loadDataset(dataset);
+
+        this.gmlvq = new GMLVQ();
+        this.gmlvq.set_1_visualization(false);
+        this.gmlvq.set_2_matrixLearning(true);
+        this.gmlvq.set_1_numberOfEpochs(100);
+        this.gmlvq.buildClassifier(this.instances);
+    }
+
+    @Test
+    public void shouldReproduceClassifierAfterRoundTrip() throws Exception {
+        File modelFile = File.createTempFile("gmlvq", ".model");
+        modelFile.deleteOnExit();
+        this.gmlvq.exportModel(modelFile);
+        InferenceModel model = GMLVQ.importModel(modelFile);
+
+        assertEquals(this.instances.numAttributes() - 1, model.getDataDimension());
+        assertEquals(this.instances.classAttribute().value(0), model.getClassName(0));
+        for (Instance instance : this.instances) {
+            double[] values = Arrays.copyOf(instance.toDoubleArray(), instance.numAttributes() - 1);
+            assertEquals(this.gmlvq.classifyInstance(instance), model.classify(values), 0.0);
+            assertArrayEquals(this.gmlvq.distributionForInstance(instance), model.distribution(values), 1E-9);
+        }
+    }
+
+    @Test
+    public void shouldBeSmallerThanSerializedClassifier() throws Exception {
+        File modelFile = File.createTempFile("gmlvq", ".model");
+        modelFile.deleteOnExit();
+        File serializedFile = File.createTempFile("gmlvq", ".ser");
+        serializedFile.deleteOnExit();
+        this.gmlvq.exportModel(modelFile);
+        SerializationHelper.write(serializedFile.getAbsolutePath(), this.gmlvq);
+
+        assertTrue(modelFile.length() < serializedFile.length());
+    }
+
+    @Test
+    public void shouldScoreCommaSeparatedInput() throws Exception {
+        Scorer scorer = new Scorer(this.gmlvq.createInferenceModel());
+        StringBuilder input = new StringBuilder();
+        for (Instance instance : this.instances) {
+            for (int attributeIndex = 0; attributeIndex < instance.numAttributes() - 1; attributeIndex++) {
+                input.append(attributeIndex == 0 ? "" : ",").append(instance.value(attributeIndex));
+            }
+            input.append("\n");
+        }
+        StringWriter output = new StringWriter();
+        scorer.score(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)),
+                new PrintWriter(output), false);
+
+        String[] predictions = output.toString().split("\\R");
+        assertEquals(this.instances.size(), predictions.length);
+        for (int index = 0; index < predictions.length; index++) {
+            Instance instance = this.instances.get(index);
+            assertEquals(this.instances.classAttribute().value((int) this.gmlvq.classifyInstance(instance)),
+                    predictions[index]);
+        }
+    }
+
+    @Test
+    public void shouldKeepAccuracyWhenQuantized() throws Exception {
+        // train on every other instance and evaluate on the remaining ones
+        Instances trainingData = new Instances(this.instances, 0);
+        Instances heldOutData = new Instances(this.instances, 0);
+        for (int index = 0; index < this.instances.size(); index++) {
+            (index % 2 == 0 ? trainingData : heldOutData).add(this.instances.get(index));
+        }
+        this.gmlvq.buildClassifier(trainingData);
+
+        for (Precision precision : Precision.values()) {
+            QuantizationReport report = this.gmlvq.evaluateQuantization(heldOutData, precision);
+            assertEquals(heldOutData.size(), report.getNumberOfDataPoints());
+            assertTrue(Math.abs(report.getAccuracyDelta()) <= 0.05);
+            assertTrue(report.getQuantizedBytes() < report.getReferenceBytes());
+        }
+    }
+
+    @Test
+    public void shouldQuantizeFeaturesOfDifferentRanges() {
+        // both features contribute alike to the projection, although their
+        // ranges differ by six orders of magnitude
+        double[][] omega = new double[][] { { 0.001, 1000 }, { 0.002, -500 } };
+        double[][] prototypes = new double[][] { { 500, 0.0005 }, { 500, -0.0005 }, { -500, 0.0005 } };
+        InferenceModel model = new InferenceModel(omega, prototypes, new double[] { 0, 1, 2 }, 3,
+                new String[] { "a", "b", "c" }, new String[] { "large", "small" }, 1);
+        QuantizedInferenceModel quantizedModel = QuantizedInferenceModel.quantize(model, Precision.INT8);
+
+        Random random = new Random(42);
+        int agreements = 0;
+        int numberOfDataPoints = 1000;
+        for (int index = 0; index < numberOfDataPoints; index++) {
+            double[] values = new double[] { 1000 * (random.nextDouble() - 0.5),
+                    0.001 * (random.nextDouble() - 0.5) };
+            if (model.classify(values) == quantizedModel.classify(values)) {
+                agreements++;
+            }
+        }
+        assertTrue(agreements > 0.98 * numberOfDataPoints);
+    }
+}
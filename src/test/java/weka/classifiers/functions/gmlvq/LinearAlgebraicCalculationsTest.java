@@ -1,14 +1,37 @@
 package weka.classifiers.functions.gmlvq;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.classifiers.functions.gmlvq.model.EmbeddedSpaceVector;
+import weka.classifiers.functions.gmlvq.model.InstanceDataPoint;
+import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
+import weka.classifiers.functions.gmlvq.model.Prototype;
+import weka.classifiers.functions.gmlvq.model.PrototypeTable;
+import weka.classifiers.functions.gmlvq.model.PrototypeTree;
+import weka.classifiers.functions.gmlvq.model.SparseDataPoint;
+import weka.classifiers.functions.gmlvq.model.WeightedDataPoint;
+import weka.classifiers.functions.gmlvq.model.WinnerSearch;
+import weka.classifiers.functions.gmlvq.model.WinningInformation;
+import weka.classifiers.functions.gmlvq.utilities.CovarianceAccumulator;
+import weka.classifiers.functions.gmlvq.utilities.Kernels;
 import weka.classifiers.functions.gmlvq.utilities.LinearAlgebraicCalculations;
+import weka.classifiers.functions.gmlvq.utilities.PrincipalComponents;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.matrix.EigenvalueDecomposition;
 
 public class LinearAlgebraicCalculationsTest {
 
@@ -39,4 +62,450 @@ public class LinearAlgebraicCalculationsTest {
             assertArrayEquals(covarianceOctave[i], covariance[i], 1.0E-9);
         }
     }
+
+    @Test
+    public void parallelCovarianceShouldMatchTwoPassOne() throws Exception {
+        // weighted dense and sparse data points with a large offset, which
+        // spoils the naive sum of squares
+        int dataDimension = 30;
+        Random random = new Random(42);
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+        for (int dataPointIndex = 0; dataPointIndex < 5000; dataPointIndex++) {
+            DataPoint dataPoint;
+            if (dataPointIndex % 3 == 0) {
+                dataPoint = new SparseDataPoint(new int[] { dataPointIndex % dataDimension },
+                        new double[] { 1.0E6 + random.nextGaussian() }, dataDimension, 0.0);
+            } else {
+                double[] values = new double[dataDimension];
+                for (int index = 0; index < dataDimension; index++) {
+                    values[index] = 1.0E6 + random.nextGaussian() * (index + 1);
+                }
+                dataPoint = new DataPoint(values, 0.0);
+            }
+            dataPoints.add(new WeightedDataPoint(dataPoint, 1 + random.nextInt(3)));
+        }
+
+        double[] mean = LinearAlgebraicCalculations.createMeanVectorFromListOfVectors(dataPoints);
+        double[][] expected = new double[dataDimension][dataDimension];
+        double totalWeight = 0;
+        for (DataPoint dataPoint : dataPoints) {
+            for (int row = 0; row < dataDimension; row++) {
+                for (int column = 0; column < dataDimension; column++) {
+                    expected[row][column] += dataPoint.getWeight() * (dataPoint.getValue(row) - mean[row])
+                            * (dataPoint.getValue(column) - mean[column]);
+                }
+            }
+            totalWeight += dataPoint.getWeight();
+        }
+
+        CovarianceAccumulator accumulator = CovarianceAccumulator.compute(dataPoints);
+        assertEquals(totalWeight, accumulator.getTotalWeight(), 1.0E-9);
+        assertArrayEquals(mean, accumulator.getMean(), 1.0E-6);
+        double[][] covariance = accumulator.getCovariance().getArray();
+        for (int row = 0; row < dataDimension; row++) {
+            for (int column = 0; column < dataDimension; column++) {
+                double value = expected[row][column] / (totalWeight - 1);
+                assertEquals(value, covariance[row][column], 1.0E-6 * Math.max(1, Math.abs(value)));
+            }
+        }
+    }
+
+    @Test
+    public void selectedKernelsShouldMatchScalarKernels() {
+        Kernels kernels = Kernels.getInstance();
+        Kernels scalar = Kernels.scalar();
+        Random random = new Random(42);
+        for (int dataDimension : new int[] { 3, 100, 1000 }) {
+            double[] first = new double[dataDimension];
+            double[] second = new double[dataDimension];
+            for (int index = 0; index < dataDimension; index++) {
+                first[index] = random.nextGaussian();
+                second[index] = random.nextGaussian();
+            }
+            assertEquals(scalar.dotProduct(first, second, dataDimension),
+                    kernels.dotProduct(first, second, dataDimension), 1.0E-12 * dataDimension);
+            assertEquals(scalar.squaredEuclideanDistance(first, second, dataDimension),
+                    kernels.squaredEuclideanDistance(first, second, dataDimension), 1.0E-12 * dataDimension);
+            double[] scalarTarget = second.clone();
+            double[] target = second.clone();
+            scalar.addTo(scalarTarget, 0.5, first, dataDimension);
+            kernels.addTo(target, 0.5, first, dataDimension);
+            assertArrayEquals(scalarTarget, target, 1.0E-12);
+        }
+    }
+
+    @Test
+    public void batchedWinnerSearchShouldMatchPairwiseSearch() {
+        Random random = new Random(42);
+        int dataDimension = 100;
+        double[][] omega = new double[10][dataDimension];
+        for (double[] row : omega) {
+            for (int index = 0; index < row.length; index++) {
+                row[index] = random.nextGaussian();
+            }
+        }
+        OmegaMatrix omegaMatrix = new OmegaMatrix(omega);
+        // the offset of the second run makes the norm expansion cancel
+        for (double offset : new double[] { 0, 1.0E6 }) {
+            List<Prototype> prototypes = new ArrayList<Prototype>();
+            for (int prototype = 0; prototype < 100; prototype++) {
+                prototypes.add(new Prototype(createValues(random, dataDimension, offset), prototype % 3));
+            }
+            List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+            for (int dataPoint = 0; dataPoint < 500; dataPoint++) {
+                dataPoints.add(new DataPoint(createValues(random, dataDimension, offset), dataPoint % 3));
+            }
+
+            List<WinningInformation> pairwise = new ArrayList<WinningInformation>();
+            for (DataPoint dataPoint : dataPoints) {
+                EmbeddedSpaceVector embeddedSpaceVector = dataPoint.getEmbeddedSpaceVector(omegaMatrix);
+                pairwise.add(embeddedSpaceVector.getWinningInformation(prototypes));
+                embeddedSpaceVector.deregisterAllWinnersBut(null);
+            }
+            new WinnerSearch(prototypes, omegaMatrix).determineWinningInformation(dataPoints);
+
+            for (int index = 0; index < dataPoints.size(); index++) {
+                WinningInformation expected = pairwise.get(index);
+                WinningInformation actual = dataPoints.get(index).getEmbeddedSpaceVector(omegaMatrix)
+                        .getWinningInformation(prototypes);
+                assertEquals(expected.getIndexWinnerSameClass(), actual.getIndexWinnerSameClass());
+                assertEquals(expected.getIndexWinnerOtherClass(), actual.getIndexWinnerOtherClass());
+                assertEquals(expected.getDistanceSameClass(), actual.getDistanceSameClass(),
+                        1.0E-10 * expected.getDistanceSameClass());
+                assertEquals(expected.getDistanceOtherClass(), actual.getDistanceOtherClass(),
+                        1.0E-10 * expected.getDistanceOtherClass());
+            }
+        }
+    }
+
+    @Test
+    public void indexedWinnerSearchShouldMatchLinearScan() {
+        Random random = new Random(42);
+        int dataDimension = 20;
+        double[][] omega = new double[3][dataDimension];
+        for (double[] row : omega) {
+            for (int index = 0; index < row.length; index++) {
+                row[index] = random.nextGaussian();
+            }
+        }
+        OmegaMatrix omegaMatrix = new OmegaMatrix(omega);
+        List<Prototype> prototypes = new ArrayList<Prototype>();
+        for (int prototype = 0; prototype < 600; prototype++) {
+            prototypes.add(new Prototype(createValues(random, dataDimension, 0), prototype % 3));
+        }
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+        for (int dataPoint = 0; dataPoint < 500; dataPoint++) {
+            dataPoints.add(new DataPoint(createValues(random, dataDimension, 0), dataPoint % 3));
+        }
+
+        List<WinningInformation> pairwise = new ArrayList<WinningInformation>();
+        for (DataPoint dataPoint : dataPoints) {
+            EmbeddedSpaceVector embeddedSpaceVector = dataPoint.getEmbeddedSpaceVector(omegaMatrix);
+            pairwise.add(embeddedSpaceVector.getWinningInformation(prototypes));
+            embeddedSpaceVector.deregisterAllWinnersBut(null);
+        }
+        WinnerSearch winnerSearch = new WinnerSearch(prototypes, omegaMatrix);
+        winnerSearch.determineWinningInformation(dataPoints);
+        assertTrue(winnerSearch.isIndexed());
+
+        PrototypeTree prototypeTree = PrototypeTree.create(prototypes, omegaMatrix);
+        for (int index = 0; index < dataPoints.size(); index++) {
+            EmbeddedSpaceVector embeddedSpaceVector = dataPoints.get(index).getEmbeddedSpaceVector(omegaMatrix);
+            WinningInformation expected = pairwise.get(index);
+            WinningInformation actual = embeddedSpaceVector.getWinningInformation(prototypes);
+            assertEquals(expected.getIndexWinnerSameClass(), actual.getIndexWinnerSameClass());
+            assertEquals(expected.getIndexWinnerOtherClass(), actual.getIndexWinnerOtherClass());
+            assertEquals(expected.getDistanceSameClass(), actual.getDistanceSameClass(),
+                    1.0E-10 * expected.getDistanceSameClass());
+            assertEquals(expected.getDistanceOtherClass(), actual.getDistanceOtherClass(),
+                    1.0E-10 * expected.getDistanceOtherClass());
+
+            // the nearest prototype of any class is one of both winners
+            int nearest = prototypeTree.nearest(embeddedSpaceVector.getValues());
+            assertEquals(expected.getDistanceSameClass() <= expected.getDistanceOtherClass()
+                    ? expected.getIndexWinnerSameClass() : expected.getIndexWinnerOtherClass(), nearest);
+        }
+    }
+
+    @Test
+    public void prototypeTableShouldMatchMappedPrototypes() {
+        Random random = new Random(42);
+        int dataDimension = 20;
+        double[][] omega = new double[3][dataDimension];
+        for (double[] row : omega) {
+            for (int index = 0; index < row.length; index++) {
+                row[index] = random.nextGaussian();
+            }
+        }
+        OmegaMatrix omegaMatrix = new OmegaMatrix(omega);
+        List<Prototype> prototypes = new ArrayList<Prototype>();
+        for (int prototype = 0; prototype < 600; prototype++) {
+            prototypes.add(new Prototype(createValues(random, dataDimension, 0), prototype % 3));
+        }
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+        for (int dataPoint = 0; dataPoint < 200; dataPoint++) {
+            dataPoints.add(new DataPoint(createValues(random, dataDimension, 0), dataPoint % 3));
+        }
+
+        PrototypeTable prototypeTable = new PrototypeTable(prototypes, omegaMatrix);
+        assertEquals(3, prototypeTable.getDimension());
+        assertTrue(prototypeTable.getPrototypeTree() != null);
+        for (int index = 0; index < prototypes.size(); index++) {
+            assertArrayEquals(prototypes.get(index).getEmbeddedSpaceVector(omegaMatrix).getValues(),
+                    prototypeTable.getMappedPrototype(index), 0);
+            assertEquals(prototypes.get(index).getClassLabel(), prototypeTable.getClassLabel(index), 0);
+        }
+
+        // searches sharing the table find the same winners as separate ones
+        new WinnerSearch(prototypeTable, null, 16).determineWinningInformation(dataPoints.subList(0, 100));
+        new WinnerSearch(prototypeTable, null, 16).determineWinningInformation(dataPoints.subList(100, 200));
+        for (DataPoint dataPoint : dataPoints) {
+            EmbeddedSpaceVector embeddedSpaceVector = dataPoint.getEmbeddedSpaceVector(omegaMatrix);
+            WinningInformation shared = embeddedSpaceVector.getWinningInformation(prototypes);
+            embeddedSpaceVector.deregisterAllWinnersBut(null);
+            new WinnerSearch(prototypes, omegaMatrix).determineWinningInformation(Arrays.asList(dataPoint));
+            WinningInformation separate = embeddedSpaceVector.getWinningInformation(prototypes);
+            assertEquals(separate.getIndexWinnerSameClass(), shared.getIndexWinnerSameClass());
+            assertEquals(separate.getIndexWinnerOtherClass(), shared.getIndexWinnerOtherClass());
+            assertEquals(separate.getDistanceSameClass(), shared.getDistanceSameClass(), 0);
+            assertEquals(separate.getDistanceOtherClass(), shared.getDistanceOtherClass(), 0);
+        }
+
+        // without relevance learning, the prototypes are copied
+        OmegaMatrix identity = new OmegaMatrix(new double[][] { { 1 } });
+        prototypeTable = new PrototypeTable(prototypes, identity);
+        assertEquals(dataDimension, prototypeTable.getDimension());
+        assertArrayEquals(prototypes.get(7).getValues(), prototypeTable.getMappedPrototype(7), 0);
+    }
+
+    @Test
+    public void approximateSearchShouldStayWithinApproximationFactor() {
+        Random random = new Random(42);
+        int dimension = 10;
+        int numberOfClasses = 40;
+        double[][] classCenters = createClassCenters(random, dimension, numberOfClasses);
+        double[][] points = createClusteredValues(random, classCenters, 4000);
+        double[] classLabels = new double[points.length];
+        for (int point = 0; point < points.length; point++) {
+            classLabels[point] = point % numberOfClasses;
+        }
+        double[][] queries = createClusteredValues(random, classCenters, 500);
+        PrototypeTree prototypeTree = new PrototypeTree(points, classLabels, dimension);
+        Kernels kernels = Kernels.getInstance();
+
+        int[] exact = new int[queries.length];
+        for (int query = 0; query < queries.length; query++) {
+            double nearestDistance = Double.MAX_VALUE;
+            for (int point = 0; point < points.length; point++) {
+                double distance = kernels.squaredEuclideanDistance(queries[query], points[point], dimension);
+                if (distance < nearestDistance) {
+                    nearestDistance = distance;
+                    exact[query] = point;
+                }
+            }
+        }
+        for (double approximation : new double[] { 0, 0.1, 0.5, 1 }) {
+            int hits = 0;
+            double maximalRatio = 1;
+            for (int query = 0; query < queries.length; query++) {
+                int nearest = prototypeTree.nearest(queries[query], approximation);
+                double ratio = Math.sqrt(kernels.squaredEuclideanDistance(queries[query], points[nearest], dimension)
+                        / kernels.squaredEuclideanDistance(queries[query], points[exact[query]], dimension));
+                maximalRatio = Math.max(maximalRatio, ratio);
+                if (nearest == exact[query]) {
+                    hits++;
+                }
+            }
+            assertTrue(maximalRatio <= (1 + approximation) * (1 + 1.0E-10));
+            if (approximation == 0) {
+                assertEquals(queries.length, hits);
+            }
+        }
+
+        // the dimension bound grows with the approximation factor, up to twice the exact one
+        assertFalse(PrototypeTree.isWorthwhile(points.length, dimension, 0));
+        assertTrue(PrototypeTree.isWorthwhile(points.length, dimension, 0.5));
+        assertTrue(PrototypeTree.isWorthwhile(points.length, 2 * PrototypeTree.MAXIMAL_DIMENSION, 1));
+        assertFalse(PrototypeTree.isWorthwhile(points.length, 2 * PrototypeTree.MAXIMAL_DIMENSION + 1, 10));
+
+        // the closest point of each class, as needed for the distribution
+        int[] winners = new int[numberOfClasses];
+        double[] distances = new double[numberOfClasses];
+        double[] treeClassLabels = prototypeTree.getClassLabels();
+        for (int query = 0; query < 100; query++) {
+            prototypeTree.nearestPerClass(queries[query], 0, winners, distances);
+            for (int classIndex = 0; classIndex < numberOfClasses; classIndex++) {
+                double nearestDistance = Double.MAX_VALUE;
+                for (int point = 0; point < points.length; point++) {
+                    if (classLabels[point] == treeClassLabels[classIndex]) {
+                        nearestDistance = Math.min(nearestDistance,
+                                kernels.squaredEuclideanDistance(queries[query], points[point], dimension));
+                    }
+                }
+                assertEquals(nearestDistance, distances[classIndex], 0.0);
+                assertEquals(treeClassLabels[classIndex], classLabels[winners[classIndex]], 0.0);
+            }
+        }
+    }
+
+    /**
+     * @return centers spread by a factor of 4 compared to the values around
+     *         them
+     */
+    static double[][] createClassCenters(Random random, int dimension, int numberOfClasses) {
+        double[][] classCenters = new double[numberOfClasses][];
+        for (int classIndex = 0; classIndex < numberOfClasses; classIndex++) {
+            classCenters[classIndex] = createValues(random, dimension, 0);
+            for (int index = 0; index < dimension; index++) {
+                classCenters[classIndex][index] *= 4;
+            }
+        }
+        return classCenters;
+    }
+
+    /**
+     * @return values around the class centers in turn
+     */
+    static double[][] createClusteredValues(Random random, double[][] classCenters, int count) {
+        int dimension = classCenters[0].length;
+        double[][] values = new double[count][];
+        for (int index = 0; index < count; index++) {
+            values[index] = createValues(random, dimension, 0);
+            Kernels.getInstance().addTo(values[index], 1, classCenters[index % classCenters.length], dimension);
+        }
+        return values;
+    }
+
+    static double[] createValues(Random random, int dataDimension, double offset) {
+        double[] values = new double[dataDimension];
+        for (int index = 0; index < dataDimension; index++) {
+            values[index] = offset + random.nextGaussian();
+        }
+        return values;
+    }
+
+    @Test
+    public void sparseKernelsShouldMatchDenseKernels() {
+        DataPoint dense = new DataPoint(new double[] { 0.0, 1.5, 0.0, 0.0, -2.0, 0.0 }, 1.0);
+        DataPoint sparse = new SparseDataPoint(new int[] { 1, 4 }, new double[] { 1.5, -2.0 }, 6, 1.0);
+        Prototype prototype = new Prototype(new double[] { 0.5, 1.0, -1.0, 0.0, 2.0, 0.25 }, 1.0);
+        OmegaMatrix omegaMatrix = new OmegaMatrix(new double[][] { { 1, 2, 3, 4, 5, 6 }, { -1, 0, 1, 0, -1, 0 } });
+
+        assertArrayEquals(dense.getValues(), sparse.getValues(), 0.0);
+        assertEquals(LinearAlgebraicCalculations.calculateSquaredEuclideanDistance(dense, prototype),
+                LinearAlgebraicCalculations.calculateSquaredEuclideanDistance(sparse, prototype), 1.0E-12);
+        assertArrayEquals(LinearAlgebraicCalculations.substract(dense, prototype).getValues(),
+                LinearAlgebraicCalculations.substract(sparse, prototype).getValues(), 1.0E-12);
+        assertArrayEquals(dense.getEmbeddedSpaceVector(omegaMatrix).getValues(),
+                sparse.getEmbeddedSpaceVector(omegaMatrix).getValues(), 1.0E-12);
+
+        // no relevance learning, the mapping stays sparse
+        OmegaMatrix identity = new OmegaMatrix(new double[][] { { 1 } });
+        assertEquals(
+                LinearAlgebraicCalculations.calculateSquaredEuclideanDistance(dense.getEmbeddedSpaceVector(identity),
+                        prototype),
+                LinearAlgebraicCalculations.calculateSquaredEuclideanDistance(sparse.getEmbeddedSpaceVector(identity),
+                        prototype),
+                1.0E-12);
+        // identical values cancel in the expansion and are recomputed
+        assertEquals(0, sparse.squaredEuclideanDistance(new Prototype(dense.getValues(), 1.0)), 0.0);
+
+        // the distance only reads the values at the non-zero indices
+        final int[] reads = new int[1];
+        Prototype countingPrototype = new Prototype(createValues(new Random(42), 1000, 0), 1.0) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public double getValue(int index) {
+                reads[0]++;
+                return super.getValue(index);
+            }
+        };
+        DataPoint wideSparse = new SparseDataPoint(new int[] { 3, 500 }, new double[] { 1.5, -2.0 }, 1000, 1.0);
+        assertEquals(new DataPoint(wideSparse.getValues(), 1.0).squaredEuclideanDistance(countingPrototype),
+                wideSparse.squaredEuclideanDistance(countingPrototype), 1.0E-9);
+        reads[0] = 0;
+        wideSparse.squaredEuclideanDistance(countingPrototype);
+        assertEquals(2, reads[0]);
+    }
+
+    @Test
+    public void instanceViewsShouldMatchCopiedDataPoints() {
+        ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+        attributes.add(new Attribute("first"));
+        attributes.add(new Attribute("class", Arrays.asList("a", "b")));
+        attributes.add(new Attribute("second"));
+        attributes.add(new Attribute("third"));
+        Instances instances = new Instances("view", attributes, 1);
+        // the class is not the last attribute, the view has to skip it
+        instances.setClassIndex(1);
+        instances.add(new DenseInstance(1.0, new double[] { 0.5, 1.0, -2.0, 3.0 }));
+
+        DataPoint copy = new DataPoint(new double[] { 0.5, -2.0, 3.0 }, 1.0);
+        DataPoint view = new InstanceDataPoint(instances.get(0));
+        Prototype prototype = new Prototype(new double[] { 1.0, 0.0, -1.0 }, 0.0);
+        OmegaMatrix omegaMatrix = new OmegaMatrix(new double[][] { { 1, 2, 3 }, { -1, 0, 1 } });
+
+        assertEquals(copy.getClassLabel(), view.getClassLabel(), 0.0);
+        assertArrayEquals(copy.getValues(), view.getValues(), 0.0);
+        assertEquals(LinearAlgebraicCalculations.calculateSquaredEuclideanDistance(copy, prototype),
+                LinearAlgebraicCalculations.calculateSquaredEuclideanDistance(view, prototype), 1.0E-12);
+        assertArrayEquals(LinearAlgebraicCalculations.substract(copy, prototype).getValues(),
+                LinearAlgebraicCalculations.substract(view, prototype).getValues(), 1.0E-12);
+        assertArrayEquals(copy.getEmbeddedSpaceVector(omegaMatrix).getValues(),
+                view.getEmbeddedSpaceVector(omegaMatrix).getValues(), 1.0E-12);
+    }
+
+    @Test
+    public void partialEigendecompositionShouldMatchFullOne() throws Exception {
+        int dataDimension = 120;
+        Random random = new Random(42);
+        List<DataPoint> dataPoints = createDecayingDataPoints(dataDimension, random);
+
+        EigenvalueDecomposition full = LinearAlgebraicCalculations.calculateCovarianceFromMeanVector(dataPoints)
+                .eig();
+        PrincipalComponents partial = new PrincipalComponents(dataPoints, 5, random);
+
+        double[] fullEigenvalues = full.getRealEigenvalues();
+        double[][] fullEigenvectors = full.getV().transpose().getArray();
+        for (int component = 0; component < 5; component++) {
+            // full eigenvalues are sorted ascending
+            int fullIndex = dataDimension - 1 - component;
+            assertEquals(fullEigenvalues[fullIndex], partial.getEigenvalues()[component],
+                    1.0E-6 * fullEigenvalues[fullIndex]);
+            double product = 0;
+            for (int index = 0; index < dataDimension; index++) {
+                product += fullEigenvectors[fullIndex][index] * partial.getEigenvectors()[component][index];
+            }
+            assertTrue(Math.abs(product) > 1 - 1.0E-6);
+        }
+    }
+
+    /**
+     * @return 100 data points with decaying variance along random directions
+     */
+    static List<DataPoint> createDecayingDataPoints(int dataDimension, Random random) {
+        double[][] directions = new double[20][dataDimension];
+        for (double[] direction : directions) {
+            for (int index = 0; index < dataDimension; index++) {
+                direction[index] = random.nextGaussian();
+            }
+        }
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+        for (int dataPointIndex = 0; dataPointIndex < 100; dataPointIndex++) {
+            double[] values = new double[dataDimension];
+            for (int direction = 0; direction < directions.length; direction++) {
+                double factor = random.nextGaussian() * 10 / (direction + 1);
+                for (int index = 0; index < dataDimension; index++) {
+                    values[index] += factor * directions[direction][index];
+                }
+            }
+            for (int index = 0; index < dataDimension; index++) {
+                values[index] += 0.01 * random.nextGaussian();
+            }
+            dataPoints.add(new DataPoint(values, 0.0));
+        }
+        return dataPoints;
+    }
 }
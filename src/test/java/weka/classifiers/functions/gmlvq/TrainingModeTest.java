@@ -0,0 +1,696 @@
+package weka.classifiers.functions.gmlvq;
+
+import org.junit.Test;
+import weka.classifiers.functions.GMLVQ;
+import weka.classifiers.functions.gmlvq.core.ChunkedTrainingData;
+import weka.classifiers.functions.gmlvq.core.CoresetBuilder;
+import weka.classifiers.functions.gmlvq.core.GMLVQCore;
+import weka.classifiers.functions.gmlvq.core.InitializationCache;
+import weka.classifiers.functions.gmlvq.core.KMeansPlusPlusInitializer;
+import weka.classifiers.functions.gmlvq.core.ParallelStrategy;
+import weka.classifiers.functions.gmlvq.core.cost.DefaultCostFunction;
+import weka.classifiers.functions.gmlvq.model.DataPoint;
+import weka.classifiers.functions.gmlvq.model.DataSpaceVector;
+import weka.classifiers.functions.gmlvq.model.DataStoreCache;
+import weka.classifiers.functions.gmlvq.model.DataStoreLoader;
+import weka.classifiers.functions.gmlvq.model.FeatureStatistics;
+import weka.classifiers.functions.gmlvq.model.MappedDataStore;
+import weka.classifiers.functions.gmlvq.model.OmegaMatrix;
+import weka.classifiers.functions.gmlvq.model.Prototype;
+import weka.classifiers.functions.gmlvq.model.WeightedDataPoint;
+import weka.classifiers.functions.gmlvq.model.WekaModelConverter;
+import weka.classifiers.functions.gmlvq.model.WinnerBounds;
+import weka.classifiers.functions.gmlvq.utilities.ImportanceSampler;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Compares alternative training modes to the default training on small
+ * fixtures. Their run times are compared by {@link GMLVQBenchmark}.
+ */
+public class TrainingModeTest {
+
+    private static final int NUMBER_OF_EPOCHS = 100;
+
+    @Test
+    public void shouldConvergeInSinglePrecision() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.IRIS, true);
+        List<DataPoint> floatDataPoints = WekaModelConverter.createDataPoints(instances, true);
+        List<DataPoint> doubleDataPoints = WekaModelConverter.createDataPoints(instances, false);
+        OmegaMatrix omegaMatrix = new OmegaMatrix(new double[][] { { 1, 2, 3, 4 }, { -1, 0, 1, 0 } });
+        for (int index = 0; index < instances.size(); index++) {
+            DataPoint floatDataPoint = floatDataPoints.get(index);
+            DataPoint doubleDataPoint = doubleDataPoints.get(index);
+            for (int attributeIndex = 0; attributeIndex < floatDataPoint.getDimension(); attributeIndex++) {
+                assertEquals((float) doubleDataPoint.getValue(attributeIndex), floatDataPoint.getValue(attributeIndex),
+                        0.0);
+            }
+            assertArrayEquals(doubleDataPoint.getEmbeddedSpaceVector(omegaMatrix).getValues(),
+                    floatDataPoint.getEmbeddedSpaceVector(omegaMatrix).getValues(), 1E-6);
+        }
+
+        // sums are accumulated in double precision, so training only differs
+        // by the rounding of the data
+        GMLVQCore[] runs = new GMLVQCore[2];
+        for (int run = 0; run < runs.length; run++) {
+            runs[run] = createCoreBuilder().numberOfEpochs(20).omegaDimension(2)
+                    .build(WekaModelConverter.createDataPoints(instances, run == 0));
+            runs[run].buildClassifier();
+        }
+        double[][] omega = runs[0].getOmegaMatrix().getArray();
+        for (int rowIndex = 0; rowIndex < omega.length; rowIndex++) {
+            assertArrayEquals(runs[1].getOmegaMatrix().getArray()[rowIndex], omega[rowIndex], 1E-4);
+        }
+        for (int index = 0; index < runs[0].getPrototypes().size(); index++) {
+            assertArrayEquals(runs[1].getPrototypes().get(index).getValues(),
+                    runs[0].getPrototypes().get(index).getValues(), 1E-4);
+        }
+    }
+
+    @Test
+    public void shouldTrainOnSparseDataWithoutDensifying() throws Exception {
+        Instances sparseInstances = createSparseDataset(60, 200, 5);
+        Instances denseInstances = new Instances(sparseInstances, sparseInstances.size());
+        for (Instance instance : sparseInstances) {
+            denseInstances.add(new DenseInstance(1.0, instance.toDoubleArray()));
+        }
+
+        for (boolean matrixLearning : new boolean[]{false, true}) {
+            // only the order of summation differs
+            GMLVQCore[] runs = new GMLVQCore[2];
+            for (int run = 0; run < runs.length; run++) {
+                runs[run] = createCoreBuilder().numberOfEpochs(10).matrixLearning(matrixLearning)
+                        .build(WekaModelConverter.createDataPoints(run == 0 ? sparseInstances : denseInstances));
+                runs[run].buildClassifier();
+            }
+            double[][] omega = runs[0].getOmegaMatrix().getArray();
+            for (int rowIndex = 0; rowIndex < omega.length; rowIndex++) {
+                assertArrayEquals(runs[1].getOmegaMatrix().getArray()[rowIndex], omega[rowIndex], 1E-9);
+            }
+            for (int index = 0; index < runs[0].getPrototypes().size(); index++) {
+                assertArrayEquals(runs[1].getPrototypes().get(index).getValues(),
+                        runs[0].getPrototypes().get(index).getValues(), 1E-9);
+            }
+        }
+    }
+
+    @Test
+    public void shouldTrainFromMemoryMappedStore() throws Exception {
+        Instances instances = createWeightedDataset();
+        for (boolean singlePrecision : new boolean[]{false, true}) {
+            File storeFile = File.createTempFile("gmlvq", ".store");
+            storeFile.deleteOnExit();
+            MappedDataStore store = MappedDataStore.write(instances, storeFile, singlePrecision);
+            try {
+                assertSameContent(instances, store);
+
+                // views of the store hold the same values as converted instances - in single
+                // precision, only the latter also compute in single precision
+                GMLVQCore fromStore = createCoreBuilder().numberOfEpochs(20).omegaDimension(2)
+                        .build(store.getDataPoints());
+                fromStore.buildClassifier();
+                GMLVQCore fromInstances = createCoreBuilder().numberOfEpochs(20).omegaDimension(2)
+                        .build(WekaModelConverter.createDataPoints(instances, singlePrecision));
+                fromInstances.buildClassifier();
+                assertSameModel(fromInstances, fromStore, singlePrecision ? 1E-4 : 1E-9);
+            } finally {
+                store.close();
+            }
+        }
+    }
+
+    @Test
+    public void shouldSkipClassAttributeAtAnyPosition() throws Exception {
+        Instances instances = createWeightedDataset();
+        // the same data with the class as first attribute, dense and sparse
+        ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+        attributes.add((Attribute) instances.classAttribute().copy());
+        for (int attributeIndex = 0; attributeIndex < instances.numAttributes() - 1; attributeIndex++) {
+            attributes.add((Attribute) instances.attribute(attributeIndex).copy());
+        }
+        Instances denseInstances = new Instances("class first", attributes, instances.size());
+        denseInstances.setClassIndex(0);
+        Instances sparseInstances = new Instances(denseInstances, instances.size());
+        for (Instance instance : instances) {
+            double[] values = new double[instance.numAttributes()];
+            values[0] = instance.classValue();
+            System.arraycopy(instance.toDoubleArray(), 0, values, 1, values.length - 1);
+            denseInstances.add(new DenseInstance(instance.weight(), values));
+            sparseInstances.add(new SparseInstance(instance.weight(), values));
+        }
+
+        assertArrayEquals(WekaModelConverter.extractAttributeNames(instances),
+                WekaModelConverter.extractAttributeNames(denseInstances));
+        List<DataPoint> dataPoints = WekaModelConverter.createDataPoints(instances);
+        assertSameDataPoints(dataPoints, WekaModelConverter.createDataPoints(denseInstances));
+        assertSameDataPoints(dataPoints, WekaModelConverter.createDataPoints(sparseInstances));
+        assertSameDataPoints(WekaModelConverter.createDataPoints(instances, true),
+                WekaModelConverter.createDataPoints(denseInstances, true));
+        File storeFile = File.createTempFile("gmlvq", ".store");
+        storeFile.deleteOnExit();
+        MappedDataStore store = MappedDataStore.write(denseInstances, storeFile, false);
+        try {
+            assertArrayEquals(WekaModelConverter.extractAttributeNames(instances), store.getAttributeNames());
+            assertSameDataPoints(dataPoints, store.getDataPoints());
+        } finally {
+            store.close();
+        }
+
+        GMLVQCore classLast = createCoreBuilder().numberOfEpochs(10).omegaDimension(2).build(dataPoints);
+        classLast.buildClassifier();
+        GMLVQCore classFirst = createCoreBuilder().numberOfEpochs(10).omegaDimension(2)
+                .build(WekaModelConverter.createDataPoints(denseInstances));
+        classFirst.buildClassifier();
+        assertSameModel(classLast, classFirst, 0.0);
+    }
+
+    @Test
+    public void shouldLoadStoreWithoutWekaInstances() throws Exception {
+        for (String dataset : new String[]{TestUtils.Datasets.IRIS, TestUtils.Datasets.TECATOR_D}) {
+            File arffFile = new File(Thread.currentThread().getContextClassLoader().getResource(dataset).toURI());
+            Instances instances = TestUtils.loadDataset(dataset);
+
+            File storeFile = File.createTempFile("gmlvq", ".store");
+            storeFile.deleteOnExit();
+            MappedDataStore store = DataStoreLoader.load(arffFile, storeFile, false);
+            try {
+                assertSameContent(instances, store);
+            } finally {
+                store.close();
+            }
+        }
+
+        // CSV files are converted the same way
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.IRIS);
+        File csvFile = File.createTempFile("gmlvq", ".csv");
+        csvFile.deleteOnExit();
+        PrintWriter writer = new PrintWriter(csvFile, "UTF-8");
+        for (int attributeIndex = 0; attributeIndex < instances.numAttributes(); attributeIndex++) {
+            writer.print((attributeIndex > 0 ? "," : "") + instances.attribute(attributeIndex).name());
+        }
+        writer.println();
+        for (Instance instance : instances) {
+            writer.println(instance);
+        }
+        writer.close();
+        File storeFile = File.createTempFile("gmlvq", ".store");
+        storeFile.deleteOnExit();
+        MappedDataStore store = DataStoreLoader.load(csvFile, storeFile, true);
+        try {
+            assertSameContent(instances, store);
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void shouldLoadRepeatedRunsFromCache() throws Exception {
+        File cacheDirectory = Files.createTempDirectory("gmlvq").toFile();
+        DataStoreCache cache = new DataStoreCache(cacheDirectory);
+        for (String dataset : new String[]{TestUtils.Datasets.IRIS, TestUtils.Datasets.TECATOR_D}) {
+            File arffFile = new File(Thread.currentThread().getContextClassLoader().getResource(dataset).toURI());
+            Instances instances = TestUtils.loadDataset(dataset);
+
+            // the first run converts the file, the second one maps the cached store
+            for (int run = 0; run < 2; run++) {
+                MappedDataStore store = cache.open(arffFile, false);
+                try {
+                    assertSameContent(instances, store);
+                    FeatureStatistics statistics = store.getStatistics();
+                    assertEquals(instances.size(), statistics.getCount());
+                    for (int attributeIndex = 0; attributeIndex < store.getDataDimension(); attributeIndex++) {
+                        double scale = Math.max(1, Math.abs(instances.meanOrMode(attributeIndex)));
+                        assertEquals(instances.meanOrMode(attributeIndex), statistics.getMean(attributeIndex),
+                                1E-9 * scale);
+                        assertEquals(instances.variance(attributeIndex), statistics.getVariance(attributeIndex),
+                                1E-6 * Math.max(1, instances.variance(attributeIndex)));
+                        assertEquals(instances.attributeStats(attributeIndex).numericStats.min,
+                                statistics.getMinimum(attributeIndex), 0.0);
+                        assertEquals(instances.attributeStats(attributeIndex).numericStats.max,
+                                statistics.getMaximum(attributeIndex), 0.0);
+                    }
+                } finally {
+                    store.close();
+                }
+            }
+        }
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        for (File entry : cacheDirectory.listFiles()) {
+            entry.delete();
+        }
+        cacheDirectory.delete();
+    }
+
+    @Test
+    public void shouldTrainOutOfCoreWithinMemoryBudget() throws Exception {
+        Instances instances = createWeightedDataset();
+        File storeFile = File.createTempFile("gmlvq", ".store");
+        storeFile.deleteOnExit();
+        MappedDataStore store = MappedDataStore.write(instances, storeFile, false);
+        try {
+            List<String> rows = new ArrayList<String>();
+            for (Instance instance : instances) {
+                rows.add(Arrays.toString(instance.toDoubleArray()) + " weight " + instance.weight());
+            }
+            Collections.sort(rows);
+
+            // sample and mini-batches of 64 data points each
+            long memoryBudget = 3 * 64 * (16 * store.getDataDimension() + 128);
+            ChunkedTrainingData trainingData = ChunkedTrainingData.withMemoryBudget(store, memoryBudget, 42);
+            try {
+                assertEquals(64, trainingData.getChunkSize());
+                assertEquals(64, trainingData.getSample().size());
+                for (DataPoint dataPoint : trainingData.getSample()) {
+                    String row = toRow(dataPoint) + " weight " + dataPoint.getWeight();
+                    assertTrue(Collections.binarySearch(rows, row) >= 0);
+                }
+
+                // each pass over the 3 blocks of the store reads every row once
+                for (int pass = 0; pass < 2; pass++) {
+                    List<String> readRows = new ArrayList<String>();
+                    for (int chunk = 0; chunk < 3; chunk++) {
+                        for (DataPoint dataPoint : trainingData.nextChunk()) {
+                            readRows.add(toRow(dataPoint) + " weight " + dataPoint.getWeight());
+                        }
+                    }
+                    Collections.sort(readRows);
+                    assertEquals(rows, readRows);
+                }
+            } finally {
+                trainingData.dispose();
+            }
+
+            GMLVQ gmlvq = createClassifier();
+            gmlvq.buildClassifier(store, memoryBudget);
+            assertTrue(accuracy(gmlvq, instances) > 0.75);
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void shouldCollapseDuplicatesIntoWeightedPoints() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.IRIS, true);
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+        for (int copy = 0; copy < 3; copy++) {
+            dataPoints.addAll(WekaModelConverter.createDataPoints(instances));
+        }
+        List<DataPoint> distinctDataPoints = WeightedDataPoint.collapseDuplicates(dataPoints);
+        double totalWeight = 0;
+        for (DataPoint dataPoint : distinctDataPoints) {
+            totalWeight += dataPoint.getWeight();
+        }
+        assertEquals(dataPoints.size(), totalWeight, 0.0);
+        assertEquals(WeightedDataPoint.collapseDuplicates(dataPoints.subList(0, instances.size())).size(),
+                distinctDataPoints.size());
+
+        // weighted costs of the distinct data points are the costs of all
+        GMLVQCore collapsed = createCoreBuilder().numberOfEpochs(10).omegaDimension(2).collapseDuplicates(true)
+                .build(dataPoints);
+        collapsed.buildClassifier();
+        assertEquals(costValue(collapsed, dataPoints), costValue(collapsed, distinctDataPoints), 1E-12);
+    }
+
+    @Test
+    public void shouldRejectDataPointsWithoutWeight() throws Exception {
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+        for (DataPoint dataPoint : WekaModelConverter.createDataPoints(TestUtils.loadDataset(TestUtils.Datasets.IRIS))) {
+            dataPoints.add(new DataPoint(dataPoint.getValues(), dataPoint.getClassLabel(), 0));
+        }
+        try {
+            createCoreBuilder().build(dataPoints);
+            fail("data points without weight were accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("total weight"));
+        }
+    }
+
+    @Test
+    public void shouldPreserveWeightsInCoresetAndEvaluateAllDataPoints() throws Exception {
+        // with all data points of a class alike, each one is drawn with a
+        // probability proportional to its weight
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+        for (int index = 0; index < 50; index++) {
+            dataPoints.add(new DataPoint(new double[]{1, 2}, 0));
+        }
+        for (int index = 0; index < 30; index++) {
+            dataPoints.add(new DataPoint(new double[]{3, 4}, 1, 2));
+        }
+        List<DataPoint> weightedCoreset = new CoresetBuilder(20, 42).build(dataPoints,
+                new OmegaMatrix(new double[][]{{1, 0}, {0, 1}}));
+        assertTrue(weightedCoreset.size() <= 20);
+        double[] classWeights = new double[2];
+        for (DataPoint dataPoint : weightedCoreset) {
+            classWeights[(int) dataPoint.getClassLabel()] += dataPoint.getWeight();
+        }
+        assertArrayEquals(new double[]{50, 60}, classWeights, 1E-9);
+
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.IRIS, true);
+        List<DataPoint> irisDataPoints = WekaModelConverter.createDataPoints(instances);
+        GMLVQCore coreset = createCoreBuilder().numberOfEpochs(10).omegaDimension(2).coresetSize(60)
+                .build(new ArrayList<DataPoint>(irisDataPoints));
+        coreset.buildClassifier();
+        assertTrue(coreset.getDataPoints().size() <= 60);
+        Set<DataPoint> drawnDataPoints = new HashSet<DataPoint>();
+        for (DataPoint dataPoint : coreset.getDataPoints()) {
+            drawnDataPoints.add(((WeightedDataPoint) dataPoint).getRepresentative());
+        }
+        assertTrue(new HashSet<DataPoint>(irisDataPoints).containsAll(drawnDataPoints));
+        assertEquals(irisDataPoints.size(), coreset.getNumberOfAllDataPoints());
+        assertEquals(costValue(coreset, irisDataPoints), coreset.getAllDataPointsCostValue(), 1E-12);
+    }
+
+    @Test
+    public void shouldWeightImportanceDrawsByInverseProbability() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.IRIS, true);
+        List<DataPoint> dataPoints = WekaModelConverter.createDataPoints(instances);
+
+        // equal scores draw uniformly, i.e. each draw weighs 1
+        ImportanceSampler sampler = new ImportanceSampler(dataPoints, 0.2, 1, new Random(42));
+        assertEquals(30, sampler.getSampleSize());
+        assertEquals(30, sumOfImportanceWeights(sampler.sample()), 1E-12);
+
+        // each draw weighs the inverse of its probability relative to uniform
+        for (int index = 0; index < dataPoints.size(); index++) {
+            sampler.update(dataPoints.get(index), index % 3 == 0 ? 0 : index);
+        }
+        double totalScore = 0;
+        for (DataPoint dataPoint : dataPoints) {
+            totalScore += sampler.getScore(dataPoint);
+        }
+        ImportanceSampler.Sample sample = sampler.sample();
+        int numberOfDraws = 0;
+        for (int index = 0; index < sample.getDataPoints().size(); index++) {
+            double probability = ImportanceSampler.UNIFORM_SHARE / dataPoints.size()
+                    + (1 - ImportanceSampler.UNIFORM_SHARE) * sampler.getScore(sample.getDataPoints().get(index))
+                    / totalScore;
+            double draws = sample.getImportanceWeights()[index] * dataPoints.size() * probability;
+            assertEquals(Math.round(draws), draws, 1E-9);
+            assertTrue(Math.round(draws) >= 1);
+            numberOfDraws += Math.round(draws);
+        }
+        assertEquals(30, numberOfDraws);
+
+        GMLVQCore importance = createCoreBuilder().numberOfEpochs(10).omegaDimension(2).importanceSampling(true)
+                .dataPointRatioPerRound(0.1).build(new ArrayList<DataPoint>(dataPoints));
+        importance.buildClassifier();
+        assertEquals(15, importance.getGradientDescent().getImportanceSampler().getSampleSize());
+    }
+
+    @Test
+    public void shouldSpreadMultiplePrototypesOverClusters() throws Exception {
+        // one class of four distant clusters - random choices miss one of
+        // them in most cases
+        Random random = new Random(42);
+        List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+        double[][] centers = {{0, 0}, {100, 0}, {0, 100}, {100, 100}};
+        for (int index = 0; index < 400; index++) {
+            double[] center = centers[index % centers.length];
+            dataPoints.add(new DataPoint(new double[]{center[0] + random.nextGaussian(),
+                    center[1] + random.nextGaussian()}, 0));
+        }
+        KMeansPlusPlusInitializer initializer = new KMeansPlusPlusInitializer(random);
+        try {
+            for (int run = 0; run < 10; run++) {
+                Set<Integer> hitClusters = new HashSet<Integer>();
+                for (DataPoint seed : initializer.chooseSeeds(dataPoints, centers.length,
+                        new OmegaMatrix(new double[][]{{1}}))) {
+                    hitClusters.add((int) Math.round(seed.getValue(0) / 100) * 2
+                            + (int) Math.round(seed.getValue(1) / 100));
+                }
+                assertEquals(centers.length, hitClusters.size());
+            }
+        } finally {
+            initializer.dispose();
+        }
+
+        // training places prototypes at distinct data points of their class
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.IRIS, true);
+        Set<String> rows = new HashSet<String>();
+        for (Instance instance : instances) {
+            rows.add(Arrays.toString(instance.toDoubleArray()));
+        }
+        GMLVQCore gmlvqCore = createCoreBuilder().numberOfPrototypesPerClass(3).numberOfEpochs(0).omegaDimension(2)
+                .build(WekaModelConverter.createDataPoints(instances));
+        gmlvqCore.buildClassifier();
+        assertEquals(3 * instances.numClasses(), gmlvqCore.getPrototypes().size());
+        Set<String> prototypeRows = new HashSet<String>();
+        for (Prototype prototype : gmlvqCore.getPrototypes()) {
+            String row = toRow(prototype);
+            assertTrue(rows.contains(row));
+            prototypeRows.add(row);
+        }
+        assertEquals(gmlvqCore.getPrototypes().size(), prototypeRows.size());
+    }
+
+    @Test
+    public void shouldSkipCachedInitialization() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.IRIS, true);
+        List<DataPoint> dataPoints = WekaModelConverter.createDataPoints(instances);
+        File cacheDirectory = Files.createTempDirectory("gmlvq").toFile();
+        InitializationCache cache = new InitializationCache(cacheDirectory);
+
+        GMLVQCore[] runs = new GMLVQCore[2];
+        for (int run = 0; run < runs.length; run++) {
+            runs[run] = createCoreBuilder().numberOfEpochs(10).omegaDimension(2).numberOfPrototypesPerClass(3)
+                    .allDataPointsForOmegaInitialization(true).initializationCache(cache)
+                    .build(new ArrayList<DataPoint>(dataPoints));
+            runs[run].buildClassifier();
+        }
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        // cached initializations train alike
+        assertTrue(Arrays.deepEquals(runs[0].getOmegaMatrix().getArray(), runs[1].getOmegaMatrix().getArray()));
+        for (int index = 0; index < runs[0].getPrototypes().size(); index++) {
+            assertArrayEquals(runs[0].getPrototypes().get(index).getValues(),
+                    runs[1].getPrototypes().get(index).getValues(), 0.0);
+        }
+        for (File entry : cacheDirectory.listFiles()) {
+            entry.delete();
+        }
+        cacheDirectory.delete();
+    }
+
+    @Test
+    public void shouldPruneWinnerSearchesWithoutChangingResults() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.IRIS, true);
+
+        GMLVQCore[] runs = new GMLVQCore[2];
+        for (int run = 0; run < runs.length; run++) {
+            // fresh data points, so no winners are cached from the other run
+            runs[run] = createCoreBuilder().numberOfEpochs(30).omegaDimension(4).numberOfPrototypesPerClass(5)
+                    .winnerPruning(run == 0).build(WekaModelConverter.createDataPoints(instances));
+            runs[run].buildClassifier();
+        }
+        WinnerBounds winnerBounds = runs[0].getWinnerBounds();
+        assertNull(runs[1].getWinnerBounds());
+        // whether pruning pays off is measured by GMLVQBenchmark
+        assertTrue(winnerBounds.getPrunedSearches() > 0);
+        assertTrue(Arrays.deepEquals(runs[0].getOmegaMatrix().getArray(), runs[1].getOmegaMatrix().getArray()));
+        for (int index = 0; index < runs[0].getPrototypes().size(); index++) {
+            assertArrayEquals(runs[0].getPrototypes().get(index).getValues(),
+                    runs[1].getPrototypes().get(index).getValues(), 0.0);
+        }
+    }
+
+    @Test
+    public void shouldSplitFeaturesLikeDataPoints() throws Exception {
+        // few data points per epoch, so splitting them keeps threads idle
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.TECATOR_D, true);
+
+        GMLVQCore[] runs = new GMLVQCore[2];
+        ParallelStrategy[] parallelStrategies = new ParallelStrategy[]{ParallelStrategy.FEATURES,
+                ParallelStrategy.DATA_POINTS};
+        for (int run = 0; run < runs.length; run++) {
+            runs[run] = createCoreBuilder().numberOfEpochs(10).omegaDimension(20).dataPointRatioPerRound(0.05)
+                    .parallelStrategy(parallelStrategies[run]).build(WekaModelConverter.createDataPoints(instances));
+            runs[run].buildClassifier();
+        }
+        // only the order of summation differs
+        assertSameModel(runs[1], runs[0], 1E-9);
+    }
+
+    @Test
+    public void shouldKeepAutotunedExecutionPlan() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.TECATOR_D, true);
+        File autotuningFile = File.createTempFile("gmlvq", ".properties");
+        autotuningFile.delete();
+
+        GMLVQCore untuned = createCoreBuilder().numberOfEpochs(10).omegaDimension(20)
+                .build(WekaModelConverter.createDataPoints(instances));
+        untuned.buildClassifier();
+        GMLVQCore[] runs = new GMLVQCore[2];
+        for (int run = 0; run < runs.length; run++) {
+            runs[run] = createCoreBuilder().numberOfEpochs(10).omegaDimension(20).autotuning(true)
+                    .autotuningFile(autotuningFile).build(WekaModelConverter.createDataPoints(instances));
+            runs[run].buildClassifier();
+        }
+        assertTrue(autotuningFile.exists());
+        assertEquals(runs[0].getExecutionPlan(), runs[1].getExecutionPlan());
+        // the plan only changes the order of summation
+        for (GMLVQCore run : runs) {
+            assertSameModel(untuned, run, 1E-9);
+        }
+        autotuningFile.delete();
+    }
+
+    private static void assertSameContent(Instances instances, MappedDataStore store) {
+        assertEquals(instances.size(), store.getNumberOfRows());
+        assertEquals(instances.numAttributes() - 1, store.getDataDimension());
+        for (int classIndex = 0; classIndex < instances.numClasses(); classIndex++) {
+            assertEquals(instances.classAttribute().value(classIndex), store.getClassNames()[classIndex]);
+        }
+        for (int index = 0; index < instances.size(); index++) {
+            Instance instance = instances.get(index);
+            DataPoint dataPoint = store.getDataPoint(index);
+            assertEquals(instance.classValue(), dataPoint.getClassLabel(), 0.0);
+            assertEquals(instance.weight(), dataPoint.getWeight(), 0.0);
+            for (int attributeIndex = 0; attributeIndex < dataPoint.getDimension(); attributeIndex++) {
+                assertEquals(instance.value(attributeIndex), dataPoint.getValue(attributeIndex),
+                        store.isSinglePrecision() ? 1E-6 : 0.0);
+            }
+        }
+    }
+
+    private static double sumOfImportanceWeights(ImportanceSampler.Sample sample) {
+        double sum = 0;
+        for (double importanceWeight : sample.getImportanceWeights()) {
+            sum += importanceWeight;
+        }
+        return sum;
+    }
+
+    private static void assertSameDataPoints(List<DataPoint> expected, List<DataPoint> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int index = 0; index < expected.size(); index++) {
+            assertEquals(expected.get(index).getClassLabel(), actual.get(index).getClassLabel(), 0.0);
+            assertEquals(expected.get(index).getWeight(), actual.get(index).getWeight(), 0.0);
+            assertArrayEquals(expected.get(index).getValues(), actual.get(index).getValues(), 0.0);
+        }
+    }
+
+    /**
+     * @return the iris data set with weights of 1, 2 and 3 in turn
+     */
+    private static Instances createWeightedDataset() throws Exception {
+        Instances instances = TestUtils.loadDataset(TestUtils.Datasets.IRIS, true);
+        for (int index = 0; index < instances.size(); index++) {
+            instances.get(index).setWeight(1 + index % 3);
+        }
+        return instances;
+    }
+
+    private static String toRow(DataSpaceVector dataPoint) {
+        double[] row = Arrays.copyOf(dataPoint.getValues(), dataPoint.getDimension() + 1);
+        row[dataPoint.getDimension()] = dataPoint.getClassLabel();
+        return Arrays.toString(row);
+    }
+
+    /**
+     * asserts that both classifiers learned the same omega matrix and
+     * prototypes
+     */
+    static void assertSameModel(GMLVQCore expected, GMLVQCore actual, double delta) {
+        double[][] expectedOmega = expected.getOmegaMatrix().getArray();
+        double[][] actualOmega = actual.getOmegaMatrix().getArray();
+        assertEquals(expectedOmega.length, actualOmega.length);
+        for (int rowIndex = 0; rowIndex < expectedOmega.length; rowIndex++) {
+            assertArrayEquals(expectedOmega[rowIndex], actualOmega[rowIndex], delta);
+        }
+        assertEquals(expected.getPrototypes().size(), actual.getPrototypes().size());
+        for (int index = 0; index < expected.getPrototypes().size(); index++) {
+            assertEquals(expected.getPrototypes().get(index).getClassLabel(),
+                    actual.getPrototypes().get(index).getClassLabel(), 0.0);
+            assertArrayEquals(expected.getPrototypes().get(index).getValues(),
+                    actual.getPrototypes().get(index).getValues(), delta);
+        }
+    }
+
+    /**
+     * creates a data set of two classes, whose non-zero values are drawn from
+     * overlapping feature ranges
+     */
+    static Instances createSparseDataset(int dataDimension, int numberOfInstances, int numberOfNonZeroValues) {
+        ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+        for (int attributeIndex = 0; attributeIndex < dataDimension; attributeIndex++) {
+            attributes.add(new Attribute("feature" + attributeIndex));
+        }
+        attributes.add(new Attribute("class", Arrays.asList("a", "b")));
+        Instances instances = new Instances("sparse", attributes, numberOfInstances);
+        instances.setClassIndex(dataDimension);
+
+        Random random = new Random(42);
+        for (int instanceIndex = 0; instanceIndex < numberOfInstances; instanceIndex++) {
+            int classValue = instanceIndex % 2;
+            int offset = classValue * dataDimension / 3;
+            int[] indices = new int[numberOfNonZeroValues + 1];
+            double[] values = new double[numberOfNonZeroValues + 1];
+            for (int position = 0; position < numberOfNonZeroValues; position++) {
+                indices[position] = offset + position * (2 * dataDimension / 3 / numberOfNonZeroValues)
+                        + random.nextInt(2 * dataDimension / 3 / numberOfNonZeroValues);
+                values[position] = random.nextDouble();
+            }
+            indices[numberOfNonZeroValues] = dataDimension;
+            values[numberOfNonZeroValues] = classValue;
+            instances.add(new SparseInstance(1.0, values, indices, dataDimension + 1));
+        }
+        return instances;
+    }
+
+    static GMLVQ createClassifier() {
+        GMLVQ gmlvq = new GMLVQ();
+        gmlvq.set_1_visualization(false);
+        gmlvq.set_2_matrixLearning(true);
+        gmlvq.set_1_numberOfEpochs(NUMBER_OF_EPOCHS);
+        return gmlvq;
+    }
+
+    static GMLVQCore.Builder createCoreBuilder() {
+        return new GMLVQCore.Builder().numberOfEpochs(NUMBER_OF_EPOCHS).matrixLearning(true).omegaDimension(5)
+                .visualization(false).seed(42);
+    }
+
+    /**
+     * @return the default costs of the trained classifier on the given data
+     *         points, as reported by {@link GMLVQCore}
+     */
+    static double costValue(GMLVQCore gmlvqCore, List<DataPoint> dataPoints) throws Exception {
+        DefaultCostFunction costFunction = new DefaultCostFunction(gmlvqCore.getSigmoidFunction());
+        try {
+            return 1 - costFunction.evaluate(dataPoints, gmlvqCore.getPrototypes(), gmlvqCore.getOmegaMatrix());
+        } finally {
+            costFunction.dispose();
+        }
+    }
+
+    static double accuracy(GMLVQ gmlvq, Instances instances) {
+        int hits = 0;
+        for (Instance instance : instances) {
+            if (gmlvq.classifyInstance(instance) == instance.classValue()) {
+                hits++;
+            }
+        }
+        return (double) hits / instances.size();
+    }
+}